@@ -28,6 +28,7 @@ import com.google.visualization.datasource.query.AggregationColumn;
 import com.google.visualization.datasource.query.Query;
 import com.google.visualization.datasource.query.ScalarFunctionColumn;
 import com.google.visualization.datasource.query.engine.QueryEngine;
+import com.google.visualization.datasource.query.engine.QueryEngineSettings;
 import com.google.visualization.datasource.query.parser.QueryBuilder;
 import com.google.visualization.datasource.render.CsvRenderer;
 import com.google.visualization.datasource.render.HtmlRenderer;
@@ -392,6 +393,8 @@ public class DataSourceHelper {
    * resulting <code>DataTable</code>. This method may change the given DataTable.
    * Error messages produced by this method will be localized according to the passed locale 
    * unless the specified {@code DataTable} has a non null locale. 
+   * The query is executed serially on the calling thread; use
+   * {@link #applyQuery(Query, DataTable, Locale, QueryEngineSettings)} to run it in parallel.
    *
    * @param query The query object.
    * @param dataTable The data table on which to apply the query.
@@ -406,9 +409,34 @@ public class DataSourceHelper {
                                      DataTable dataTable,
                                      final Locale locale)
       throws InvalidQueryException, DataSourceException {
+    return applyQuery(query, dataTable, locale, new QueryEngineSettings());
+  }
+
+  /**
+   * Applies the given <code>Query</code> on the given <code>DataTable</code> as
+   * {@link #applyQuery(Query, DataTable, Locale)}, executing it as set by the given settings,
+   * e.g., on a pool of the data source's choice. The rows of the result do not depend on the
+   * settings, but sums and averages of non-integer values grouped in parallel may differ in their
+   * last bits.
+   *
+   * @param query The query object.
+   * @param dataTable The data table on which to apply the query.
+   * @param locale The user locale for the current request.
+   * @param settings The settings of the query execution.
+   *
+   * @return The data table result of the query execution over the given data table.
+   *
+   * @throws InvalidQueryException If the query is invalid.
+   * @throws DataSourceException If the data source cannot execute the query.
+   */
+  public static DataTable applyQuery(final Query query,
+                                     DataTable dataTable,
+                                     final Locale locale,
+                                     QueryEngineSettings settings)
+      throws InvalidQueryException, DataSourceException {
     dataTable.setLocaleForUserMessages(locale);
     validateQueryAgainstColumnStructure(query, dataTable);
-    dataTable = QueryEngine.executeQuery(query, dataTable, locale);
+    dataTable = QueryEngine.executeQuery(query, dataTable, locale, settings);
     dataTable.setLocaleForUserMessages(locale);
     return dataTable;
   }
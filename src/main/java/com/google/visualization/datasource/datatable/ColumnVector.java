@@ -0,0 +1,602 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.datatable;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.visualization.datasource.datatable.value.BooleanValue;
+import com.google.visualization.datasource.datatable.value.DateTimeValue;
+import com.google.visualization.datasource.datatable.value.DateValue;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.TimeOfDayValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of a single column of a {@link ColumnarDataTable}, stored in a primitive array
+ * that matches the column type.
+ *
+ * Null values are tracked in a separate bit set, so the primitive slot of a null value is
+ * meaningless. Values are materialized as {@link Value} objects only when requested.
+ */
+/* package */ abstract class ColumnVector {
+
+  /**
+   * The default initial capacity of a vector.
+   */
+  private static final int DEFAULT_CAPACITY = 16;
+
+  /**
+   * The number of values in this vector.
+   */
+  protected int size = 0;
+
+  /**
+   * The indices of the null values in this vector.
+   */
+  protected BitSet nulls = new BitSet();
+
+  /**
+   * Creates an empty vector for values of the given type.
+   *
+   * @param type The type of the values.
+   * @param capacity The number of values to allocate room for.
+   *
+   * @return An empty vector for values of the given type.
+   */
+  static ColumnVector create(ValueType type, int capacity) {
+    int initialCapacity = Math.max(capacity, DEFAULT_CAPACITY);
+    switch (type) {
+      case BOOLEAN:
+        return new BooleanVector();
+      case NUMBER:
+        return new NumberVector(initialCapacity);
+      case TEXT:
+        return new TextVector(initialCapacity);
+      case DATE:
+        return new DateVector(initialCapacity);
+      case DATETIME:
+        return new DateTimeVector(initialCapacity);
+      case TIMEOFDAY:
+        return new TimeOfDayVector(initialCapacity);
+      default:
+        throw new IllegalArgumentException("Unsupported value type: " + type);
+    }
+  }
+
+  /**
+   * Returns the type of the values in this vector.
+   *
+   * @return The type of the values in this vector.
+   */
+  abstract ValueType getType();
+
+  /**
+   * Returns the number of values in this vector.
+   *
+   * @return The number of values in this vector.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns whether the value at the given index is null.
+   *
+   * @param index The index of the value.
+   *
+   * @return True if the value at the given index is null.
+   */
+  boolean isNull(int index) {
+    return nulls.get(index);
+  }
+
+  /**
+   * Returns the value at the given index.
+   *
+   * @param index The index of the value.
+   *
+   * @return The value at the given index.
+   */
+  Value getValue(int index) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    if (nulls.get(index)) {
+      return Value.getNullValueFromValueType(getType());
+    }
+    return load(index);
+  }
+
+  /**
+   * Appends a value to the end of this vector. The value type is assumed to match the type of
+   * this vector.
+   *
+   * @param value The value to append.
+   */
+  void append(Value value) {
+    ensureCapacity(size + 1);
+    if (value.isNull()) {
+      nulls.set(size);
+    } else {
+      store(size, value);
+    }
+    size++;
+  }
+
+  /**
+   * Appends a number of null values to the end of this vector.
+   *
+   * @param count The number of null values to append.
+   */
+  void appendNulls(int count) {
+    ensureCapacity(size + count);
+    nulls.set(size, size + count);
+    size += count;
+  }
+
+  /**
+   * Replaces the value at the given index. The value type is assumed to match the type of
+   * this vector.
+   *
+   * @param index The index of the value to replace.
+   * @param value The new value.
+   */
+  void set(int index, Value value) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    if (value.isNull()) {
+      nulls.set(index);
+    } else {
+      nulls.clear(index);
+      store(index, value);
+    }
+  }
+
+  /**
+   * Returns a new vector holding the values at the given indices of this vector, in the given
+   * order.
+   *
+   * @param indices The indices of the values to copy.
+   *
+   * @return A new vector holding the selected values.
+   */
+  ColumnVector select(int[] indices) {
+    ColumnVector result = create(getType(), indices.length);
+    for (int i = 0; i < indices.length; i++) {
+      int index = indices[i];
+      if (index >= size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      }
+      if (nulls.get(index)) {
+        result.nulls.set(i);
+      } else {
+        result.copyElement(this, index, i);
+      }
+    }
+    result.size = indices.length;
+    return result;
+  }
+
+  /**
+   * Returns a copy of this vector.
+   *
+   * @return A copy of this vector.
+   */
+  ColumnVector copy() {
+    int[] indices = new int[size];
+    for (int i = 0; i < size; i++) {
+      indices[i] = i;
+    }
+    return select(indices);
+  }
+
+  /**
+   * Returns a new capacity that is at least the given minimum, growing the current capacity by
+   * half so that appends run in amortized constant time.
+   *
+   * @param currentCapacity The current capacity.
+   * @param minCapacity The required capacity.
+   *
+   * @return The new capacity.
+   */
+  protected static int grow(int currentCapacity, int minCapacity) {
+    return Math.max(minCapacity, currentCapacity + (currentCapacity >> 1) + 1);
+  }
+
+  /**
+   * Makes sure the primitive storage can hold at least the given number of values.
+   *
+   * @param capacity The required capacity.
+   */
+  protected abstract void ensureCapacity(int capacity);
+
+  /**
+   * Stores a non null value at the given index.
+   *
+   * @param index The index.
+   * @param value The value.
+   */
+  protected abstract void store(int index, Value value);
+
+  /**
+   * Creates a value from the primitive data stored at the given index.
+   *
+   * @param index The index.
+   *
+   * @return The value.
+   */
+  protected abstract Value load(int index);
+
+  /**
+   * Copies the primitive data of a non null value from another vector of the same type.
+   * The storage of this vector is assumed to be large enough.
+   *
+   * @param source The vector to copy from.
+   * @param sourceIndex The index in the source vector.
+   * @param index The index in this vector.
+   */
+  protected abstract void copyElement(ColumnVector source, int sourceIndex, int index);
+
+  /**
+   * A vector of number values.
+   */
+  static class NumberVector extends ColumnVector {
+
+    /**
+     * The values.
+     */
+    private double[] values;
+
+    /**
+     * Creates an empty vector.
+     *
+     * @param capacity The initial capacity.
+     */
+    NumberVector(int capacity) {
+      values = new double[capacity];
+    }
+
+    /**
+     * Returns the primitive value at the given index. The result is meaningless for nulls.
+     *
+     * @param index The index.
+     *
+     * @return The primitive value at the given index.
+     */
+    double getDouble(int index) {
+      return values[index];
+    }
+
+    @Override
+    ValueType getType() {
+      return ValueType.NUMBER;
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      if (capacity > values.length) {
+        values = Arrays.copyOf(values, grow(values.length, capacity));
+      }
+    }
+
+    @Override
+    protected void store(int index, Value value) {
+      values[index] = ((NumberValue) value).getValue();
+    }
+
+    @Override
+    protected Value load(int index) {
+      return new NumberValue(values[index]);
+    }
+
+    @Override
+    protected void copyElement(ColumnVector source, int sourceIndex, int index) {
+      values[index] = ((NumberVector) source).values[sourceIndex];
+    }
+  }
+
+  /**
+   * A vector of boolean values. Both the values and the nulls are kept in bit sets.
+   */
+  static class BooleanVector extends ColumnVector {
+
+    /**
+     * The indices of the true values.
+     */
+    private BitSet values = new BitSet();
+
+    @Override
+    ValueType getType() {
+      return ValueType.BOOLEAN;
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      // Bit sets grow on demand.
+    }
+
+    @Override
+    protected void store(int index, Value value) {
+      values.set(index, ((BooleanValue) value).getValue());
+    }
+
+    @Override
+    protected Value load(int index) {
+      return BooleanValue.getInstance(values.get(index));
+    }
+
+    @Override
+    protected void copyElement(ColumnVector source, int sourceIndex, int index) {
+      values.set(index, ((BooleanVector) source).values.get(sourceIndex));
+    }
+  }
+
+  /**
+   * A dictionary encoded vector of text values. Every distinct string is stored once, and each
+   * row holds the code of its string in the dictionary.
+   */
+  static class TextVector extends ColumnVector {
+
+    /**
+     * The dictionary code of each value.
+     */
+    private int[] codes;
+
+    /**
+     * The distinct values, by code.
+     */
+    private List<TextValue> dictionary = Lists.newArrayList();
+
+    /**
+     * A map from a string to its code in the dictionary.
+     */
+    private Map<String, Integer> codeByText = Maps.newHashMap();
+
+    /**
+     * Creates an empty vector.
+     *
+     * @param capacity The initial capacity.
+     */
+    TextVector(int capacity) {
+      codes = new int[capacity];
+    }
+
+    /**
+     * Returns the dictionary code of the value at the given index. The result is meaningless
+     * for nulls.
+     *
+     * @param index The index.
+     *
+     * @return The dictionary code of the value at the given index.
+     */
+    int getCode(int index) {
+      return codes[index];
+    }
+
+    /**
+     * Returns the number of distinct strings in the dictionary.
+     *
+     * @return The number of distinct strings in the dictionary.
+     */
+    int getDictionarySize() {
+      return dictionary.size();
+    }
+
+    /**
+     * Returns the string of a code in the dictionary.
+     *
+     * @param code The code.
+     *
+     * @return The string of the code.
+     */
+    String getDictionaryText(int code) {
+      return dictionary.get(code).getValue();
+    }
+
+    /**
+     * Returns the code of the given string, adding it to the dictionary if needed.
+     *
+     * @param value The text value.
+     *
+     * @return The code of the given string.
+     */
+    private int encode(TextValue value) {
+      Integer code = codeByText.get(value.getValue());
+      if (code == null) {
+        code = dictionary.size();
+        dictionary.add(value);
+        codeByText.put(value.getValue(), code);
+      }
+      return code;
+    }
+
+    @Override
+    ValueType getType() {
+      return ValueType.TEXT;
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      if (capacity > codes.length) {
+        codes = Arrays.copyOf(codes, grow(codes.length, capacity));
+      }
+    }
+
+    @Override
+    protected void store(int index, Value value) {
+      codes[index] = encode((TextValue) value);
+    }
+
+    @Override
+    protected Value load(int index) {
+      return dictionary.get(codes[index]);
+    }
+
+    @Override
+    protected void copyElement(ColumnVector source, int sourceIndex, int index) {
+      codes[index] = encode(((TextVector) source).dictionary.get(
+          ((TextVector) source).codes[sourceIndex]));
+    }
+  }
+
+  /**
+   * A vector of date values, stored as the number of days since the epoch.
+   */
+  static class DateVector extends ColumnVector {
+
+    /**
+     * The epoch day of each value.
+     */
+    private int[] epochDays;
+
+    /**
+     * Creates an empty vector.
+     *
+     * @param capacity The initial capacity.
+     */
+    DateVector(int capacity) {
+      epochDays = new int[capacity];
+    }
+
+    @Override
+    ValueType getType() {
+      return ValueType.DATE;
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      if (capacity > epochDays.length) {
+        epochDays = Arrays.copyOf(epochDays, grow(epochDays.length, capacity));
+      }
+    }
+
+    @Override
+    protected void store(int index, Value value) {
+      epochDays[index] = ((DateValue) value).getEpochDay();
+    }
+
+    @Override
+    protected Value load(int index) {
+      return DateValue.fromEpochDay(epochDays[index]);
+    }
+
+    @Override
+    protected void copyElement(ColumnVector source, int sourceIndex, int index) {
+      epochDays[index] = ((DateVector) source).epochDays[sourceIndex];
+    }
+  }
+
+  /**
+   * A vector of date-time values, stored as milliseconds since the epoch.
+   */
+  static class DateTimeVector extends ColumnVector {
+
+    /**
+     * The epoch milliseconds of each value.
+     */
+    private long[] epochMillis;
+
+    /**
+     * Creates an empty vector.
+     *
+     * @param capacity The initial capacity.
+     */
+    DateTimeVector(int capacity) {
+      epochMillis = new long[capacity];
+    }
+
+    @Override
+    ValueType getType() {
+      return ValueType.DATETIME;
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      if (capacity > epochMillis.length) {
+        epochMillis = Arrays.copyOf(epochMillis, grow(epochMillis.length, capacity));
+      }
+    }
+
+    @Override
+    protected void store(int index, Value value) {
+      epochMillis[index] = ((DateTimeValue) value).getEpochMillis();
+    }
+
+    @Override
+    protected Value load(int index) {
+      return DateTimeValue.fromEpochMillis(epochMillis[index]);
+    }
+
+    @Override
+    protected void copyElement(ColumnVector source, int sourceIndex, int index) {
+      epochMillis[index] = ((DateTimeVector) source).epochMillis[sourceIndex];
+    }
+  }
+
+  /**
+   * A vector of time of day values, stored as milliseconds since midnight.
+   */
+  static class TimeOfDayVector extends ColumnVector {
+
+    /**
+     * The milliseconds since midnight of each value.
+     */
+    private int[] millisOfDay;
+
+    /**
+     * Creates an empty vector.
+     *
+     * @param capacity The initial capacity.
+     */
+    TimeOfDayVector(int capacity) {
+      millisOfDay = new int[capacity];
+    }
+
+    @Override
+    ValueType getType() {
+      return ValueType.TIMEOFDAY;
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      if (capacity > millisOfDay.length) {
+        millisOfDay = Arrays.copyOf(millisOfDay, grow(millisOfDay.length, capacity));
+      }
+    }
+
+    @Override
+    protected void store(int index, Value value) {
+      millisOfDay[index] = ((TimeOfDayValue) value).getMillisOfDay();
+    }
+
+    @Override
+    protected Value load(int index) {
+      return TimeOfDayValue.fromMillisOfDay(millisOfDay[index]);
+    }
+
+    @Override
+    protected void copyElement(ColumnVector source, int sourceIndex, int index) {
+      millisOfDay[index] = ((TimeOfDayVector) source).millisOfDay[sourceIndex];
+    }
+  }
+}
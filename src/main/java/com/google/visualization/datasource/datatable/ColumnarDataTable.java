@@ -0,0 +1,777 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.datatable;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.visualization.datasource.base.TypeMismatchException;
+import com.google.visualization.datasource.datatable.value.Value;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A {@link DataTable} that stores its data by column rather than by row.
+ *
+ * Each column is kept in a single primitive array that matches the column type: numbers in a
+ * {@code double[]}, dates, date-times and times of day as epoch based {@code int} or
+ * {@code long} values, booleans in a bit set, and text values encoded against a per column
+ * dictionary. Null values are kept in a bit set per column. Formatted values and custom
+ * properties are rare, so they are kept in sparse maps keyed by row index.
+ *
+ * This representation holds a handful of objects per column instead of several objects per
+ * cell, which makes it suitable for large tables. The query engine and the renderers access the
+ * table through the index based methods ({@link #getValue(int, int)},
+ * {@link #getFormattedValue(int, int)}, etc.), which do not create any row or cell objects.
+ *
+ * The row and cell objects returned by {@link #getRows()}, {@link #getRow(int)} and
+ * {@link #getCell(int, int)} are lightweight views that are created on demand. Changes made
+ * through them (formatted values and custom properties) are written to the table. A view
+ * cannot be used to add cells to a row, and the list returned by {@link #getRows()} cannot be
+ * modified; use {@link #addRow(TableRow)} and {@link #setRows(Collection)} instead. Views
+ * should not be used after {@link #setRows(Collection)} is called.
+ */
+public class ColumnarDataTable extends DataTable {
+
+  /**
+   * The column vectors, in column order.
+   */
+  private List<ColumnVector> vectors = Lists.newArrayList();
+
+  /**
+   * The number of rows in the table.
+   */
+  private int numberOfRows = 0;
+
+  /**
+   * The formatted values of each column, by row index. An entry is null for a column that has
+   * no formatted values.
+   */
+  private List<Map<Integer, String>> formattedValues = Lists.newArrayList();
+
+  /**
+   * The custom properties of the cells of each column, by row index. An entry is null for a
+   * column that has no cell custom properties.
+   */
+  private List<Map<Integer, Map<String, String>>> cellCustomProperties = Lists.newArrayList();
+
+  /**
+   * The custom properties of the rows, by row index. Null if no row has custom properties.
+   */
+  private Map<Integer, Map<String, String>> rowCustomProperties = null;
+
+  /**
+   * Creates a new empty table.
+   */
+  public ColumnarDataTable() {
+  }
+
+  @Override
+  public void addColumn(ColumnDescription columnDescription) {
+    super.addColumn(columnDescription);
+    ColumnVector vector = ColumnVector.create(columnDescription.getType(), numberOfRows);
+    vector.appendNulls(numberOfRows);
+    vectors.add(vector);
+    formattedValues.add(null);
+    cellCustomProperties.add(null);
+  }
+
+  /**
+   * Adds a single row to the end of the table. Throws a TypeMismatchException if the row's
+   * cells do not match the current columns. If the row is too short, the remaining columns are
+   * filled with null values. The data of the row is copied into the table, and the given row is
+   * not changed.
+   *
+   * @param row The row of values.
+   *
+   * @throws TypeMismatchException Thrown if the values in the cells do not match the columns.
+   */
+  @Override
+  public void addRow(TableRow row) throws TypeMismatchException {
+    int numberOfCells = row.getNumberOfCells();
+    if (numberOfCells > vectors.size()) {
+      throw new TypeMismatchException("Row has too many cells. Should be at most of size: " +
+          vectors.size());
+    }
+    for (int i = 0; i < numberOfCells; i++) {
+      if (row.getValue(i).getType() != vectors.get(i).getType()) {
+        throw new TypeMismatchException("Cell type does not match column type, at index: " + i +
+            ". Should be of type: " + vectors.get(i).getType().toString());
+      }
+    }
+    int rowIndex = numberOfRows;
+    for (int i = 0; i < vectors.size(); i++) {
+      if (i < numberOfCells) {
+        vectors.get(i).append(row.getValue(i));
+        putCellData(rowIndex, i, row.getFormattedValue(i), row.getCellCustomProperties(i));
+      } else {
+        vectors.get(i).appendNulls(1);
+      }
+    }
+    putRowCustomProperties(rowIndex, row.getCustomProperties());
+    numberOfRows++;
+    invalidateTextDictionaries();
+  }
+
+  @Override
+  public void addRowFromValues(Object... values) throws TypeMismatchException {
+    int numberOfValues = Math.min(values.length, vectors.size());
+    Value[] rowValues = new Value[numberOfValues];
+    for (int i = 0; i < numberOfValues; i++) {
+      rowValues[i] = vectors.get(i).getType().createValue(values[i]);
+    }
+    for (int i = 0; i < vectors.size(); i++) {
+      if (i < numberOfValues) {
+        vectors.get(i).append(rowValues[i]);
+      } else {
+        vectors.get(i).appendNulls(1);
+      }
+    }
+    numberOfRows++;
+    invalidateTextDictionaries();
+  }
+
+  @Override
+  void addBuiltRows(List<TableRow> builtRows) {
+    invalidateTextDictionaries();
+    for (TableRow row : builtRows) {
+      for (int i = 0; i < vectors.size(); i++) {
+        vectors.get(i).append(row.getValue(i));
+      }
+      numberOfRows++;
+    }
+  }
+
+  @Override
+  public void setRows(Collection<TableRow> rows) throws TypeMismatchException {
+    invalidateTextDictionaries();
+    for (int i = 0; i < vectors.size(); i++) {
+      vectors.set(i, ColumnVector.create(vectors.get(i).getType(), rows.size()));
+      formattedValues.set(i, null);
+      cellCustomProperties.set(i, null);
+    }
+    rowCustomProperties = null;
+    numberOfRows = 0;
+    addRows(rows);
+  }
+
+  /**
+   * Returns an unmodifiable list of views of the table rows. The row views are created when
+   * they are accessed.
+   *
+   * @return An unmodifiable list of views of the table rows.
+   */
+  @Override
+  public List<TableRow> getRows() {
+    return new AbstractList<TableRow>() {
+      @Override
+      public TableRow get(int index) {
+        return getRow(index);
+      }
+
+      @Override
+      public int size() {
+        return numberOfRows;
+      }
+    };
+  }
+
+  /**
+   * Returns a view of the row at the given index.
+   *
+   * @param rowIndex the index of the requested row.
+   *
+   * @return A view of the row at the given index.
+   */
+  @Override
+  public TableRow getRow(int rowIndex) {
+    checkRowIndex(rowIndex);
+    return new RowView(rowIndex);
+  }
+
+  @Override
+  Object getCellData(int rowIndex, int colIndex) {
+    return getRow(rowIndex).getCellData(colIndex);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The dictionary of a text column is always available, since it is created from the
+   * dictionary encoding of the column.
+   */
+  @Override
+  public boolean hasTextDictionary(int colIndex, Locale locale) {
+    return true;
+  }
+
+  /**
+   * Creates the dictionary of a text column from the dictionary encoding of the column, without
+   * hashing the texts of the rows again.
+   */
+  @Override
+  TextDictionary createTextDictionary(int colIndex, Locale locale) {
+    ColumnVector.TextVector vector = (ColumnVector.TextVector) vectors.get(colIndex);
+    int dictionarySize = vector.getDictionarySize();
+    int[] rowIds = new int[numberOfRows];
+    boolean hasNulls = false;
+    for (int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+      if (vector.isNull(rowIndex)) {
+        // Null texts are compared as the empty string, and get an id after the dictionary's.
+        rowIds[rowIndex] = dictionarySize;
+        hasNulls = true;
+      } else {
+        rowIds[rowIndex] = vector.getCode(rowIndex);
+      }
+    }
+    List<String> distinctTexts = Lists.newArrayListWithCapacity(dictionarySize + 1);
+    for (int code = 0; code < dictionarySize; code++) {
+      distinctTexts.add(vector.getDictionaryText(code));
+    }
+    if (hasNulls) {
+      int emptyCode = distinctTexts.indexOf("");
+      if (emptyCode == -1) {
+        distinctTexts.add("");
+      } else {
+        for (int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+          if (rowIds[rowIndex] == dictionarySize) {
+            rowIds[rowIndex] = emptyCode;
+          }
+        }
+      }
+    }
+    return TextDictionary.create(distinctTexts.toArray(new String[distinctTexts.size()]),
+        rowIds, locale);
+  }
+
+  @Override
+  public int getNumberOfRows() {
+    return numberOfRows;
+  }
+
+  /**
+   * Returns a view of the cell at the specified row and column indexes.
+   *
+   * @param rowIndex The row index.
+   * @param colIndex The column index.
+   *
+   * @return A view of the cell.
+   */
+  @Override
+  public TableCell getCell(int rowIndex, int colIndex) {
+    checkRowIndex(rowIndex);
+    return new CellView(rowIndex, colIndex);
+  }
+
+  @Override
+  public TableCell setCell(int rowIndex, int colIndex, TableCell cell)
+      throws TypeMismatchException, IndexOutOfBoundsException {
+    checkRowIndex(rowIndex);
+    ColumnVector vector = vectors.get(colIndex);
+    if (vector.getType() != cell.getType()) {
+      throw new TypeMismatchException("New cell value type does not match expected value type." +
+          " Expected type: " + vector.getType() +
+          " but was: " + cell.getType().toString());
+    }
+    TableCell previous = new CellView(rowIndex, colIndex).clone();
+    invalidateTextDictionaries();
+    vector.set(rowIndex, cell.getValue());
+    if (formattedValues.get(colIndex) != null) {
+      formattedValues.get(colIndex).remove(rowIndex);
+    }
+    if (cellCustomProperties.get(colIndex) != null) {
+      cellCustomProperties.get(colIndex).remove(rowIndex);
+    }
+    putCellData(rowIndex, colIndex, cell.getFormattedValue(), cell.getCustomProperties());
+    return previous;
+  }
+
+  @Override
+  public Value getValue(int rowIndex, int colIndex) {
+    checkRowIndex(rowIndex);
+    return vectors.get(colIndex).getValue(rowIndex);
+  }
+
+  @Override
+  public String getFormattedValue(int rowIndex, int colIndex) {
+    checkRowIndex(rowIndex);
+    Map<Integer, String> columnFormattedValues = formattedValues.get(colIndex);
+    return (columnFormattedValues == null) ? null : columnFormattedValues.get(rowIndex);
+  }
+
+  @Override
+  public Map<String, String> getCellCustomProperties(int rowIndex, int colIndex) {
+    checkRowIndex(rowIndex);
+    return unmodifiable(getCellCustomPropertiesMap(rowIndex, colIndex, false));
+  }
+
+  @Override
+  public Map<String, String> getRowCustomProperties(int rowIndex) {
+    checkRowIndex(rowIndex);
+    return unmodifiable(getRowCustomPropertiesMap(rowIndex, false));
+  }
+
+  /**
+   * Returns a new columnar table with copies of the columns, custom properties and warnings of
+   * this table, holding copies of the rows at the given indices, in the given order. This table
+   * is not changed.
+   *
+   * @param rowIndices The indices of the rows to select.
+   *
+   * @return A new table holding the selected rows.
+   */
+  @Override
+  public ColumnarDataTable selectRows(int[] rowIndices) {
+    for (int rowIndex : rowIndices) {
+      checkRowIndex(rowIndex);
+    }
+    ColumnarDataTable result = new ColumnarDataTable();
+    for (ColumnDescription column : getColumnDescriptions()) {
+      result.addColumn(column.clone());
+    }
+    copyMetadataTo(result);
+    for (int i = 0; i < vectors.size(); i++) {
+      result.vectors.set(i, vectors.get(i).select(rowIndices));
+      result.formattedValues.set(i, selectEntries(formattedValues.get(i), rowIndices));
+      result.cellCustomProperties.set(i, selectEntries(cellCustomProperties.get(i), rowIndices));
+    }
+    result.rowCustomProperties = selectEntries(rowCustomProperties, rowIndices);
+    result.numberOfRows = rowIndices.length;
+    setSelectionSource(result, rowIndices);
+    return result;
+  }
+
+  /**
+   * Returns a new table, with the same data and metadata as this one.
+   * Any change to the returned table should not change this table and vice
+   * versa. This is a deep clone.
+   *
+   * @return The cloned data table.
+   */
+  @Override
+  public ColumnarDataTable clone() {
+    ColumnarDataTable result = new ColumnarDataTable();
+    for (ColumnDescription column : getColumnDescriptions()) {
+      result.addColumn(column.clone());
+    }
+    copyMetadataTo(result);
+    for (int i = 0; i < vectors.size(); i++) {
+      result.vectors.set(i, vectors.get(i).copy());
+      if (formattedValues.get(i) != null) {
+        result.formattedValues.set(i, Maps.newHashMap(formattedValues.get(i)));
+      }
+      result.cellCustomProperties.set(i, copyPropertiesMap(cellCustomProperties.get(i)));
+    }
+    result.rowCustomProperties = copyPropertiesMap(rowCustomProperties);
+    result.numberOfRows = numberOfRows;
+    setSelectionSource(result, null);
+    return result;
+  }
+
+  /**
+   * Throws an IndexOutOfBoundsException if the given row index is out of range.
+   *
+   * @param rowIndex The row index.
+   */
+  private void checkRowIndex(int rowIndex) {
+    if ((rowIndex < 0) || (rowIndex >= numberOfRows)) {
+      throw new IndexOutOfBoundsException("Index: " + rowIndex + ", Size: " + numberOfRows);
+    }
+  }
+
+  /**
+   * Stores the formatted value and the custom properties of a cell, if there are any.
+   *
+   * @param rowIndex The row index.
+   * @param colIndex The column index.
+   * @param formattedValue The formatted value, may be null.
+   * @param customProperties The custom properties, may be empty.
+   */
+  private void putCellData(int rowIndex, int colIndex, String formattedValue,
+      Map<String, String> customProperties) {
+    if (formattedValue != null) {
+      setFormattedValue(rowIndex, colIndex, formattedValue);
+    }
+    if (!customProperties.isEmpty()) {
+      getCellCustomPropertiesMap(rowIndex, colIndex, true).putAll(customProperties);
+    }
+  }
+
+  /**
+   * Stores the custom properties of a row, if there are any.
+   *
+   * @param rowIndex The row index.
+   * @param customProperties The custom properties, may be empty.
+   */
+  private void putRowCustomProperties(int rowIndex, Map<String, String> customProperties) {
+    if (!customProperties.isEmpty()) {
+      getRowCustomPropertiesMap(rowIndex, true).putAll(customProperties);
+    }
+  }
+
+  /**
+   * Sets the formatted value of a cell.
+   *
+   * @param rowIndex The row index.
+   * @param colIndex The column index.
+   * @param formattedValue The formatted value.
+   */
+  private void setFormattedValue(int rowIndex, int colIndex, String formattedValue) {
+    Map<Integer, String> columnFormattedValues = formattedValues.get(colIndex);
+    if (columnFormattedValues == null) {
+      if (formattedValue == null) {
+        return;
+      }
+      columnFormattedValues = Maps.newHashMap();
+      formattedValues.set(colIndex, columnFormattedValues);
+    }
+    if (formattedValue == null) {
+      columnFormattedValues.remove(rowIndex);
+    } else {
+      columnFormattedValues.put(rowIndex, formattedValue);
+    }
+  }
+
+  /**
+   * Returns the custom properties map of a cell.
+   *
+   * @param rowIndex The row index.
+   * @param colIndex The column index.
+   * @param create Whether to create the map if it does not exist.
+   *
+   * @return The custom properties map of the cell, or null if it does not exist and create is
+   *     false.
+   */
+  private Map<String, String> getCellCustomPropertiesMap(int rowIndex, int colIndex,
+      boolean create) {
+    Map<Integer, Map<String, String>> columnProperties = cellCustomProperties.get(colIndex);
+    if (columnProperties == null) {
+      if (!create) {
+        return null;
+      }
+      columnProperties = Maps.newHashMap();
+      cellCustomProperties.set(colIndex, columnProperties);
+    }
+    return getPropertiesMap(columnProperties, rowIndex, create);
+  }
+
+  /**
+   * Returns the custom properties map of a row.
+   *
+   * @param rowIndex The row index.
+   * @param create Whether to create the map if it does not exist.
+   *
+   * @return The custom properties map of the row, or null if it does not exist and create is
+   *     false.
+   */
+  private Map<String, String> getRowCustomPropertiesMap(int rowIndex, boolean create) {
+    if (rowCustomProperties == null) {
+      if (!create) {
+        return null;
+      }
+      rowCustomProperties = Maps.newHashMap();
+    }
+    return getPropertiesMap(rowCustomProperties, rowIndex, create);
+  }
+
+  /**
+   * Returns the properties map stored for a row index.
+   *
+   * @param propertiesByRow The properties maps by row index.
+   * @param rowIndex The row index.
+   * @param create Whether to create the map if it does not exist.
+   *
+   * @return The properties map, or null if it does not exist and create is false.
+   */
+  private static Map<String, String> getPropertiesMap(
+      Map<Integer, Map<String, String>> propertiesByRow, int rowIndex, boolean create) {
+    Map<String, String> properties = propertiesByRow.get(rowIndex);
+    if ((properties == null) && create) {
+      properties = Maps.newHashMap();
+      propertiesByRow.put(rowIndex, properties);
+    }
+    return properties;
+  }
+
+  /**
+   * Returns an unmodifiable view of a properties map, or an empty map if it is null.
+   *
+   * @param properties The properties map, may be null.
+   *
+   * @return An unmodifiable view of the properties.
+   */
+  private static Map<String, String> unmodifiable(Map<String, String> properties) {
+    if (properties == null) {
+      return Collections.emptyMap();
+    }
+    return Collections.unmodifiableMap(properties);
+  }
+
+  /**
+   * Returns a deep copy of a map of properties maps by row index.
+   *
+   * @param propertiesByRow The properties maps by row index, may be null.
+   *
+   * @return A deep copy of the given map, or null if it is null.
+   */
+  private static Map<Integer, Map<String, String>> copyPropertiesMap(
+      Map<Integer, Map<String, String>> propertiesByRow) {
+    if (propertiesByRow == null) {
+      return null;
+    }
+    Map<Integer, Map<String, String>> result = Maps.newHashMap();
+    for (Map.Entry<Integer, Map<String, String>> entry : propertiesByRow.entrySet()) {
+      result.put(entry.getKey(), Maps.newHashMap(entry.getValue()));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the entries of a sparse map by row index that belong to the given rows, keyed by
+   * the position of the row in the given array. Mutable map values are copied.
+   *
+   * @param entriesByRow The entries by row index, may be null.
+   * @param rowIndices The selected row indices.
+   *
+   * @return The selected entries, or null if there are none.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> Map<Integer, T> selectEntries(Map<Integer, T> entriesByRow,
+      int[] rowIndices) {
+    if ((entriesByRow == null) || entriesByRow.isEmpty()) {
+      return null;
+    }
+    Map<Integer, T> result = Maps.newHashMap();
+    for (int i = 0; i < rowIndices.length; i++) {
+      T entry = entriesByRow.get(rowIndices[i]);
+      if (entry instanceof Map) {
+        entry = (T) Maps.newHashMap((Map<String, String>) entry);
+      }
+      if (entry != null) {
+        result.put(i, entry);
+      }
+    }
+    return result.isEmpty() ? null : result;
+  }
+
+  /**
+   * A view of a single row of the table.
+   */
+  private class RowView extends TableRow {
+
+    /**
+     * The index of the row.
+     */
+    private final int rowIndex;
+
+    /**
+     * Creates a view of the given row.
+     *
+     * @param rowIndex The index of the row.
+     */
+    RowView(int rowIndex) {
+      this.rowIndex = rowIndex;
+    }
+
+    @Override
+    void addCellData(Object cell) {
+      throw new UnsupportedOperationException(
+          "Cells cannot be added to a row of a columnar data table.");
+    }
+
+    @Override
+    public List<TableCell> getCells() {
+      List<TableCell> cells = Lists.newArrayListWithCapacity(vectors.size());
+      for (int i = 0; i < vectors.size(); i++) {
+        cells.add(new CellView(rowIndex, i));
+      }
+      return Collections.unmodifiableList(cells);
+    }
+
+    @Override
+    public int getNumberOfCells() {
+      return vectors.size();
+    }
+
+    @Override
+    public TableCell getCell(int index) {
+      if ((index < 0) || (index >= vectors.size())) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + vectors.size());
+      }
+      return new CellView(rowIndex, index);
+    }
+
+    @Override
+    public Value getValue(int index) {
+      return ColumnarDataTable.this.getValue(rowIndex, index);
+    }
+
+    @Override
+    public String getFormattedValue(int index) {
+      return ColumnarDataTable.this.getFormattedValue(rowIndex, index);
+    }
+
+    @Override
+    public Map<String, String> getCellCustomProperties(int index) {
+      return ColumnarDataTable.this.getCellCustomProperties(rowIndex, index);
+    }
+
+    /**
+     * Returns a detached copy of the stored data of a cell: its value if it has no formatted
+     * value and no custom properties, or a copy of the cell otherwise.
+     *
+     * @param index The index of the cell.
+     *
+     * @return The value or a copy of the cell at the given index.
+     */
+    @Override
+    Object getCellData(int index) {
+      Value value = getValue(index);
+      if ((getFormattedValue(index) == null) && getCellCustomProperties(index).isEmpty()) {
+        return value;
+      }
+      return new CellView(rowIndex, index).clone();
+    }
+
+    @Override
+    TableCell setCell(int index, TableCell cell) {
+      try {
+        return ColumnarDataTable.this.setCell(rowIndex, index, cell);
+      } catch (TypeMismatchException e) {
+        throw new IllegalArgumentException(e.getMessageToUser(), e);
+      }
+    }
+
+    @Override
+    public String getCustomProperty(String key) {
+      if (key == null) {
+        throw new RuntimeException("Null keys are not allowed.");
+      }
+      return getRowCustomProperties(rowIndex).get(key);
+    }
+
+    @Override
+    public void setCustomProperty(String propertyKey, String propertyValue) {
+      if ((propertyKey == null) || (propertyValue == null)) {
+        throw new RuntimeException("Null keys/values are not allowed.");
+      }
+      getRowCustomPropertiesMap(rowIndex, true).put(propertyKey, propertyValue);
+    }
+
+    @Override
+    public Map<String, String> getCustomProperties() {
+      return getRowCustomProperties(rowIndex);
+    }
+
+    /**
+     * Returns a detached copy of this row. This is a deep clone.
+     *
+     * @return A detached copy of this row.
+     */
+    @Override
+    public TableRow clone() {
+      TableRow result = new TableRow(vectors.size());
+      for (int i = 0; i < vectors.size(); i++) {
+        result.addCellFrom(this, i);
+      }
+      for (Map.Entry<String, String> entry : getCustomProperties().entrySet()) {
+        result.setCustomProperty(entry.getKey(), entry.getValue());
+      }
+      return result;
+    }
+  }
+
+  /**
+   * A view of a single cell of the table.
+   */
+  private class CellView extends TableCell {
+
+    /**
+     * The row index of the cell.
+     */
+    private final int rowIndex;
+
+    /**
+     * The column index of the cell.
+     */
+    private final int colIndex;
+
+    /**
+     * Creates a view of the given cell.
+     *
+     * @param rowIndex The row index of the cell.
+     * @param colIndex The column index of the cell.
+     */
+    CellView(int rowIndex, int colIndex) {
+      super(vectors.get(colIndex).getValue(rowIndex));
+      this.rowIndex = rowIndex;
+      this.colIndex = colIndex;
+    }
+
+    @Override
+    public Value getValue() {
+      return vectors.get(colIndex).getValue(rowIndex);
+    }
+
+    @Override
+    public String getFormattedValue() {
+      return ColumnarDataTable.this.getFormattedValue(rowIndex, colIndex);
+    }
+
+    @Override
+    public void setFormattedValue(String formattedValue) {
+      ColumnarDataTable.this.setFormattedValue(rowIndex, colIndex, formattedValue);
+    }
+
+    @Override
+    public String getCustomProperty(String key) {
+      if (key == null) {
+        throw new RuntimeException("Null keys are not allowed.");
+      }
+      return getCellCustomProperties(rowIndex, colIndex).get(key);
+    }
+
+    @Override
+    public void setCustomProperty(String propertyKey, String propertyValue) {
+      if ((propertyKey == null) || (propertyValue == null)) {
+        throw new RuntimeException("Null keys/values are not allowed.");
+      }
+      getCellCustomPropertiesMap(rowIndex, colIndex, true).put(propertyKey, propertyValue);
+    }
+
+    @Override
+    public Map<String, String> getCustomProperties() {
+      return getCellCustomProperties(rowIndex, colIndex);
+    }
+
+    /**
+     * Returns a detached copy of this cell.
+     *
+     * @return A detached copy of this cell.
+     */
+    @Override
+    public TableCell clone() {
+      TableCell result = new TableCell(getValue(), getFormattedValue());
+      for (Map.Entry<String, String> entry : getCustomProperties().entrySet()) {
+        result.setCustomProperty(entry.getKey(), entry.getValue());
+      }
+      return result;
+    }
+  }
+}
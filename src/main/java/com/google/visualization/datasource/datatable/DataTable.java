@@ -25,6 +25,8 @@ import com.google.visualization.datasource.datatable.value.Value;
 import com.google.visualization.datasource.datatable.value.ValueType;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A table of data, arranged in typed columns.
@@ -62,6 +64,29 @@ public class DataTable {
    */
   private List<TableRow> rows;
 
+  /**
+   * The number of leading rows that may be shared with another table (see {@link #clone()} and
+   * {@link #selectRows(int[])}). A shared row is copied before it is changed or returned through
+   * this table, so that changes made through one table are not seen by the other. Exposed rows
+   * are never shared.
+   */
+  private int sharedRowCount = 0;
+
+  /**
+   * The indices of the exposed rows: the rows that were added by the caller, or returned by this
+   * table to be changed (see {@link #getRow(int)}), and so may be changed outside of this table
+   * at any time. Exposed rows are replaced by copies the first time the rows of this table are
+   * shared with another table (see {@link #shareRows()}). Null if no row is exposed.
+   */
+  private BitSet exposedRows = null;
+
+  /**
+   * Whether some rows may have fewer cells than there are columns, because columns were added
+   * after the rows. The missing cells are null, and are added to a row when it is requested
+   * (see {@link #getRow(int)}).
+   */
+  private boolean hasNarrowRows = false;
+
   /**
    * Custom properties for this table.
    */
@@ -77,6 +102,35 @@ public class DataTable {
    */
   private Locale localeForUserMessages = null;
 
+  /**
+   * The cached text dictionaries of the columns, by column index and locale, or null if none
+   * was created since the table was last changed. See {@link #getTextDictionary(int, Locale)}.
+   */
+  private volatile ConcurrentMap<List<Object>, TextDictionary> textDictionaries = null;
+
+  /**
+   * The number of times the table was changed, or its rows were requested for change. Used to
+   * tell whether the table a selection was made from has changed since.
+   */
+  private int modificationCount = 0;
+
+  /**
+   * The table this table was selected from, whose text dictionaries can be used for this
+   * table, or null if there is none or if either table has changed since.
+   */
+  private DataTable selectionSource = null;
+
+  /**
+   * The indices of the rows of this table in the table it was selected from, or null if this
+   * table is a clone of that table.
+   */
+  private int[] selectionRowIndices = null;
+
+  /**
+   * The modification count of the table this table was selected from, when it was selected.
+   */
+  private int selectionSourceModificationCount = 0;
+
   /**
    * Create a new empty result.
    */
@@ -97,22 +151,25 @@ public class DataTable {
    * @throws TypeMismatchException Thrown if the values in the cells do not match the columns.
    */
   public void addRow(TableRow row) throws TypeMismatchException {
-    List<TableCell> cells = row.getCells();
-    if (cells.size() > columns.size()) {
+    int numberOfCells = row.getNumberOfCells();
+    if (numberOfCells > columns.size()) {
       throw new TypeMismatchException("Row has too many cells. Should be at most of size: " +
           columns.size());
     }
-    for (int i = 0; i < cells.size(); i++) {
-      if (cells.get(i).getType() != columns.get(i).getType()) {
+    for (int i = 0; i < numberOfCells; i++) {
+      if (row.getValue(i).getType() != columns.get(i).getType()) {
         throw new TypeMismatchException("Cell type does not match column type, at index: " + i +
             ". Should be of type: " + columns.get(i).getType().toString());
       }
     }
-    for (int i = cells.size(); i < columns.size(); i++) {
-      row.addCell(new TableCell(Value.getNullValueFromValueType(columns.get(i).getType())));
+    for (int i = numberOfCells; i < columns.size(); i++) {
+      row.addCell(Value.getNullValueFromValueType(columns.get(i).getType()));
     }
+    row.trimToSize();
 
     rows.add(row);
+    markExposedRows(rows.size() - 1, rows.size());
+    invalidateTextDictionaries();
   }
 
   /**
@@ -126,7 +183,7 @@ public class DataTable {
   public void addRowFromValues(Object... values) throws TypeMismatchException {
     Iterator<ColumnDescription> columnIt = columns.listIterator();
     int i = 0;
-    TableRow row = new TableRow();
+    TableRow row = new TableRow(columns.size());
 
     while (i < values.length && columnIt.hasNext()) {
       ColumnDescription colDesc = columnIt.next();
@@ -147,6 +204,25 @@ public class DataTable {
     }
   }
 
+  /**
+   * Adds rows that are already known to match the columns to the end of the result, without
+   * checking them. If this table has no rows, the given list becomes the table's row list and
+   * must not be used by the caller afterwards. Used by {@link DataTableBuilder}.
+   *
+   * @param builtRows The rows to add. Each row has exactly one cell per column, of the column's
+   *     type.
+   */
+  void addBuiltRows(List<TableRow> builtRows) {
+    invalidateTextDictionaries();
+    if (rows.isEmpty()) {
+      rows = builtRows;
+      sharedRowCount = 0;
+      exposedRows = null;
+    } else {
+      rows.addAll(builtRows);
+    }
+  }
+
   /**
    * Sets a collection of rows after clearing any current rows.
    *
@@ -154,27 +230,46 @@ public class DataTable {
    */
   public void setRows(Collection<TableRow> rows) throws TypeMismatchException {
     this.rows.clear();
+    invalidateTextDictionaries();
+    sharedRowCount = 0;
+    exposedRows = null;
+    hasNarrowRows = false;
     addRows(rows);
   }
 
   /**
-   * Returns the list of all table rows.
+   * Returns the list of all table rows. Rows that are shared with another table are copied
+   * first, as with {@link #getRow(int)}.
    *
    * @return The list of all table rows.
    */
   public List<TableRow> getRows() {
+    if (hasNarrowRows || (sharedRowCount > 0)) {
+      for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+        getRowForUpdate(rowIndex);
+      }
+      hasNarrowRows = false;
+      sharedRowCount = 0;
+    }
+    markExposedRows(0, rows.size());
     return rows;
   }
 
   /**
-   * Returns the row at the given index.
+   * Returns the row at the given index. The returned row may be changed, so if it is shared
+   * with another table it is replaced by a copy first. If columns were added to the table after
+   * the row, the row gets null cells for them. The returned row belongs to this table until the
+   * table is next cloned or selected from: changes made to it afterwards are not seen by the
+   * table, and the row should be requested again.
+   * To read the cells of a row without copying it, use {@link #getValue(int, int)},
+   * {@link #getFormattedValue(int, int)} and {@link #getCellCustomProperties(int, int)}.
    *
    * @param rowIndex the index of the requested row.
    *
    * @return The row at the given index.
    */
   public TableRow getRow(int rowIndex) {
-    return rows.get(rowIndex);
+    return getRowForUpdate(rowIndex);
   }
 
   /**
@@ -231,6 +326,7 @@ public class DataTable {
    * Returns the list of all cells of a certain column, by the column index.
    * Note: This is the most naive implementation, that for each request
    * to this method just creates a new List of the needed cells.
+   * The table is not changed, and the cells are copies, as with {@link #getCell(int, int)}.
    *
    * @param columnIndex The index of the requested column.
    *
@@ -240,14 +336,15 @@ public class DataTable {
     List<TableCell> colCells =
         Lists.newArrayListWithCapacity(getNumberOfRows());
 
-    for (TableRow row : getRows()) {
-      colCells.add(row.getCell(columnIndex));
+    for (int rowIndex = 0; rowIndex < getNumberOfRows(); rowIndex++) {
+      colCells.add(getCell(rowIndex, columnIndex));
     }
     return colCells;
   }
 
   /**
-   * Add a column to the table.
+   * Add a column to the table. The column is null in all the existing rows. The rows are not
+   * changed until they are requested, so adding a column takes constant time.
    *
    * @param columnDescription The column's description.
    */
@@ -259,8 +356,9 @@ public class DataTable {
 
     columnIndexById.put(columnId, columns.size());
     columns.add(columnDescription);
-    for (TableRow row : rows) {
-      row.addCell(new TableCell(Value.getNullValueFromValueType(columnDescription.getType())));
+    invalidateTextDictionaries();
+    if (!rows.isEmpty()) {
+      hasNarrowRows = true;
     }
   }
 
@@ -298,15 +396,22 @@ public class DataTable {
   }
 
   /**
-   * Returns the cell at the specified row and column indexes.
+   * Returns the cell at the specified row and column indexes. The table is not changed, so
+   * this method can be called concurrently with other reads. The returned cell is a copy:
+   * changing it does not change this table. To change a cell, use
+   * {@link #setCell(int, int, TableCell)}, or change it through {@link #getRow(int)}.
    *
    * @param rowIndex The row index.
    * @param colIndex The column index.
    *
-   * @return The cell.
+   * @return A copy of the cell.
    */
   public TableCell getCell(int rowIndex, int colIndex) {
-    return getRow(rowIndex).getCell(colIndex);
+    Object cell = getCellData(rowIndex, colIndex);
+    if (cell instanceof TableCell) {
+      return ((TableCell) cell).clone();
+    }
+    return new TableCell((Value) cell);
   }
   
   /**
@@ -325,13 +430,115 @@ public class DataTable {
    */
   public TableCell setCell(int rowIndex, int colIndex, TableCell cell)
       throws TypeMismatchException, IndexOutOfBoundsException {
-    TableRow row = rows.get(rowIndex);
-    if (!row.getCell(colIndex).getType().equals(cell.getType())) {
+    ValueType type = getValue(rowIndex, colIndex).getType();
+    if (!type.equals(cell.getType())) {
       throw new TypeMismatchException("New cell value type does not match expected value type." +
-          " Expected type: " + row.getCell(colIndex).getType() +
+          " Expected type: " + type +
           " but was: " + cell.getType().toString());
     }
-    return row.setCell(colIndex, cell);
+    return getRowForUpdate(rowIndex).setCell(colIndex, cell);
+  }
+
+  /**
+   * Returns the row at the given index, to be changed. If the row is shared with another table,
+   * it is first replaced by a copy, so that the other table is not changed. If columns were
+   * added to the table after the row, the row gets null cells for them.
+   *
+   * @param rowIndex The row index.
+   *
+   * @return The row at the given index.
+   */
+  private TableRow getRowForUpdate(int rowIndex) {
+    invalidateTextDictionaries();
+    TableRow row = rows.get(rowIndex);
+    if (isSharedRow(rowIndex)) {
+      // Do not change the table the row is shared with. The cells are copied as well, since
+      // they may be changed through the returned row.
+      row = row.clone();
+      rows.set(rowIndex, row);
+    }
+    markExposedRows(rowIndex, rowIndex + 1);
+    for (int i = row.getNumberOfCells(); i < columns.size(); i++) {
+      row.addCell(Value.getNullValueFromValueType(columns.get(i).getType()));
+    }
+    return row;
+  }
+
+  /**
+   * Marks a range of rows as exposed, i.e., as rows that may be changed outside of this table.
+   *
+   * @param fromRowIndex The index of the first row, inclusive.
+   * @param toRowIndex The index of the last row, exclusive.
+   */
+  private void markExposedRows(int fromRowIndex, int toRowIndex) {
+    if (exposedRows == null) {
+      exposedRows = new BitSet();
+    }
+    exposedRows.set(fromRowIndex, toRowIndex);
+  }
+
+  /**
+   * Returns whether the row at the given index is shared with another table.
+   *
+   * @param rowIndex The row index.
+   *
+   * @return Whether the row is shared with another table.
+   */
+  private boolean isSharedRow(int rowIndex) {
+    return (rowIndex < sharedRowCount) && ((exposedRows == null) || !exposedRows.get(rowIndex));
+  }
+
+  /**
+   * Marks all the rows of this table as shared with another table. The exposed rows, which may
+   * still be changed outside of this table, are first replaced by copies, with their cells, so
+   * that this table owns all its rows: they are copied once, and later clones and selections
+   * share them without copying. Changes made afterwards to a row that was added to or returned
+   * by this table are not seen by the table.
+   *
+   * This method is synchronized, since rows are selected from a table that is shared by
+   * concurrent queries.
+   */
+  private synchronized void shareRows() {
+    if (exposedRows != null) {
+      for (int rowIndex = exposedRows.nextSetBit(0); (rowIndex >= 0) && (rowIndex < rows.size());
+          rowIndex = exposedRows.nextSetBit(rowIndex + 1)) {
+        rows.set(rowIndex, rows.get(rowIndex).clone());
+      }
+      exposedRows = null;
+    }
+    sharedRowCount = rows.size();
+  }
+
+  /**
+   * Package protected function.
+   * Returns the stored data of the cell at the specified row and column indexes, without
+   * copying the row: either the value of the cell, or the cell itself if it has a formatted
+   * value or custom properties. Used by {@link TableRow#addCellFrom(DataTable, int, int)}.
+   *
+   * @param rowIndex The row index.
+   * @param colIndex The column index.
+   *
+   * @return The value or the cell at the specified position.
+   */
+  Object getCellData(int rowIndex, int colIndex) {
+    TableRow row = rows.get(rowIndex);
+    if (isMissingCell(row, colIndex)) {
+      return Value.getNullValueFromValueType(columns.get(colIndex).getType());
+    }
+    return row.getCellData(colIndex);
+  }
+
+  /**
+   * Returns whether the cell at the given position is a null cell of a column that was added
+   * after the row, and that is not stored in the row.
+   *
+   * @param row The row.
+   * @param colIndex The column index.
+   *
+   * @return Whether the cell is not stored in the row.
+   */
+  private boolean isMissingCell(TableRow row, int colIndex) {
+    return (colIndex >= row.getNumberOfCells()) && (colIndex < columns.size());
   }
 
   /**
@@ -343,7 +550,232 @@ public class DataTable {
    * @return The value in the cell.
    */
   public Value getValue(int rowIndex, int colIndex) {
-    return getCell(rowIndex, colIndex).getValue();
+    TableRow row = rows.get(rowIndex);
+    if (isMissingCell(row, colIndex)) {
+      return Value.getNullValueFromValueType(columns.get(colIndex).getType());
+    }
+    return row.getValue(colIndex);
+  }
+
+  /**
+   * Returns the formatted value of the cell at the specified row and column indexes.
+   *
+   * @param rowIndex The row index.
+   * @param colIndex The column index.
+   *
+   * @return The formatted value of the cell, or null if it has none.
+   */
+  public String getFormattedValue(int rowIndex, int colIndex) {
+    TableRow row = rows.get(rowIndex);
+    if (isMissingCell(row, colIndex)) {
+      return null;
+    }
+    return row.getFormattedValue(colIndex);
+  }
+
+  /**
+   * Returns an immutable map of the custom properties of the cell at the specified row and
+   * column indexes.
+   *
+   * @param rowIndex The row index.
+   * @param colIndex The column index.
+   *
+   * @return An immutable map of the custom properties of the cell.
+   */
+  public Map<String, String> getCellCustomProperties(int rowIndex, int colIndex) {
+    TableRow row = rows.get(rowIndex);
+    if (isMissingCell(row, colIndex)) {
+      return Collections.emptyMap();
+    }
+    return row.getCellCustomProperties(colIndex);
+  }
+
+  /**
+   * Returns an immutable map of the custom properties of the row at the specified index.
+   *
+   * @param rowIndex The row index.
+   *
+   * @return An immutable map of the custom properties of the row.
+   */
+  public Map<String, String> getRowCustomProperties(int rowIndex) {
+    return rows.get(rowIndex).getCustomProperties();
+  }
+
+  /**
+   * Returns a new data table with copies of the columns, custom properties and warnings of this
+   * table, holding the rows at the given indices, in the given order.
+   * The row objects are shared between the two tables, and a shared row is copied when it is
+   * changed or returned through either table (see {@link #getRow(int)} and
+   * {@link #setCell(int, int, TableCell)}), so that changes to one table do not change the
+   * other. Rows that were added to this table or returned by it, whose objects the caller may
+   * still change, are replaced in this table by copies the first time its rows are shared, and
+   * the copies are shared from then on; changes made afterwards through the caller's row
+   * objects are not seen by either table. The data of this table is not changed, so this
+   * method can be used to derive tables from a table that is never modified, including by
+   * concurrent queries.
+   *
+   * @param rowIndices The indices of the rows to select.
+   *
+   * @return A new data table holding the selected rows.
+   */
+  public DataTable selectRows(int[] rowIndices) {
+    DataTable result = new DataTable();
+    for (ColumnDescription column : columns) {
+      result.addColumn(column.clone());
+    }
+    copyMetadataTo(result);
+    shareRows();
+    result.rows = Lists.newArrayListWithCapacity(rowIndices.length);
+    for (int rowIndex : rowIndices) {
+      result.rows.add(rows.get(rowIndex));
+    }
+    result.shareRows();
+    result.hasNarrowRows = hasNarrowRows;
+    setSelectionSource(result, rowIndices);
+    return result;
+  }
+
+  /**
+   * Records that a table holds a selection of the rows of this table, so that its text
+   * dictionaries are derived from the dictionaries of this table.
+   *
+   * @param result The table holding the selected rows.
+   * @param rowIndices The indices of the selected rows in this table, or null if the table is
+   *     a clone of this table.
+   */
+  void setSelectionSource(DataTable result, int[] rowIndices) {
+    result.selectionSource = this;
+    result.selectionRowIndices = rowIndices;
+    result.selectionSourceModificationCount = modificationCount;
+  }
+
+  /**
+   * Returns the order preserving dictionary of a text column, in the collation order of a
+   * locale or in the natural order of strings (see {@link TextDictionary}).
+   * The dictionary is created when it is first requested, and cached until the table is
+   * changed, so repeated queries on the same table compare the codes of the texts without
+   * comparing strings. The dictionary of a table returned by {@link #selectRows(int[])} is
+   * derived from the dictionary of the table it was selected from, without reading the texts,
+   * if that table has one (see {@link #hasTextDictionary(int, Locale)}), and is otherwise
+   * created from the selected rows only.
+   * Requesting rows for change, with {@link #getRow(int)}, {@link #getRows()} or
+   * {@link #setCell(int, int, TableCell)}, drops the cached dictionaries.
+   *
+   * This method can be called concurrently, as long as the table is not changed.
+   *
+   * @param colIndex The index of the column.
+   * @param locale The locale of the collation order, or null for the natural order.
+   *
+   * @return The dictionary of the column.
+   *
+   * @throws IllegalArgumentException Thrown if the column is not a text column.
+   */
+  public TextDictionary getTextDictionary(int colIndex, Locale locale) {
+    if (columns.get(colIndex).getType() != ValueType.TEXT) {
+      throw new IllegalArgumentException("Column " + columns.get(colIndex).getId()
+          + " is not a text column");
+    }
+    List<Object> key = Arrays.<Object>asList(colIndex, locale);
+    ConcurrentMap<List<Object>, TextDictionary> dictionaries = getTextDictionaryCache();
+    TextDictionary dictionary = dictionaries.get(key);
+    if (dictionary == null) {
+      DataTable source = selectionSource;
+      if ((source != null) && (source.modificationCount == selectionSourceModificationCount)
+          && source.hasTextDictionary(colIndex, locale)) {
+        // Only a dictionary the source already has is used: building one over all the rows of
+        // the source would cost more than building one over the selected rows.
+        dictionary = source.getTextDictionary(colIndex, locale);
+        if (selectionRowIndices != null) {
+          dictionary = dictionary.selectRows(selectionRowIndices);
+        }
+      } else {
+        dictionary = createTextDictionary(colIndex, locale);
+      }
+      TextDictionary previous = dictionaries.putIfAbsent(key, dictionary);
+      if (previous != null) {
+        dictionary = previous;
+      }
+    }
+    return dictionary;
+  }
+
+  /**
+   * Returns whether the dictionary of a text column can be returned by
+   * {@link #getTextDictionary(int, Locale)} without reading the texts of the column, i.e.,
+   * whether it is cached, or can be derived from a cached dictionary of the table this table
+   * was selected from. Callers that would only save a single pass over the texts, such as a
+   * filter, use the dictionary only if this is true.
+   *
+   * @param colIndex The index of the column.
+   * @param locale The locale of the collation order, or null for the natural order.
+   *
+   * @return True if the dictionary can be returned without reading the texts.
+   */
+  public boolean hasTextDictionary(int colIndex, Locale locale) {
+    ConcurrentMap<List<Object>, TextDictionary> dictionaries = textDictionaries;
+    if ((dictionaries != null)
+        && dictionaries.containsKey(Arrays.<Object>asList(colIndex, locale))) {
+      return true;
+    }
+    DataTable source = selectionSource;
+    return (source != null) && (source.modificationCount == selectionSourceModificationCount)
+        && source.hasTextDictionary(colIndex, locale);
+  }
+
+  /**
+   * Returns the cache of the text dictionaries, creating it if needed.
+   *
+   * @return The cache of the text dictionaries.
+   */
+  private ConcurrentMap<List<Object>, TextDictionary> getTextDictionaryCache() {
+    ConcurrentMap<List<Object>, TextDictionary> dictionaries = textDictionaries;
+    if (dictionaries == null) {
+      synchronized (this) {
+        dictionaries = textDictionaries;
+        if (dictionaries == null) {
+          dictionaries = new ConcurrentHashMap<List<Object>, TextDictionary>();
+          textDictionaries = dictionaries;
+        }
+      }
+    }
+    return dictionaries;
+  }
+
+  /**
+   * Creates the order preserving dictionary of a text column by reading its values.
+   *
+   * @param colIndex The index of the column.
+   * @param locale The locale of the collation order, or null for the natural order.
+   *
+   * @return The dictionary of the column.
+   */
+  TextDictionary createTextDictionary(int colIndex, Locale locale) {
+    return TextDictionary.create(this, colIndex, locale);
+  }
+
+  /**
+   * Drops the cached text dictionaries, and the link to the table this table was selected
+   * from, because the table is about to change.
+   */
+  void invalidateTextDictionaries() {
+    modificationCount++;
+    textDictionaries = null;
+    selectionSource = null;
+    selectionRowIndices = null;
+  }
+
+  /**
+   * Copies the custom properties, the warnings and the user locale of this table to the given
+   * table.
+   *
+   * @param result The table to copy to.
+   */
+  void copyMetadataTo(DataTable result) {
+    if (customProperties != null) {
+      result.customProperties = Maps.newHashMap(customProperties);
+    }
+    result.warnings = Lists.newArrayList(warnings);
+    result.setLocaleForUserMessages(localeForUserMessages);
   }
 
   /**
@@ -386,8 +818,8 @@ public class DataTable {
    */
   List<Value> getColumnDistinctValues(int columnIndex) {
     Set<Value> values = Sets.newTreeSet();
-    for (TableRow row : getRows()) {
-      values.add(row.getCell(columnIndex).getValue());
+    for (int rowIndex = 0; rowIndex < getNumberOfRows(); rowIndex++) {
+      values.add(getValue(rowIndex, columnIndex));
     }
     return Lists.newArrayList(values);
   }
@@ -453,8 +885,8 @@ public class DataTable {
     ColumnDescription colDesc = new ColumnDescription("SingleCellTable",
         ValueType.TEXT, "");
     dataTable.addColumn(colDesc);
-    TableRow row = new TableRow();
-    row.addCell(new TableCell(str));
+    TableRow row = new TableRow(1);
+    row.addCell(str);
 
     try {
       dataTable.addRow(row);
@@ -468,36 +900,26 @@ public class DataTable {
   /**
    * Returns a new data table, with the same data and metadata as this one.
    * Any change to the returned table should not change this table and vice
-   * versa. This is a deep clone.
+   * versa. The rows are shared between the two tables until they are changed or returned
+   * through either table, as with {@link #selectRows(int[])}, so cloning takes time
+   * proportional to the number of columns, plus copying the references to the rows. Rows that
+   * were added to this table or returned by it are copied once, the first time the rows of
+   * this table are shared, as with {@link #selectRows(int[])}.
    *
    * @return The cloned data table.
    */
   @Override
   public DataTable clone() {
     DataTable result = new DataTable();
-
     for (ColumnDescription column : columns) {
       result.addColumn(column.clone());
     }
-    try {
-      for (TableRow row : rows) {
-        result.addRow(row.clone());
-      }
-    } catch (TypeMismatchException e) {
-      // Should not happen. We assume this table is valid.
-    }
-    if (customProperties != null) {
-      result.customProperties = Maps.newHashMap();
-      for (Map.Entry<String, String> entry : customProperties.entrySet()) {
-        result.customProperties.put(entry.getKey(), entry.getValue());
-      }
-    }
-    result.warnings = Lists.newArrayList();
-    for (Warning warning : warnings) {
-      result.warnings.add(warning);
-    }
-    result.setLocaleForUserMessages(localeForUserMessages);
-
+    copyMetadataTo(result);
+    shareRows();
+    result.rows = Lists.newArrayList(rows);
+    result.shareRows();
+    result.hasNarrowRows = hasNarrowRows;
+    setSelectionSource(result, null);
     return result;
   }
 
@@ -556,16 +978,14 @@ public class DataTable {
   public String toString() {
     StringBuilder sb = new StringBuilder();
 
-    for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
-      TableRow tableRow = rows.get(rowIndex);
-      for (int cellIndex = 0; cellIndex < tableRow.getCells().size(); cellIndex++) {
-        TableCell tableCell = tableRow.getCells().get(cellIndex);
-        sb.append(tableCell.toString());
-        if (cellIndex < tableRow.getCells().size() - 1) {
+    for (int rowIndex = 0; rowIndex < getNumberOfRows(); rowIndex++) {
+      for (int cellIndex = 0; cellIndex < columns.size(); cellIndex++) {
+        sb.append(getValue(rowIndex, cellIndex).toString());
+        if (cellIndex < columns.size() - 1) {
           sb.append(",");
         }
       }
-      if (rowIndex < rows.size() - 1) {
+      if (rowIndex < getNumberOfRows() - 1) {
         sb.append("\n");
       }
     }
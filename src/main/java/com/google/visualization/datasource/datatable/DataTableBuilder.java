@@ -0,0 +1,354 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.datatable;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.base.TypeMismatchException;
+import com.google.visualization.datasource.datatable.value.BooleanValue;
+import com.google.visualization.datasource.datatable.value.DateTimeValue;
+import com.google.visualization.datasource.datatable.value.DateValue;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.TimeOfDayValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValuePool;
+import com.google.visualization.datasource.datatable.value.ValueType;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * Builds the rows of a data table in bulk.
+ *
+ * The column types are resolved once when the builder is created, and each value is appended
+ * directly to its column with a typed method such as {@link #appendNumber(int, double)}, so the
+ * rows need not be validated again when they are added to the table. Rows are added to a list,
+ * presized when the caller knows the number of rows, and the table receives the whole list when
+ * {@link #build()} is called. The builder cannot be used after that.
+ *
+ * Optionally, text values and integral number values can be interned in a {@link ValuePool}, so
+ * that repeated values share a single instance (see {@link #setValuePool(ValuePool)}).
+ *
+ * A typical use:
+ * <pre>
+ *   DataTableBuilder builder = new DataTableBuilder(columnDescriptions, expectedRows);
+ *   while (hasMoreData()) {
+ *     builder.appendText(0, name).appendNumber(1, weight).endRow();
+ *   }
+ *   DataTable table = builder.build();
+ * </pre>
+ */
+public class DataTableBuilder {
+
+  /**
+   * The table to which the rows are added, or null after the table was built.
+   */
+  private DataTable table;
+
+  /**
+   * The types of the columns, by column index.
+   */
+  private final ValueType[] columnTypes;
+
+  /**
+   * The values of the current row, by column index. A null entry is a column that has not been
+   * appended to in the current row.
+   */
+  private final Value[] currentValues;
+
+  /**
+   * Whether any value was appended since the last call to {@link #endRow()}.
+   */
+  private boolean rowStarted = false;
+
+  /**
+   * The rows built so far.
+   */
+  private final List<TableRow> rows;
+
+  /**
+   * The pool in which text and number values are interned, or null if values are not interned.
+   */
+  private ValuePool valuePool = null;
+
+  /**
+   * Creates a builder for a new data table with the given columns.
+   *
+   * @param columnDescriptions The columns of the table.
+   * @param expectedRows The expected number of rows, used to presize the table. May be 0 if
+   *     unknown.
+   */
+  public DataTableBuilder(List<ColumnDescription> columnDescriptions, int expectedRows) {
+    this(createTable(columnDescriptions), expectedRows);
+  }
+
+  /**
+   * Creates a builder that adds rows to the end of the given table. The columns of the table
+   * must not change until the table is built.
+   *
+   * @param table The table to add rows to.
+   * @param expectedRows The expected number of rows to add, used to presize the table. May be 0
+   *     if unknown.
+   */
+  public DataTableBuilder(DataTable table, int expectedRows) {
+    this.table = table;
+    List<ColumnDescription> columnDescriptions = table.getColumnDescriptions();
+    columnTypes = new ValueType[columnDescriptions.size()];
+    for (int i = 0; i < columnTypes.length; i++) {
+      columnTypes[i] = columnDescriptions.get(i).getType();
+    }
+    currentValues = new Value[columnTypes.length];
+    rows = Lists.newArrayListWithCapacity(Math.max(expectedRows, 0));
+  }
+
+  /**
+   * Creates an empty table with the given columns.
+   *
+   * @param columnDescriptions The columns of the table.
+   *
+   * @return The new table.
+   */
+  private static DataTable createTable(List<ColumnDescription> columnDescriptions) {
+    DataTable table = new DataTable();
+    table.addColumns(columnDescriptions);
+    return table;
+  }
+
+  /**
+   * Sets the pool in which the appended text and number values are interned. Rows that were
+   * already ended are not changed.
+   *
+   * @param valuePool The pool, or null to stop interning values.
+   *
+   * @return This builder.
+   */
+  public DataTableBuilder setValuePool(ValuePool valuePool) {
+    this.valuePool = valuePool;
+    return this;
+  }
+
+  /**
+   * Sets the value of a column in the current row, after checking that the column has the given
+   * type.
+   *
+   * @param columnIndex The index of the column.
+   * @param type The type of the value.
+   * @param value The value.
+   *
+   * @return This builder.
+   *
+   * @throws TypeMismatchException Thrown if the column is not of the given type.
+   */
+  private DataTableBuilder set(int columnIndex, ValueType type, Value value)
+      throws TypeMismatchException {
+    if (table == null) {
+      throw new IllegalStateException("The table was already built.");
+    }
+    if (columnTypes[columnIndex] != type) {
+      throw new TypeMismatchException("Value type does not match column type, at index: "
+          + columnIndex + ". Should be of type: " + columnTypes[columnIndex].toString());
+    }
+    currentValues[columnIndex] = value;
+    rowStarted = true;
+    return this;
+  }
+
+  /**
+   * Sets the value of a number column in the current row.
+   *
+   * @param columnIndex The index of the column.
+   * @param value The value.
+   *
+   * @return This builder.
+   *
+   * @throws TypeMismatchException Thrown if the column is not a number column.
+   */
+  public DataTableBuilder appendNumber(int columnIndex, double value)
+      throws TypeMismatchException {
+    return set(columnIndex, ValueType.NUMBER,
+        (valuePool == null) ? new NumberValue(value) : valuePool.getNumberValue(value));
+  }
+
+  /**
+   * Sets the value of a text column in the current row.
+   *
+   * @param columnIndex The index of the column.
+   * @param value The value, or null for a null value.
+   *
+   * @return This builder.
+   *
+   * @throws TypeMismatchException Thrown if the column is not a text column.
+   */
+  public DataTableBuilder appendText(int columnIndex, String value)
+      throws TypeMismatchException {
+    if (value == null) {
+      return set(columnIndex, ValueType.TEXT, TextValue.getNullValue());
+    }
+    return set(columnIndex, ValueType.TEXT,
+        (valuePool == null) ? new TextValue(value) : valuePool.getTextValue(value));
+  }
+
+  /**
+   * Sets the value of a boolean column in the current row.
+   *
+   * @param columnIndex The index of the column.
+   * @param value The value.
+   *
+   * @return This builder.
+   *
+   * @throws TypeMismatchException Thrown if the column is not a boolean column.
+   */
+  public DataTableBuilder appendBoolean(int columnIndex, boolean value)
+      throws TypeMismatchException {
+    return set(columnIndex, ValueType.BOOLEAN, BooleanValue.getInstance(value));
+  }
+
+  /**
+   * Sets the value of a date column in the current row.
+   *
+   * @param columnIndex The index of the column.
+   * @param value The value, or null for a null value.
+   *
+   * @return This builder.
+   *
+   * @throws TypeMismatchException Thrown if the column is not a date column.
+   */
+  public DataTableBuilder appendDate(int columnIndex, LocalDate value)
+      throws TypeMismatchException {
+    return set(columnIndex, ValueType.DATE,
+        (value == null) ? DateValue.getNullValue() : new DateValue(value));
+  }
+
+  /**
+   * Sets the value of a datetime column in the current row.
+   *
+   * @param columnIndex The index of the column.
+   * @param value The value, or null for a null value.
+   *
+   * @return This builder.
+   *
+   * @throws TypeMismatchException Thrown if the column is not a datetime column.
+   */
+  public DataTableBuilder appendDateTime(int columnIndex, LocalDateTime value)
+      throws TypeMismatchException {
+    return set(columnIndex, ValueType.DATETIME,
+        (value == null) ? DateTimeValue.getNullValue() : new DateTimeValue(value));
+  }
+
+  /**
+   * Sets the value of a time of day column in the current row.
+   *
+   * @param columnIndex The index of the column.
+   * @param value The value, or null for a null value.
+   *
+   * @return This builder.
+   *
+   * @throws TypeMismatchException Thrown if the column is not a time of day column.
+   */
+  public DataTableBuilder appendTimeOfDay(int columnIndex, LocalTime value)
+      throws TypeMismatchException {
+    return set(columnIndex, ValueType.TIMEOFDAY,
+        (value == null) ? TimeOfDayValue.getNullValue() : new TimeOfDayValue(value));
+  }
+
+  /**
+   * Sets the value of a column in the current row to a null value.
+   *
+   * @param columnIndex The index of the column.
+   *
+   * @return This builder.
+   */
+  public DataTableBuilder appendNull(int columnIndex) {
+    try {
+      return set(columnIndex, columnTypes[columnIndex],
+          Value.getNullValueFromValueType(columnTypes[columnIndex]));
+    } catch (TypeMismatchException e) {
+      // Should not happen, the value has the column's type.
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Sets the value of a column in the current row.
+   *
+   * @param columnIndex The index of the column.
+   * @param value The value, or null for a null value.
+   *
+   * @return This builder.
+   *
+   * @throws TypeMismatchException Thrown if the value does not match the column type.
+   */
+  public DataTableBuilder appendValue(int columnIndex, Value value)
+      throws TypeMismatchException {
+    if (value == null) {
+      return appendNull(columnIndex);
+    }
+    return set(columnIndex, value.getType(),
+        (valuePool == null) ? value : valuePool.intern(value));
+  }
+
+  /**
+   * Ends the current row and adds it to the table. Columns that were not appended to in the
+   * row get null values.
+   *
+   * @return This builder.
+   */
+  public DataTableBuilder endRow() {
+    if (table == null) {
+      throw new IllegalStateException("The table was already built.");
+    }
+    TableRow row = new TableRow(columnTypes.length);
+    for (int i = 0; i < columnTypes.length; i++) {
+      Value value = currentValues[i];
+      row.addCell((value == null) ? Value.getNullValueFromValueType(columnTypes[i]) : value);
+      currentValues[i] = null;
+    }
+    rows.add(row);
+    rowStarted = false;
+    return this;
+  }
+
+  /**
+   * Returns the number of rows ended so far.
+   *
+   * @return The number of rows ended so far.
+   */
+  public int getNumberOfRows() {
+    return rows.size();
+  }
+
+  /**
+   * Adds the built rows to the table and returns it. The builder cannot be used afterwards.
+   *
+   * @return The table.
+   *
+   * @throws IllegalStateException Thrown if values were appended after the last call to
+   *     {@link #endRow()}, or if the table was already built.
+   */
+  public DataTable build() {
+    if (table == null) {
+      throw new IllegalStateException("The table was already built.");
+    }
+    if (rowStarted) {
+      throw new IllegalStateException("The last row was not ended.");
+    }
+    DataTable result = table;
+    table = null;
+    result.addBuiltRows(rows);
+    return result;
+  }
+}
@@ -74,8 +74,8 @@ public class TableCell {
           return 0;
         }
         if (cell1.getType() == ValueType.TEXT) {
-          return textValueComparator.compare((TextValue) cell1.value,
-              (TextValue) cell2.value);
+          return textValueComparator.compare((TextValue) cell1.getValue(),
+              (TextValue) cell2.getValue());
         } else {
           return cell1.getValue().compareTo(cell2.getValue());
         }
@@ -129,7 +129,7 @@ public class TableCell {
    * @param other The other table cell to construct from.
    */
   public TableCell(TableCell other) {
-    this(other.value, other.formattedValue);
+    this(other.getValue(), other.getFormattedValue());
   }
   /**
    * Constructs a new TableCell with a text value.
@@ -173,7 +173,7 @@ public class TableCell {
    * @return The type of this cell.
    */
   public ValueType getType() {
-    return value.getType();
+    return getValue().getType();
   }
 
   /**
@@ -182,7 +182,7 @@ public class TableCell {
    * @return Indication whether the call's value is null.
    */
   public boolean isNull() {
-    return value.isNull();
+    return getValue().isNull();
   }
 
   /**
@@ -192,7 +192,7 @@ public class TableCell {
    */
   @Override
   public String toString() {
-    return value.toString();
+    return getValue().toString();
   }
 
   /**
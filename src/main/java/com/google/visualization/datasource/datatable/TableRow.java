@@ -14,11 +14,14 @@
 
 package com.google.visualization.datasource.datatable;
 
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.visualization.datasource.datatable.value.BooleanValue;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
 import com.google.visualization.datasource.datatable.value.Value;
 
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -30,14 +33,43 @@ import java.util.Map;
  * of the value held in each cell is expected to match the type defined for the corresponding
  * column.
  *
+ * Most cells hold only a value, so a cell is stored as its {@link Value} until it is requested
+ * to be changed (see {@link #getCell(int)}), or is added as a {@link TableCell}. The values,
+ * formatted values and custom properties of the cells can be read without creating cells with
+ * {@link #getValue(int)}, {@link #getFormattedValue(int)} and
+ * {@link #getCellCustomProperties(int)}, and these methods, as well as {@link #getCells()}, do
+ * not change the row, so a row can be read concurrently.
+ *
+ * The cells are kept in an array. A row created with {@link #TableRow(int)} for the number of
+ * columns of its table has no unused room, and a row added to a table is trimmed to its number
+ * of cells.
+ *
  * @author Yoah B.D.
  */
 public class TableRow {
 
   /**
-   * A list of the cells in the row.
+   * An empty array of cells, shared by all the rows that have no cells.
+   */
+  private static final Object[] NO_CELLS = new Object[0];
+
+  /**
+   * The minimal number of cells for which room is made when a cell is added to a full row.
+   */
+  private static final int MIN_GROWTH = 4;
+
+  /**
+   * The cells in the row, followed by unused room for more cells. Each cell is either a
+   * {@link Value}, for a cell with no formatted value and no custom properties, or a
+   * {@link TableCell}. A row created for a known number of cells, or added to a table, has no
+   * unused room.
+   */
+  private Object[] cells;
+
+  /**
+   * The number of cells in the row.
    */
-  private List<TableCell> cells = Lists.newArrayList();
+  private int numberOfCells = 0;
 
   /**
    * Custom properties for the row.
@@ -48,6 +80,60 @@ public class TableRow {
    * Create an empty row list.
    */
   public TableRow() {
+    cells = NO_CELLS;
+  }
+
+  /**
+   * Create an empty row list with room for exactly the given number of cells, typically the
+   * number of columns of the table the row is added to.
+   *
+   * @param numberOfCells The expected number of cells in the row.
+   */
+  public TableRow(int numberOfCells) {
+    cells = (numberOfCells == 0) ? NO_CELLS : new Object[numberOfCells];
+  }
+
+  /**
+   * Package protected function.
+   * Adds the given value or cell to the end of the row, making room for it if needed. Room is
+   * made for several cells at a time, so that adding cells one by one takes amortized constant
+   * time. All the methods that add a cell go through this method, so a row that cannot hold
+   * more cells only needs to override it.
+   *
+   * @param cell The value or cell to add.
+   */
+  void addCellData(Object cell) {
+    if (numberOfCells == cells.length) {
+      cells = Arrays.copyOf(cells,
+          numberOfCells + Math.max(numberOfCells >> 1, MIN_GROWTH));
+    }
+    cells[numberOfCells++] = cell;
+  }
+
+  /**
+   * Package protected function.
+   * Releases the unused room in the row, once all its cells were added.
+   */
+  void trimToSize() {
+    if (numberOfCells < cells.length) {
+      cells = (numberOfCells == 0) ? NO_CELLS : Arrays.copyOf(cells, numberOfCells);
+    }
+  }
+
+  /**
+   * Returns the value or cell at the given index.
+   *
+   * @param index The index of the cell.
+   *
+   * @return The value or cell at the given index.
+   *
+   * @throws IndexOutOfBoundsException Thrown if the index is out of range.
+   */
+  private Object get(int index) {
+    if ((index < 0) || (index >= numberOfCells)) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + numberOfCells);
+    }
+    return cells[index];
   }
 
   /**
@@ -56,7 +142,7 @@ public class TableRow {
    * @param cell The cell's value.
    */
   public void addCell(TableCell cell) {
-    cells.add(cell);
+    addCellData(cell);
   }
 
   /**
@@ -65,7 +151,7 @@ public class TableRow {
    * @param value The inner value of the cell to add.
    */
   public void addCell(Value value) {
-    addCell(new TableCell(value));
+    addCellData(value);
   }
 
   /**
@@ -74,7 +160,7 @@ public class TableRow {
    * @param value The inner numeric value of the cell to add.
    */
   public void addCell(double value) {
-    addCell(new TableCell(value));
+    addCellData(new NumberValue(value));
   }
 
   /**
@@ -83,7 +169,7 @@ public class TableRow {
    * @param value The inner boolean value of the cell to add.
    */
   public void addCell(boolean value) {
-    addCell(new TableCell(value));
+    addCellData(BooleanValue.getInstance(value));
   }
 
   /**
@@ -92,28 +178,146 @@ public class TableRow {
    * @param value The inner text value of the cell to add.
    */
   public void addCell(String value) {
-    addCell(new TableCell(value));
+    addCellData(new TextValue(value));
+  }
+
+  /**
+   * Adds the cell at the given index of the given row to the end of this row. A cell that has a
+   * formatted value or custom properties is shared between the two rows, as with
+   * {@code addCell(row.getCell(index))}, but no cell is created for a cell that holds only a
+   * value.
+   *
+   * @param row The row holding the cell.
+   * @param index The index of the cell in the given row.
+   */
+  public void addCellFrom(TableRow row, int index) {
+    addCellData(row.getCellData(index));
+  }
+
+  /**
+   * Adds the cell at the specified position of the given table to the end of this row, as with
+   * {@link #addCellFrom(TableRow, int)}. The row of the table is not requested, so it is not
+   * copied if it is shared with another table (see {@link DataTable#getRow(int)}).
+   *
+   * @param table The table holding the cell.
+   * @param rowIndex The row index of the cell in the table.
+   * @param colIndex The column index of the cell in the table.
+   */
+  public void addCellFrom(DataTable table, int rowIndex, int colIndex) {
+    addCellData(table.getCellData(rowIndex, colIndex));
+  }
+
+  /**
+   * Package protected function.
+   * Returns the stored data of the cell at the given index: either its value, if it has no
+   * formatted value and no custom properties, or the cell.
+   *
+   * @param index The index of the cell.
+   *
+   * @return The value or the cell at the given index.
+   */
+  Object getCellData(int index) {
+    return get(index);
   }
 
   /**
    * Returns the list of all cell values.
    *
-   * @return The list of all cell values. The returned list is
-   *     immutable.
+   * @return The list of all cell values. The returned list is a read-only
+   *     view of the cells of this row, and is not copied. Reading it does not change the row:
+   *     a cell that holds only a value is returned as a new cell that is not stored in the
+   *     row, so to change a cell use {@link #getCell(int)}.
    */
   public List<TableCell> getCells() {
-    return ImmutableList.copyOf(cells);
+    return new AbstractList<TableCell>() {
+      @Override
+      public TableCell get(int index) {
+        Object cell = TableRow.this.get(index);
+        return (cell instanceof TableCell) ? (TableCell) cell : new TableCell((Value) cell);
+      }
+
+      @Override
+      public int size() {
+        return getNumberOfCells();
+      }
+    };
   }
 
   /**
-   * Returns a single cell by its index.
+   * Returns the number of cells in this row.
+   *
+   * @return The number of cells in this row.
+   */
+  public int getNumberOfCells() {
+    return numberOfCells;
+  }
+
+  /**
+   * Returns a single cell by its index, to be read or changed. This is the way to change a cell
+   * of the row in place: if the cell is stored as a value, a cell is created and stored in its
+   * place, so that changes to the returned cell are kept in the row. Since this may change the
+   * row, it must not be called on a row that may be read concurrently; the rows of a
+   * {@link DataTable} are returned for change by {@link DataTable#getRow(int)}. To only read a
+   * cell, use {@link #getValue(int)}, {@link #getFormattedValue(int)} and
+   * {@link #getCellCustomProperties(int)}.
    *
    * @param index The index of the cell to get.
    *
    * @return A single cell by it's index.
    */
   public TableCell getCell(int index) {
-    return cells.get(index);
+    Object cell = get(index);
+    if (cell instanceof TableCell) {
+      return (TableCell) cell;
+    }
+    TableCell result = new TableCell((Value) cell);
+    cells[index] = result;
+    return result;
+  }
+
+  /**
+   * Returns the value of a single cell by its index, without creating a cell.
+   *
+   * @param index The index of the cell.
+   *
+   * @return The value of the cell.
+   */
+  public Value getValue(int index) {
+    Object cell = get(index);
+    if (cell instanceof TableCell) {
+      return ((TableCell) cell).getValue();
+    }
+    return (Value) cell;
+  }
+
+  /**
+   * Returns the formatted value of a single cell by its index, without creating a cell.
+   *
+   * @param index The index of the cell.
+   *
+   * @return The formatted value of the cell, or null if it has none.
+   */
+  public String getFormattedValue(int index) {
+    Object cell = get(index);
+    if (cell instanceof TableCell) {
+      return ((TableCell) cell).getFormattedValue();
+    }
+    return null;
+  }
+
+  /**
+   * Returns the custom properties of a single cell by its index, without creating a cell.
+   *
+   * @param index The index of the cell.
+   *
+   * @return An immutable map of the custom properties of the cell.
+   */
+  public Map<String, String> getCellCustomProperties(int index) {
+    Object cell = get(index);
+    if (cell instanceof TableCell) {
+      return ((TableCell) cell).getCustomProperties();
+    }
+    return Collections.emptyMap();
   }
   
   /**
@@ -129,7 +333,12 @@ public class TableRow {
    * @throws IndexOutOfBoundsException Thrown if the index out of range.
    */
   TableCell setCell(int index, TableCell cell) throws IndexOutOfBoundsException {
-    return cells.set(index, cell);
+    Object previous = get(index);
+    cells[index] = cell;
+    if (previous instanceof TableCell) {
+      return (TableCell) previous;
+    }
+    return new TableCell((Value) previous);
   }
 
   /**
@@ -184,10 +393,13 @@ public class TableRow {
    */
   @Override
   public TableRow clone() {
-    TableRow result = new TableRow();
-    for (TableCell cell : cells) {
-      result.addCell(cell.clone());
+    TableRow result = new TableRow(numberOfCells);
+    for (int i = 0; i < numberOfCells; i++) {
+      // Values are immutable and are not copied.
+      Object cell = cells[i];
+      result.cells[i] = (cell instanceof TableCell) ? ((TableCell) cell).clone() : cell;
     }
+    result.numberOfCells = numberOfCells;
     if (customProperties != null) {
       result.customProperties = Maps.newHashMap();
       for (Map.Entry<String, String> entry : customProperties.entrySet()) {
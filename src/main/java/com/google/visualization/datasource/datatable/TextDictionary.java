@@ -0,0 +1,286 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.datatable;
+
+import com.google.common.collect.Maps;
+import com.google.visualization.datasource.datatable.value.TextValue;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An order preserving dictionary of the texts of a text column of a table. The distinct texts
+ * of the column are sorted, and each row of the table gets the code of its text, i.e., the
+ * index of its text in the sorted texts. Comparing the codes of two rows is then the same as
+ * comparing their texts.
+ *
+ * The texts are sorted in the collation order of a locale, as by
+ * {@link TextValue#getTextLocalizedComparator(Locale)}, or in the natural order of strings, as
+ * by {@link TextValue#compareTo}, if the dictionary has no locale. Distinct texts that the
+ * collator considers equal get distinct codes, in their natural order, and the same rank, so
+ * codes compare as the texts are compared by {@link String#compareTo}, and ranks compare as the
+ * texts are compared by the collator.
+ *
+ * A dictionary is immutable. Dictionaries are created and cached by
+ * {@link DataTable#getTextDictionary(int, Locale)}.
+ */
+public class TextDictionary {
+
+  /**
+   * The locale of the collation order, or null for the natural order of strings.
+   */
+  private final Locale locale;
+
+  /**
+   * The collator of the locale, or null for the natural order of strings.
+   */
+  private final Collator collator;
+
+  /**
+   * The distinct texts, sorted.
+   */
+  private final String[] texts;
+
+  /**
+   * The rank of each text in the collation order, by code.
+   */
+  private final int[] ranks;
+
+  /**
+   * The code of the text of each row.
+   */
+  private final int[] rowCodes;
+
+  /**
+   * Creates a dictionary.
+   *
+   * @param locale The locale of the collation order, or null for the natural order.
+   * @param collator The collator of the locale, or null for the natural order.
+   * @param texts The distinct texts, sorted.
+   * @param ranks The rank of each text in the collation order, by code.
+   * @param rowCodes The code of the text of each row.
+   */
+  private TextDictionary(Locale locale, Collator collator, String[] texts, int[] ranks,
+      int[] rowCodes) {
+    this.locale = locale;
+    this.collator = collator;
+    this.texts = texts;
+    this.ranks = ranks;
+    this.rowCodes = rowCodes;
+  }
+
+  /**
+   * Creates the dictionary of a text column of a table, by reading all its values.
+   *
+   * @param table The table.
+   * @param colIndex The index of the column.
+   * @param locale The locale of the collation order, or null for the natural order.
+   *
+   * @return The dictionary of the column.
+   */
+  /* package */ static TextDictionary create(DataTable table, int colIndex, Locale locale) {
+    int numRows = table.getNumberOfRows();
+    int[] rowIds = new int[numRows];
+    Map<String, Integer> idByText = Maps.newHashMap();
+    for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+      String text = ((TextValue) table.getValue(rowIndex, colIndex)).getValue();
+      Integer id = idByText.get(text);
+      if (id == null) {
+        id = idByText.size();
+        idByText.put(text, id);
+      }
+      rowIds[rowIndex] = id;
+    }
+    String[] distinctTexts = new String[idByText.size()];
+    for (Map.Entry<String, Integer> entry : idByText.entrySet()) {
+      distinctTexts[entry.getValue()] = entry.getKey();
+    }
+    return create(distinctTexts, rowIds, locale);
+  }
+
+  /**
+   * Creates a dictionary from distinct texts, in any order, and the index of the text of each
+   * row in them.
+   *
+   * @param distinctTexts The distinct texts.
+   * @param rowIds The index of the text of each row in the distinct texts. The array is changed
+   *     to hold the codes of the rows, and is owned by the dictionary.
+   * @param locale The locale of the collation order, or null for the natural order.
+   *
+   * @return The dictionary.
+   */
+  /* package */ static TextDictionary create(final String[] distinctTexts, int[] rowIds,
+      Locale locale) {
+    final Collator collator = (locale == null) ? null : Collator.getInstance(locale);
+    final CollationKey[] keys = new CollationKey[distinctTexts.length];
+    Integer[] sortedIds = new Integer[distinctTexts.length];
+    for (int id = 0; id < distinctTexts.length; id++) {
+      if (collator != null) {
+        keys[id] = collator.getCollationKey(distinctTexts[id]);
+      }
+      sortedIds[id] = id;
+    }
+    Arrays.sort(sortedIds, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer id1, Integer id2) {
+        int result = (collator == null) ? 0 : keys[id1].compareTo(keys[id2]);
+        return (result != 0) ? result : distinctTexts[id1].compareTo(distinctTexts[id2]);
+      }
+    });
+
+    String[] texts = new String[distinctTexts.length];
+    int[] ranks = new int[distinctTexts.length];
+    int[] codeById = new int[distinctTexts.length];
+    int rank = 0;
+    for (int code = 0; code < sortedIds.length; code++) {
+      int id = sortedIds[code];
+      if ((code > 0) && ((collator == null)
+          || (keys[sortedIds[code - 1]].compareTo(keys[id]) != 0))) {
+        rank++;
+      }
+      texts[code] = distinctTexts[id];
+      ranks[code] = rank;
+      codeById[id] = code;
+    }
+    for (int rowIndex = 0; rowIndex < rowIds.length; rowIndex++) {
+      rowIds[rowIndex] = codeById[rowIds[rowIndex]];
+    }
+    return new TextDictionary(locale, collator, texts, ranks, rowIds);
+  }
+
+  /**
+   * Returns the dictionary of a selection of the rows of the table of this dictionary, as
+   * returned by {@link DataTable#selectRows(int[])}. The texts are shared with this dictionary.
+   *
+   * @param rowIndices The indices of the selected rows.
+   *
+   * @return The dictionary of the selected rows.
+   */
+  /* package */ TextDictionary selectRows(int[] rowIndices) {
+    int[] selectedRowCodes = new int[rowIndices.length];
+    for (int i = 0; i < rowIndices.length; i++) {
+      selectedRowCodes[i] = rowCodes[rowIndices[i]];
+    }
+    return new TextDictionary(locale, collator, texts, ranks, selectedRowCodes);
+  }
+
+  /**
+   * Returns the locale of the collation order.
+   *
+   * @return The locale of the collation order, or null for the natural order of strings.
+   */
+  public Locale getLocale() {
+    return locale;
+  }
+
+  /**
+   * Returns the number of distinct texts.
+   *
+   * @return The number of distinct texts.
+   */
+  public int size() {
+    return texts.length;
+  }
+
+  /**
+   * Returns the text of a code.
+   *
+   * @param code The code.
+   *
+   * @return The text of the code.
+   */
+  public String getText(int code) {
+    return texts[code];
+  }
+
+  /**
+   * Returns the rank of the text of a code in the collation order. Texts that the collator
+   * considers equal have the same rank. Without a locale, the rank of a code is the code.
+   *
+   * @param code The code.
+   *
+   * @return The rank of the text of the code.
+   */
+  public int getRank(int code) {
+    return ranks[code];
+  }
+
+  /**
+   * Returns the code of the text of a row.
+   *
+   * @param rowIndex The index of the row.
+   *
+   * @return The code of the text of the row.
+   */
+  public int getCode(int rowIndex) {
+    return rowCodes[rowIndex];
+  }
+
+  /**
+   * Returns the rank of the text of a row in the collation order.
+   *
+   * @param rowIndex The index of the row.
+   *
+   * @return The rank of the text of the row.
+   */
+  public int getRowRank(int rowIndex) {
+    return ranks[rowCodes[rowIndex]];
+  }
+
+  /**
+   * Returns the code of a text, if it is in this dictionary, as
+   * {@link Arrays#binarySearch(Object[], Object)} does.
+   *
+   * @param text The text.
+   *
+   * @return The code of the text if it is in this dictionary, or otherwise
+   *     (-(insertion point) - 1), where the insertion point is the code of the first text that
+   *     is greater than the given text, or the number of texts if there is none.
+   */
+  public int findCode(String text) {
+    int low = 0;
+    int high = texts.length - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int result = compare(texts[middle], text);
+      if (result < 0) {
+        low = middle + 1;
+      } else if (result > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -(low + 1);
+  }
+
+  /**
+   * Compares two texts in the order of this dictionary.
+   *
+   * @param text1 The first text.
+   * @param text2 The second text.
+   *
+   * @return A negative integer, zero, or a positive integer as the first text comes before, is,
+   *     or comes after the second.
+   */
+  private int compare(String text1, String text2) {
+    int result = (collator == null) ? 0 : collator.compare(text1, text2);
+    return (result != 0) ? result : text1.compareTo(text2);
+  }
+}
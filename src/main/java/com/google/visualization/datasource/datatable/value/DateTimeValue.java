@@ -15,13 +15,16 @@
 package com.google.visualization.datasource.datatable.value;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 /**
  * A value of type date-time. Used to represent a specific day in a given year as well as a
  * specific time during that day. This differs from {@link DateValue}, which represents only a
  * specific day in a given year.
- * DateTime is represented internally by a GregorianCalendar. The
- * calendar is immutable and is kept only for validation of the input.
+ * DateTime is represented internally by a single value: the number of milliseconds since
+ * 1970-01-01 00:00:00, with no time zone (equivalently, in GMT). Comparing, hashing and
+ * extracting the date and time fields are done with integer arithmetic on that value.
+ * Sub-millisecond precision is not kept.
  *
  * @author Hillel M.
  */
@@ -32,6 +35,11 @@ public class DateTimeValue extends Value {
    */
   private static final DateTimeValue NULL_VALUE = new DateTimeValue();
 
+  /**
+   * The number of milliseconds in a day.
+   */
+  private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
 
   /**
    * Static method to return the null value (same one for all calls).
@@ -43,30 +51,49 @@ public class DateTimeValue extends Value {
   }
 
   /**
-   * Underlying LocalDateTime½
-   * The is immutable and is set only in the constructor.
+   * Returns the date-time value of the given number of milliseconds since the epoch.
+   *
+   * @param epochMillis The number of milliseconds since 1970-01-01 00:00:00.
+   *
+   * @return The date-time value.
+   *
+   * @throws IllegalArgumentException Thrown when the date is too far from the epoch to be
+   *     represented.
    */
-  private LocalDateTime localDateTime;
+  public static DateTimeValue fromEpochMillis(long epochMillis) {
+    long epochDay = Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+    if (epochDay != (int) epochDay) {
+      throw new IllegalArgumentException("Date-time is out of range: " + epochMillis);
+    }
+    return new DateTimeValue(epochMillis);
+  }
 
   /**
-   * Stores the hash code for this DateTime. Do not use GregorianCalendar
-   * hash code since it does not consider time values and it might trigger
-   * internal changes in the calendar values.
-   * The hashCode of NULL_VALUE is zero.
+   * Underlying value: the number of milliseconds since 1970-01-01 00:00:00.
    */
-  private Integer hashCode = null;
+  private final long epochMillis;
 
   /**
    * Creates a new DateTime value. This constructor is private and is used
    * only to create a NULL_VALUE for this class.
    */
   private DateTimeValue() {
-    hashCode = 0;
+    epochMillis = 0;
+  }
+
+  /**
+   * Creates a new DateTime value of the given number of milliseconds since the epoch.
+   *
+   * @param epochMillis The number of milliseconds since 1970-01-01 00:00:00.
+   */
+  private DateTimeValue(long epochMillis) {
+    this.epochMillis = epochMillis;
   }
 
   /**
    * Creates a new DateTime value.
-   * The input is checked using a gregorian calendar.
+   * Note that the month is 1-based here, i.e., January = 1, ..., December = 12, while
+   * {@link #getMonth()} uses the javascript convention.
    *
    * @param year The year.
    * @param month The month.
@@ -86,41 +113,85 @@ public class DateTimeValue extends Value {
                        final int minutes,
                        final int seconds,
                        final int milliseconds) {
-
-    localDateTime = LocalDateTime.of(year, month, dayOfMonth, hours, minutes, seconds, milliseconds * 1000000);
-
     // Check input.
     // A RunTimeException is thrown here since it is very unusual for structured
     // data to be incorrect.
-    if ((getYear() != year)
-        || (getMonth() != month - 1)
-        || (getDayOfMonth() != dayOfMonth)
-        || (getHourOfDay() != hours)
-        || (getMinute() != minutes)
-        || (getSecond() != seconds)
-        || (getMillisecond() != milliseconds)) {
+    long epochDay = DateValue.toEpochDay(year, month, dayOfMonth);
+    if ((month < 1) || (month > 12) || (epochDay != (int) epochDay)
+        || (DateValue.getYear((int) epochDay) != year)
+        || (DateValue.getMonth((int) epochDay) != month - 1)
+        || (DateValue.getDayOfMonth((int) epochDay) != dayOfMonth)
+        || (hours < 0) || (hours >= 24)
+        || (minutes < 0) || (minutes >= 60)
+        || (seconds < 0) || (seconds >= 60)
+        || (milliseconds < 0) || (milliseconds >= 1000)) {
       throw new IllegalArgumentException("Invalid java date "
           + "(yyyy-MM-dd hh:mm:ss.S): "
           + year + '-' + month + '-' + dayOfMonth + ' ' + hours + ':'
           + minutes + ':' + seconds + '.' + milliseconds);
     }
+    epochMillis = epochDay * MILLIS_PER_DAY
+        + ((hours * 60 + minutes) * 60 + seconds) * 1000L + milliseconds;
   }
 
   /**
-   * Creates a new instance based on the given {@code GregorianCalendar}.
-   * The given calendar's time zone must be set to "GMT" as a precondition to
-   * use this constructor.
-   * Note: The date time values: year, month, dayOfMonth, hour, minute, second
-   * and millisecond correspond to the values returned by calendar.get(field)
-   * of the given calendar.
+   * Creates a new instance based on the given {@code LocalDateTime}. Sub-millisecond precision
+   * is dropped.
    *
-   * @param localDateTime which to base this instance.
+   * @param localDateTime The date and time of day.
    *
-   * @throws IllegalArgumentException When calendar time zone is not set
-   *     to GMT.
+   * @throws ArithmeticException Thrown when the date is too far from the epoch to be
+   *     represented.
    */
   public DateTimeValue(final LocalDateTime localDateTime) {
-    this.localDateTime = localDateTime;
+    this.epochMillis = Math.toIntExact(localDateTime.toLocalDate().toEpochDay()) * MILLIS_PER_DAY
+        + localDateTime.toLocalTime().toNanoOfDay() / 1000000;
+  }
+
+  /**
+   * Returns the epoch day of this value, without checking for null.
+   *
+   * @return The epoch day.
+   */
+  private int toEpochDay() {
+    return (int) Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+  }
+
+  /**
+   * Returns the number of milliseconds since midnight of this value.
+   *
+   * @return The number of milliseconds since midnight.
+   */
+  private int getMillisOfDay() {
+    return (int) Math.floorMod(epochMillis, MILLIS_PER_DAY);
+  }
+
+  /**
+   * Returns the number of milliseconds since 1970-01-01 00:00:00.
+   *
+   * @return The number of milliseconds since 1970-01-01 00:00:00.
+   *
+   * @throws NullValueException Thrown when this Value is NULL_VALUE.
+   */
+  public long getEpochMillis() {
+    if (isNull()) {
+      throw new NullValueException("This object is null");
+    }
+    return epochMillis;
+  }
+
+  /**
+   * Returns the number of days since 1970-01-01 of the date part of this value.
+   *
+   * @return The number of days since 1970-01-01.
+   *
+   * @throws NullValueException Thrown when this Value is NULL_VALUE.
+   */
+  public int getEpochDay() {
+    if (isNull()) {
+      throw new NullValueException("This object is null");
+    }
+    return toEpochDay();
   }
 
   /**
@@ -129,7 +200,7 @@ public class DateTimeValue extends Value {
    * @return The year.
    */
   public int getYear() {
-    return localDateTime.getYear();
+    return DateValue.getYear(toEpochDay());
   }
 
   /**
@@ -138,7 +209,7 @@ public class DateTimeValue extends Value {
    * @return The month.
    */
   public int getMonth() {
-    return localDateTime.getMonthValue() - 1;
+    return DateValue.getMonth(toEpochDay());
   }
 
   /**
@@ -147,7 +218,16 @@ public class DateTimeValue extends Value {
    * @return The day of month.
    */
   public int getDayOfMonth() {
-    return localDateTime.getDayOfMonth();
+    return DateValue.getDayOfMonth(toEpochDay());
+  }
+
+  /**
+   * Returns the ISO day of week, from 1 (Monday) to 7 (Sunday).
+   *
+   * @return The day of week.
+   */
+  public int getDayOfWeek() {
+    return DateValue.getDayOfWeek(toEpochDay());
   }
 
   /**
@@ -156,7 +236,7 @@ public class DateTimeValue extends Value {
    * @return The hour of day.
    */
   public int getHourOfDay() {
-    return localDateTime.getHour();
+    return getMillisOfDay() / (60 * 60 * 1000);
   }
 
   /**
@@ -165,7 +245,7 @@ public class DateTimeValue extends Value {
    * @return The minute.
    */
   public int getMinute() {
-    return localDateTime.getMinute();
+    return (getMillisOfDay() / (60 * 1000)) % 60;
   }
 
   /**
@@ -174,7 +254,7 @@ public class DateTimeValue extends Value {
    * @return The second.
    */
   public int getSecond() {
-    return localDateTime.getSecond();
+    return (getMillisOfDay() / 1000) % 60;
   }
 
   /**
@@ -183,7 +263,7 @@ public class DateTimeValue extends Value {
    * @return The millisecond.
    */
   public int getMillisecond() {
-    return localDateTime.getNano() / 1000000;
+    return getMillisOfDay() % 1000;
   }
 
 
@@ -240,26 +320,16 @@ public class DateTimeValue extends Value {
     if (otherDateTime.isNull()) {
       return 1;
     }
-    // Calendar implements compareTo by converting to milliseconds.
-    return localDateTime.compareTo(otherDateTime.getLocalDateTime());
+    return (epochMillis < otherDateTime.epochMillis)
+        ? -1 : ((epochMillis == otherDateTime.epochMillis) ? 0 : 1);
   }
 
   @Override
   public int hashCode() {
-    if (null != hashCode) {
-      return hashCode;
+    if (isNull()) {
+      return 0;
     }
-    // Compute and store hashCode for this DateTimeValue.
-    int hash = 1579; // Some arbitrary prime number.
-    hash = (hash * 11) + getYear();
-    hash = (hash * 11) + getMonth();
-    hash = (hash * 11) + getDayOfMonth();
-    hash = (hash * 11) + getHourOfDay();
-    hash = (hash * 11) + getMinute();
-    hash = (hash * 11) + getSecond();
-    hash = (hash * 11) + getMillisecond();
-    hashCode = hash;
-    return hashCode;
+    return 1579 + (int) (epochMillis ^ (epochMillis >>> 32)); // 1579 is some arbitrary prime.
   }
 
   @Override
@@ -267,13 +337,14 @@ public class DateTimeValue extends Value {
     if (isNull()) {
       return null;
     }
-    return localDateTime;
+    return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000L),
+        (int) Math.floorMod(epochMillis, 1000L) * 1000000, ZoneOffset.UTC);
   }
 
   /**
-   * Returns the internal GregorianCalendar.
+   * Returns this value as a LocalDateTime.
    *
-   * @return The internal GregorianCalendar.
+   * @return This value as a LocalDateTime.
    *
    * @throws NullValueException Thrown when this Value is NULL_VALUE.
    */
@@ -281,7 +352,7 @@ public class DateTimeValue extends Value {
     if (isNull()) {
       throw new NullValueException("This object is null");
     }
-    return localDateTime;
+    return getObjectToFormat();
   }
 
   /**
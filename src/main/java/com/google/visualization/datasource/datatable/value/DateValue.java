@@ -21,9 +21,10 @@ import java.time.LocalDate;
  * A value of type date. Used to represent a specific day in a given year. This differs from
  * {@link DateTimeValue}, which represents a specific day in a given year as well as a specific
  * time during that day. 
- * Date is represented internally by three values: year, month and dayOfMonth.
- * This class stores only legitimate dates where the validation is done using
- * ibm.icu.GregorianCalendar.
+ * Date is represented internally by a single value: the number of days since 1970-01-01
+ * (the epoch day) in the proleptic Gregorian calendar. Comparing, hashing and extracting the
+ * year, month and day of month are done with integer arithmetic on that value.
+ * This class stores only legitimate dates.
  *
  * @author Hillel M.
  */
@@ -35,48 +36,62 @@ public class DateValue extends Value {
   private static final DateValue NULL_VALUE = new DateValue();
 
   /**
-   * Static method to return the null value (same one for all calls).
-   *
-   * @return Null value.
+   * The number of days in a 400 year cycle of the Gregorian calendar.
    */
-  public static DateValue getNullValue() {
-    return NULL_VALUE;
-  }
+  private static final int DAYS_PER_CYCLE = 146097;
 
   /**
-   * Underlying value: year.
+   * The number of days from 0000-03-01 to 1970-01-01. The calendar arithmetic below counts
+   * years from March, so that the leap day is the last day of the year.
    */
-  private int year;
+  private static final int DAYS_0000_TO_1970 = 719468;
 
   /**
-   * Underlying value: month. Note we use the javascript convention for months, this is:
-   * January = 0, February = 1, ..., December = 11.
+   * Static method to return the null value (same one for all calls).
+   *
+   * @return Null value.
    */
-  private int month;
+  public static DateValue getNullValue() {
+    return NULL_VALUE;
+  }
 
   /**
-   * Underlying value: day of month.
+   * Returns the date value of the given epoch day.
+   *
+   * @param epochDay The number of days since 1970-01-01.
+   *
+   * @return The date value.
    */
-  private int dayOfMonth;
+  public static DateValue fromEpochDay(int epochDay) {
+    return new DateValue(epochDay);
+  }
 
   /**
-   * The hashCode for this DateValue. The hashCode of a NULL_VALUE is zero.
+   * Underlying value: the number of days since 1970-01-01.
    */
-  private Integer hashCode = null;
+  private final int epochDay;
 
   /**
    * Create a new date value. This constructor is private and is used only to
    * create a NULL_VALUE for this class.
    */
   private DateValue() {
-    hashCode = 0;
+    epochDay = 0;
+  }
+
+  /**
+   * Creates a new date value of the given epoch day.
+   *
+   * @param epochDay The number of days since 1970-01-01.
+   */
+  private DateValue(int epochDay) {
+    this.epochDay = epochDay;
   }
 
   /**
    * Creates a new date value.
-   * The input is checked using a GregorianCalendar.
-   * Note that we use java convention for months:
-   * January = 0, ..., December = 11.
+   * Note that the month is 1-based here, i.e., January = 1, ..., December = 12, while
+   * {@link #getMonth()} uses the javascript convention.
    *
    * @param year The year.
    * @param month The month.
@@ -89,41 +104,117 @@ public class DateValue extends Value {
                    final int month,
                    final int dayOfMonth)
   {
-    final LocalDate localDate = LocalDate.of(year, month, dayOfMonth);
-
-    // Input check. If the date is invalid the calendar object will output
+    // Input check. If the date is invalid the epoch day maps back to
     // different fields for year, month and/or dayOfMonth.
     // A RunTimeException is thrown here since it is very unusual for structured
     // data to be incorrect.
-    if (localDate.getYear() != year || localDate.getMonthValue() != month || localDate.getDayOfMonth() != dayOfMonth)
-    {
+    long day = toEpochDay(year, month, dayOfMonth);
+    if ((month < 1) || (month > 12) || (day != (int) day)
+        || (getYear((int) day) != year) || (getMonth((int) day) != month - 1)
+        || (getDayOfMonth((int) day) != dayOfMonth)) {
       throw new IllegalArgumentException("Invalid java date (yyyy-MM-dd): "
           + year + '-' + month + '-' + dayOfMonth);
     }
-    // Assign internal variables.
-    this.year = year;
-    this.month = month - 1;
-    this.dayOfMonth = dayOfMonth;
+    this.epochDay = (int) day;
   }
 
   /**
-   * Creates a new instance based on the given {@code GregorianCalendar}.
-   * The given calendar's time zone must be set to "GMT" as a precondition to
-   * use this constructor.
-   * Note: The date values: year, month, dayOfMonth correspond to the values
-   * returned by calendar.get(field) of the given calendar.
+   * Creates a new instance based on the given {@code LocalDate}.
    *
-   * @param localDate extract from this instance values: year, month
-   *     and dayOfMonth.
+   * @param localDate The date.
    *
-   * @throws IllegalArgumentException When calendar time zone is not set
-   *     to GMT.
+   * @throws ArithmeticException Thrown when the date is too far from the epoch to be
+   *     represented.
    */
   public DateValue(final LocalDate localDate) {
+    this.epochDay = Math.toIntExact(localDate.toEpochDay());
+  }
 
-    this.year = localDate.getYear();
-    this.month = localDate.getMonthValue() - 1;
-    this.dayOfMonth = localDate.getDayOfMonth();
+  /**
+   * Returns the number of days from 1970-01-01 to the given date. The month and day may be out
+   * of range, in which case the result is not a valid day of that month.
+   *
+   * @param year The year.
+   * @param month The month, 1-based.
+   * @param dayOfMonth The day of month.
+   *
+   * @return The epoch day.
+   */
+  /* package */ static long toEpochDay(long year, int month, int dayOfMonth) {
+    // Count years from March.
+    long y = (month <= 2) ? year - 1 : year;
+    long era = Math.floorDiv(y, 400);
+    long yearOfEra = y - era * 400;
+    long dayOfYear = (153 * (month + ((month > 2) ? -3 : 9)) + 2) / 5 + dayOfMonth - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * DAYS_PER_CYCLE + dayOfEra - DAYS_0000_TO_1970;
+  }
+
+  /**
+   * Returns the fields of the given epoch day, packed as year * 512 + (month - 1) * 32 +
+   * dayOfMonth, where month is 1-based.
+   *
+   * @param epochDay The number of days since 1970-01-01.
+   *
+   * @return The packed fields.
+   */
+  private static long toFields(int epochDay) {
+    long z = (long) epochDay + DAYS_0000_TO_1970;
+    long era = Math.floorDiv(z, DAYS_PER_CYCLE);
+    long dayOfEra = z - era * DAYS_PER_CYCLE;
+    long yearOfEra =
+        (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    long marchMonth = (5 * dayOfYear + 2) / 153;
+    long dayOfMonth = dayOfYear - (153 * marchMonth + 2) / 5 + 1;
+    long month = (marchMonth < 10) ? marchMonth + 3 : marchMonth - 9;
+    long year = yearOfEra + era * 400 + ((month <= 2) ? 1 : 0);
+    return year * 512 + (month - 1) * 32 + dayOfMonth;
+  }
+
+  /**
+   * Returns the year of the given epoch day.
+   *
+   * @param epochDay The number of days since 1970-01-01.
+   *
+   * @return The year.
+   */
+  /* package */ static int getYear(int epochDay) {
+    return (int) (toFields(epochDay) >> 9);
+  }
+
+  /**
+   * Returns the month of the given epoch day, from 0 (January) to 11 (December).
+   *
+   * @param epochDay The number of days since 1970-01-01.
+   *
+   * @return The month.
+   */
+  /* package */ static int getMonth(int epochDay) {
+    return (int) ((toFields(epochDay) >> 5) & 15);
+  }
+
+  /**
+   * Returns the day of month of the given epoch day. The first day of the month is 1.
+   *
+   * @param epochDay The number of days since 1970-01-01.
+   *
+   * @return The day of month.
+   */
+  /* package */ static int getDayOfMonth(int epochDay) {
+    return (int) (toFields(epochDay) & 31);
+  }
+
+  /**
+   * Returns the ISO day of week of the given epoch day, from 1 (Monday) to 7 (Sunday).
+   *
+   * @param epochDay The number of days since 1970-01-01.
+   *
+   * @return The day of week.
+   */
+  /* package */ static int getDayOfWeek(int epochDay) {
+    // 1970-01-01 was a Thursday.
+    return Math.floorMod(epochDay + 3, 7) + 1;
   }
 
   @Override
@@ -141,7 +232,9 @@ public class DateValue extends Value {
     if (this == NULL_VALUE) {
       return "null";
     }
-    return String.format("%1$d-%2$02d-%3$02d", year, month + 1, dayOfMonth);
+    long fields = toFields(epochDay);
+    return String.format("%1$d-%2$02d-%3$02d", fields >> 9, ((fields >> 5) & 15) + 1,
+        fields & 31);
 
   }
 
@@ -174,40 +267,15 @@ public class DateValue extends Value {
     if (otherDate.isNull()) {
       return 1;
     }
-    // Compare year.
-    if (this.year > otherDate.year) {
-      return 1;
-    } else if (this.year < otherDate.year) {
-      return -1;
-    }
-    // Compare month.
-    if (this.month > otherDate.month) {
-      return 1;
-    } else if (this.month < otherDate.month) {
-      return -1;
-    }
-    // Compare dayOfMonth.
-    if (this.dayOfMonth > otherDate.dayOfMonth) {
-      return 1;
-    } else if (this.dayOfMonth < otherDate.dayOfMonth) {
-      return -1;
-    }
-    // Equal Values.
-    return 0;
+    return (epochDay < otherDate.epochDay) ? -1 : ((epochDay == otherDate.epochDay) ? 0 : 1);
   }
 
   @Override
   public int hashCode() {
-    if (null != hashCode) {
-      return hashCode;
+    if (isNull()) {
+      return 0;
     }
-    // Compute and store hashCode for this DateValue.
-    int hash  = 1279; // Some arbitrary prime number.
-    hash = (hash * 17) + year;
-    hash = (hash * 17) + month;
-    hash = (hash * 17) + dayOfMonth;
-    hashCode = hash;
-    return hashCode;
+    return 1279 + epochDay * 17; // 1279 is some arbitrary prime number.
  }
 
   @Override
@@ -216,7 +284,21 @@ public class DateValue extends Value {
       return null;
     }
 
-    return LocalDate.of(year, month + 1, dayOfMonth);
+    return LocalDate.ofEpochDay(epochDay);
+  }
+
+  /**
+   * Returns the number of days since 1970-01-01.
+   *
+   * @return The number of days since 1970-01-01.
+   *
+   * @throws NullValueException Thrown when this Value is NULL_VALUE.
+   */
+  public int getEpochDay() {
+    if (isNull()) {
+      throw new NullValueException("This object is null");
+    }
+    return epochDay;
   }
 
   /**
@@ -230,11 +312,12 @@ public class DateValue extends Value {
     if (isNull()) {
       throw new NullValueException("This object is null");
     }
-    return year;
+    return getYear(epochDay);
   }
 
   /**
-   * Returns the underlying month.
+   * Returns the underlying month. Note we use the javascript convention for months, this is:
+   * January = 0, February = 1, ..., December = 11.
    *
    * @return The underlying month.
    *
@@ -244,7 +327,7 @@ public class DateValue extends Value {
     if (isNull()) {
       throw new NullValueException("This object is null");
     }
-    return month;
+    return getMonth(epochDay);
   }
 
   /**
@@ -258,7 +341,21 @@ public class DateValue extends Value {
     if (isNull()) {
       throw new NullValueException("This object is null");
     }
-    return dayOfMonth;
+    return getDayOfMonth(epochDay);
+  }
+
+  /**
+   * Returns the ISO day of week, from 1 (Monday) to 7 (Sunday).
+   *
+   * @return The day of week.
+   *
+   * @throws NullValueException Thrown when this Value is NULL_VALUE.
+   */
+  public int getDayOfWeek() {
+    if (isNull()) {
+      throw new NullValueException("This object is null");
+    }
+    return getDayOfWeek(epochDay);
   }
 
   /**
@@ -266,6 +363,8 @@ public class DateValue extends Value {
    */
   @Override
   protected String innerToQueryString() {
-    return "DATE '" + year + "-" + (month + 1) + "-" + dayOfMonth + "'";
+    long fields = toFields(epochDay);
+    return "DATE '" + (fields >> 9) + "-" + (((fields >> 5) & 15) + 1) + "-" + (fields & 31)
+        + "'";
   }
 }
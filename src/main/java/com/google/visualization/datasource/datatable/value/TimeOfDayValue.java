@@ -19,7 +19,9 @@ import java.time.LocalTime;
 
 /**
  * A value of type time-of-day.
- * Time is represented internally by four fields: hours, minutes, seconds and milliseconds.
+ * Time is represented internally by a single value: the number of milliseconds since midnight.
+ * Comparing, hashing and extracting the hours, minutes, seconds and milliseconds are done with
+ * integer arithmetic on that value.
  *
  * @author Hillel M.
  */
@@ -40,36 +42,48 @@ public class TimeOfDayValue extends Value {
   }
 
   /**
-   * Underlying value: hours (24 hours).
+   * The number of milliseconds in a day.
    */
-  private int hours;
+  private static final int MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
 
   /**
-   * Underlying value: minutes (60 minutes).
-   */
-  private int minutes;
-
-  /**
-   * Underlying value: seconds (60 seconds).
-   */
-  private int seconds;
-
-  /**
-   * Underlying value: milliseconds (1000 milliseconds).
+   * Returns the time of day value of the given number of milliseconds since midnight.
+   *
+   * @param millisOfDay The number of milliseconds since midnight.
+   *
+   * @return The time of day value.
+   *
+   * @throws IllegalArgumentException Thrown when the number of milliseconds is negative or is
+   *     a day or more.
    */
-  private int milliseconds;
+  public static TimeOfDayValue fromMillisOfDay(int millisOfDay) {
+    if ((millisOfDay < 0) || (millisOfDay >= MILLIS_PER_DAY)) {
+      throw new IllegalArgumentException("This milliseconds of day value is invalid: "
+          + millisOfDay);
+    }
+    return new TimeOfDayValue(millisOfDay);
+  }
 
   /**
-   * The hashCode for this TimeOfDayValue. The hashCode of NULL_VALUE is zero.
+   * Underlying value: the number of milliseconds since midnight.
    */
-  private Integer hashCode = null;
+  private final int millisOfDay;
 
   /**
    * Creates a new time value. This constructor is private and is used only to
    * create a NULL_VALUE for this class.
    */
   private TimeOfDayValue() {
-    hashCode = 0;
+    millisOfDay = 0;
+  }
+
+  /**
+   * Creates a new time value of the given number of milliseconds since midnight.
+   *
+   * @param millisOfDay The number of milliseconds since midnight.
+   */
+  private TimeOfDayValue(int millisOfDay) {
+    this.millisOfDay = millisOfDay;
   }
 
   /**
@@ -118,31 +132,17 @@ public class TimeOfDayValue extends Value {
           + milliseconds);
     }
     // Assign internal variables.
-    this.hours = hours;
-    this.minutes = minutes;
-    this.seconds = seconds;
-    this.milliseconds = milliseconds;
+    this.millisOfDay = ((hours * 60 + minutes) * 60 + seconds) * 1000 + milliseconds;
   }
 
   /**
-   * Creates a new instance based on the given {@code GregorianCalendar}.
-   * The given calendar's time zone must be set to "GMT" as a precondition to
-   * use this constructor.
-   * Note: The date time values: hour, minute, second and millisecond
-   * correspond to the values returned by calendar.get(field) of the given
-   * calendar.
+   * Creates a new instance based on the given {@code LocalTime}. Sub-millisecond precision is
+   * dropped.
    *
-   * @param localTime from which to extract this instance
-   *     values: hour, minutes, seconds and milliseconds.
-   *
-   * @throws IllegalArgumentException When calendar time zone is not set
-   *     to GMT.
+   * @param localTime The time of day.
    */
   public TimeOfDayValue(final LocalTime localTime) {
-    this.hours = localTime.getHour();
-    this.minutes = localTime.getMinute();
-    this.seconds = localTime.getSecond();
-    this.milliseconds = localTime.getNano() / 1000000;
+    this.millisOfDay = (int) (localTime.toNanoOfDay() / 1000000);
   }
 
   @Override
@@ -160,10 +160,10 @@ public class TimeOfDayValue extends Value {
     if (this == NULL_VALUE) {
       return "null";
     }
-   String result = String.format("%1$02d:%2$02d:%3$02d", hours, minutes,
-       seconds);
-    if (milliseconds > 0) {
-      result += "." + String.format("%1$3d", milliseconds);
+   String result = String.format("%1$02d:%2$02d:%3$02d", getHoursValue(), getMinutesValue(),
+       getSecondsValue());
+    if (getMillisecondsValue() > 0) {
+      result += "." + String.format("%1$3d", getMillisecondsValue());
     }
     return result;
   }
@@ -197,48 +197,17 @@ public class TimeOfDayValue extends Value {
     if (otherTimeOfDay.isNull()) {
       return 1;
     }
-    // Compare hours.
-    if (this.hours > otherTimeOfDay.hours) {
-      return 1;
-    } else if (this.hours < otherTimeOfDay.hours) {
-      return -1;
-    }
-    // Compare minutes.
-    if (this.minutes > otherTimeOfDay.minutes) {
-      return 1;
-    } else if (this.minutes < otherTimeOfDay.minutes) {
-      return -1;
-    }
-    // Compare seconds.
-    if (this.seconds > otherTimeOfDay.seconds) {
-      return 1;
-    } else if (this.seconds < otherTimeOfDay.seconds) {
-      return -1;
-    }
-    // Compare milliseconds.
-    if (this.milliseconds > otherTimeOfDay.milliseconds) {
-      return 1;
-    } else if (this.milliseconds < otherTimeOfDay.milliseconds) {
-      return -1;
-    }
-    // Equal Values.
-    return 0;
+    return (millisOfDay < otherTimeOfDay.millisOfDay)
+        ? -1 : ((millisOfDay == otherTimeOfDay.millisOfDay) ? 0 : 1);
   }
 
 
   @Override
   public int hashCode() {
-    if (null != hashCode) {
-      return hashCode;
+    if (isNull()) {
+      return 0;
     }
-    // Compute and store hashCode for this TimeOfDayValue - done only once.
-    int hash = 1193; // Some arbitrary prime number.
-    hash = (hash * 13) + hours;
-    hash = (hash * 13) + minutes;
-    hash = (hash * 13) + seconds;
-    hash = (hash * 13) + milliseconds;
-    hashCode = hash;
-    return hashCode;
+    return 1193 + millisOfDay * 13; // 1193 is some arbitrary prime number.
   }
 
   /**
@@ -250,7 +219,57 @@ public class TimeOfDayValue extends Value {
     if (isNull()) {
       return null;
     }
-    return LocalTime.of(hours, minutes, seconds, milliseconds * 1000000);
+    return LocalTime.ofNanoOfDay(millisOfDay * 1000000L);
+  }
+
+  /**
+   * Returns the number of milliseconds since midnight.
+   *
+   * @return The number of milliseconds since midnight.
+   *
+   * @throws NullValueException Thrown when this Value is NULL_VALUE.
+   */
+  public int getMillisOfDay() {
+    if (isNull()) {
+      throw new NullValueException("This object is null");
+    }
+    return millisOfDay;
+  }
+
+  /**
+   * Returns the hours, without checking for null.
+   *
+   * @return The hours.
+   */
+  private int getHoursValue() {
+    return millisOfDay / (60 * 60 * 1000);
+  }
+
+  /**
+   * Returns the minutes, without checking for null.
+   *
+   * @return The minutes.
+   */
+  private int getMinutesValue() {
+    return (millisOfDay / (60 * 1000)) % 60;
+  }
+
+  /**
+   * Returns the seconds, without checking for null.
+   *
+   * @return The seconds.
+   */
+  private int getSecondsValue() {
+    return (millisOfDay / 1000) % 60;
+  }
+
+  /**
+   * Returns the milliseconds, without checking for null.
+   *
+   * @return The milliseconds.
+   */
+  private int getMillisecondsValue() {
+    return millisOfDay % 1000;
   }
 
   /**
@@ -264,7 +283,7 @@ public class TimeOfDayValue extends Value {
     if (isNull()) {
       throw new NullValueException("This object is null");
     }
-    return hours;
+    return getHoursValue();
   }
 
   /**
@@ -278,7 +297,7 @@ public class TimeOfDayValue extends Value {
     if (isNull()) {
       throw new NullValueException("This object is null");
     }
-    return minutes;
+    return getMinutesValue();
   }
 
   /**
@@ -292,7 +311,7 @@ public class TimeOfDayValue extends Value {
     if (isNull()) {
       throw new NullValueException("This object is null");
     }
-    return seconds;
+    return getSecondsValue();
   }
 
   /**
@@ -306,7 +325,7 @@ public class TimeOfDayValue extends Value {
     if (isNull()) {
       throw new NullValueException("This object is null");
     }
-    return milliseconds;
+    return getMillisecondsValue();
   }
 
   /**
@@ -314,9 +333,10 @@ public class TimeOfDayValue extends Value {
    */
   @Override
   protected String innerToQueryString() {
-    String s = "TIMEOFDAY '" + hours + ":" + minutes + ":" + seconds;
-    if (milliseconds != 0) {
-      s += "." + milliseconds;
+    String s = "TIMEOFDAY '" + getHoursValue() + ":" + getMinutesValue() + ":"
+        + getSecondsValue();
+    if (getMillisecondsValue() != 0) {
+      s += "." + getMillisecondsValue();
     }
     s += "'";
     return s;
@@ -52,6 +52,9 @@ public abstract class Value implements Comparable<Value> {
    */
   @Override
   public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
     if ((null == o) || (this.getClass() != o.getClass())) {
       return false;
     }
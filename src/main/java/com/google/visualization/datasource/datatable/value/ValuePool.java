@@ -0,0 +1,195 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.datatable.value;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+
+/**
+ * A bounded pool of shared text and number values, used to intern the values of a table while
+ * it is being built. Equal text values and equal integral number values returned by the pool
+ * are the same instance, so repeated values such as the categories of a dimension column are
+ * stored once, and comparing them for equality short-circuits on identity.
+ *
+ * The pool holds at most the given number of distinct text values. Once it is full, new text
+ * values are returned as is and are not pooled. Integral number values are pooled only in a
+ * fixed range around zero.
+ *
+ * A pool is meant to be scoped to a single table or ingest session, and is not thread-safe.
+ */
+public class ValuePool {
+
+  /**
+   * The default maximal number of pooled text values.
+   */
+  public static final int DEFAULT_MAX_TEXT_VALUES = 1 << 16;
+
+  /**
+   * The smallest pooled integral number.
+   */
+  private static final int MIN_POOLED_NUMBER = -1024;
+
+  /**
+   * The largest pooled integral number.
+   */
+  private static final int MAX_POOLED_NUMBER = 9999;
+
+  /**
+   * The raw bits of negative zero, which is not pooled so that it keeps its sign.
+   */
+  private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+
+  /**
+   * The maximal number of pooled text values.
+   */
+  private final int maxTextValues;
+
+  /**
+   * The pooled text values, by text.
+   */
+  private final Map<String, TextValue> textValues = Maps.newHashMap();
+
+  /**
+   * The pooled number values, indexed by value minus MIN_POOLED_NUMBER. Created when the first
+   * number is pooled.
+   */
+  private NumberValue[] numberValues = null;
+
+  /**
+   * Creates a pool holding at most {@link #DEFAULT_MAX_TEXT_VALUES} text values.
+   */
+  public ValuePool() {
+    this(DEFAULT_MAX_TEXT_VALUES);
+  }
+
+  /**
+   * Creates a pool holding at most the given number of text values.
+   *
+   * @param maxTextValues The maximal number of pooled text values.
+   */
+  public ValuePool(int maxTextValues) {
+    this.maxTextValues = maxTextValues;
+  }
+
+  /**
+   * Returns a text value of the given text, pooled if possible.
+   *
+   * @param text The text.
+   *
+   * @return A text value of the given text.
+   */
+  public TextValue getTextValue(String text) {
+    TextValue result = textValues.get(text);
+    if (result == null) {
+      result = new TextValue(text);
+      if (textValues.size() < maxTextValues) {
+        textValues.put(text, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a number value of the given number, pooled if it is integral and in the pooled range.
+   *
+   * @param number The number.
+   *
+   * @return A number value of the given number.
+   */
+  public NumberValue getNumberValue(double number) {
+    if (!isPooled(number)) {
+      return new NumberValue(number);
+    }
+    return poolNumberValue(number, null);
+  }
+
+  /**
+   * Returns the pooled number value of the given pooled number. If there is none yet, the given
+   * candidate, or a new value if the candidate is null, becomes the pooled value.
+   *
+   * @param number The number, which must be pooled.
+   * @param candidate A number value of the given number, or null.
+   *
+   * @return The pooled number value.
+   */
+  private NumberValue poolNumberValue(double number, NumberValue candidate) {
+    if (numberValues == null) {
+      numberValues = new NumberValue[MAX_POOLED_NUMBER - MIN_POOLED_NUMBER + 1];
+    }
+    int index = (int) number - MIN_POOLED_NUMBER;
+    NumberValue result = numberValues[index];
+    if (result == null) {
+      result = (candidate == null) ? new NumberValue(number) : candidate;
+      numberValues[index] = result;
+    }
+    return result;
+  }
+
+  /**
+   * Returns a value equal to the given value, which is a pooled instance if the value is a text
+   * value or a pooled number value. Other values are returned as is.
+   *
+   * @param value The value.
+   *
+   * @return A value equal to the given value.
+   */
+  public Value intern(Value value) {
+    if (value.isNull()) {
+      return value;
+    }
+    switch (value.getType()) {
+      case TEXT:
+        TextValue textValue = (TextValue) value;
+        TextValue pooledText = textValues.get(textValue.getValue());
+        if (pooledText != null) {
+          return pooledText;
+        }
+        if (textValues.size() < maxTextValues) {
+          textValues.put(textValue.getValue(), textValue);
+        }
+        return textValue;
+      case NUMBER:
+        NumberValue numberValue = (NumberValue) value;
+        double number = numberValue.getValue();
+        return isPooled(number) ? poolNumberValue(number, numberValue) : value;
+      default:
+        return value;
+    }
+  }
+
+  /**
+   * Returns the number of pooled text values.
+   *
+   * @return The number of pooled text values.
+   */
+  public int getNumberOfTextValues() {
+    return textValues.size();
+  }
+
+  /**
+   * Returns whether the given number is pooled, i.e., whether it is an integer in the pooled
+   * range other than negative zero.
+   *
+   * @param number The number.
+   *
+   * @return Whether the given number is pooled.
+   */
+  private static boolean isPooled(double number) {
+    return (number >= MIN_POOLED_NUMBER) && (number <= MAX_POOLED_NUMBER)
+        && (number == (int) number)
+        && (Double.doubleToRawLongBits(number) != NEGATIVE_ZERO_BITS);
+  }
+}
@@ -63,7 +63,7 @@ public abstract class AbstractColumn {
    * @return The value of the column in the given row.
    */
   public Value getValue(ColumnLookup lookup, TableRow row) {
-    return getCell(lookup, row).getValue();
+    return row.getValue(lookup.getColumnIndex(this));
   }
   
   /**
@@ -76,7 +76,48 @@ public abstract class AbstractColumn {
    */
   public TableCell getCell(ColumnLookup lookup, TableRow row) {
     int columnIndex = lookup.getColumnIndex(this);
-    return row.getCells().get(columnIndex);
+    return row.getCell(columnIndex);
+  }
+
+  /**
+   * Returns the value of the column in the row at the given index of the given table. This
+   * reads the value directly from the table, without going through row or cell objects.
+   *
+   * @param lookup The column lookup.
+   * @param table The table containing the row.
+   * @param rowIndex The index of the row.
+   *
+   * @return The value of the column in the given row.
+   */
+  public Value getValue(ColumnLookup lookup, DataTable table, int rowIndex) {
+    return table.getValue(rowIndex, lookup.getColumnIndex(this));
+  }
+
+  /**
+   * Returns the cell of the column in the row at the given index of the given table.
+   *
+   * @param lookup The column lookup.
+   * @param table The table containing the row.
+   * @param rowIndex The index of the row.
+   *
+   * @return The cell of the column in the given row.
+   */
+  public TableCell getCell(ColumnLookup lookup, DataTable table, int rowIndex) {
+    return table.getCell(rowIndex, lookup.getColumnIndex(this));
+  }
+
+  /**
+   * Binds this column to the columns of a column lookup. The column is resolved by the lookup
+   * once, so that its values can then be read from the rows without resolving it again. The
+   * bound column has the same values as {@link #getValue(ColumnLookup, DataTable, int)} with the
+   * given lookup.
+   *
+   * @param lookup The column lookup.
+   *
+   * @return The bound column.
+   */
+  public BoundColumn bind(ColumnLookup lookup) {
+    return new BoundColumn(lookup.getColumnIndex(this));
   }
 
   /**
@@ -0,0 +1,144 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query;
+
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.query.scalarfunction.ScalarFunction;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A column bound to the columns of a table by a column lookup (see
+ * {@link AbstractColumn#bind(ColumnLookup)}). The column is resolved once, when it is bound: its
+ * value in a row is then read at a fixed column index, or computed by a scalar function from the
+ * values of bound inner columns, without looking up column IDs for each row.
+ *
+ * A bound column is immutable, and is valid for every table that has the columns of the lookup
+ * it was bound by, at the same indices.
+ */
+public class BoundColumn {
+
+  /**
+   * The index of the column, or -1 if the value of the column is computed.
+   */
+  private final int columnIndex;
+
+  /**
+   * The scalar function that computes the value of the column, or null if the value is read at
+   * the column index.
+   */
+  private final ScalarFunction function;
+
+  /**
+   * The bound inner columns whose values are the parameters of the scalar function, or null if
+   * the value is read at the column index.
+   */
+  private final BoundColumn[] functionColumns;
+
+  /**
+   * Creates a bound column whose value is read at the given column index.
+   *
+   * @param columnIndex The index of the column.
+   */
+  /* package */ BoundColumn(int columnIndex) {
+    this.columnIndex = columnIndex;
+    this.function = null;
+    this.functionColumns = null;
+  }
+
+  /**
+   * Creates a bound column whose value is computed by a scalar function from the values of bound
+   * inner columns.
+   *
+   * @param function The scalar function.
+   * @param functionColumns The bound inner columns, in the order of the function's parameters.
+   */
+  /* package */ BoundColumn(ScalarFunction function, BoundColumn[] functionColumns) {
+    this.columnIndex = -1;
+    this.function = function;
+    this.functionColumns = functionColumns;
+  }
+
+  /**
+   * Returns the index at which the value of this column is read.
+   *
+   * @return The index of the column, or -1 if the value of the column is computed.
+   */
+  public int getColumnIndex() {
+    return columnIndex;
+  }
+
+  /**
+   * Returns whether the value of this column is computed by a scalar function, rather than read
+   * at a column index.
+   *
+   * @return True if the value of this column is computed.
+   */
+  public boolean isComputed() {
+    return function != null;
+  }
+
+  /**
+   * Returns the value of this column in the row at the given index of the given table.
+   *
+   * @param table The table containing the row.
+   * @param rowIndex The index of the row.
+   *
+   * @return The value of this column in the given row.
+   */
+  public Value getValue(DataTable table, int rowIndex) {
+    if (function == null) {
+      return table.getValue(rowIndex, columnIndex);
+    }
+    Value[] functionParameters = new Value[functionColumns.length];
+    for (int i = 0; i < functionColumns.length; i++) {
+      functionParameters[i] = functionColumns[i].getValue(table, rowIndex);
+    }
+    return evaluate(functionParameters);
+  }
+
+  /**
+   * Returns the value of this column in the given row.
+   *
+   * @param row The row.
+   *
+   * @return The value of this column in the given row.
+   */
+  public Value getValue(TableRow row) {
+    if (function == null) {
+      return row.getValue(columnIndex);
+    }
+    Value[] functionParameters = new Value[functionColumns.length];
+    for (int i = 0; i < functionColumns.length; i++) {
+      functionParameters[i] = functionColumns[i].getValue(row);
+    }
+    return evaluate(functionParameters);
+  }
+
+  /**
+   * Evaluates the scalar function on the given parameters.
+   *
+   * @param functionParameters The values of the inner columns.
+   *
+   * @return The value of the scalar function.
+   */
+  private Value evaluate(Value[] functionParameters) {
+    List<Value> parameters = Arrays.asList(functionParameters);
+    return function.evaluate(parameters);
+  }
+}
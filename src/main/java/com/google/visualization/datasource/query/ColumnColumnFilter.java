@@ -40,6 +40,17 @@ public class ColumnColumnFilter extends ComparisonFilter {
    */
   private AbstractColumn secondColumn;
 
+  /**
+   * The first column bound to the columns of a table, or null if this filter is not bound (see
+   * {@link #bind(DataTable)}).
+   */
+  private BoundColumn boundFirstColumn = null;
+
+  /**
+   * The second column bound to the columns of a table, or null if this filter is not bound.
+   */
+  private BoundColumn boundSecondColumn = null;
+
   /**
    * Constructs a new ColumnColumnFilter on two given columns, and an operator.
    *
@@ -69,12 +80,64 @@ public class ColumnColumnFilter extends ComparisonFilter {
    */
   @Override
   public boolean isMatch(DataTable table, TableRow row) {
+    if (boundFirstColumn != null) {
+      return isOperatorMatch(boundFirstColumn.getValue(row), boundSecondColumn.getValue(row));
+    }
     DataTableColumnLookup lookup = new DataTableColumnLookup(table);
     Value firstValue = firstColumn.getValue(lookup, row);
     Value secondValue = secondColumn.getValue(lookup, row);
     return isOperatorMatch(firstValue, secondValue);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isMatch(DataTable table, int rowIndex) {
+    if (boundFirstColumn != null) {
+      return isOperatorMatch(boundFirstColumn.getValue(table, rowIndex),
+          boundSecondColumn.getValue(table, rowIndex));
+    }
+    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
+    Value firstValue = firstColumn.getValue(lookup, table, rowIndex);
+    Value secondValue = secondColumn.getValue(lookup, table, rowIndex);
+    return isOperatorMatch(firstValue, secondValue);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The values of the columns are compared in a single loop over the rows. An unbound filter
+   * is bound to the table first.
+   */
+  @Override
+  public int filterRows(DataTable table, int[] rowIndices, int numRows) {
+    if (boundFirstColumn == null) {
+      return bind(table).filterRows(table, rowIndices, numRows);
+    }
+    int numMatchingRows = 0;
+    for (int i = 0; i < numRows; i++) {
+      int rowIndex = rowIndices[i];
+      if (isOperatorMatch(boundFirstColumn.getValue(table, rowIndex),
+          boundSecondColumn.getValue(table, rowIndex))) {
+        rowIndices[numMatchingRows++] = rowIndex;
+      }
+    }
+    return numMatchingRows;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public QueryFilter bind(DataTable table) {
+    ColumnColumnFilter result = new ColumnColumnFilter(firstColumn, secondColumn, operator);
+    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
+    result.boundFirstColumn = firstColumn.bind(lookup);
+    result.boundSecondColumn = secondColumn.bind(lookup);
+    return result;
+  }
+
   /**
    * Returns all the simple column IDs this filter uses, in this case
    * the simple column IDs of firstColumn and secondColumn.
@@ -34,6 +34,12 @@ public class ColumnIsNullFilter extends QueryFilter {
    */
   private AbstractColumn column;
 
+  /**
+   * The column bound to the columns of a table, or null if this filter is not bound (see
+   * {@link #bind(DataTable)}).
+   */
+  private BoundColumn boundColumn = null;
+
   /**
    * Constructs a new instance of this class with the given column ID.
    *
@@ -85,10 +91,56 @@ public class ColumnIsNullFilter extends QueryFilter {
    */
   @Override
   public boolean isMatch(DataTable table, TableRow row) {
+    if (boundColumn != null) {
+      return boundColumn.getValue(row).isNull();
+    }
     DataTableColumnLookup lookup = new DataTableColumnLookup(table);
     return column.getValue(lookup, row).isNull();
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isMatch(DataTable table, int rowIndex) {
+    if (boundColumn != null) {
+      return boundColumn.getValue(table, rowIndex).isNull();
+    }
+    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
+    return column.getValue(lookup, table, rowIndex).isNull();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The values of the column are checked in a single loop over the rows. An unbound filter is
+   * bound to the table first.
+   */
+  @Override
+  public int filterRows(DataTable table, int[] rowIndices, int numRows) {
+    if (boundColumn == null) {
+      return bind(table).filterRows(table, rowIndices, numRows);
+    }
+    int numMatchingRows = 0;
+    for (int i = 0; i < numRows; i++) {
+      int rowIndex = rowIndices[i];
+      if (boundColumn.getValue(table, rowIndex).isNull()) {
+        rowIndices[numMatchingRows++] = rowIndex;
+      }
+    }
+    return numMatchingRows;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public QueryFilter bind(DataTable table) {
+    ColumnIsNullFilter result = new ColumnIsNullFilter(column);
+    result.boundColumn = column.bind(new DataTableColumnLookup(table));
+    return result;
+  }
+
   /**
    * {@inheritDoc}
    */
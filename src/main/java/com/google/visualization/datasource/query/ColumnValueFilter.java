@@ -17,7 +17,9 @@ package com.google.visualization.datasource.query;
 import com.google.common.collect.Sets;
 import com.google.visualization.datasource.datatable.DataTable;
 import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.TextDictionary;
 import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
 
 import java.util.List;
 import java.util.Set;
@@ -45,6 +47,26 @@ public class ColumnValueFilter extends ComparisonFilter {
    */
   private boolean isComparisonOrderReversed;
 
+  /**
+   * The column bound to the columns of a table, or null if this filter is not bound (see
+   * {@link #bind(DataTable)}).
+   */
+  private BoundColumn boundColumn = null;
+
+  /**
+   * The comparison of the column value with the constant value, compiled when this filter is
+   * bound, or null if this filter is not bound.
+   */
+  private ValuePredicate predicate = null;
+
+  /**
+   * The index of the column in the table this filter is bound to, if it is a text column of
+   * the table whose values are compared by their order with a text constant, or -1 otherwise.
+   * The rows of such a column are filtered by the codes of its natural order text dictionary,
+   * when the table has one (see {@link DataTable#hasTextDictionary(int, java.util.Locale)}).
+   */
+  private int textColumnIndex = -1;
+
   /**
    * Constructs a new ColumnValueFilter on a given column, constant value,
    * operator, and isComparisonOrderReversed.
@@ -91,12 +113,84 @@ public class ColumnValueFilter extends ComparisonFilter {
    */
   @Override
   public boolean isMatch(DataTable table, TableRow row) {
-    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
-    Value columnValue = column.getValue(lookup, row);
+    if (boundColumn != null) {
+      return predicate.isMatch(boundColumn.getValue(row));
+    }
+    Value columnValue = column.getValue(new DataTableColumnLookup(table), row);
     return isComparisonOrderReversed ? isOperatorMatch(value, columnValue) :
         isOperatorMatch(columnValue, value);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isMatch(DataTable table, int rowIndex) {
+    if (boundColumn != null) {
+      return predicate.isMatch(boundColumn.getValue(table, rowIndex));
+    }
+    Value columnValue = column.getValue(new DataTableColumnLookup(table), table, rowIndex);
+    return isComparisonOrderReversed ? isOperatorMatch(value, columnValue) :
+        isOperatorMatch(columnValue, value);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The values of the column are compared in a single loop over the rows. An unbound filter
+   * is bound to the table first. If the column is a text column with a natural order text
+   * dictionary, the codes of the matching texts are looked up once, and the codes of the rows
+   * are compared instead of their texts.
+   */
+  @Override
+  public int filterRows(DataTable table, int[] rowIndices, int numRows) {
+    if (boundColumn == null) {
+      return bind(table).filterRows(table, rowIndices, numRows);
+    }
+    int numMatchingRows = 0;
+    if ((textColumnIndex >= 0) && table.hasTextDictionary(textColumnIndex, null)) {
+      TextDictionary dictionary = table.getTextDictionary(textColumnIndex, null);
+      ValuePredicate.CodeRange matchingCodes = predicate.getMatchingCodes(dictionary);
+      for (int i = 0; i < numRows; i++) {
+        int rowIndex = rowIndices[i];
+        if (matchingCodes.contains(dictionary.getCode(rowIndex))) {
+          rowIndices[numMatchingRows++] = rowIndex;
+        }
+      }
+      return numMatchingRows;
+    }
+    for (int i = 0; i < numRows; i++) {
+      int rowIndex = rowIndices[i];
+      if (predicate.isMatch(boundColumn.getValue(table, rowIndex))) {
+        rowIndices[numMatchingRows++] = rowIndex;
+      }
+    }
+    return numMatchingRows;
+  }
+
+  /**
+   * Returns an equal filter whose column is bound to the given table, and whose comparison is
+   * compiled: regular expressions and LIKE patterns are compiled once, rather than for each
+   * row, and the constant value is prepared for comparison.
+   *
+   * @param table The table.
+   *
+   * @return The bound filter.
+   */
+  @Override
+  public QueryFilter bind(DataTable table) {
+    ColumnValueFilter result =
+        new ColumnValueFilter(column, value, operator, isComparisonOrderReversed);
+    result.boundColumn = column.bind(new DataTableColumnLookup(table));
+    result.predicate = ValuePredicate.create(result, value, isComparisonOrderReversed);
+    if (!result.boundColumn.isComputed() && result.predicate.hasMatchingCodes()
+        && (table.getColumnDescription(result.boundColumn.getColumnIndex()).getType()
+            == ValueType.TEXT)) {
+      result.textColumnIndex = result.boundColumn.getColumnIndex();
+    }
+    return result;
+  }
+
   /**
    * Returns all the columnIds this filter uses, in this case the simple column
    * IDs of the filter's column.
@@ -0,0 +1,363 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.value.Value;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A filter that checks whether a column value lies in a range of constant values, i.e., an AND
+ * of comparison filters (see {@link ColumnValueFilter}) on the same column. A row matches if its
+ * value in the column has the same type as the bounds, and is greater than (or equal to) the
+ * lower bound and less than (or equal to) the upper bound, exactly as it would match the
+ * comparison filters of the bounds. Either bound may be missing.
+ *
+ * A range whose lower bound is greater than its upper bound, or whose bounds have different
+ * types, is empty: it matches no row (see {@link #isEmpty()}).
+ *
+ * The query language has no such filter: it is created by {@link FilterOptimizer}.
+ */
+public class ColumnValueRangeFilter extends QueryFilter {
+
+  /**
+   * The column to check.
+   */
+  private AbstractColumn column;
+
+  /**
+   * The lower bound, or null if the range has no lower bound.
+   */
+  private Value lowerBound;
+
+  /**
+   * Whether a value equal to the lower bound is in the range.
+   */
+  private boolean isLowerBoundInclusive;
+
+  /**
+   * The upper bound, or null if the range has no upper bound.
+   */
+  private Value upperBound;
+
+  /**
+   * Whether a value equal to the upper bound is in the range.
+   */
+  private boolean isUpperBoundInclusive;
+
+  /**
+   * Whether the range is empty.
+   */
+  private boolean isEmpty;
+
+  /**
+   * The column bound to the columns of a table, or null if this filter is not bound (see
+   * {@link #bind(DataTable)}).
+   */
+  private BoundColumn boundColumn = null;
+
+  /**
+   * Constructs a new ColumnValueRangeFilter on a given column and bounds.
+   *
+   * @param column The column to check.
+   * @param lowerBound The lower bound, or null if the range has no lower bound.
+   * @param isLowerBoundInclusive Whether a value equal to the lower bound is in the range.
+   * @param upperBound The upper bound, or null if the range has no upper bound.
+   * @param isUpperBoundInclusive Whether a value equal to the upper bound is in the range.
+   */
+  public ColumnValueRangeFilter(AbstractColumn column, Value lowerBound,
+      boolean isLowerBoundInclusive, Value upperBound, boolean isUpperBoundInclusive) {
+    this.column = column;
+    this.lowerBound = lowerBound;
+    this.isLowerBoundInclusive = isLowerBoundInclusive;
+    this.upperBound = upperBound;
+    this.isUpperBoundInclusive = isUpperBoundInclusive;
+    if ((lowerBound == null) || (upperBound == null)) {
+      isEmpty = false;
+    } else if (lowerBound.getType() != upperBound.getType()) {
+      isEmpty = true;
+    } else {
+      int result = lowerBound.compareTo(upperBound);
+      isEmpty = (result > 0)
+          || ((result == 0) && !(isLowerBoundInclusive && isUpperBoundInclusive));
+    }
+  }
+
+  /**
+   * Returns whether the given column value is in the range.
+   *
+   * @param value The column value.
+   *
+   * @return True if the value is in the range.
+   */
+  private boolean isInRange(Value value) {
+    if (isEmpty) {
+      return false;
+    }
+    if (lowerBound != null) {
+      if (value.getType() != lowerBound.getType()) {
+        return false;
+      }
+      int result = value.compareTo(lowerBound);
+      if ((result < 0) || ((result == 0) && !isLowerBoundInclusive)) {
+        return false;
+      }
+    }
+    if (upperBound != null) {
+      if (value.getType() != upperBound.getType()) {
+        return false;
+      }
+      int result = value.compareTo(upperBound);
+      if ((result > 0) || ((result == 0) && !isUpperBoundInclusive)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isMatch(DataTable table, TableRow row) {
+    if (boundColumn != null) {
+      return isInRange(boundColumn.getValue(row));
+    }
+    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
+    return isInRange(column.getValue(lookup, row));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isMatch(DataTable table, int rowIndex) {
+    if (boundColumn != null) {
+      return isInRange(boundColumn.getValue(table, rowIndex));
+    }
+    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
+    return isInRange(column.getValue(lookup, table, rowIndex));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The values of the column are checked in a single loop over the rows, and not at all if the
+   * range is empty. An unbound filter is bound to the table first.
+   */
+  @Override
+  public int filterRows(DataTable table, int[] rowIndices, int numRows) {
+    if (isEmpty) {
+      return 0;
+    }
+    if (boundColumn == null) {
+      return bind(table).filterRows(table, rowIndices, numRows);
+    }
+    int numMatchingRows = 0;
+    for (int i = 0; i < numRows; i++) {
+      int rowIndex = rowIndices[i];
+      if (isInRange(boundColumn.getValue(table, rowIndex))) {
+        rowIndices[numMatchingRows++] = rowIndex;
+      }
+    }
+    return numMatchingRows;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public QueryFilter bind(DataTable table) {
+    ColumnValueRangeFilter result = new ColumnValueRangeFilter(column, lowerBound,
+        isLowerBoundInclusive, upperBound, isUpperBoundInclusive);
+    result.boundColumn = column.bind(new DataTableColumnLookup(table));
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Set<String> getAllColumnIds() {
+    return Sets.newHashSet(column.getAllSimpleColumnIds());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<ScalarFunctionColumn> getScalarFunctionColumns() {
+    return column.getAllScalarFunctionColumns();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected List<AggregationColumn> getAggregationColumns() {
+    return column.getAllAggregationColumns();
+  }
+
+  /**
+   * Returns the column associated with this ColumnValueRangeFilter.
+   *
+   * @return The column associated with this ColumnValueRangeFilter.
+   */
+  public AbstractColumn getColumn() {
+    return column;
+  }
+
+  /**
+   * Returns the lower bound of the range.
+   *
+   * @return The lower bound, or null if the range has no lower bound.
+   */
+  public Value getLowerBound() {
+    return lowerBound;
+  }
+
+  /**
+   * Returns whether a value equal to the lower bound is in the range.
+   *
+   * @return Whether a value equal to the lower bound is in the range.
+   */
+  public boolean isLowerBoundInclusive() {
+    return isLowerBoundInclusive;
+  }
+
+  /**
+   * Returns the upper bound of the range.
+   *
+   * @return The upper bound, or null if the range has no upper bound.
+   */
+  public Value getUpperBound() {
+    return upperBound;
+  }
+
+  /**
+   * Returns whether a value equal to the upper bound is in the range.
+   *
+   * @return Whether a value equal to the upper bound is in the range.
+   */
+  public boolean isUpperBoundInclusive() {
+    return isUpperBoundInclusive;
+  }
+
+  /**
+   * Returns whether the range is empty, i.e., whether this filter matches no row.
+   *
+   * @return True if the range is empty.
+   */
+  public boolean isEmpty() {
+    return isEmpty;
+  }
+
+  /**
+   * Returns whether the range holds a single value, i.e., whether its bounds are equal and
+   * inclusive, so that this filter is an equality with the bounds.
+   *
+   * @return True if the range holds a single value.
+   */
+  public boolean isSingleValue() {
+    return !isEmpty && (lowerBound != null) && (upperBound != null)
+        && (lowerBound.compareTo(upperBound) == 0);
+  }
+
+  /**
+   * Returns the query string of the equivalent AND of comparison filters, or of the equivalent
+   * equality if the range holds a single value.
+   *
+   * @return The query string.
+   */
+  @Override
+  public String toQueryString() {
+    if (isSingleValue()) {
+      return column.toQueryString() + " = " + lowerBound.toQueryString();
+    }
+    List<String> subFilterStrings = Lists.newArrayList();
+    if (lowerBound != null) {
+      subFilterStrings.add(column.toQueryString() + (isLowerBoundInclusive ? " >= " : " > ")
+          + lowerBound.toQueryString());
+    }
+    if (upperBound != null) {
+      subFilterStrings.add(column.toQueryString() + (isUpperBoundInclusive ? " <= " : " < ")
+          + upperBound.toQueryString());
+    }
+    if (subFilterStrings.size() == 1) {
+      return subFilterStrings.get(0);
+    }
+    return "(" + Joiner.on(") AND (").join(subFilterStrings) + ")";
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + ((column == null) ? 0 : column.hashCode());
+    result = prime * result + ((lowerBound == null) ? 0 : lowerBound.hashCode());
+    result = prime * result + (isLowerBoundInclusive ? 1231 : 1237);
+    result = prime * result + ((upperBound == null) ? 0 : upperBound.hashCode());
+    result = prime * result + (isUpperBoundInclusive ? 1231 : 1237);
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    ColumnValueRangeFilter other = (ColumnValueRangeFilter) obj;
+    if (column == null) {
+      if (other.column != null) {
+        return false;
+      }
+    } else if (!column.equals(other.column)) {
+      return false;
+    }
+    if (lowerBound == null) {
+      if (other.lowerBound != null) {
+        return false;
+      }
+    } else if (!lowerBound.equals(other.lowerBound)) {
+      return false;
+    }
+    if (isLowerBoundInclusive != other.isLowerBoundInclusive) {
+      return false;
+    }
+    if (upperBound == null) {
+      if (other.upperBound != null) {
+        return false;
+      }
+    } else if (!upperBound.equals(other.upperBound)) {
+      return false;
+    }
+    if (isUpperBoundInclusive != other.isUpperBoundInclusive) {
+      return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,220 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.value.Value;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A filter that checks whether a column value is one of a set of constant values, i.e., an OR of
+ * equality filters (see {@link ColumnValueFilter}) on the same column. A row matches if its value
+ * in the column equals one of the constant values, exactly as it would match an equality filter
+ * on that value: the value must have the same type as the constant value, and compare equal to
+ * it. The values are kept in a hash set, so the cost of matching a row does not depend on the
+ * number of values.
+ *
+ * The query language has no such filter: it is created by {@link FilterOptimizer}.
+ */
+public class ColumnValueSetFilter extends QueryFilter {
+
+  /**
+   * The column to check.
+   */
+  private AbstractColumn column;
+
+  /**
+   * The constant values, in the order they were given.
+   */
+  private ImmutableSet<Value> values;
+
+  /**
+   * The column bound to the columns of a table, or null if this filter is not bound (see
+   * {@link #bind(DataTable)}).
+   */
+  private BoundColumn boundColumn = null;
+
+  /**
+   * Constructs a new ColumnValueSetFilter on a given column and constant values.
+   *
+   * @param column The column to check.
+   * @param values The constant values the column value is compared to. Must not be empty.
+   */
+  public ColumnValueSetFilter(AbstractColumn column, Collection<Value> values) {
+    this.column = column;
+    this.values = ImmutableSet.copyOf(values);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isMatch(DataTable table, TableRow row) {
+    if (boundColumn != null) {
+      return values.contains(boundColumn.getValue(row));
+    }
+    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
+    return values.contains(column.getValue(lookup, row));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isMatch(DataTable table, int rowIndex) {
+    if (boundColumn != null) {
+      return values.contains(boundColumn.getValue(table, rowIndex));
+    }
+    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
+    return values.contains(column.getValue(lookup, table, rowIndex));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The values of the column are looked up in a single loop over the rows. An unbound filter is
+   * bound to the table first.
+   */
+  @Override
+  public int filterRows(DataTable table, int[] rowIndices, int numRows) {
+    if (boundColumn == null) {
+      return bind(table).filterRows(table, rowIndices, numRows);
+    }
+    int numMatchingRows = 0;
+    for (int i = 0; i < numRows; i++) {
+      int rowIndex = rowIndices[i];
+      if (values.contains(boundColumn.getValue(table, rowIndex))) {
+        rowIndices[numMatchingRows++] = rowIndex;
+      }
+    }
+    return numMatchingRows;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public QueryFilter bind(DataTable table) {
+    ColumnValueSetFilter result = new ColumnValueSetFilter(column, values);
+    result.boundColumn = column.bind(new DataTableColumnLookup(table));
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Set<String> getAllColumnIds() {
+    return Sets.newHashSet(column.getAllSimpleColumnIds());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<ScalarFunctionColumn> getScalarFunctionColumns() {
+    return column.getAllScalarFunctionColumns();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected List<AggregationColumn> getAggregationColumns() {
+    return column.getAllAggregationColumns();
+  }
+
+  /**
+   * Returns the column associated with this ColumnValueSetFilter.
+   *
+   * @return The column associated with this ColumnValueSetFilter.
+   */
+  public AbstractColumn getColumn() {
+    return column;
+  }
+
+  /**
+   * Returns the constant values associated with this ColumnValueSetFilter, in the order they
+   * were given.
+   *
+   * @return The constant values associated with this ColumnValueSetFilter.
+   */
+  public Set<Value> getValues() {
+    return values;
+  }
+
+  /**
+   * Returns the query string of the equivalent OR of equality filters.
+   *
+   * @return The query string.
+   */
+  @Override
+  public String toQueryString() {
+    List<String> subFilterStrings = Lists.newArrayList();
+    for (Value value : values) {
+      subFilterStrings.add(column.toQueryString() + " = " + value.toQueryString());
+    }
+    if (subFilterStrings.size() == 1) {
+      return subFilterStrings.get(0);
+    }
+    return "(" + Joiner.on(") OR (").join(subFilterStrings) + ")";
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + ((column == null) ? 0 : column.hashCode());
+    result = prime * result + ((values == null) ? 0 : values.hashCode());
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    ColumnValueSetFilter other = (ColumnValueSetFilter) obj;
+    if (column == null) {
+      if (other.column != null) {
+        return false;
+      }
+    } else if (!column.equals(other.column)) {
+      return false;
+    }
+    if (values == null) {
+      if (other.values != null) {
+        return false;
+      }
+    } else if (!values.equals(other.values)) {
+      return false;
+    }
+    return true;
+  }
+}
@@ -115,7 +115,19 @@ public abstract class ComparisonFilter extends QueryFilter {
    * @return True if s1 is "like" s2, in the sql-sense.
    */
   private boolean isLike(String s1, String s2) {
-    StringTokenizer tokenizer = new StringTokenizer(s2, "%_", true);
+    return s1.matches(getLikeRegexp(s2));
+  }
+
+  /**
+   * Returns the regular expression of a LIKE pattern, in which '%' and '_' are translated to
+   * '.*' and '.' respectively, and all other characters are quoted.
+   *
+   * @param likePattern The LIKE pattern.
+   *
+   * @return The regular expression of the pattern.
+   */
+  /* package */ static String getLikeRegexp(String likePattern) {
+    StringTokenizer tokenizer = new StringTokenizer(likePattern, "%_", true);
     StringBuilder regexp = new StringBuilder();
     while (tokenizer.hasMoreTokens()) {
       String s = tokenizer.nextToken();
@@ -127,7 +139,7 @@ public abstract class ComparisonFilter extends QueryFilter {
         regexp.append(Pattern.quote(s));
       }
     }
-    return s1.matches(regexp.toString());
+    return regexp.toString();
   }
 
   /**
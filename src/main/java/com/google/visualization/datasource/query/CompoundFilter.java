@@ -101,6 +101,113 @@ public class CompoundFilter extends QueryFilter {
     return (operator == LogicalOperator.AND);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isMatch(DataTable table, int rowIndex) {
+    if (subFilters.isEmpty()) {
+      throw new RuntimeException("Compound filter with empty subFilters "
+          + "list");
+    }
+    for (QueryFilter subFilter : subFilters) {
+      boolean result = subFilter.isMatch(table, rowIndex);
+      if (((operator == LogicalOperator.AND) && !result) ||
+          ((operator == LogicalOperator.OR) && result)) {
+        return result;
+      }
+    }
+    return (operator == LogicalOperator.AND);
+  }
+
+  /**
+   * Filters a block of rows with each of the sub-filters in turn, and using the compound filter
+   * type to combine the results. As with {@link #isMatch(DataTable, int)}, each sub-filter is
+   * only evaluated on the rows that the previous sub-filters did not decide: an AND filter
+   * passes to each sub-filter only the rows kept by the previous ones, and an OR filter only the
+   * rows that none of the previous ones kept.
+   *
+   * @param table The table containing the rows.
+   * @param rowIndices The indices of the rows to check.
+   * @param numRows The number of rows to check.
+   *
+   * @return The number of matching rows.
+   */
+  @Override
+  public int filterRows(DataTable table, int[] rowIndices, int numRows) {
+    if (numRows == 0) {
+      return 0;
+    }
+    if (subFilters.isEmpty()) {
+      throw new RuntimeException("Compound filter with empty subFilters "
+          + "list");
+    }
+    if (operator == LogicalOperator.AND) {
+      int numMatchingRows = numRows;
+      for (QueryFilter subFilter : subFilters) {
+        if (numMatchingRows == 0) {
+          break;
+        }
+        numMatchingRows = subFilter.filterRows(table, rowIndices, numMatchingRows);
+      }
+      return numMatchingRows;
+    }
+
+    // The positions in the block of the rows that no sub-filter kept yet, and their indices.
+    boolean[] isMatchByPosition = new boolean[numRows];
+    int[] undecidedPositions = new int[numRows];
+    int[] undecidedRows = new int[numRows];
+    int numUndecidedRows = numRows;
+    for (int i = 0; i < numRows; i++) {
+      undecidedPositions[i] = i;
+    }
+    for (QueryFilter subFilter : subFilters) {
+      if (numUndecidedRows == 0) {
+        break;
+      }
+      for (int i = 0; i < numUndecidedRows; i++) {
+        undecidedRows[i] = rowIndices[undecidedPositions[i]];
+      }
+      int numSubFilterRows = subFilter.filterRows(table, undecidedRows, numUndecidedRows);
+      // The rows kept by the sub-filter are a subsequence of the undecided rows.
+      int numStillUndecidedRows = 0;
+      int j = 0;
+      for (int i = 0; i < numUndecidedRows; i++) {
+        int position = undecidedPositions[i];
+        if ((j < numSubFilterRows) && (undecidedRows[j] == rowIndices[position])) {
+          isMatchByPosition[position] = true;
+          j++;
+        } else {
+          undecidedPositions[numStillUndecidedRows++] = position;
+        }
+      }
+      numUndecidedRows = numStillUndecidedRows;
+    }
+    int numMatchingRows = 0;
+    for (int i = 0; i < numRows; i++) {
+      if (isMatchByPosition[i]) {
+        rowIndices[numMatchingRows++] = rowIndices[i];
+      }
+    }
+    return numMatchingRows;
+  }
+
+  /**
+   * Returns a compound filter of the same type, whose sub-filters are bound to the given table.
+   *
+   * @param table The table.
+   *
+   * @return The bound filter.
+   */
+  @Override
+  public QueryFilter bind(DataTable table) {
+    List<QueryFilter> boundSubFilters = Lists.newArrayListWithCapacity(subFilters.size());
+    for (QueryFilter subFilter : subFilters) {
+      boundSubFilters.add(subFilter.bind(table));
+    }
+    return new CompoundFilter(operator, boundSubFilters);
+  }
+
   /**
    * Returns all the columnIds this filter uses, in this case the union of all
    * the results of getAllColumnIds() of all its subfilters.
@@ -0,0 +1,427 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites query filters into equivalent filters that are cheaper to evaluate, before they are
+ * run on a table or translated to another query language.
+ *
+ * An optimized filter matches exactly the same rows as the original filter. The rewrites are:
+ * 1. An OR (AND) filter that is a sub-filter of an OR (AND) filter is replaced by its
+ *    sub-filters.
+ * 2. The equality filters on the same column in an OR filter (e.g., c = 'a' OR c = 'b') are
+ *    replaced by a single {@link ColumnValueSetFilter}, at the position of the first of them.
+ *    The cost of matching a row is then the same for any number of values.
+ * 3. The comparison filters (=, &lt;, &lt;=, &gt;, &gt;=) on the same column in an AND filter
+ *    (e.g., d &gt;= 3 AND d &lt; 7) are replaced by a single {@link ColumnValueRangeFilter},
+ *    at the position of the first of them. Only comparisons with non-null constants of the
+ *    same type are merged, and not with text constants, since the order of text values in a
+ *    database may differ from their order here.
+ * 4. A filter that matches no row (see {@link #isAlwaysFalse(QueryFilter)}) is dropped from
+ *    an OR filter, and replaces an AND filter. So a contradictory filter, e.g.,
+ *    d &gt; 5 AND d &lt; 3, is optimized to a filter that matches no row without reading any.
+ */
+public final class FilterOptimizer {
+
+  /**
+   * A private constructor - all methods are static.
+   */
+  private FilterOptimizer() {}
+
+  /**
+   * Returns an optimized filter that matches the same rows as the given filter. The given filter
+   * is not modified, and is returned if it cannot be optimized.
+   *
+   * @param filter The filter to optimize.
+   *
+   * @return The optimized filter.
+   */
+  public static QueryFilter optimize(QueryFilter filter) {
+    if (filter instanceof CompoundFilter) {
+      return optimizeCompoundFilter((CompoundFilter) filter);
+    }
+    if (filter instanceof NegationFilter) {
+      QueryFilter subFilter = ((NegationFilter) filter).getSubFilter();
+      QueryFilter optimizedSubFilter = optimize(subFilter);
+      return (optimizedSubFilter == subFilter) ? filter : new NegationFilter(optimizedSubFilter);
+    }
+    return filter;
+  }
+
+  /**
+   * Optimizes the sub-filters of a compound filter, merges the equality filters of an OR filter
+   * or the comparison filters of an AND filter, and prunes the sub-filters that match no row.
+   *
+   * @param filter The compound filter.
+   *
+   * @return The optimized filter.
+   */
+  private static QueryFilter optimizeCompoundFilter(CompoundFilter filter) {
+    CompoundFilter.LogicalOperator operator = filter.getOperator();
+    boolean isChanged = false;
+    List<QueryFilter> subFilters = Lists.newArrayList();
+    for (QueryFilter subFilter : filter.getSubFilters()) {
+      QueryFilter optimizedSubFilter = optimize(subFilter);
+      isChanged |= (optimizedSubFilter != subFilter);
+      // An empty compound filter is kept, so that evaluating it still fails.
+      if (isNonEmptyCompoundFilter(optimizedSubFilter, operator)) {
+        subFilters.addAll(((CompoundFilter) optimizedSubFilter).getSubFilters());
+        isChanged = true;
+      } else {
+        subFilters.add(optimizedSubFilter);
+      }
+    }
+
+    List<QueryFilter> mergedSubFilters;
+    if (operator == CompoundFilter.LogicalOperator.OR) {
+      List<QueryFilter> matchingSubFilters = Lists.newArrayList();
+      for (QueryFilter subFilter : subFilters) {
+        if (!isAlwaysFalse(subFilter)) {
+          matchingSubFilters.add(subFilter);
+        }
+      }
+      if (matchingSubFilters.isEmpty() && !subFilters.isEmpty()) {
+        return subFilters.get(0);
+      }
+      if (matchingSubFilters.size() < subFilters.size()) {
+        subFilters = matchingSubFilters;
+        isChanged = true;
+      }
+      mergedSubFilters = mergeEqualityFilters(subFilters);
+    } else {
+      mergedSubFilters = mergeRangeFilters(subFilters);
+      for (QueryFilter subFilter : (mergedSubFilters == null) ? subFilters : mergedSubFilters) {
+        if (isAlwaysFalse(subFilter)) {
+          return subFilter;
+        }
+      }
+    }
+    if (mergedSubFilters != null) {
+      subFilters = mergedSubFilters;
+      isChanged = true;
+    }
+    if (!isChanged) {
+      return filter;
+    }
+    if (subFilters.size() == 1) {
+      return subFilters.get(0);
+    }
+    return new CompoundFilter(operator, subFilters);
+  }
+
+  /**
+   * Returns whether a filter matches no row. This is the case for a
+   * {@link ColumnValueRangeFilter} whose range is empty, which is what the optimization of a
+   * contradictory filter results in.
+   *
+   * @param filter The filter.
+   *
+   * @return True if the filter is known to match no row.
+   */
+  public static boolean isAlwaysFalse(QueryFilter filter) {
+    return (filter instanceof ColumnValueRangeFilter)
+        && ((ColumnValueRangeFilter) filter).isEmpty();
+  }
+
+  /**
+   * Returns the ranges of column values that every row matching the given filter is in, e.g.,
+   * for the filter d &gt;= 3 AND d &lt; 7 AND c = 'a' the ranges [3, 7) of d and ['a', 'a'] of
+   * c. The ranges are taken from the optimized filter, so the comparisons on the same column are
+   * merged into a single range, except for comparisons that are not merged (see above). This
+   * allows a data source to read only the rows in these ranges, e.g., by an index.
+   *
+   * @param filter The filter.
+   *
+   * @return The ranges of column values. The list is empty if no range is known.
+   */
+  public static List<ColumnValueRangeFilter> getColumnRanges(QueryFilter filter) {
+    QueryFilter optimizedFilter = optimize(filter);
+    List<QueryFilter> conjuncts = Lists.newArrayList(optimizedFilter);
+    if ((optimizedFilter instanceof CompoundFilter) && (((CompoundFilter) optimizedFilter)
+        .getOperator() == CompoundFilter.LogicalOperator.AND)) {
+      conjuncts = ((CompoundFilter) optimizedFilter).getSubFilters();
+    }
+    List<ColumnValueRangeFilter> result = Lists.newArrayList();
+    for (QueryFilter conjunct : conjuncts) {
+      ColumnValueRangeFilter range = toRange(conjunct);
+      if (range != null) {
+        result.add(range);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Merges the comparison filters on the same column, among the sub-filters of an AND filter,
+   * into a single ColumnValueRangeFilter each.
+   *
+   * @param subFilters The sub-filters of the AND filter.
+   *
+   * @return The merged sub-filters, or null if no two comparison filters can be merged.
+   */
+  private static List<QueryFilter> mergeRangeFilters(List<QueryFilter> subFilters) {
+    Map<AbstractColumn, ColumnValueRangeFilter> rangeByColumn = Maps.newHashMap();
+    Map<AbstractColumn, Integer> numFiltersByColumn = Maps.newHashMap();
+    // The columns compared with constants of different types, whose filters are not merged.
+    Set<AbstractColumn> mixedTypeColumns = Sets.newHashSet();
+    for (QueryFilter subFilter : subFilters) {
+      ColumnValueRangeFilter range = toMergeableRange(subFilter);
+      if (range == null) {
+        continue;
+      }
+      AbstractColumn column = range.getColumn();
+      ColumnValueRangeFilter columnRange = rangeByColumn.get(column);
+      if (columnRange == null) {
+        rangeByColumn.put(column, range);
+        numFiltersByColumn.put(column, 1);
+      } else if (getType(columnRange) != getType(range)) {
+        mixedTypeColumns.add(column);
+      } else {
+        rangeByColumn.put(column, intersect(columnRange, range));
+        numFiltersByColumn.put(column, numFiltersByColumn.get(column) + 1);
+      }
+    }
+    boolean isMerged = false;
+    for (Map.Entry<AbstractColumn, Integer> entry : numFiltersByColumn.entrySet()) {
+      isMerged |= (entry.getValue() > 1) && !mixedTypeColumns.contains(entry.getKey());
+    }
+    if (!isMerged) {
+      return null;
+    }
+
+    List<QueryFilter> result = Lists.newArrayList();
+    for (QueryFilter subFilter : subFilters) {
+      ColumnValueRangeFilter range = toMergeableRange(subFilter);
+      AbstractColumn column = (range == null) ? null : range.getColumn();
+      if ((column == null) || (numFiltersByColumn.get(column) == 1)
+          || mixedTypeColumns.contains(column)) {
+        result.add(subFilter);
+      } else if (rangeByColumn.containsKey(column)) {
+        // The first filter on the column is replaced, and the others are dropped.
+        result.add(rangeByColumn.remove(column));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the range of column values that a filter matches, if the filter is a comparison
+   * filter that can be merged with other comparison filters on the same column.
+   *
+   * @param filter The filter.
+   *
+   * @return The range of the filter, or null if the filter cannot be merged.
+   */
+  private static ColumnValueRangeFilter toMergeableRange(QueryFilter filter) {
+    ColumnValueRangeFilter range = toRange(filter);
+    if ((range == null) || range.isEmpty()) {
+      return null;
+    }
+    Value bound = (range.getLowerBound() != null) ? range.getLowerBound()
+        : range.getUpperBound();
+    if ((bound == null) || bound.isNull() || (bound.getType() == ValueType.TEXT)) {
+      return null;
+    }
+    return range;
+  }
+
+  /**
+   * Returns the range of column values that a filter matches, if the filter compares a column
+   * with a constant value by its order.
+   *
+   * @param filter The filter.
+   *
+   * @return The range of the filter, or null if the filter does not compare a column by its
+   *     order.
+   */
+  private static ColumnValueRangeFilter toRange(QueryFilter filter) {
+    if (filter instanceof ColumnValueRangeFilter) {
+      return (ColumnValueRangeFilter) filter;
+    }
+    if (!(filter instanceof ColumnValueFilter)) {
+      return null;
+    }
+    ColumnValueFilter comparison = (ColumnValueFilter) filter;
+    AbstractColumn column = comparison.getColumn();
+    Value value = comparison.getValue();
+    ComparisonFilter.Operator operator = comparison.getOperator();
+    // The comparison value op column is the comparison column op' value, where op' is the
+    // mirrored operator.
+    boolean isReversed = comparison.isComparisonOrderReversed();
+    switch (operator) {
+      case EQ:
+        return new ColumnValueRangeFilter(column, value, true, value, true);
+      case LT:
+      case LE:
+        return isReversed
+            ? new ColumnValueRangeFilter(column, value, operator == ComparisonFilter.Operator.LE,
+                null, false)
+            : new ColumnValueRangeFilter(column, null, false, value,
+                operator == ComparisonFilter.Operator.LE);
+      case GT:
+      case GE:
+        return isReversed
+            ? new ColumnValueRangeFilter(column, null, false, value,
+                operator == ComparisonFilter.Operator.GE)
+            : new ColumnValueRangeFilter(column, value, operator == ComparisonFilter.Operator.GE,
+                null, false);
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Returns the type of the bounds of a non-empty range.
+   *
+   * @param range The range.
+   *
+   * @return The type of the bounds.
+   */
+  private static ValueType getType(ColumnValueRangeFilter range) {
+    return (range.getLowerBound() != null) ? range.getLowerBound().getType()
+        : range.getUpperBound().getType();
+  }
+
+  /**
+   * Returns the intersection of two ranges of the same column, whose bounds have the same type.
+   *
+   * @param range1 The first range.
+   * @param range2 The second range.
+   *
+   * @return The intersection of the ranges, which may be empty.
+   */
+  private static ColumnValueRangeFilter intersect(ColumnValueRangeFilter range1,
+      ColumnValueRangeFilter range2) {
+    Value lowerBound = range1.getLowerBound();
+    boolean isLowerBoundInclusive = range1.isLowerBoundInclusive();
+    if (range2.getLowerBound() != null) {
+      int result = (lowerBound == null) ? -1 : lowerBound.compareTo(range2.getLowerBound());
+      if (result < 0) {
+        lowerBound = range2.getLowerBound();
+        isLowerBoundInclusive = range2.isLowerBoundInclusive();
+      } else if (result == 0) {
+        isLowerBoundInclusive &= range2.isLowerBoundInclusive();
+      }
+    }
+    Value upperBound = range1.getUpperBound();
+    boolean isUpperBoundInclusive = range1.isUpperBoundInclusive();
+    if (range2.getUpperBound() != null) {
+      int result = (upperBound == null) ? 1 : upperBound.compareTo(range2.getUpperBound());
+      if (result > 0) {
+        upperBound = range2.getUpperBound();
+        isUpperBoundInclusive = range2.isUpperBoundInclusive();
+      } else if (result == 0) {
+        isUpperBoundInclusive &= range2.isUpperBoundInclusive();
+      }
+    }
+    return new ColumnValueRangeFilter(range1.getColumn(), lowerBound, isLowerBoundInclusive,
+        upperBound, isUpperBoundInclusive);
+  }
+
+  /**
+   * Merges the equality filters on the same column, among the sub-filters of an OR filter, into
+   * a single ColumnValueSetFilter each.
+   *
+   * @param subFilters The sub-filters of the OR filter.
+   *
+   * @return The merged sub-filters, or null if no two equality filters are on the same column.
+   */
+  private static List<QueryFilter> mergeEqualityFilters(List<QueryFilter> subFilters) {
+    Map<AbstractColumn, List<Value>> valuesByColumn = Maps.newHashMap();
+    Map<AbstractColumn, Integer> numFiltersByColumn = Maps.newHashMap();
+    boolean isMerged = false;
+    for (QueryFilter subFilter : subFilters) {
+      AbstractColumn column = getEqualityColumn(subFilter);
+      if (column == null) {
+        continue;
+      }
+      List<Value> values = valuesByColumn.get(column);
+      if (values == null) {
+        values = Lists.newArrayList();
+        valuesByColumn.put(column, values);
+        numFiltersByColumn.put(column, 1);
+      } else {
+        numFiltersByColumn.put(column, numFiltersByColumn.get(column) + 1);
+        isMerged = true;
+      }
+      if (subFilter instanceof ColumnValueSetFilter) {
+        values.addAll(((ColumnValueSetFilter) subFilter).getValues());
+      } else {
+        values.add(((ColumnValueFilter) subFilter).getValue());
+      }
+    }
+    if (!isMerged) {
+      return null;
+    }
+
+    List<QueryFilter> result = Lists.newArrayList();
+    for (QueryFilter subFilter : subFilters) {
+      AbstractColumn column = getEqualityColumn(subFilter);
+      if ((column == null) || (numFiltersByColumn.get(column) == 1)) {
+        result.add(subFilter);
+      } else if (valuesByColumn.containsKey(column)) {
+        // The first filter on the column is replaced, and the others are dropped.
+        result.add(new ColumnValueSetFilter(column, valuesByColumn.remove(column)));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the column of a filter that checks whether a column value equals a constant value,
+   * or one of several constant values.
+   *
+   * @param filter The filter.
+   *
+   * @return The column of the filter, or null if the filter is not such a filter.
+   */
+  private static AbstractColumn getEqualityColumn(QueryFilter filter) {
+    if (filter instanceof ColumnValueSetFilter) {
+      return ((ColumnValueSetFilter) filter).getColumn();
+    }
+    if ((filter instanceof ColumnValueFilter)
+        && (((ColumnValueFilter) filter).getOperator() == ComparisonFilter.Operator.EQ)) {
+      // Equality is symmetric, so the comparison order does not matter.
+      return ((ColumnValueFilter) filter).getColumn();
+    }
+    return null;
+  }
+
+  /**
+   * Returns whether a filter is a compound filter of the given type with at least one
+   * sub-filter.
+   *
+   * @param filter The filter.
+   * @param operator The type of compound filter.
+   *
+   * @return True if the filter is a non-empty compound filter of the given type.
+   */
+  private static boolean isNonEmptyCompoundFilter(QueryFilter filter,
+      CompoundFilter.LogicalOperator operator) {
+    return (filter instanceof CompoundFilter)
+        && (((CompoundFilter) filter).getOperator() == operator)
+        && !((CompoundFilter) filter).getSubFilters().isEmpty();
+  }
+}
@@ -17,6 +17,7 @@ package com.google.visualization.datasource.query;
 import com.google.visualization.datasource.datatable.DataTable;
 import com.google.visualization.datasource.datatable.TableRow;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
@@ -56,6 +57,53 @@ public class NegationFilter extends QueryFilter {
     return !subFilter.isMatch(table, row);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isMatch(DataTable table, int rowIndex) {
+    return !subFilter.isMatch(table, rowIndex);
+  }
+
+  /**
+   * Filters a block of rows by filtering a copy of it with the sub-filter, and keeping the rows
+   * that the sub-filter did not keep.
+   *
+   * @param table The table containing the rows.
+   * @param rowIndices The indices of the rows to check.
+   * @param numRows The number of rows to check.
+   *
+   * @return The number of matching rows.
+   */
+  @Override
+  public int filterRows(DataTable table, int[] rowIndices, int numRows) {
+    int[] subFilterRows = Arrays.copyOf(rowIndices, numRows);
+    int numSubFilterRows = subFilter.filterRows(table, subFilterRows, numRows);
+    // The rows kept by the sub-filter are a subsequence of the given rows.
+    int numMatchingRows = 0;
+    int j = 0;
+    for (int i = 0; i < numRows; i++) {
+      if ((j < numSubFilterRows) && (subFilterRows[j] == rowIndices[i])) {
+        j++;
+      } else {
+        rowIndices[numMatchingRows++] = rowIndices[i];
+      }
+    }
+    return numMatchingRows;
+  }
+
+  /**
+   * Returns the negation of the sub-filter bound to the given table.
+   *
+   * @param table The table.
+   *
+   * @return The bound filter.
+   */
+  @Override
+  public QueryFilter bind(DataTable table) {
+    return new NegationFilter(subFilter.bind(table));
+  }
+
   /**
    * Returns all the columnIds this filter uses, in this case exactly all the
    * columnIds that the sub-filter uses.
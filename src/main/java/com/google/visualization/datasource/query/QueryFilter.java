@@ -40,6 +40,75 @@ public abstract class QueryFilter {
    */
   public abstract boolean isMatch(DataTable table, TableRow row);
 
+  /**
+   * Checks if the row at the given index should be part of the result set. Unlike
+   * {@link #isMatch(DataTable, TableRow)}, this does not require a row object, so tables that
+   * do not store their data by row can be filtered without creating one. The default
+   * implementation delegates to {@link #isMatch(DataTable, TableRow)} with a copy of the row
+   * that shares its cells, so that the table is not changed.
+   *
+   * The query engine may call this method concurrently for different rows of the same table
+   * (see {@link com.google.visualization.datasource.query.engine.QueryEngineSettings}), so
+   * implementations must not change the table or the filter.
+   *
+   * @param table The table containing the row.
+   * @param rowIndex The index of the row to check.
+   *
+   * @return true if this row should be part of the result set, false otherwise.
+   */
+  public boolean isMatch(DataTable table, int rowIndex) {
+    int numberOfColumns = table.getNumberOfColumns();
+    TableRow row = new TableRow(numberOfColumns);
+    for (int colIndex = 0; colIndex < numberOfColumns; colIndex++) {
+      row.addCellFrom(table, rowIndex, colIndex);
+    }
+    return isMatch(table, row);
+  }
+
+  /**
+   * Filters a block of rows: the indices of the matching rows are moved, in order, to the start
+   * of the given array, and their number is returned. This evaluates the filter on many rows in
+   * one call, so that implementations can run a tight loop over the rows, and compound filters
+   * can evaluate each sub-filter only on the rows that its predecessors left undecided. The
+   * default implementation calls {@link #isMatch(DataTable, int)} for each row.
+   *
+   * As {@link #isMatch(DataTable, int)}, this may be called concurrently for different blocks
+   * of rows of the same table, and must not change the table or the filter.
+   *
+   * @param table The table containing the rows.
+   * @param rowIndices The indices of the rows to check, in its first numRows elements. The
+   *     indices of the matching rows are written, in order, at its start.
+   * @param numRows The number of rows to check.
+   *
+   * @return The number of matching rows.
+   */
+  public int filterRows(DataTable table, int[] rowIndices, int numRows) {
+    int numMatchingRows = 0;
+    for (int i = 0; i < numRows; i++) {
+      if (isMatch(table, rowIndices[i])) {
+        rowIndices[numMatchingRows++] = rowIndices[i];
+      }
+    }
+    return numMatchingRows;
+  }
+
+  /**
+   * Returns a filter that matches the same rows as this filter, with its columns bound to the
+   * columns of the given table (see {@link AbstractColumn#bind(ColumnLookup)}), so that the
+   * columns are not resolved again for each row. The returned filter must only be used on the
+   * given table, or on tables with the same columns. The query engine binds the filter of a
+   * query once, before it is applied to the rows.
+   *
+   * The default implementation returns this filter.
+   *
+   * @param table The table.
+   *
+   * @return The bound filter.
+   */
+  public QueryFilter bind(DataTable table) {
+    return this;
+  }
+
   /**
    * Returns all the columnIds this filter uses.
    *
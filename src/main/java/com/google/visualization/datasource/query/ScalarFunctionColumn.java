@@ -138,7 +138,25 @@ public class ScalarFunctionColumn extends AbstractColumn {
   public TableCell getCell(ColumnLookup lookup, TableRow row) {
     if (lookup.containsColumn(this)) {
       int columnIndex = lookup.getColumnIndex(this);
-      return row.getCells().get(columnIndex);
+      return row.getCell(columnIndex);
+    }
+    return new TableCell(getValue(lookup, row));
+  }
+
+  /**
+   * Returns the value of the column in the given row. If the given column lookup contains this
+   * column, the value is read from the row. Otherwise, the scalar function is evaluated on the
+   * values of the inner columns in the row (see {@link #getCell(ColumnLookup, TableRow)}).
+   *
+   * @param lookup The column lookup.
+   * @param row The given row.
+   *
+   * @return The value of the column in the given row.
+   */
+  @Override
+  public Value getValue(ColumnLookup lookup, TableRow row) {
+    if (lookup.containsColumn(this)) {
+      return row.getValue(lookup.getColumnIndex(this));
     }
     // If the given column lookup does not contain this column, get the inner
     // column values of this column and use them as parameters to evaluate the
@@ -147,7 +165,72 @@ public class ScalarFunctionColumn extends AbstractColumn {
     for (AbstractColumn column : columns) {
       functionParameters.add(column.getValue(lookup, row));
     }
-    return new TableCell(scalarFunction.evaluate(functionParameters));
+    return scalarFunction.evaluate(functionParameters);
+  }
+
+  /**
+   * Returns the value of the column in the row at the given index of the given table. If the
+   * given column lookup contains this column, the value is read from the table. Otherwise, the
+   * scalar function is evaluated on the values of the inner columns in that row (see
+   * {@link #getCell(ColumnLookup, TableRow)}).
+   *
+   * @param lookup The column lookup.
+   * @param table The table containing the row.
+   * @param rowIndex The index of the row.
+   *
+   * @return The value of the column in the given row.
+   */
+  @Override
+  public Value getValue(ColumnLookup lookup, DataTable table, int rowIndex) {
+    if (lookup.containsColumn(this)) {
+      return table.getValue(rowIndex, lookup.getColumnIndex(this));
+    }
+    List<Value> functionParameters = Lists.newArrayListWithCapacity(columns.size());
+    for (AbstractColumn column : columns) {
+      functionParameters.add(column.getValue(lookup, table, rowIndex));
+    }
+    return scalarFunction.evaluate(functionParameters);
+  }
+
+  /**
+   * Binds this column to the columns of a column lookup. If the lookup contains this column, its
+   * value is read from the rows. Otherwise, the inner columns are bound recursively, and the
+   * scalar function is evaluated on their values (see
+   * {@link #getValue(ColumnLookup, DataTable, int)}).
+   *
+   * @param lookup The column lookup.
+   *
+   * @return The bound column.
+   */
+  @Override
+  public BoundColumn bind(ColumnLookup lookup) {
+    if (lookup.containsColumn(this)) {
+      return new BoundColumn(lookup.getColumnIndex(this));
+    }
+    BoundColumn[] functionColumns = new BoundColumn[columns.size()];
+    for (int i = 0; i < functionColumns.length; i++) {
+      functionColumns[i] = columns.get(i).bind(lookup);
+    }
+    return new BoundColumn(scalarFunction, functionColumns);
+  }
+
+  /**
+   * Returns the cell of the column in the row at the given index of the given table. If the
+   * given column lookup contains this column, returns the cell stored in the table. Otherwise,
+   * creates a cell holding the value of the scalar function in that row.
+   *
+   * @param lookup The column lookup.
+   * @param table The table containing the row.
+   * @param rowIndex The index of the row.
+   *
+   * @return The cell of the column in the given row.
+   */
+  @Override
+  public TableCell getCell(ColumnLookup lookup, DataTable table, int rowIndex) {
+    if (lookup.containsColumn(this)) {
+      return table.getCell(rowIndex, lookup.getColumnIndex(this));
+    }
+    return new TableCell(getValue(lookup, table, rowIndex));
   }
 
   /**
@@ -0,0 +1,509 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query;
+
+import com.google.visualization.datasource.datatable.TextDictionary;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.query.ComparisonFilter.Operator;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The comparison of a column value with a constant value, compiled once per query from the
+ * operator and the constant of a {@link ColumnValueFilter}. Everything that does not depend on
+ * the column value is done when the predicate is created: the string form of the constant is
+ * computed, regular expressions are compiled, and LIKE patterns without '_' and with '%' only at
+ * their ends are reduced to equality, prefix, suffix or substring checks.
+ *
+ * A predicate matches exactly the values that
+ * {@link ComparisonFilter#isOperatorMatch(Value, Value)} matches. A predicate is immutable, and
+ * can be used concurrently.
+ *
+ * A predicate that compares texts by their order can also be evaluated on the codes of a
+ * natural order text dictionary (see {@link #getMatchingCodes(TextDictionary)}): the matching
+ * texts are looked up once, and the rows are then matched by comparing integers.
+ */
+/* package */ abstract class ValuePredicate {
+
+  /**
+   * Returns whether the given column value matches this predicate.
+   *
+   * @param value The column value.
+   *
+   * @return True if the value matches this predicate.
+   */
+  abstract boolean isMatch(Value value);
+
+  /**
+   * Returns whether this predicate can be evaluated on the codes of a text dictionary, i.e.,
+   * whether {@link #getMatchingCodes(TextDictionary)} returns the codes of the matching texts.
+   *
+   * @return True if this predicate can be evaluated on the codes of a text dictionary.
+   */
+  boolean hasMatchingCodes() {
+    return false;
+  }
+
+  /**
+   * Returns the codes of the texts that match this predicate in a dictionary of a text column.
+   *
+   * @param dictionary The dictionary, in the natural order of strings (see
+   *     {@link TextDictionary#getLocale()}).
+   *
+   * @return The codes of the matching texts, or null if this predicate cannot be evaluated on
+   *     codes (see {@link #hasMatchingCodes()}).
+   */
+  CodeRange getMatchingCodes(TextDictionary dictionary) {
+    return null;
+  }
+
+  /**
+   * Compiles the comparison of a column value with a constant value.
+   *
+   * @param filter The filter whose comparison is compiled. Comparisons that cannot be compiled
+   *     are delegated to it.
+   * @param constant The constant value.
+   * @param isComparisonOrderReversed Whether the constant is the first operand of the operator,
+   *     i.e., the comparison is constant op column, rather than column op constant.
+   *
+   * @return The compiled predicate.
+   */
+  static ValuePredicate create(ComparisonFilter filter, Value constant,
+      boolean isComparisonOrderReversed) {
+    Operator operator = filter.getOperator();
+    switch (operator) {
+      case EQ:
+      case NE:
+      case LT:
+      case GT:
+      case LE:
+      case GE:
+        return new CompareTo(operator, constant, isComparisonOrderReversed);
+      case CONTAINS:
+      case STARTS_WITH:
+      case ENDS_WITH:
+        return new StringCheck(operator, constant.toString(), isComparisonOrderReversed);
+      case MATCHES:
+        if (!isComparisonOrderReversed) {
+          try {
+            return new PatternMatch(Pattern.compile(constant.toString()));
+          } catch (PatternSyntaxException ex) {
+            return NEVER; // A match against an illegal expression is false.
+          }
+        }
+        break;
+      case LIKE:
+        if (!isComparisonOrderReversed) {
+          return createLike(constant.toString());
+        }
+        break;
+    }
+    // The pattern is the column value, so it is compiled for each row, as by the filter.
+    return new OperatorMatch(filter, constant, isComparisonOrderReversed);
+  }
+
+  /**
+   * A predicate that matches no value.
+   */
+  private static final ValuePredicate NEVER = new ValuePredicate() {
+    @Override
+    boolean isMatch(Value value) {
+      return false;
+    }
+  };
+
+  /**
+   * Compiles a LIKE pattern, in which '%' stands for any sequence of characters and '_' for any
+   * character, with the semantics of {@link ComparisonFilter}: a LIKE pattern is translated to a
+   * regular expression, in which the wildcards do not match line terminators.
+   *
+   * @param likePattern The LIKE pattern.
+   *
+   * @return The compiled predicate.
+   */
+  private static ValuePredicate createLike(String likePattern) {
+    Pattern pattern = Pattern.compile(ComparisonFilter.getLikeRegexp(likePattern));
+
+    if (likePattern.indexOf('_') >= 0) {
+      return new PatternMatch(pattern);
+    }
+    boolean hasLeadingPercent = likePattern.startsWith("%");
+    boolean hasTrailingPercent = (likePattern.length() > 1) && likePattern.endsWith("%");
+    String literal = likePattern.substring(hasLeadingPercent ? 1 : 0,
+        likePattern.length() - (hasTrailingPercent ? 1 : 0));
+    if (literal.indexOf('%') >= 0) {
+      return new PatternMatch(pattern);
+    }
+    return new LikeMatch(literal, hasLeadingPercent, hasTrailingPercent, pattern);
+  }
+
+  /**
+   * A range of consecutive codes of a text dictionary, or all the codes outside of such a range.
+   */
+  static class CodeRange {
+
+    /**
+     * The first code of the range.
+     */
+    private final int from;
+
+    /**
+     * The code after the last code of the range.
+     */
+    private final int to;
+
+    /**
+     * Whether the codes outside of the range are matched, rather than the codes in it.
+     */
+    private final boolean isComplement;
+
+    /**
+     * Creates a range of codes.
+     *
+     * @param from The first code of the range.
+     * @param to The code after the last code of the range.
+     * @param isComplement Whether the codes outside of the range are matched.
+     */
+    CodeRange(int from, int to, boolean isComplement) {
+      this.from = from;
+      this.to = to;
+      this.isComplement = isComplement;
+    }
+
+    /**
+     * Returns whether the given code is matched.
+     *
+     * @param code The code.
+     *
+     * @return True if the code is matched.
+     */
+    boolean contains(int code) {
+      return ((code >= from) && (code < to)) != isComplement;
+    }
+  }
+
+  /**
+   * A predicate of an operator that compares values by their order.
+   */
+  private static class CompareTo extends ValuePredicate {
+
+    /**
+     * The operator.
+     */
+    private final Operator operator;
+
+    /**
+     * The constant value.
+     */
+    private final Value constant;
+
+    /**
+     * Whether the constant is the first operand of the operator.
+     */
+    private final boolean isComparisonOrderReversed;
+
+    /**
+     * Creates a predicate of an operator that compares values by their order.
+     *
+     * @param operator The operator.
+     * @param constant The constant value.
+     * @param isComparisonOrderReversed Whether the constant is the first operand.
+     */
+    CompareTo(Operator operator, Value constant, boolean isComparisonOrderReversed) {
+      this.operator = operator;
+      this.constant = constant;
+      this.isComparisonOrderReversed = isComparisonOrderReversed;
+    }
+
+    @Override
+    boolean isMatch(Value value) {
+      if (value.getType() != constant.getType()) {
+        return false;
+      }
+      int result = isComparisonOrderReversed ? constant.compareTo(value)
+          : value.compareTo(constant);
+      switch (operator) {
+        case EQ:
+          return result == 0;
+        case NE:
+          return result != 0;
+        case LT:
+          return result < 0;
+        case GT:
+          return result > 0;
+        case LE:
+          return result <= 0;
+        default:
+          return result >= 0;
+      }
+    }
+
+    @Override
+    boolean hasMatchingCodes() {
+      return constant.getType() == ValueType.TEXT;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The constant is looked up in the dictionary, and the operator is translated to the range
+     * of the codes before, at, or after the code of the constant.
+     */
+    @Override
+    CodeRange getMatchingCodes(TextDictionary dictionary) {
+      if (!hasMatchingCodes()) {
+        return null;
+      }
+      // The texts equal to the constant have the codes from equalFrom to equalTo (exclusive).
+      int code = dictionary.findCode(((TextValue) constant).getValue());
+      int equalFrom = (code >= 0) ? code : (-code - 1);
+      int equalTo = (code >= 0) ? (code + 1) : equalFrom;
+      int size = dictionary.size();
+      Operator columnOperator = operator;
+      if (isComparisonOrderReversed) {
+        switch (operator) {
+          case LT:
+            columnOperator = Operator.GT;
+            break;
+          case GT:
+            columnOperator = Operator.LT;
+            break;
+          case LE:
+            columnOperator = Operator.GE;
+            break;
+          case GE:
+            columnOperator = Operator.LE;
+            break;
+          default:
+            break;
+        }
+      }
+      switch (columnOperator) {
+        case EQ:
+          return new CodeRange(equalFrom, equalTo, false);
+        case NE:
+          return new CodeRange(equalFrom, equalTo, true);
+        case LT:
+          return new CodeRange(0, equalFrom, false);
+        case GT:
+          return new CodeRange(equalTo, size, false);
+        case LE:
+          return new CodeRange(0, equalTo, false);
+        default:
+          return new CodeRange(equalFrom, size, false);
+      }
+    }
+  }
+
+  /**
+   * A predicate of an operator that checks whether a string contains, starts with or ends with
+   * another string.
+   */
+  private static class StringCheck extends ValuePredicate {
+
+    /**
+     * The operator.
+     */
+    private final Operator operator;
+
+    /**
+     * The string form of the constant value.
+     */
+    private final String constant;
+
+    /**
+     * Whether the constant is the first operand of the operator.
+     */
+    private final boolean isComparisonOrderReversed;
+
+    /**
+     * Creates a predicate of an operator on strings.
+     *
+     * @param operator The operator.
+     * @param constant The string form of the constant value.
+     * @param isComparisonOrderReversed Whether the constant is the first operand.
+     */
+    StringCheck(Operator operator, String constant, boolean isComparisonOrderReversed) {
+      this.operator = operator;
+      this.constant = constant;
+      this.isComparisonOrderReversed = isComparisonOrderReversed;
+    }
+
+    @Override
+    boolean isMatch(Value value) {
+      String s1 = value.toString();
+      String s2 = constant;
+      if (isComparisonOrderReversed) {
+        s2 = s1;
+        s1 = constant;
+      }
+      switch (operator) {
+        case CONTAINS:
+          return s1.contains(s2);
+        case STARTS_WITH:
+          return s1.startsWith(s2);
+        default:
+          return s1.endsWith(s2);
+      }
+    }
+  }
+
+  /**
+   * A predicate that matches the string forms of values against a compiled regular expression.
+   */
+  private static class PatternMatch extends ValuePredicate {
+
+    /**
+     * The compiled regular expression.
+     */
+    private final Pattern pattern;
+
+    /**
+     * Creates a predicate that matches values against a compiled regular expression.
+     *
+     * @param pattern The compiled regular expression.
+     */
+    PatternMatch(Pattern pattern) {
+      this.pattern = pattern;
+    }
+
+    @Override
+    boolean isMatch(Value value) {
+      return pattern.matcher(value.toString()).matches();
+    }
+  }
+
+  /**
+   * A predicate of a LIKE pattern that is a literal, optionally preceded or followed by '%'.
+   * Strings without line terminators are matched by comparing them with the literal. Other
+   * strings are matched against the regular expression of the pattern, in which '%' does not
+   * match line terminators.
+   */
+  private static class LikeMatch extends ValuePredicate {
+
+    /**
+     * The literal of the pattern.
+     */
+    private final String literal;
+
+    /**
+     * Whether the pattern starts with '%'.
+     */
+    private final boolean hasLeadingPercent;
+
+    /**
+     * Whether the pattern ends with '%'.
+     */
+    private final boolean hasTrailingPercent;
+
+    /**
+     * The compiled regular expression of the pattern.
+     */
+    private final Pattern pattern;
+
+    /**
+     * Creates a predicate of a LIKE pattern.
+     *
+     * @param literal The literal of the pattern.
+     * @param hasLeadingPercent Whether the pattern starts with '%'.
+     * @param hasTrailingPercent Whether the pattern ends with '%'.
+     * @param pattern The compiled regular expression of the pattern.
+     */
+    LikeMatch(String literal, boolean hasLeadingPercent, boolean hasTrailingPercent,
+        Pattern pattern) {
+      this.literal = literal;
+      this.hasLeadingPercent = hasLeadingPercent;
+      this.hasTrailingPercent = hasTrailingPercent;
+      this.pattern = pattern;
+    }
+
+    @Override
+    boolean isMatch(Value value) {
+      String s = value.toString();
+      if (!hasLeadingPercent && !hasTrailingPercent) {
+        return s.equals(literal);
+      }
+      if (hasLineTerminator(s)) {
+        return pattern.matcher(s).matches();
+      }
+      if (hasLeadingPercent && hasTrailingPercent) {
+        return s.contains(literal);
+      }
+      return hasLeadingPercent ? s.endsWith(literal) : s.startsWith(literal);
+    }
+
+    /**
+     * Returns whether a string has a character that '.' does not match in a regular expression.
+     *
+     * @param s The string.
+     *
+     * @return True if the string has a line terminator.
+     */
+    private static boolean hasLineTerminator(String s) {
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+        if ((c == '\n') || (c == '\r') || (c == '\u0085') || (c == '\u2028')
+            || (c == '\u2029')) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * A predicate that delegates to the operator of the filter, for comparisons that cannot be
+   * compiled.
+   */
+  private static class OperatorMatch extends ValuePredicate {
+
+    /**
+     * The filter.
+     */
+    private final ComparisonFilter filter;
+
+    /**
+     * The constant value.
+     */
+    private final Value constant;
+
+    /**
+     * Whether the constant is the first operand of the operator.
+     */
+    private final boolean isComparisonOrderReversed;
+
+    /**
+     * Creates a predicate that delegates to the operator of a filter.
+     *
+     * @param filter The filter.
+     * @param constant The constant value.
+     * @param isComparisonOrderReversed Whether the constant is the first operand.
+     */
+    OperatorMatch(ComparisonFilter filter, Value constant, boolean isComparisonOrderReversed) {
+      this.filter = filter;
+      this.constant = constant;
+      this.isComparisonOrderReversed = isComparisonOrderReversed;
+    }
+
+    @Override
+    boolean isMatch(Value value) {
+      return isComparisonOrderReversed ? filter.isOperatorMatch(constant, value)
+          : filter.isOperatorMatch(value, constant);
+    }
+  }
+}
@@ -0,0 +1,372 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.query.AggregationType;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Accumulates the values of a single aggregated column, for many groups at once. The state of
+ * each group is kept in arrays indexed by group ordinal, and only the state needed by the
+ * requested aggregation types is kept: for example, an accumulator of a number column for which
+ * only the sum is requested keeps a count and a sum per group, and does not compare values.
+ *
+ * An accumulator is created for the type of its column with {@link #create}: number columns are
+ * accumulated as primitive doubles, and columns of other types as values.
+ *
+ * As with {@link ValueAggregator}, null values are not accumulated, and the aggregation of no
+ * values is null, except for count.
+ */
+/* package */ abstract class ColumnAccumulator {
+
+  /**
+   * The type of the accumulated column.
+   */
+  protected final ValueType valueType;
+
+  /**
+   * The aggregation types that can be requested from this accumulator.
+   */
+  protected final Set<AggregationType> aggregationTypes;
+
+  /**
+   * The number of non null values of each group.
+   */
+  protected long[] counts;
+
+  /**
+   * Creates an accumulator with room for the given number of groups.
+   *
+   * @param valueType The type of the accumulated column.
+   * @param aggregationTypes The aggregation types that can be requested.
+   * @param capacity The initial number of groups.
+   */
+  protected ColumnAccumulator(ValueType valueType, Set<AggregationType> aggregationTypes,
+      int capacity) {
+    this.valueType = valueType;
+    this.aggregationTypes = aggregationTypes;
+    counts = new long[capacity];
+  }
+
+  /**
+   * Creates an accumulator for a column of the given type, that keeps the state needed by the
+   * given aggregation types.
+   *
+   * @param valueType The type of the accumulated column.
+   * @param aggregationTypes The aggregation types that can be requested.
+   * @param capacity The initial number of groups.
+   *
+   * @return A new accumulator.
+   */
+  public static ColumnAccumulator create(ValueType valueType,
+      Set<AggregationType> aggregationTypes, int capacity) {
+    if (valueType == ValueType.NUMBER) {
+      return new NumberAccumulator(aggregationTypes, capacity);
+    }
+    return new ObjectAccumulator(valueType, aggregationTypes, capacity);
+  }
+
+  /**
+   * Returns a new empty accumulator of the same column and aggregation types as this one.
+   *
+   * @param capacity The initial number of groups.
+   *
+   * @return A new empty accumulator.
+   */
+  public ColumnAccumulator newEmptyCopy(int capacity) {
+    return create(valueType, aggregationTypes, capacity);
+  }
+
+  /**
+   * Makes room for the given number of groups.
+   *
+   * @param capacity The new number of groups.
+   */
+  public void grow(int capacity) {
+    counts = Arrays.copyOf(counts, capacity);
+  }
+
+  /**
+   * Accumulates a value into a group.
+   *
+   * @param group The group ordinal.
+   * @param value The value, of the column's type.
+   */
+  public abstract void add(int group, Value value);
+
+  /**
+   * Merges the state of a group of another accumulator of the same column and aggregation
+   * types into a group of this accumulator.
+   *
+   * @param group The group ordinal in this accumulator.
+   * @param other The other accumulator.
+   * @param otherGroup The group ordinal in the other accumulator.
+   */
+  public abstract void merge(int group, ColumnAccumulator other, int otherGroup);
+
+  /**
+   * Returns an aggregation value of a group.
+   *
+   * @param group The group ordinal.
+   * @param type The requested aggregation type.
+   *
+   * @return The aggregation value.
+   *
+   * @throws IllegalArgumentException Thrown if the aggregation type was not requested when
+   *     this accumulator was created.
+   */
+  public Value getValue(int group, AggregationType type) {
+    if (!aggregationTypes.contains(type)) {
+      throw new IllegalArgumentException("Aggregation type " + type.getCode()
+          + " was not requested");
+    }
+    long count = counts[group];
+    switch (type) {
+      case COUNT:
+        return new NumberValue(count);
+      case MIN:
+      case MAX:
+        return (count == 0) ? Value.getNullValueFromValueType(valueType)
+            : getExtremeValue(group, type == AggregationType.MAX);
+      case SUM:
+      case AVG:
+        if (count == 0) {
+          return NumberValue.getNullValue();
+        }
+        if (valueType != ValueType.NUMBER) {
+          throw new UnsupportedOperationException();
+        }
+        double sum = ((NumberAccumulator) this).sums[group];
+        return new NumberValue((type == AggregationType.SUM) ? sum : sum / count);
+      default:
+        throw new RuntimeException("Invalid AggregationType");
+    }
+  }
+
+  /**
+   * Returns the minimal or maximal value of a group that has non null values.
+   *
+   * @param group The group ordinal.
+   * @param max Whether to return the maximal value.
+   *
+   * @return The minimal or maximal value of the group.
+   */
+  protected abstract Value getExtremeValue(int group, boolean max);
+
+  /**
+   * Returns whether the sum is needed by the given aggregation types.
+   *
+   * @param aggregationTypes The aggregation types.
+   *
+   * @return Whether the sum is needed.
+   */
+  private static boolean needsSum(Set<AggregationType> aggregationTypes) {
+    return aggregationTypes.contains(AggregationType.SUM)
+        || aggregationTypes.contains(AggregationType.AVG);
+  }
+
+  /**
+   * An accumulator of a number column. The values are accumulated as primitive doubles, and
+   * compared as by {@link NumberValue#compareTo(Value)}.
+   */
+  private static class NumberAccumulator extends ColumnAccumulator {
+
+    /**
+     * The sum of each group, or null if not needed.
+     */
+    private double[] sums;
+
+    /**
+     * The minimal value of each group, or null if not needed.
+     */
+    private double[] mins;
+
+    /**
+     * The maximal value of each group, or null if not needed.
+     */
+    private double[] maxs;
+
+    /**
+     * Creates an accumulator with room for the given number of groups.
+     *
+     * @param aggregationTypes The aggregation types that can be requested.
+     * @param capacity The initial number of groups.
+     */
+    NumberAccumulator(Set<AggregationType> aggregationTypes, int capacity) {
+      super(ValueType.NUMBER, aggregationTypes, capacity);
+      sums = needsSum(aggregationTypes) ? new double[capacity] : null;
+      mins = aggregationTypes.contains(AggregationType.MIN) ? new double[capacity] : null;
+      maxs = aggregationTypes.contains(AggregationType.MAX) ? new double[capacity] : null;
+    }
+
+    @Override
+    public void grow(int capacity) {
+      super.grow(capacity);
+      if (sums != null) {
+        sums = Arrays.copyOf(sums, capacity);
+      }
+      if (mins != null) {
+        mins = Arrays.copyOf(mins, capacity);
+      }
+      if (maxs != null) {
+        maxs = Arrays.copyOf(maxs, capacity);
+      }
+    }
+
+    @Override
+    public void add(int group, Value value) {
+      if (value.isNull()) {
+        return;
+      }
+      add(group, ((NumberValue) value).getValue());
+    }
+
+    /**
+     * Accumulates a number into a group.
+     *
+     * @param group The group ordinal.
+     * @param number The number.
+     */
+    private void add(int group, double number) {
+      if (sums != null) {
+        sums[group] += number;
+      }
+      boolean first = (counts[group]++ == 0);
+      if ((mins != null) && (first || (Double.compare(number, mins[group]) < 0))) {
+        mins[group] = number;
+      }
+      if ((maxs != null) && (first || (Double.compare(number, maxs[group]) > 0))) {
+        maxs[group] = number;
+      }
+    }
+
+    @Override
+    public void merge(int group, ColumnAccumulator other, int otherGroup) {
+      NumberAccumulator otherNumbers = (NumberAccumulator) other;
+      long otherCount = otherNumbers.counts[otherGroup];
+      if (otherCount == 0) {
+        return;
+      }
+      boolean first = (counts[group] == 0);
+      counts[group] += otherCount;
+      if (sums != null) {
+        sums[group] += otherNumbers.sums[otherGroup];
+      }
+      if ((mins != null)
+          && (first || (Double.compare(otherNumbers.mins[otherGroup], mins[group]) < 0))) {
+        mins[group] = otherNumbers.mins[otherGroup];
+      }
+      if ((maxs != null)
+          && (first || (Double.compare(otherNumbers.maxs[otherGroup], maxs[group]) > 0))) {
+        maxs[group] = otherNumbers.maxs[otherGroup];
+      }
+    }
+
+    @Override
+    protected Value getExtremeValue(int group, boolean max) {
+      return new NumberValue(max ? maxs[group] : mins[group]);
+    }
+  }
+
+  /**
+   * An accumulator of a column that is not a number column. The minimal and maximal values are
+   * kept as values, and compared with {@link Value#compareTo(Value)} only if requested.
+   */
+  private static class ObjectAccumulator extends ColumnAccumulator {
+
+    /**
+     * The minimal value of each group, or null if not needed.
+     */
+    private Value[] mins;
+
+    /**
+     * The maximal value of each group, or null if not needed.
+     */
+    private Value[] maxs;
+
+    /**
+     * Creates an accumulator with room for the given number of groups.
+     *
+     * @param valueType The type of the accumulated column.
+     * @param aggregationTypes The aggregation types that can be requested.
+     * @param capacity The initial number of groups.
+     */
+    ObjectAccumulator(ValueType valueType, Set<AggregationType> aggregationTypes,
+        int capacity) {
+      super(valueType, aggregationTypes, capacity);
+      mins = aggregationTypes.contains(AggregationType.MIN) ? new Value[capacity] : null;
+      maxs = aggregationTypes.contains(AggregationType.MAX) ? new Value[capacity] : null;
+    }
+
+    @Override
+    public void grow(int capacity) {
+      super.grow(capacity);
+      if (mins != null) {
+        mins = Arrays.copyOf(mins, capacity);
+      }
+      if (maxs != null) {
+        maxs = Arrays.copyOf(maxs, capacity);
+      }
+    }
+
+    @Override
+    public void add(int group, Value value) {
+      if (value.isNull()) {
+        return;
+      }
+      addExtremes(group, value, value, counts[group]++ == 0);
+    }
+
+    /**
+     * Accumulates a minimal and a maximal value into a group.
+     *
+     * @param group The group ordinal.
+     * @param min The minimal value.
+     * @param max The maximal value.
+     * @param first Whether the group had no values before.
+     */
+    private void addExtremes(int group, Value min, Value max, boolean first) {
+      if ((mins != null) && (first || (mins[group].compareTo(min) > 0))) {
+        mins[group] = min;
+      }
+      if ((maxs != null) && (first || (maxs[group].compareTo(max) < 0))) {
+        maxs[group] = max;
+      }
+    }
+
+    @Override
+    public void merge(int group, ColumnAccumulator other, int otherGroup) {
+      ObjectAccumulator otherObjects = (ObjectAccumulator) other;
+      long otherCount = otherObjects.counts[otherGroup];
+      if (otherCount == 0) {
+        return;
+      }
+      boolean first = (counts[group] == 0);
+      counts[group] += otherCount;
+      addExtremes(group, (mins == null) ? null : otherObjects.mins[otherGroup],
+          (maxs == null) ? null : otherObjects.maxs[otherGroup], first);
+    }
+
+    @Override
+    protected Value getExtremeValue(int group, boolean max) {
+      return max ? maxs[group] : mins[group];
+    }
+  }
+}
@@ -15,9 +15,9 @@
 package com.google.visualization.datasource.query.engine;
 
 import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ImmutableList;
 import com.google.visualization.datasource.query.AbstractColumn;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -68,14 +68,15 @@ import java.util.List;
   }
 
   /**
-   * Returns the indices of the given column.
+   * Returns the indices of the given column. The returned list is an unmodifiable view, that
+   * changes if the indices of the column change.
    *
    * @param col The column to look for.
    *
    * @return The indeices of the column.
    */
   public List<Integer> getColumnIndices(AbstractColumn col) {
-    return ImmutableList.copyOf(columnToIndices.get(col));
+    return Collections.unmodifiableList(columnToIndices.get(col));
   }
 
   /**
@@ -0,0 +1,338 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Maps;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.query.AggregationType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Aggregates the rows of a table by groups, using a single hash table keyed on the values of
+ * the group-by columns. Each distinct combination of group-by values gets a group ordinal, in
+ * the order in which the groups are first seen, and the aggregation state of each aggregated
+ * column is kept in arrays indexed by group ordinal.
+ *
+ * Only the groups of full combinations of group-by values are kept. The groups of a prefix of
+ * the group-by columns are computed from them with {@link #rollUp(int)}.
+ *
+ * Each aggregated column is accumulated by a {@link ColumnAccumulator} specialized for its
+ * type and for the aggregation types requested on it.
+ */
+/* package */ class HashAggregator {
+
+  /**
+   * The initial number of groups for which room is made in the state arrays.
+   */
+  private static final int INITIAL_CAPACITY = 16;
+
+  /**
+   * The indices of the group-by columns in the table.
+   */
+  private final int[] groupByColumnIndices;
+
+  /**
+   * The indices of the aggregated columns in the table.
+   */
+  private final int[] aggregateColumnIndices;
+
+  /**
+   * The accumulators of the aggregated columns.
+   */
+  private final ColumnAccumulator[] accumulators;
+
+  /**
+   * Maps the group-by values of each group to its ordinal.
+   */
+  private final Map<GroupKey, Integer> groupOrdinals = Maps.newHashMap();
+
+  /**
+   * The group-by values of each group, by group ordinal.
+   */
+  private Value[][] groupValues;
+
+  /**
+   * The number of groups.
+   */
+  private int numberOfGroups = 0;
+
+  /**
+   * A key used to look up groups without creating a key per row.
+   */
+  private final GroupKey probe;
+
+  /**
+   * Creates an empty aggregator.
+   *
+   * @param groupByColumnIndices The indices of the group-by columns in the table.
+   * @param aggregateColumnIndices The indices of the aggregated columns in the table.
+   * @param aggregateTypes The types of the aggregated columns.
+   * @param aggregationTypes The aggregation types requested on each aggregated column.
+   */
+  public HashAggregator(int[] groupByColumnIndices, int[] aggregateColumnIndices,
+      ValueType[] aggregateTypes, List<Set<AggregationType>> aggregationTypes) {
+    this.groupByColumnIndices = groupByColumnIndices;
+    this.aggregateColumnIndices = aggregateColumnIndices;
+    groupValues = new Value[INITIAL_CAPACITY][];
+    accumulators = new ColumnAccumulator[aggregateColumnIndices.length];
+    for (int i = 0; i < accumulators.length; i++) {
+      accumulators[i] = ColumnAccumulator.create(aggregateTypes[i], aggregationTypes.get(i),
+          INITIAL_CAPACITY);
+    }
+    probe = new GroupKey(new Value[groupByColumnIndices.length]);
+  }
+
+  /**
+   * Creates an empty aggregator with empty copies of the given accumulators.
+   *
+   * @param groupByColumnIndices The indices of the group-by columns in the table.
+   * @param aggregateColumnIndices The indices of the aggregated columns in the table.
+   * @param prototypes The accumulators to copy.
+   */
+  private HashAggregator(int[] groupByColumnIndices, int[] aggregateColumnIndices,
+      ColumnAccumulator[] prototypes) {
+    this.groupByColumnIndices = groupByColumnIndices;
+    this.aggregateColumnIndices = aggregateColumnIndices;
+    groupValues = new Value[INITIAL_CAPACITY][];
+    accumulators = new ColumnAccumulator[prototypes.length];
+    for (int i = 0; i < accumulators.length; i++) {
+      accumulators[i] = prototypes[i].newEmptyCopy(INITIAL_CAPACITY);
+    }
+    probe = new GroupKey(new Value[groupByColumnIndices.length]);
+  }
+
+  /**
+   * Aggregates the rows in the given range of a table.
+   *
+   * @param table The table.
+   * @param fromRow The index of the first row to aggregate.
+   * @param toRow The index after the last row to aggregate.
+   */
+  public void aggregate(DataTable table, int fromRow, int toRow) {
+    Value[] probeValues = probe.values;
+    for (int rowIndex = fromRow; rowIndex < toRow; rowIndex++) {
+      for (int i = 0; i < groupByColumnIndices.length; i++) {
+        probeValues[i] = table.getValue(rowIndex, groupByColumnIndices[i]);
+      }
+      int group = getOrAddGroup();
+      for (int i = 0; i < accumulators.length; i++) {
+        accumulators[i].add(group, table.getValue(rowIndex, aggregateColumnIndices[i]));
+      }
+    }
+  }
+
+  /**
+   * Returns the ordinal of the group with the values of the probe key, adding the group if it
+   * does not exist.
+   *
+   * @return The ordinal of the group.
+   */
+  private int getOrAddGroup() {
+    probe.rehash();
+    Integer group = groupOrdinals.get(probe);
+    if (group != null) {
+      return group;
+    }
+    GroupKey key = new GroupKey(probe.values.clone());
+    int result = numberOfGroups;
+    if (result == groupValues.length) {
+      grow();
+    }
+    groupValues[result] = key.values;
+    groupOrdinals.put(key, result);
+    numberOfGroups++;
+    return result;
+  }
+
+  /**
+   * Doubles the room for groups in the state arrays.
+   */
+  private void grow() {
+    int capacity = groupValues.length * 2;
+    groupValues = Arrays.copyOf(groupValues, capacity);
+    for (ColumnAccumulator accumulator : accumulators) {
+      accumulator.grow(capacity);
+    }
+  }
+
+  /**
+   * Merges the aggregation state of a group of another aggregator, over the same columns, into
+   * a group of this aggregator.
+   *
+   * @param group The group ordinal in this aggregator.
+   * @param other The other aggregator.
+   * @param otherGroup The group ordinal in the other aggregator.
+   */
+  private void merge(int group, HashAggregator other, int otherGroup) {
+    for (int i = 0; i < accumulators.length; i++) {
+      accumulators[i].merge(group, other.accumulators[i], otherGroup);
+    }
+  }
+
+  /**
+   * Returns a new empty aggregator over the same columns and aggregation types as this one.
+   * Used to aggregate separate ranges of rows that are later merged with {@link #mergeAll}.
+   *
+   * @return A new empty aggregator.
+   */
+  public HashAggregator newEmptyCopy() {
+    return new HashAggregator(groupByColumnIndices, aggregateColumnIndices, accumulators);
+  }
+
+  /**
+   * Merges all the groups of another aggregator, over the same columns and aggregation types,
+   * into this aggregator. The groups of the other aggregator that are not in this aggregator
+   * are added after the groups of this aggregator, in their order in the other aggregator, so
+   * that aggregating consecutive ranges of rows separately and merging the results in order
+   * numbers the groups as aggregating all the rows at once.
+   *
+   * @param other The other aggregator.
+   */
+  public void mergeAll(HashAggregator other) {
+    Value[] probeValues = probe.values;
+    for (int group = 0; group < other.numberOfGroups; group++) {
+      System.arraycopy(other.groupValues[group], 0, probeValues, 0, probeValues.length);
+      merge(getOrAddGroup(), other, group);
+    }
+  }
+
+  /**
+   * Returns a new aggregator holding the groups of the first given number of group-by columns
+   * of this aggregator. Each group of the result holds the aggregation of the groups of this
+   * aggregator that start with its values.
+   *
+   * @param depth The number of group-by columns of the result.
+   *
+   * @return A new aggregator holding the groups of a prefix of the group-by columns.
+   */
+  public HashAggregator rollUp(int depth) {
+    HashAggregator result = new HashAggregator(
+        Arrays.copyOf(groupByColumnIndices, depth), aggregateColumnIndices, accumulators);
+    for (int group = 0; group < numberOfGroups; group++) {
+      System.arraycopy(groupValues[group], 0, result.probe.values, 0, depth);
+      result.merge(result.getOrAddGroup(), this, group);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of groups.
+   *
+   * @return The number of groups.
+   */
+  public int getNumberOfGroups() {
+    return numberOfGroups;
+  }
+
+  /**
+   * Returns the group-by values of a group.
+   *
+   * @param group The group ordinal.
+   *
+   * @return The group-by values of the group. The array must not be changed.
+   */
+  public Value[] getGroupValues(int group) {
+    return groupValues[group];
+  }
+
+  /**
+   * Returns the ordinal of the group with the given group-by values.
+   *
+   * @param values The group-by values.
+   *
+   * @return The ordinal of the group, or -1 if there is no such group.
+   */
+  public int getGroup(Value[] values) {
+    if (values.length != groupByColumnIndices.length) {
+      return -1;
+    }
+    Integer group = groupOrdinals.get(new GroupKey(values));
+    return (group == null) ? -1 : group;
+  }
+
+  /**
+   * Returns an aggregation value of an aggregated column in a group. As with
+   * {@link ValueAggregator#getValue(AggregationType)}, the aggregation of no values is null,
+   * except for count.
+   *
+   * @param group The group ordinal.
+   * @param column The index of the aggregated column in this aggregator.
+   * @param type The requested aggregation type.
+   *
+   * @return The aggregation value.
+   *
+   * @throws IllegalArgumentException Thrown if the aggregation type was not requested on the
+   *     column.
+   */
+  public Value getAggregationValue(int group, int column, AggregationType type) {
+    return accumulators[column].getValue(group, type);
+  }
+
+  /**
+   * The group-by values of a group, used as a hash key. The hash code is computed once.
+   */
+  private static class GroupKey {
+
+    /**
+     * The group-by values.
+     */
+    private final Value[] values;
+
+    /**
+     * The hash code of the values.
+     */
+    private int hash;
+
+    /**
+     * Creates a key of the given values.
+     *
+     * @param values The group-by values.
+     */
+    GroupKey(Value[] values) {
+      this.values = values;
+      rehash();
+    }
+
+    /**
+     * Recomputes the hash code, after the values were changed.
+     */
+    void rehash() {
+      hash = Arrays.hashCode(values);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof GroupKey)) {
+        return false;
+      }
+      GroupKey other = (GroupKey) o;
+      return (hash == other.hash) && Arrays.equals(values, other.values);
+    }
+  }
+}
@@ -28,8 +28,11 @@ import com.google.visualization.datasource.datatable.ValueFormatter;
 import com.google.visualization.datasource.datatable.value.Value;
 import com.google.visualization.datasource.query.AbstractColumn;
 import com.google.visualization.datasource.query.AggregationColumn;
+import com.google.visualization.datasource.query.AggregationType;
+import com.google.visualization.datasource.query.BoundColumn;
 import com.google.visualization.datasource.query.ColumnLookup;
 import com.google.visualization.datasource.query.DataTableColumnLookup;
+import com.google.visualization.datasource.query.FilterOptimizer;
 import com.google.visualization.datasource.query.GenericColumnLookup;
 import com.google.visualization.datasource.query.Query;
 import com.google.visualization.datasource.query.QueryFilter;
@@ -43,6 +46,8 @@ import com.google.visualization.datasource.query.ScalarFunctionColumn;
 import com.google.visualization.datasource.query.SimpleColumn;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -57,6 +62,13 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public final class QueryEngine {
 
+  /**
+   * The number of rows in each block of rows that is passed to the filter at once (see
+   * {@link QueryFilter#filterRows(DataTable, int[], int)}), and in each range of rows that is
+   * filtered by a single task when filtering in parallel.
+   */
+  private static final int FILTER_CHUNK_SIZE = 1 << 12;
+
   /**
    * Empty private constructor, to prevent initialization.
    */
@@ -80,7 +92,7 @@ public final class QueryEngine {
       DataTable original, List<ScalarFunctionColumnTitle> scalarFunctionColumnTitles) {
     DataTable result = new DataTable();
     for (String groupById : groupByColumnIds) {
-      result.addColumn(original.getColumnDescription(groupById));
+      result.addColumn(original.getColumnDescription(groupById).clone());
     }
     for (ColumnTitle colTitle : columnTitles) {
       result.addColumn(colTitle.createColumnDescription(original));
@@ -95,7 +107,15 @@ public final class QueryEngine {
   /**
    * Returns the data that is the result of executing the query. The query is validated against the
    * data table before execution and an InvalidQueryException is thrown if it is invalid.
-   * This function may change the given DataTable.
+   *
+   * The given table is treated as read-only: each stage works on row selections of its input
+   * (see {@link DataTable#selectRows(int[])}) and changes only tables it has created. So a single
+   * table can be shared by many queries, including concurrent ones, as long as it is not
+   * changed while they run. The result may share row and cell objects with the given table, and
+   * is the given table itself if the query does not change anything.
+   *
+   * All stages of the query run serially on the calling thread (see
+   * {@link QueryEngineSettings#QueryEngineSettings()}).
    *
    * @param query The query.
    * @param table The table to execute the query on.
@@ -103,6 +123,25 @@ public final class QueryEngine {
    * @return The data that is the result of executing the query.
    */
   public static DataTable executeQuery(Query query, DataTable table, Locale locale) {
+    return executeQuery(query, table, locale, new QueryEngineSettings());
+  }
+
+  /**
+   * Returns the data that is the result of executing the query, as
+   * {@link #executeQuery(Query, DataTable, Locale)}, running the stages of the query as set by
+   * the given settings. The rows of the result do not depend on the settings, but sums and
+   * averages of non-integer values grouped in parallel may differ in their last bits.
+   *
+   * @param query The query.
+   * @param table The table to execute the query on.
+   * @param locale The locale.
+   * @param settings The settings of the execution.
+   *
+   * @return The data that is the result of executing the query.
+   */
+  public static DataTable executeQuery(Query query, DataTable table, Locale locale,
+      QueryEngineSettings settings) {
+    DataTable input = table;
     ColumnIndices columnIndices = new ColumnIndices();
     List<ColumnDescription> columnsDescription = table.getColumnDescriptions();
     for (int i = 0; i < columnsDescription.size(); i++) {
@@ -114,17 +153,40 @@ public final class QueryEngine {
     TreeMap<List<Value>, ColumnLookup> columnLookups =
         new TreeMap<List<Value>, ColumnLookup>(GroupingComparators.VALUE_LIST_COMPARATOR);
     try {
-      table = performFilter(table, query);
-      table = performGroupingAndPivoting(table, query, columnIndices, columnLookups);
-      table = performSort(table, query, locale);
-      table = performSkipping(table, query);
-      table = performPagination(table, query);
+      // Only grouping and sorting create tables of their own. Filtering, skipping, pagination
+      // and selection work on the indices of the rows of the last table created, and the
+      // result table is created once, by the selection, from the rows they keep.
+      int[] rowIndices;
+      int numRows;
+      if (queryHasAggregation(query) || query.hasSort()) {
+        table = performFilter(table, query, settings);
+        table = performGroupingAndPivoting(table, query, columnIndices, columnLookups,
+            settings);
+        numRows = table.getNumberOfRows();
+        rowIndices = performSort(table, query, locale, settings);
+      } else {
+        rowIndices = filterRows(table, query, getMaxFilteredRows(query), settings);
+        numRows = (rowIndices == null) ? table.getNumberOfRows() : rowIndices.length;
+      }
+      int numSkippedRows = getNumberOfSkippedRows(query, numRows);
+      boolean isTruncated = getPaginationEnd(query, numSkippedRows) < numSkippedRows;
+      rowIndices = performSkippingAndPagination(rowIndices, numRows, query);
 
       AtomicReference<ColumnIndices> columnIndicesReference =
         new AtomicReference<ColumnIndices>(columnIndices);
-      table = performSelection(table, query, columnIndicesReference, columnLookups);
+      table = performSelection(table, rowIndices, query, columnIndicesReference,
+          columnLookups);
       columnIndices = columnIndicesReference.get();
+      // A table built by the selection does not have the warnings of the table it selects from.
+      if (isTruncated && !query.hasSelection()) {
+        addTruncationWarning(table);
+      }
 
+      // Labels and formatting change the table they are applied to, so if no previous stage
+      // created a new table, they are applied to a selection of all the input rows.
+      if ((table == input) && (query.hasLabels() || query.hasUserFormatOptions())) {
+        table = table.selectRows(getAllRowIndices(table));
+      }
       table = performLabels(table, query, columnIndices);
       table = performFormatting(table, query, columnIndices, locale);
     } catch (TypeMismatchException e) {
@@ -134,99 +196,245 @@ public final class QueryEngine {
   }
 
   /**
-   * Returns a table consisted of a subset of rows of the input table. 
-   * We select the first out of every k rows in the table according to the 
-   * skipping value in the query.
-   * If there is no need to do anything, returns the original table.
-   * 
-   * @param table The original table.
-   * @param query The query.
+   * Returns the indices of all the rows of a table, in order.
    *
-   * @return The skipped table, or the original if no skipping is needed. 
+   * @param table The table.
+   *
+   * @return The indices of all the rows of the table.
    */
-  private static DataTable performSkipping(DataTable table, Query query)
-      throws TypeMismatchException {
-    int rowSkipping = query.getRowSkipping();
-    
-    // Return the original table if no skipping is needed
-    if (rowSkipping <= 1) {
-      return table;
+  private static int[] getAllRowIndices(DataTable table) {
+    int[] rowIndices = new int[table.getNumberOfRows()];
+    for (int i = 0; i < rowIndices.length; i++) {
+      rowIndices[i] = i;
     }
+    return rowIndices;
+  }
 
-    // Add the first out of every k rows of the original table to TableRow
-    int numRows = table.getNumberOfRows();
-    List<TableRow> relevantRows = new ArrayList<TableRow>();
-    for (int rowIndex = 0; rowIndex < numRows; rowIndex += rowSkipping) {
-        relevantRows.add(table.getRows().get(rowIndex));
+  /**
+   * Returns the number of rows kept by the skipping of a query. The first out of every k rows
+   * is kept, according to the skipping value in the query.
+   *
+   * @param query The query.
+   * @param numRows The number of rows before skipping.
+   *
+   * @return The number of rows kept by the skipping.
+   */
+  private static int getNumberOfSkippedRows(Query query, int numRows) {
+    int rowSkipping = query.getRowSkipping();
+    if ((rowSkipping <= 1) || (numRows == 0)) {
+      return numRows;
     }
-    
-    // Create a table out of the TableRow array
-    DataTable newTable = new DataTable();
-    newTable.addColumns(table.getColumnDescriptions());
-    newTable.addRows(relevantRows);
-    
-    return newTable;
+    return (numRows - 1) / rowSkipping + 1;
   }
 
   /**
-   * Returns a paginated table, based on the row limit and offset parameters.
-   * If there is no need to do anything, returns the original table.
+   * Returns the index after the last row kept by the pagination of a query, based on the row
+   * limit and offset parameters.
    *
-   * @param table The original table.
    * @param query The query.
+   * @param numRows The number of rows before pagination.
    *
-   * @return The paginated table, or the original if no pagination is needed.
+   * @return The index after the last row kept by the pagination.
    */
-  private static DataTable performPagination(DataTable table, Query query)
-      throws TypeMismatchException {
-    int rowOffset = query.getRowOffset();
+  private static int getPaginationEnd(Query query, int numRows) {
     int rowLimit = query.getRowLimit();
-
-    // Return the original table if no pagination is needed
-    if (((rowLimit == -1) || (table.getRows().size() <= rowLimit)) && (rowOffset == 0)) {
-      return table;
+    if (rowLimit == -1) {
+      return numRows;
     }
-    int numRows = table.getNumberOfRows();
-    int fromIndex = Math.max(0, rowOffset);
-    int toIndex = (rowLimit == -1) ? numRows : Math.min(numRows, rowOffset + rowLimit);
+    return (int) Math.min(numRows, (long) query.getRowOffset() + rowLimit);
+  }
 
-    List<TableRow> relevantRows = table.getRows().subList(fromIndex, toIndex);
-    DataTable newTable = new DataTable();
-    newTable.addColumns(table.getColumnDescriptions());
-    newTable.addRows(relevantRows);
+  /**
+   * Returns the indices of the rows kept by the skipping and then the pagination of a query.
+   * The rows are given by their indices in a table, in order, and only the rows that the
+   * skipping and the pagination may keep need to be given.
+   * If there is no need to do anything, returns the given row indices.
+   *
+   * @param rowIndices The indices of the leading rows, in order, or null if the rows are all
+   *     the rows of the table.
+   * @param numRows The number of rows before skipping, which may be more than the number of
+   *     given row indices.
+   * @param query The query.
+   *
+   * @return The indices of the kept rows, or the given row indices if all are kept.
+   */
+  private static int[] performSkippingAndPagination(int[] rowIndices, int numRows,
+      Query query) {
+    int rowSkipping = Math.max(1, query.getRowSkipping());
+    int numSkippedRows = getNumberOfSkippedRows(query, numRows);
+    int fromIndex = Math.max(0, query.getRowOffset());
+    int toIndex = getPaginationEnd(query, numSkippedRows);
 
-    if (toIndex < numRows) { // Data truncated
-      Warning warning = new Warning(ReasonType.DATA_TRUNCATED, "Data has been truncated due to user"
-          + "request (LIMIT in query)");
-      newTable.addWarning(warning);
+    // Return the given rows if no skipping or pagination is needed
+    if ((rowSkipping == 1) && (fromIndex == 0) && (toIndex == numRows)) {
+      return rowIndices;
+    }
+    int[] relevantRows = new int[Math.max(0, toIndex - fromIndex)];
+    for (int i = 0; i < relevantRows.length; i++) {
+      int position = (fromIndex + i) * rowSkipping;
+      relevantRows[i] = (rowIndices == null) ? position : rowIndices[position];
     }
+    return relevantRows;
+  }
 
-    return newTable;
+  /**
+   * Adds to a table a warning that its rows were truncated because of the row limit of the
+   * query.
+   *
+   * @param table The table.
+   */
+  private static void addTruncationWarning(DataTable table) {
+    Warning warning = new Warning(ReasonType.DATA_TRUNCATED, "Data has been truncated due to user"
+        + "request (LIMIT in query)");
+    table.addWarning(warning);
   }
 
   /**
-   * Returns a table sorted according to the query's sort.
-   * The returned table has the same rows as the original table.
+   * Returns the indices of the rows of a table, sorted according to the query's sort.
+   * The table is not changed. The sort is stable.
+   *
+   * If the query has a row limit and no row skipping, only the rows that pagination can keep
+   * are needed. If these are fewer than the rows of the table, they are selected with a bounded
+   * heap instead of sorting all the rows, and only their indices are returned.
+   *
+   * Large tables are sorted in parallel, as set by the given settings, with the same result.
    *
    * @param table The table to sort.
    * @param query The query.
+   * @param locale The locale.
+   * @param settings The settings of the execution.
    *
-   * @return The sorted table.
+   * @return The indices of the leading sorted rows, or null if the query has no sort.
    */
-  private static DataTable performSort(final DataTable table,
-                                       final Query query,
-                                       final Locale locale) {
+  private static int[] performSort(DataTable table, Query query, Locale locale,
+      QueryEngineSettings settings) {
     if (!query.hasSort()) {
-      return table;
+      return null;
+    }
+    if (table.getNumberOfRows() == 0) {
+      return new int[0];
     }
     QuerySort sortBy = query.getSort();
     // A table description column lookup is enough because sorting by a column
     // that has multiple matching columns after pivoting is impossible. For example,
     // it is impossible to sort by an aggregation column when there is a pivot.
     DataTableColumnLookup columnLookup = new DataTableColumnLookup(table);
-    TableRowComparator comparator = new TableRowComparator(sortBy, locale, columnLookup);
-    Collections.sort(table.getRows(), comparator);
-    return table;
+    // The sort keys are computed once per row, and rows are compared by them.
+    SortKeys sortKeys = new SortKeys(sortBy, locale, columnLookup, table);
+    int numRows = table.getNumberOfRows();
+    int maxRows = getMaxSortedRows(query);
+    if (maxRows < numRows) {
+      return selectTopRows(sortKeys, numRows, maxRows);
+    }
+    return sortKeys.sortRows(settings.getPoolFor(numRows, settings.getParallelSortThreshold()));
+  }
+
+  /**
+   * Returns the number of leading sorted rows that the pagination of a query can keep.
+   *
+   * @param query The query.
+   *
+   * @return The number of rows that the pagination can keep, or Integer.MAX_VALUE if all the
+   *     sorted rows may be needed.
+   */
+  private static int getMaxSortedRows(Query query) {
+    int rowLimit = query.getRowLimit();
+    if ((rowLimit == -1) || (query.getRowSkipping() > 1)) {
+      return Integer.MAX_VALUE;
+    }
+    return (int) Math.min(Integer.MAX_VALUE, (long) Math.max(0, query.getRowOffset()) + rowLimit);
+  }
+
+  /**
+   * Returns the indices of the first rows of a table in the order of their sort keys, as a
+   * stable sort of all the rows would order them. The rows are selected with a bounded max-heap
+   * that holds the best rows seen so far, so only O(n log k) comparisons are made and only the
+   * selected rows are sorted.
+   *
+   * @param sortKeys The sort keys of the rows.
+   * @param numRows The number of rows of the table.
+   * @param count The number of rows to select, smaller than the number of rows of the table.
+   *
+   * @return The indices of the selected rows, in order.
+   */
+  private static int[] selectTopRows(SortKeys sortKeys, int numRows, int count) {
+    // Ties are broken by row index, which makes the order total and the selection stable.
+    int[] heap = new int[count];
+    for (int rowIndex = 0; rowIndex < count; rowIndex++) {
+      // Sift up.
+      int child = rowIndex;
+      while (child > 0) {
+        int parent = (child - 1) >>> 1;
+        if (compareRows(sortKeys, heap[parent], rowIndex) >= 0) {
+          break;
+        }
+        heap[child] = heap[parent];
+        child = parent;
+      }
+      heap[child] = rowIndex;
+    }
+    for (int rowIndex = count; rowIndex < numRows; rowIndex++) {
+      if ((count == 0) || (compareRows(sortKeys, rowIndex, heap[0]) >= 0)) {
+        continue;
+      }
+      // Replace the worst selected row, and sift down.
+      int parent = 0;
+      while (true) {
+        int child = 2 * parent + 1;
+        if (child >= count) {
+          break;
+        }
+        if ((child + 1 < count)
+            && (compareRows(sortKeys, heap[child + 1], heap[child]) > 0)) {
+          child++;
+        }
+        if (compareRows(sortKeys, heap[child], rowIndex) <= 0) {
+          break;
+        }
+        heap[parent] = heap[child];
+        parent = child;
+      }
+      heap[parent] = rowIndex;
+    }
+
+    // Take the worst remaining row out of the heap, from the last position to the first.
+    for (int size = count - 1; size > 0; size--) {
+      int last = heap[size];
+      heap[size] = heap[0];
+      int parent = 0;
+      while (true) {
+        int child = 2 * parent + 1;
+        if (child >= size) {
+          break;
+        }
+        if ((child + 1 < size)
+            && (compareRows(sortKeys, heap[child + 1], heap[child]) > 0)) {
+          child++;
+        }
+        if (compareRows(sortKeys, heap[child], last) <= 0) {
+          break;
+        }
+        heap[parent] = heap[child];
+        parent = child;
+      }
+      heap[parent] = last;
+    }
+    return heap;
+  }
+
+  /**
+   * Compares two rows by their sort keys, breaking ties by row index.
+   *
+   * @param sortKeys The sort keys of the rows.
+   * @param rowIndex1 The index of the first row.
+   * @param rowIndex2 The index of the second row.
+   *
+   * @return A negative number, zero, or a positive number, as the first row comes before, is,
+   *     or comes after the second row.
+   */
+  private static int compareRows(SortKeys sortKeys, int rowIndex1, int rowIndex2) {
+    int result = sortKeys.compare(rowIndex1, rowIndex2);
+    return (result != 0) ? result : Integer.compare(rowIndex1, rowIndex2);
   }
 
   /**
@@ -235,31 +443,203 @@ public final class QueryEngine {
    *
    * @param table The table to filter.
    * @param query The query.
+   * @param settings The settings of the execution.
    *
    * @return The filtered table.
    */
-  private static DataTable performFilter(DataTable table, Query query)
-      throws TypeMismatchException {
+  private static DataTable performFilter(DataTable table, Query query,
+      QueryEngineSettings settings) throws TypeMismatchException {
     if (!query.hasFilter()) {
       return table;
     }
+    return table.selectRows(filterRows(table, query, Integer.MAX_VALUE, settings));
+  }
+
+  /**
+   * Returns the number of leading matching rows that the skipping and the pagination of a
+   * query need, when they are applied to the rows that match its filter: the rows the pagination
+   * can keep, and one more row, which tells whether any row was left out.
+   *
+   * @param query The query.
+   *
+   * @return The number of leading matching rows needed, or Integer.MAX_VALUE if all the
+   *     matching rows may be needed.
+   */
+  private static int getMaxFilteredRows(Query query) {
+    int rowLimit = query.getRowLimit();
+    if (rowLimit == -1) {
+      return Integer.MAX_VALUE;
+    }
+    long maxRows = ((long) Math.max(0, query.getRowOffset()) + rowLimit)
+        * Math.max(1, query.getRowSkipping()) + 1;
+    return (int) Math.min(Integer.MAX_VALUE, maxRows);
+  }
 
-    List<TableRow> newRowList = Lists.newArrayList();
-    QueryFilter filter = query.getFilter();
-    for (TableRow inputRow : table.getRows()) {
-      if (filter.isMatch(table, inputRow)) {
-        newRowList.add(inputRow);
+  /**
+   * Returns the indices of the rows of a table that match the filter provided by a query, in
+   * order. Only the given number of leading matching rows are returned, and the scan of the
+   * table stops once they are found.
+   *
+   * The filter is evaluated on blocks of rows. When only a few more matching rows are needed, a
+   * block has no more rows than that number, so no row after the last needed one is evaluated.
+   *
+   * Large tables are filtered in parallel, as set by the given settings, unless only a few
+   * matching rows are needed. The result is the same.
+   *
+   * @param table The table to filter.
+   * @param query The query.
+   * @param maxRows The maximal number of matching rows to return.
+   * @param settings The settings of the execution.
+   *
+   * @return The indices of the leading matching rows, or null if the query has no filter.
+   */
+  private static int[] filterRows(DataTable table, Query query, int maxRows,
+      QueryEngineSettings settings) {
+    if (!query.hasFilter()) {
+      return null;
+    }
+
+    int numRows = table.getNumberOfRows();
+    if (numRows == 0) {
+      return new int[0];
+    }
+    QueryFilter filter = FilterOptimizer.optimize(query.getFilter());
+    if (FilterOptimizer.isAlwaysFalse(filter)) {
+      // A contradictory filter matches no row, so the rows are not read.
+      return new int[0];
+    }
+    // The columns of the filter are resolved once, before the rows are read.
+    filter = filter.bind(table);
+    int[] matchingRows;
+    int numMatchingRows = 0;
+    ForkJoinPool pool = settings.getPoolFor(numRows, settings.getParallelFilterThreshold());
+    if ((pool == null) || (numRows <= FILTER_CHUNK_SIZE) || (maxRows <= FILTER_CHUNK_SIZE)) {
+      matchingRows = new int[Math.min(numRows, maxRows)];
+      int[] block = new int[Math.min(numRows, FILTER_CHUNK_SIZE)];
+      int fromRow = 0;
+      while ((fromRow < numRows) && (numMatchingRows < maxRows)) {
+        int blockSize = Math.min(Math.min(block.length, numRows - fromRow),
+            maxRows - numMatchingRows);
+        for (int i = 0; i < blockSize; i++) {
+          block[i] = fromRow + i;
+        }
+        int numMatchingBlockRows = filter.filterRows(table, block, blockSize);
+        System.arraycopy(block, 0, matchingRows, numMatchingRows, numMatchingBlockRows);
+        numMatchingRows += numMatchingBlockRows;
+        fromRow += blockSize;
+      }
+    } else {
+      matchingRows = new int[numRows];
+      // Each chunk writes its matching rows at the start of its own range, and the ranges are
+      // then compacted in order.
+      int numChunks = (numRows - 1) / FILTER_CHUNK_SIZE + 1;
+      int[] numMatchingRowsByChunk = new int[numChunks];
+      pool.invoke(new FilterTask(filter, table, matchingRows, numMatchingRowsByChunk, 0,
+          numChunks));
+      for (int chunk = 0; chunk < numChunks; chunk++) {
+        System.arraycopy(matchingRows, chunk * FILTER_CHUNK_SIZE, matchingRows,
+            numMatchingRows, numMatchingRowsByChunk[chunk]);
+        numMatchingRows += numMatchingRowsByChunk[chunk];
       }
+      numMatchingRows = Math.min(numMatchingRows, maxRows);
     }
-    table.setRows(newRowList);
-    return table;
+    return Arrays.copyOf(matchingRows, numMatchingRows);
   }
 
   /**
-   * Returns a table that has only the columns from the given table that are specified by
-   * the query.
+   * A fork-join task that filters a range of chunks of the rows of a table, by splitting the
+   * range in halves until it holds a single chunk. The indices of the matching rows of each
+   * chunk are written in order at the start of the chunk's range in a shared array.
+   */
+  private static class FilterTask extends RecursiveAction {
+
+    /**
+     * The version of the serialized form. Tasks are only run in the JVM that created them, and
+     * are never serialized.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The filter.
+     */
+    private final QueryFilter filter;
+
+    /**
+     * The table to filter.
+     */
+    private final DataTable table;
+
+    /**
+     * The indices of the matching rows, written at the start of the range of each chunk.
+     */
+    private final int[] matchingRows;
+
+    /**
+     * The number of matching rows of each chunk.
+     */
+    private final int[] numMatchingRowsByChunk;
+
+    /**
+     * The index of the first chunk of the range.
+     */
+    private final int fromChunk;
+
+    /**
+     * The index after the last chunk of the range.
+     */
+    private final int toChunk;
+
+    /**
+     * Creates a task that filters a range of chunks.
+     *
+     * @param filter The filter.
+     * @param table The table to filter.
+     * @param matchingRows The indices of the matching rows, by chunk.
+     * @param numMatchingRowsByChunk The number of matching rows of each chunk.
+     * @param fromChunk The index of the first chunk of the range.
+     * @param toChunk The index after the last chunk of the range.
+     */
+    FilterTask(QueryFilter filter, DataTable table, int[] matchingRows,
+        int[] numMatchingRowsByChunk, int fromChunk, int toChunk) {
+      this.filter = filter;
+      this.table = table;
+      this.matchingRows = matchingRows;
+      this.numMatchingRowsByChunk = numMatchingRowsByChunk;
+      this.fromChunk = fromChunk;
+      this.toChunk = toChunk;
+    }
+
+    @Override
+    protected void compute() {
+      if (toChunk - fromChunk > 1) {
+        int middle = (fromChunk + toChunk) >>> 1;
+        invokeAll(new FilterTask(filter, table, matchingRows, numMatchingRowsByChunk,
+            fromChunk, middle),
+            new FilterTask(filter, table, matchingRows, numMatchingRowsByChunk, middle,
+            toChunk));
+        return;
+      }
+      int fromRow = fromChunk * FILTER_CHUNK_SIZE;
+      int toRow = Math.min(table.getNumberOfRows(), fromRow + FILTER_CHUNK_SIZE);
+      int[] block = new int[toRow - fromRow];
+      for (int i = 0; i < block.length; i++) {
+        block[i] = fromRow + i;
+      }
+      int numMatching = filter.filterRows(table, block, block.length);
+      System.arraycopy(block, 0, matchingRows, fromRow, numMatching);
+      numMatchingRowsByChunk[fromChunk] = numMatching;
+    }
+  }
+
+  /**
+   * Returns a table that has only the given rows and the columns from the given table that are
+   * specified by the query.
+   * If the query has no selection, returns a table that has only the given rows, or the given
+   * table if all its rows are kept.
    *
    * @param table The table from which to select.
+   * @param rowIndices The indices of the rows to select, in order, or null to select all the
+   *     rows.
    * @param query The query.
    * @param columnIndicesReference A reference to a ColumnIndices instance, so that
    *     this function can change the internal ColumnIndices.
@@ -267,11 +647,11 @@ public final class QueryEngine {
    *
    * @return The table with selected columns only.
    */
-  private static DataTable performSelection(DataTable table, Query query,
+  private static DataTable performSelection(DataTable table, int[] rowIndices, Query query,
       AtomicReference<ColumnIndices> columnIndicesReference,
       Map<List<Value>, ColumnLookup> columnLookups) throws TypeMismatchException {
     if (!query.hasSelection()) {
-      return table;
+      return (rowIndices == null) ? table : table.selectRows(rowIndices);
     }
 
     ColumnIndices columnIndices = columnIndicesReference.get();
@@ -299,7 +679,7 @@ public final class QueryEngine {
         newColumnIndices.put(col, currIndex++);
       } else {
         for (int colIndex : colIndices) {
-          newColumnDescriptions.add(oldColumnDescriptions.get(colIndex));
+          newColumnDescriptions.add(oldColumnDescriptions.get(colIndex).clone());
           newColumnIndices.put(col, currIndex++);
         }
       }
@@ -310,31 +690,46 @@ public final class QueryEngine {
     DataTable result = new DataTable();
     result.addColumns(newColumnDescriptions);
 
-    // Calculate the values in the data table rows.
-    for (TableRow sourceRow : table.getRows()) {
-      TableRow newRow = new TableRow();
-      for (AbstractColumn col : selectedColumns) {
-        boolean wasFound = false;
-        Set<List<Value>> pivotValuesSet = columnLookups.keySet();
-        for (List<Value> values : pivotValuesSet) {
-          // If the current column-lookup contains the current column and it is
-          // either a column that contains aggregations or a column that
-          // contains only group-by columns and was not yet found, get its value
-          // in the current row. Otherwise continue. If the column contains
-          // only group-by columns it should appear only once, even though
-          // it may appear in many column lookups.
-          if (columnLookups.get(values).containsColumn(col)
-              && ((col.getAllAggregationColumns().size() != 0) || !wasFound)) {
-            wasFound = true;
-            newRow.addCell(sourceRow.getCell(columnLookups.get(values).getColumnIndex(col)));
-          }
+    int numSelectedRows = (rowIndices == null) ? table.getNumberOfRows() : rowIndices.length;
+    if (numSelectedRows == 0) {
+      return result;
+    }
+
+    // Bind the cells of the new rows to the columns of the table, before the rows are read.
+    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
+    List<BoundColumn> cellColumns = Lists.newArrayList();
+    for (AbstractColumn col : selectedColumns) {
+      boolean wasFound = false;
+      for (ColumnLookup columnLookup : columnLookups.values()) {
+        // If the current column-lookup contains the current column and it is
+        // either a column that contains aggregations or a column that
+        // contains only group-by columns and was not yet found, its value is
+        // a cell of the new rows. Otherwise continue. If the column contains
+        // only group-by columns it should appear only once, even though
+        // it may appear in many column lookups.
+        if (columnLookup.containsColumn(col)
+            && ((col.getAllAggregationColumns().size() != 0) || !wasFound)) {
+          wasFound = true;
+          cellColumns.add(col.bind(columnLookup));
         }
-        // If the column was not found in any of the column lookups
-        // calculate its value (e.g., scalar function column that was not
-        // calculated in a previous stage).
-        if (!wasFound) {
-          DataTableColumnLookup lookup = new DataTableColumnLookup(table);
-          newRow.addCell(col.getCell(lookup, sourceRow));
+      }
+      // If the column was not found in any of the column lookups
+      // calculate its value (e.g., scalar function column that was not
+      // calculated in a previous stage).
+      if (!wasFound) {
+        cellColumns.add(col.bind(lookup));
+      }
+    }
+
+    // Calculate the values in the data table rows.
+    for (int i = 0; i < numSelectedRows; i++) {
+      int rowIndex = (rowIndices == null) ? i : rowIndices[i];
+      TableRow newRow = new TableRow(cellColumns.size());
+      for (BoundColumn cellColumn : cellColumns) {
+        if (cellColumn.isComputed()) {
+          newRow.addCell(cellColumn.getValue(table, rowIndex));
+        } else {
+          newRow.addCellFrom(table, rowIndex, cellColumn.getColumnIndex());
         }
       }
       result.addRow(newRow);
@@ -388,12 +783,13 @@ public final class QueryEngine {
    *     of the new columns, if grouping is performed, and then any
    *     previous values in it are cleared. If grouping is not performed, it is
    *     left as is.
+   * @param settings The settings of the execution.
    *
    * @return The new table, after grouping and pivoting was performed.
    */
   private static DataTable performGroupingAndPivoting(DataTable table, Query query,
-      ColumnIndices columnIndices, TreeMap<List<Value>, ColumnLookup> columnLookups)
-      throws TypeMismatchException {
+      ColumnIndices columnIndices, TreeMap<List<Value>, ColumnLookup> columnLookups,
+      QueryEngineSettings settings) throws TypeMismatchException {
     if (!queryHasAggregation(query) || (table.getNumberOfRows() == 0)) {
       return table;
     }
@@ -426,9 +822,14 @@ public final class QueryEngine {
       }
     }
     
-    List<String> aggregationIds = Lists.newArrayList();
+    // The aggregation types requested on each aggregated column.
+    Map<String, Set<AggregationType>> aggregationTypesByColumn = Maps.newLinkedHashMap();
     for (AggregationColumn col : columnAggregations) {
-      aggregationIds.add(col.getAggregatedColumn().getId());
+      String columnId = col.getAggregatedColumn().getId();
+      if (!aggregationTypesByColumn.containsKey(columnId)) {
+        aggregationTypesByColumn.put(columnId, EnumSet.noneOf(AggregationType.class));
+      }
+      aggregationTypesByColumn.get(columnId).add(col.getAggregationType());
     }
 
     List<ScalarFunctionColumn> groupAndPivotScalarFunctionColumns = Lists.newArrayList();
@@ -452,30 +853,40 @@ public final class QueryEngine {
           ScalarFunctionColumnTitle.getColumnDescriptionLabel(table, column)));
     }
 
-    DataTable tempTable = new DataTable();
-    tempTable.addColumns(newColumnDescriptions);
+    // Calculate the values of the added scalar function columns in each row. If there are no
+    // such columns, the original table is aggregated as is.
+    if (!groupAndPivotScalarFunctionColumns.isEmpty()) {
+      DataTable tempTable = new DataTable();
+      tempTable.addColumns(newColumnDescriptions);
 
-    // Calculate the values of the added scalar function columns in each row.
-    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
-    for (TableRow sourceRow : table.getRows()) {
-      TableRow newRow = new TableRow();
-      for (TableCell sourceCell : sourceRow.getCells()) {
-        newRow.addCell(sourceCell);
-      }
+      DataTableColumnLookup lookup = new DataTableColumnLookup(table);
+      List<BoundColumn> boundColumns =
+          Lists.newArrayListWithCapacity(groupAndPivotScalarFunctionColumns.size());
       for (ScalarFunctionColumn column : groupAndPivotScalarFunctionColumns) {
-        newRow.addCell(new TableCell(column.getValue(lookup, sourceRow)));
+        boundColumns.add(column.bind(lookup));
       }
-      try {
-        tempTable.addRow(newRow);
-      } catch (TypeMismatchException e) {
-        // Should not happen, given that the original table is OK.
+      int numColumns = table.getNumberOfColumns();
+      for (int rowIndex = 0; rowIndex < table.getNumberOfRows(); rowIndex++) {
+        TableRow newRow = new TableRow(newColumnDescriptions.size());
+        for (int colIndex = 0; colIndex < numColumns; colIndex++) {
+          newRow.addCellFrom(table, rowIndex, colIndex);
+        }
+        for (BoundColumn column : boundColumns) {
+          newRow.addCell(column.getValue(table, rowIndex));
+        }
+        try {
+          tempTable.addRow(newRow);
+        } catch (TypeMismatchException e) {
+          // Should not happen, given that the original table is OK.
+        }
       }
+      table = tempTable;
     }
-    table = tempTable;
 
     // Calculate the aggregations.
     TableAggregator aggregator = new TableAggregator(groupAndPivotIds,
-        Sets.newHashSet(aggregationIds), table);
+        aggregationTypesByColumn, table, settings.getPoolFor(table.getNumberOfRows(),
+        settings.getParallelAggregationThreshold()));
     Set<AggregationPath> paths = aggregator.getPathsToLeaves();
 
     // These variables will hold the "titles" of the rows and columns.
@@ -569,12 +980,20 @@ public final class QueryEngine {
       columnIndex++;
     }
 
+    // Bind the scalar function columns to the columns of their pivot values.
+    List<BoundColumn> scalarFunctionBoundColumns =
+        Lists.newArrayListWithCapacity(scalarFunctionColumnTitles.size());
+    for (ScalarFunctionColumnTitle columnTitle : scalarFunctionColumnTitles) {
+      scalarFunctionBoundColumns.add(columnTitle.scalarFunctionColumn.bind(
+          columnLookups.get(columnTitle.getValues())));
+    }
+
     // Dump the data from the metaTable to the result DataTable.
     for (RowTitle rowTitle : rowTitles) {
-      TableRow curRow = new TableRow();
+      TableRow curRow = new TableRow(colDescs.size());
       // Add the group-by columns cells.
       for (Value v : rowTitle.values) {
-        curRow.addCell(new TableCell(v));
+        curRow.addCell(v);
       }
       Map<ColumnTitle, TableCell> rowData = metaTable.getRow(rowTitle);
       int i = 0;
@@ -586,9 +1005,8 @@ public final class QueryEngine {
         i++;
       }
       // Add the scalar function columns cells.
-      for (ScalarFunctionColumnTitle columnTitle : scalarFunctionColumnTitles) {
-        curRow.addCell(new TableCell(columnTitle.scalarFunctionColumn.
-            getValue(columnLookups.get(columnTitle.getValues()), curRow)));
+      for (BoundColumn column : scalarFunctionBoundColumns) {
+        curRow.addCell(column.getValue(curRow));
       }
       result.addRow(curRow);
     }
@@ -672,7 +1090,8 @@ public final class QueryEngine {
   private static DataTable performFormatting(final DataTable table,
                                              final Query query,
                                              final ColumnIndices columnIndices,
-                                             final Locale locale) {
+                                             final Locale locale)
+      throws TypeMismatchException {
     if (!query.hasUserFormatOptions()) {
       return table;
     }
@@ -701,13 +1120,28 @@ public final class QueryEngine {
       }
     }
 
-    for (TableRow row : table.getRows()) {
-      for (int col : indexToFormatter.keySet()) {
-        TableCell cell = row.getCell(col);
-        Value value = cell.getValue();
-        ValueFormatter formatter = indexToFormatter.get(col);
-        String formattedValue = formatter.format(value);
-        cell.setFormattedValue(formattedValue);
+    // The formatted columns are resolved once, before the rows are read.
+    int[] formattedColumns = new int[indexToFormatter.size()];
+    ValueFormatter[] formatters = new ValueFormatter[formattedColumns.length];
+    int i = 0;
+    for (Map.Entry<Integer, ValueFormatter> entry : indexToFormatter.entrySet()) {
+      formattedColumns[i] = entry.getKey();
+      formatters[i] = entry.getValue();
+      i++;
+    }
+
+    for (int rowIndex = 0; rowIndex < table.getNumberOfRows(); rowIndex++) {
+      for (int j = 0; j < formattedColumns.length; j++) {
+        // The cell may be shared with the input table, so it is replaced rather than changed.
+        int col = formattedColumns[j];
+        Value value = table.getValue(rowIndex, col);
+        ValueFormatter formatter = formatters[j];
+        TableCell cell = new TableCell(value, formatter.format(value));
+        for (Map.Entry<String, String> entry
+            : table.getCellCustomProperties(rowIndex, col).entrySet()) {
+          cell.setCustomProperty(entry.getKey(), entry.getValue());
+        }
+        table.setCell(rowIndex, col, cell);
       }
     }
     return table;
@@ -0,0 +1,168 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Settings for the execution of queries by the {@link QueryEngine}.
+ * Holds the fork-join pool used to run the stages of a query in parallel, and the table sizes
+ * above which each stage is run in parallel. The rows of the result of a query do not depend on
+ * these settings, but sums and averages of non-integer values grouped in parallel may differ in
+ * their last bits from those grouped serially.
+ *
+ * Parallel execution is opt-in: by default there is no pool and all stages run serially on the
+ * calling thread, so that queries do not compete for the threads of a shared pool, for example
+ * in a servlet container. Set a pool (see {@link #setPool(ForkJoinPool)}) to run the stages over
+ * large tables in parallel.
+ */
+public class QueryEngineSettings {
+
+  /**
+   * The default minimal number of rows for which grouping is run in parallel.
+   */
+  public static final int DEFAULT_PARALLEL_AGGREGATION_THRESHOLD = 1 << 17;
+
+  /**
+   * The default minimal number of rows for which filtering is run in parallel.
+   */
+  public static final int DEFAULT_PARALLEL_FILTER_THRESHOLD = 1 << 16;
+
+  /**
+   * The default minimal number of rows for which sorting is run in parallel.
+   */
+  public static final int DEFAULT_PARALLEL_SORT_THRESHOLD = 1 << 16;
+
+  /**
+   * The pool on which stages are run in parallel, or null if all stages are run serially.
+   */
+  private ForkJoinPool pool;
+
+  /**
+   * The minimal number of rows for which grouping is run in parallel.
+   */
+  private int parallelAggregationThreshold;
+
+  /**
+   * The minimal number of rows for which filtering is run in parallel.
+   */
+  private int parallelFilterThreshold;
+
+  /**
+   * The minimal number of rows for which sorting is run in parallel.
+   */
+  private int parallelSortThreshold;
+
+  /**
+   * Constructs settings that run all stages serially, with the default thresholds for when a
+   * pool is set.
+   */
+  public QueryEngineSettings() {
+    pool = null;
+    parallelAggregationThreshold = DEFAULT_PARALLEL_AGGREGATION_THRESHOLD;
+    parallelFilterThreshold = DEFAULT_PARALLEL_FILTER_THRESHOLD;
+    parallelSortThreshold = DEFAULT_PARALLEL_SORT_THRESHOLD;
+  }
+
+  /**
+   * Returns the pool on which stages are run in parallel.
+   *
+   * @return The pool on which stages are run in parallel, or null if all stages are run
+   *     serially.
+   */
+  public ForkJoinPool getPool() {
+    return pool;
+  }
+
+  /**
+   * Sets the pool on which stages are run in parallel. A dedicated pool can be used to bound the
+   * number of threads used by queries, for example in a servlet container, and
+   * {@link ForkJoinPool#commonPool()} can be used to share the threads of the JVM-wide pool.
+   *
+   * @param pool The pool, or null to run all stages serially.
+   */
+  public void setPool(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Returns the minimal number of rows for which grouping is run in parallel.
+   *
+   * @return The minimal number of rows for which grouping is run in parallel.
+   */
+  public int getParallelAggregationThreshold() {
+    return parallelAggregationThreshold;
+  }
+
+  /**
+   * Sets the minimal number of rows for which grouping is run in parallel.
+   *
+   * @param parallelAggregationThreshold The minimal number of rows.
+   */
+  public void setParallelAggregationThreshold(int parallelAggregationThreshold) {
+    this.parallelAggregationThreshold = parallelAggregationThreshold;
+  }
+
+  /**
+   * Returns the minimal number of rows for which filtering is run in parallel.
+   *
+   * @return The minimal number of rows for which filtering is run in parallel.
+   */
+  public int getParallelFilterThreshold() {
+    return parallelFilterThreshold;
+  }
+
+  /**
+   * Sets the minimal number of rows for which filtering is run in parallel. The filter is then
+   * evaluated concurrently on ranges of rows, and the matching rows are kept in their order.
+   *
+   * @param parallelFilterThreshold The minimal number of rows.
+   */
+  public void setParallelFilterThreshold(int parallelFilterThreshold) {
+    this.parallelFilterThreshold = parallelFilterThreshold;
+  }
+
+  /**
+   * Returns the minimal number of rows for which sorting is run in parallel.
+   *
+   * @return The minimal number of rows for which sorting is run in parallel.
+   */
+  public int getParallelSortThreshold() {
+    return parallelSortThreshold;
+  }
+
+  /**
+   * Sets the minimal number of rows for which sorting is run in parallel. The sort is stable,
+   * so the order of the rows is the same as when sorting serially.
+   *
+   * @param parallelSortThreshold The minimal number of rows.
+   */
+  public void setParallelSortThreshold(int parallelSortThreshold) {
+    this.parallelSortThreshold = parallelSortThreshold;
+  }
+
+  /**
+   * Returns the pool on which a stage over the given number of rows should run, given its
+   * threshold.
+   *
+   * @param numberOfRows The number of rows.
+   * @param threshold The minimal number of rows for which the stage is run in parallel.
+   *
+   * @return The pool, or null if the stage should run serially.
+   */
+  /* package */ ForkJoinPool getPoolFor(int numberOfRows, int threshold) {
+    return (numberOfRows >= threshold) ? pool : null;
+  }
+}
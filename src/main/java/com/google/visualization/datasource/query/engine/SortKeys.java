@@ -0,0 +1,482 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TextDictionary;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.query.AbstractColumn;
+import com.google.visualization.datasource.query.BoundColumn;
+import com.google.visualization.datasource.query.ColumnLookup;
+import com.google.visualization.datasource.query.ColumnSort;
+import com.google.visualization.datasource.query.QuerySort;
+import com.google.visualization.datasource.query.SortOrder;
+
+import com.google.common.collect.Maps;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The sort keys of all the rows of a table, according to the query's ORDER BY, i.e.,
+ * {@link QuerySort}. The value of each sort column is computed once per row, so scalar
+ * function columns are not evaluated again on each comparison, and is kept in a form that is
+ * cheap to compare: number values as primitive doubles, and text values as their ranks in the
+ * collation order of the locale. Rows are then compared by index, in the same order as
+ * {@link TableRowComparator#compare(DataTable, int, int)}. The ranks of the texts of a column of
+ * the table are taken from the dictionary of the column cached on the table, so sorting a
+ * table again by the same column does not compare texts.
+ *
+ * The rows are sorted by a stable merge sort of their indices, which can run in parallel on a
+ * fork-join pool. Since the sort is stable, the result is the same with or without a pool.
+ */
+/* package */ class SortKeys {
+
+  /**
+   * The number of rows below which a range of rows is sorted by insertion.
+   */
+  private static final int INSERTION_SORT_THRESHOLD = 32;
+
+  /**
+   * The number of rows below which a range of rows is sorted by a single task when sorting in
+   * parallel.
+   */
+  private static final int PARALLEL_SORT_CHUNK_SIZE = 1 << 13;
+
+  /**
+   * The number of rows.
+   */
+  private final int numRows;
+
+  /**
+   * The keys of each sort column, in sequence of importance.
+   */
+  private final ColumnKeys[] columnKeys;
+
+  /**
+   * Whether each sort column is sorted in descending order.
+   */
+  private final boolean[] descending;
+
+  /**
+   * Computes the sort keys of all the rows of a table. The sort columns are bound to the
+   * columns of the table by the lookup once, before the rows are read.
+   *
+   * @param sort The ordering criteria.
+   * @param locale The locale defining the order relation of text values.
+   * @param lookup The column lookup.
+   * @param table The table.
+   */
+  public SortKeys(QuerySort sort, Locale locale, ColumnLookup lookup, DataTable table) {
+    numRows = table.getNumberOfRows();
+    List<ColumnSort> columns = sort.getSortColumns();
+    columnKeys = new ColumnKeys[columns.size()];
+    descending = new boolean[columns.size()];
+    Collator collator = null;
+    for (int i = 0; i < columns.size(); i++) {
+      ColumnSort columnSort = columns.get(i);
+      AbstractColumn column = columnSort.getColumn();
+      descending[i] = (columnSort.getOrder() == SortOrder.DESCENDING);
+      BoundColumn boundColumn = column.bind(lookup);
+      // The type of a column of the table is taken from the table, since the column may not be
+      // resolvable by its ID, e.g., an aggregation column of a grouped table.
+      ValueType type = boundColumn.isComputed() ? column.getValueType(table)
+          : table.getColumnDescription(boundColumn.getColumnIndex()).getType();
+      switch (type) {
+        case NUMBER:
+          columnKeys[i] = new NumberKeys(boundColumn, table);
+          break;
+        case TEXT:
+          if (!boundColumn.isComputed()) {
+            // The ranks of the texts of a table column are cached on the table.
+            columnKeys[i] = new DictionaryKeys(
+                table.getTextDictionary(boundColumn.getColumnIndex(), locale));
+            break;
+          }
+          if (collator == null) {
+            collator = Collator.getInstance(locale);
+          }
+          columnKeys[i] = new TextKeys(boundColumn, table, collator);
+          break;
+        default:
+          columnKeys[i] = new ValueKeys(boundColumn, table);
+      }
+    }
+  }
+
+  /**
+   * Compares two rows by their sort keys.
+   *
+   * @param rowIndex1 The index of the first row.
+   * @param rowIndex2 The index of the second row.
+   *
+   * @return a negative integer, zero, or a positive integer as the first
+   *     row is less than, equal to, or greater than the second.
+   */
+  public int compare(int rowIndex1, int rowIndex2) {
+    for (int i = 0; i < columnKeys.length; i++) {
+      int cc = columnKeys[i].compare(rowIndex1, rowIndex2);
+      if (cc != 0) {
+        return descending[i] ? -cc : cc;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the indices of all the rows, sorted stably by their sort keys.
+   *
+   * @param pool The pool on which to sort, or null to sort serially.
+   *
+   * @return The indices of all the rows, in order.
+   */
+  public int[] sortRows(ForkJoinPool pool) {
+    int[] rows = new int[numRows];
+    for (int i = 0; i < numRows; i++) {
+      rows[i] = i;
+    }
+    int[] buffer = new int[numRows];
+    if ((pool == null) || (numRows <= PARALLEL_SORT_CHUNK_SIZE)) {
+      mergeSort(rows, buffer, 0, numRows);
+    } else {
+      pool.invoke(new SortTask(rows, buffer, 0, numRows));
+    }
+    return rows;
+  }
+
+  /**
+   * Sorts a range of row indices stably by merge sort.
+   *
+   * @param rows The row indices.
+   * @param buffer A buffer of the size of the row indices.
+   * @param from The start of the range.
+   * @param to The end of the range.
+   */
+  private void mergeSort(int[] rows, int[] buffer, int from, int to) {
+    if (to - from <= INSERTION_SORT_THRESHOLD) {
+      insertionSort(rows, from, to);
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    mergeSort(rows, buffer, from, middle);
+    mergeSort(rows, buffer, middle, to);
+    merge(rows, buffer, from, middle, to);
+  }
+
+  /**
+   * Sorts a range of row indices stably by insertion.
+   *
+   * @param rows The row indices.
+   * @param from The start of the range.
+   * @param to The end of the range.
+   */
+  private void insertionSort(int[] rows, int from, int to) {
+    for (int i = from + 1; i < to; i++) {
+      int row = rows[i];
+      int j = i;
+      while ((j > from) && (compare(rows[j - 1], row) > 0)) {
+        rows[j] = rows[j - 1];
+        j--;
+      }
+      rows[j] = row;
+    }
+  }
+
+  /**
+   * Merges two consecutive sorted ranges of row indices. Of two rows with equal keys, the row
+   * of the first range comes first.
+   *
+   * @param rows The row indices.
+   * @param buffer A buffer of the size of the row indices.
+   * @param from The start of the first range.
+   * @param middle The end of the first range and the start of the second.
+   * @param to The end of the second range.
+   */
+  private void merge(int[] rows, int[] buffer, int from, int middle, int to) {
+    if (compare(rows[middle - 1], rows[middle]) <= 0) {
+      return;
+    }
+    System.arraycopy(rows, from, buffer, from, middle - from);
+    int i = from;
+    int j = middle;
+    int k = from;
+    while ((i < middle) && (j < to)) {
+      rows[k++] = (compare(rows[j], buffer[i]) < 0) ? rows[j++] : buffer[i++];
+    }
+    System.arraycopy(buffer, i, rows, k, middle - i);
+  }
+
+  /**
+   * A fork-join task that sorts a range of row indices, by sorting its halves in parallel and
+   * merging them.
+   */
+  private class SortTask extends RecursiveAction {
+
+    /**
+     * The version of the serialized form. Tasks are only run in the JVM that created them, and
+     * are never serialized.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The row indices.
+     */
+    private final int[] rows;
+
+    /**
+     * A buffer of the size of the row indices.
+     */
+    private final int[] buffer;
+
+    /**
+     * The start of the range.
+     */
+    private final int from;
+
+    /**
+     * The end of the range.
+     */
+    private final int to;
+
+    /**
+     * Creates a task that sorts a range of row indices.
+     *
+     * @param rows The row indices.
+     * @param buffer A buffer of the size of the row indices.
+     * @param from The start of the range.
+     * @param to The end of the range.
+     */
+    SortTask(int[] rows, int[] buffer, int from, int to) {
+      this.rows = rows;
+      this.buffer = buffer;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= PARALLEL_SORT_CHUNK_SIZE) {
+        mergeSort(rows, buffer, from, to);
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new SortTask(rows, buffer, from, middle),
+          new SortTask(rows, buffer, middle, to));
+      merge(rows, buffer, from, middle, to);
+    }
+  }
+
+  /**
+   * The keys of a single sort column for all the rows of a table.
+   */
+  private abstract static class ColumnKeys {
+
+    /**
+     * Compares the keys of two rows, in ascending order.
+     *
+     * @param rowIndex1 The index of the first row.
+     * @param rowIndex2 The index of the second row.
+     *
+     * @return a negative integer, zero, or a positive integer as the key of the first row is
+     *     less than, equal to, or greater than the key of the second.
+     */
+    abstract int compare(int rowIndex1, int rowIndex2);
+  }
+
+  /**
+   * The keys of a number column, as primitive doubles. Null values come first, as with
+   * {@link NumberValue#compareTo(Value)}.
+   */
+  private static class NumberKeys extends ColumnKeys {
+
+    /**
+     * The number of each row.
+     */
+    private final double[] numbers;
+
+    /**
+     * Whether the value of each row is null, or null if there are no null values.
+     */
+    private boolean[] nulls;
+
+    /**
+     * Computes the keys of a number column.
+     *
+     * @param column The column, bound to the columns of the table.
+     * @param table The table.
+     */
+    NumberKeys(BoundColumn column, DataTable table) {
+      int numRows = table.getNumberOfRows();
+      numbers = new double[numRows];
+      for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+        NumberValue value = (NumberValue) column.getValue(table, rowIndex);
+        if (value.isNull()) {
+          if (nulls == null) {
+            nulls = new boolean[numRows];
+          }
+          nulls[rowIndex] = true;
+        } else {
+          numbers[rowIndex] = value.getValue();
+        }
+      }
+    }
+
+    @Override
+    int compare(int rowIndex1, int rowIndex2) {
+      if (nulls != null) {
+        if (nulls[rowIndex1] || nulls[rowIndex2]) {
+          return (nulls[rowIndex1] ? 0 : 1) - (nulls[rowIndex2] ? 0 : 1);
+        }
+      }
+      return Double.compare(numbers[rowIndex1], numbers[rowIndex2]);
+    }
+  }
+
+  /**
+   * The keys of a text column, as the ranks of the texts in the collation order of the locale.
+   * Each distinct text is converted to a collation key once, the distinct keys are sorted, and
+   * texts that the collator considers equal get the same rank. Comparing the ranks of two texts
+   * is then the same as comparing the texts with the collator, as done by
+   * {@link TextValue#getTextLocalizedComparator(Locale)}.
+   */
+  private static class TextKeys extends ColumnKeys {
+
+    /**
+     * The rank of the text of each row.
+     */
+    private final int[] ranks;
+
+    /**
+     * Computes the keys of a text column.
+     *
+     * @param column The column, bound to the columns of the table.
+     * @param table The table.
+     * @param collator The collator of the locale.
+     */
+    TextKeys(BoundColumn column, DataTable table, Collator collator) {
+      int numRows = table.getNumberOfRows();
+      ranks = new int[numRows];
+
+      // Number the distinct texts, in the order in which they are first seen.
+      Map<String, Integer> textIds = Maps.newHashMap();
+      for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+        String text = ((TextValue) column.getValue(table, rowIndex)).getValue();
+        Integer id = textIds.get(text);
+        if (id == null) {
+          id = textIds.size();
+          textIds.put(text, id);
+        }
+        ranks[rowIndex] = id;
+      }
+
+      // Sort the distinct texts by their collation keys, and rank them.
+      final CollationKey[] keys = new CollationKey[textIds.size()];
+      Integer[] sortedIds = new Integer[keys.length];
+      for (Map.Entry<String, Integer> entry : textIds.entrySet()) {
+        keys[entry.getValue()] = collator.getCollationKey(entry.getKey());
+        sortedIds[entry.getValue()] = entry.getValue();
+      }
+      Arrays.sort(sortedIds, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer id1, Integer id2) {
+          return keys[id1].compareTo(keys[id2]);
+        }
+      });
+      int[] ranksById = new int[keys.length];
+      int rank = 0;
+      for (int i = 0; i < sortedIds.length; i++) {
+        if ((i > 0) && (keys[sortedIds[i - 1]].compareTo(keys[sortedIds[i]]) != 0)) {
+          rank++;
+        }
+        ranksById[sortedIds[i]] = rank;
+      }
+      for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+        ranks[rowIndex] = ranksById[ranks[rowIndex]];
+      }
+    }
+
+    @Override
+    int compare(int rowIndex1, int rowIndex2) {
+      return Integer.compare(ranks[rowIndex1], ranks[rowIndex2]);
+    }
+  }
+
+  /**
+   * The keys of a text column of the table, as the ranks of the texts in the order preserving
+   * dictionary of the column (see {@link DataTable#getTextDictionary(int, Locale)}).
+   */
+  private static class DictionaryKeys extends ColumnKeys {
+
+    /**
+     * The dictionary of the column.
+     */
+    private final TextDictionary dictionary;
+
+    /**
+     * Creates the keys of a text column.
+     *
+     * @param dictionary The dictionary of the column.
+     */
+    DictionaryKeys(TextDictionary dictionary) {
+      this.dictionary = dictionary;
+    }
+
+    @Override
+    int compare(int rowIndex1, int rowIndex2) {
+      return Integer.compare(dictionary.getRowRank(rowIndex1),
+          dictionary.getRowRank(rowIndex2));
+    }
+  }
+
+  /**
+   * The keys of a column of any other type, as values.
+   */
+  private static class ValueKeys extends ColumnKeys {
+
+    /**
+     * The value of each row.
+     */
+    private final Value[] values;
+
+    /**
+     * Computes the keys of a column.
+     *
+     * @param column The column, bound to the columns of the table.
+     * @param table The table.
+     */
+    ValueKeys(BoundColumn column, DataTable table) {
+      int numRows = table.getNumberOfRows();
+      values = new Value[numRows];
+      for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+        values[rowIndex] = column.getValue(table, rowIndex);
+      }
+    }
+
+    @Override
+    int compare(int rowIndex1, int rowIndex2) {
+      return values[rowIndex1].compareTo(values[rowIndex2]);
+    }
+  }
+}
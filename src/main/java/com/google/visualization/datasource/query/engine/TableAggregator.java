@@ -14,15 +14,22 @@
 
 package com.google.visualization.datasource.query.engine;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.visualization.datasource.datatable.DataTable;
 import com.google.visualization.datasource.datatable.TableRow;
 import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
 import com.google.visualization.datasource.query.AggregationType;
 
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Aggregates a DataTable according to specific row groups. The groups are defined by an ordered
@@ -32,15 +39,23 @@ import java.util.Set;
  * example all the rows where value("Name") = "John" and value("Cost") = 300). In addition there is
  * a group for each unique name ({"John"}, {"Sarah"}) and an additional group that contains all the
  * rows in the table.
- * The groups described above are kept in an aggregation tree. The root of the tree contains
- * aggregation information for the group of all rows. Each level of the tree (except for the root
- * level) is associated with an aggregation column. Each node of the tree is associated with a
- * value (of some cell in the column defining the node's level). A path in the tree from the root
- * to a node is represented by an ordered list of values, and is associated with the group of data
- * rows identified by this list. In our example the tree contains one path of length 0 ({}), two
- * paths of length 1 ({"John"}, {"Sarah"}), and three paths of length two ({"John", 300},
- * {"John", 19}, {"Sarah", 2222}).
- * 
+ * The groups of all the group-by columns are aggregated in a single pass over the table, with
+ * one hash table keyed on the values of the group-by columns (see {@link HashAggregator}). A
+ * group is identified by an aggregation path, i.e., an ordered list of values of the group-by
+ * columns, and the paths of the groups of all the group-by columns are the leaves of a logical
+ * aggregation tree (see {@link AggregationTree}). In our example there is one path of length 0
+ * ({}), two paths of length 1 ({"John"}, {"Sarah"}), and three paths of length two
+ * ({"John", 300}, {"John", 19}, {"Sarah", 2222}). The groups of shorter paths are computed from
+ * the groups of the leaves when they are first requested.
+ *
+ * A large table can be aggregated in parallel on a fork-join pool. The table is split into
+ * chunks of a fixed number of rows that are aggregated separately and then merged in order, so
+ * the order of the groups is the same as in a serial aggregation. The sum of a group with rows
+ * in more than one chunk is the sum of the sums of its chunks, so on tables of more than
+ * {@link #CHUNK_SIZE} rows the sums and averages of non-integer values may differ in their last
+ * bits from those of a serial aggregation. Without a pool the table is aggregated in a single
+ * pass with one running sum per group.
+ *
  * The aggregation data stored is all aggregation data possible for the columns to aggregate (also
  * called aggregation columns): the minimum, maximum, count, average, and sum, each of these
  * where applicable.
@@ -50,23 +65,33 @@ import java.util.Set;
 
 public class TableAggregator {
 
+  /**
+   * The number of rows in each chunk of the table that is aggregated separately on a pool.
+   * Changing it may change the rounding of the sums of tables larger than a chunk that are
+   * aggregated in parallel.
+   */
+  /* package */ static final int CHUNK_SIZE = 1 << 16;
+
   /**
    * An ordered list of columns to group by.
    */
   private List<String> groupByColumns;
 
   /**
-   * A set of columns to aggregate.
+   * Maps the id of each column to aggregate to its index in the hash aggregators.
    */
-  private Set<String> aggregateColumns;
+  private Map<String, Integer> aggregateColumnIndices = Maps.newHashMap();
 
   /**
-   * An aggregation tree is the logical data structure to use for grouping.
+   * The aggregators of the groups of each prefix of the group-by columns, by the length of the
+   * prefix. The aggregator of all the group-by columns is computed when the table is
+   * aggregated, and the others are computed from it when they are first requested.
    */
-  private AggregationTree tree;
+  private HashAggregator[] aggregatorsByDepth;
 
   /**
-   * Constructs a table aggregator and aggregates the table.
+   * Constructs a table aggregator and aggregates the table. All the aggregation types can be
+   * requested on each aggregated column.
    *
    * @param groupByColumns An ordered list of columns to group by.
    * @param aggregateColumns A set of columns to aggregate.
@@ -74,17 +99,172 @@ public class TableAggregator {
    */
   public TableAggregator(List<String> groupByColumns, Set<String> aggregateColumns,
       DataTable table) {
+    this(groupByColumns, allAggregationTypes(aggregateColumns), table);
+  }
+
+  /**
+   * Constructs a table aggregator and aggregates the table, keeping only the aggregation data
+   * needed by the given aggregation types of each column. Only these aggregation types can be
+   * requested with {@link #getAggregationValue(AggregationPath, String, AggregationType)}.
+   *
+   * @param groupByColumns An ordered list of columns to group by.
+   * @param aggregationTypesByColumn Maps the id of each column to aggregate to the aggregation
+   *     types requested on it.
+   * @param table The table.
+   */
+  public TableAggregator(List<String> groupByColumns,
+      Map<String, Set<AggregationType>> aggregationTypesByColumn, DataTable table) {
+    this(groupByColumns, aggregationTypesByColumn, table, null);
+  }
+
+  /**
+   * Constructs a table aggregator and aggregates the table, keeping only the aggregation data
+   * needed by the given aggregation types of each column. If a pool is given, the chunks of the
+   * table are aggregated in parallel on it. The groups and their order are the same as without a
+   * pool, but sums and averages of non-integer values may differ in their last bits.
+   *
+   * @param groupByColumns An ordered list of columns to group by.
+   * @param aggregationTypesByColumn Maps the id of each column to aggregate to the aggregation
+   *     types requested on it.
+   * @param table The table.
+   * @param pool The pool on which to aggregate the chunks of the table, or null to aggregate
+   *     them serially.
+   */
+  public TableAggregator(List<String> groupByColumns,
+      Map<String, Set<AggregationType>> aggregationTypesByColumn, DataTable table,
+      ForkJoinPool pool) {
 
     this.groupByColumns = groupByColumns;
-    this.aggregateColumns = aggregateColumns;
 
-    tree = new AggregationTree(aggregateColumns, table);
+    int[] groupByIndices = new int[groupByColumns.size()];
+    for (int i = 0; i < groupByIndices.length; i++) {
+      groupByIndices[i] = table.getColumnIndex(groupByColumns.get(i));
+    }
+    int[] aggregateIndices = new int[aggregationTypesByColumn.size()];
+    ValueType[] aggregateTypes = new ValueType[aggregateIndices.length];
+    List<Set<AggregationType>> aggregationTypes =
+        Lists.newArrayListWithCapacity(aggregateIndices.length);
+    for (Map.Entry<String, Set<AggregationType>> entry : aggregationTypesByColumn.entrySet()) {
+      String columnId = entry.getKey();
+      int i = aggregateColumnIndices.size();
+      aggregateColumnIndices.put(columnId, i);
+      aggregateIndices[i] = table.getColumnIndex(columnId);
+      aggregateTypes[i] = table.getColumnDescription(columnId).getType();
+      aggregationTypes.add(entry.getValue());
+    }
+
+    HashAggregator aggregator = aggregate(table,
+        new HashAggregator(groupByIndices, aggregateIndices, aggregateTypes, aggregationTypes),
+        pool);
+    aggregatorsByDepth = new HashAggregator[groupByIndices.length + 1];
+    aggregatorsByDepth[groupByIndices.length] = aggregator;
+  }
+
+  /**
+   * Aggregates a table. Without a pool, or if the table fits in one chunk, the table is
+   * aggregated in a single pass. Otherwise the chunks of the table are aggregated separately on
+   * the pool and merged in order into the first one.
+   *
+   * @param table The table.
+   * @param empty An empty aggregator, used for the whole table or for its first chunk.
+   * @param pool The pool on which to aggregate the chunks, or null to aggregate the table in a
+   *     single pass.
+   *
+   * @return The aggregator of the whole table.
+   */
+  private static HashAggregator aggregate(final DataTable table, HashAggregator empty,
+      ForkJoinPool pool) {
+    final int numberOfRows = table.getNumberOfRows();
+    if (pool == null || numberOfRows <= CHUNK_SIZE) {
+      empty.aggregate(table, 0, numberOfRows);
+      return empty;
+    }
+    final HashAggregator[] partials = new HashAggregator[(numberOfRows - 1) / CHUNK_SIZE + 1];
+    partials[0] = empty;
+    for (int i = 1; i < partials.length; i++) {
+      partials[i] = empty.newEmptyCopy();
+    }
+    pool.invoke(new ChunkAggregation(table, partials, 0, partials.length));
+    for (int i = 1; i < partials.length; i++) {
+      partials[0].mergeAll(partials[i]);
+      partials[i] = null;
+    }
+    return partials[0];
+  }
+
+  /**
+   * A fork-join task that aggregates a range of chunks of a table, each into its own
+   * aggregator, by splitting the range in halves until it holds a single chunk.
+   */
+  private static class ChunkAggregation extends RecursiveAction {
+
+    /**
+     * The version of the serialized form. Tasks are only run in the JVM that created them, and
+     * are never serialized.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The table.
+     */
+    private final DataTable table;
+
+    /**
+     * The aggregators of all the chunks.
+     */
+    private final HashAggregator[] partials;
+
+    /**
+     * The index of the first chunk of the range.
+     */
+    private final int fromChunk;
+
+    /**
+     * The index after the last chunk of the range.
+     */
+    private final int toChunk;
+
+    /**
+     * Creates a task that aggregates a range of chunks.
+     *
+     * @param table The table.
+     * @param partials The aggregators of all the chunks.
+     * @param fromChunk The index of the first chunk of the range.
+     * @param toChunk The index after the last chunk of the range.
+     */
+    ChunkAggregation(DataTable table, HashAggregator[] partials, int fromChunk, int toChunk) {
+      this.table = table;
+      this.partials = partials;
+      this.fromChunk = fromChunk;
+      this.toChunk = toChunk;
+    }
+
+    @Override
+    protected void compute() {
+      if (toChunk - fromChunk == 1) {
+        partials[fromChunk].aggregate(table, fromChunk * CHUNK_SIZE,
+            Math.min(table.getNumberOfRows(), toChunk * CHUNK_SIZE));
+        return;
+      }
+      int middle = (fromChunk + toChunk) >>> 1;
+      invokeAll(new ChunkAggregation(table, partials, fromChunk, middle),
+          new ChunkAggregation(table, partials, middle, toChunk));
+    }
+  }
 
-    // Iterate over all rows and aggregate each row via the aggregation tree.
-    for (TableRow row : table.getRows()) {
-      tree.aggregate(getRowPath(row, table, groupByColumns.size() - 1), 
-          getValuesToAggregate(row, table));
+  /**
+   * Returns a map from each of the given column ids to the set of all aggregation types.
+   *
+   * @param columnIds The column ids.
+   *
+   * @return A map from each of the given column ids to the set of all aggregation types.
+   */
+  private static Map<String, Set<AggregationType>> allAggregationTypes(Set<String> columnIds) {
+    Map<String, Set<AggregationType>> result = Maps.newLinkedHashMap();
+    for (String columnId : columnIds) {
+      result.put(columnId, EnumSet.allOf(AggregationType.class));
     }
+    return result;
   }
 
   /**
@@ -102,38 +282,45 @@ public class TableAggregator {
     // columns in the table row (in the correct order).
     for (int i = 0; i <= depth; i++) {
       String columnId = groupByColumns.get(i);
-      Value curValue = row.getCell(table.getColumnIndex(columnId)).getValue();
+      Value curValue = row.getValue(table.getColumnIndex(columnId));
       result.add(curValue);
     }
     return result;
   }
 
   /**
-   * Returns a set containing the paths to all the leaves in the tree.
+   * Returns a set containing the paths to all the leaves in the tree, i.e., the paths of the
+   * groups of all the group-by columns.
    *
    * @return A set containing the paths to all the leaves in the tree.
    */
   public Set<AggregationPath> getPathsToLeaves() {
-    return tree.getPathsToLeaves();
+    HashAggregator aggregator = aggregatorsByDepth[groupByColumns.size()];
+    Set<AggregationPath> result = Sets.newHashSetWithExpectedSize(
+        aggregator.getNumberOfGroups());
+    for (int group = 0; group < aggregator.getNumberOfGroups(); group++) {
+      AggregationPath path = new AggregationPath();
+      for (Value value : aggregator.getGroupValues(group)) {
+        path.add(value);
+      }
+      result.add(path);
+    }
+    return result;
   }
 
   /**
-   * Creates a map from column id to value according to the aggregation columns.
+   * Returns the aggregator of the groups of the given number of leading group-by columns,
+   * computing it if needed.
    *
-   * @param row The table row.
-   * @param table The table.
+   * @param depth The number of group-by columns.
    *
-   * @return A map from column id to value according to the aggregation columns.
+   * @return The aggregator of the groups of the given number of group-by columns.
    */
-  private Map<String, Value> getValuesToAggregate(TableRow row, DataTable table) {
-    Map<String, Value> result = Maps.newHashMap();
-    // The map is generated by looking for the values of the aggregation columns
-    // in the table row.
-    for (String columnId : aggregateColumns) {
-      Value curValue = row.getCell(table.getColumnIndex(columnId)).getValue();
-      result.put(columnId, curValue);
+  private HashAggregator getAggregator(int depth) {
+    if (aggregatorsByDepth[depth] == null) {
+      aggregatorsByDepth[depth] = aggregatorsByDepth[groupByColumns.size()].rollUp(depth);
     }
-    return result;
+    return aggregatorsByDepth[depth];
   }
 
   /**
@@ -144,9 +331,25 @@ public class TableAggregator {
    * @param type The requested aggregation type.
    *
    * @return The aggregation values of a specific column.
+   *
+   * @throws NoSuchElementException Thrown if there is no group with the given path.
+   * @throws IllegalArgumentException Thrown if the column is not aggregated, or if the
+   *     aggregation type was not requested on it.
    */
   public Value getAggregationValue(AggregationPath path, String columnId,
       AggregationType type) {
-    return tree.getNode(path).getAggregationValue(columnId, type);
+    List<Value> values = path.getValues();
+    int group = -1;
+    if (values.size() <= groupByColumns.size()) {
+      group = getAggregator(values.size()).getGroup(values.toArray(new Value[values.size()]));
+    }
+    if (group == -1) {
+      throw new NoSuchElementException("Path " + values + " is not in the aggregation tree.");
+    }
+    Integer column = aggregateColumnIndices.get(columnId);
+    if (column == null) {
+      throw new IllegalArgumentException("Column " + columnId + " is not aggregated");
+    }
+    return getAggregator(values.size()).getAggregationValue(group, column, type);
   }
 }
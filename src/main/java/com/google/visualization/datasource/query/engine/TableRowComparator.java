@@ -14,6 +14,7 @@
 
 package com.google.visualization.datasource.query.engine;
 
+import com.google.visualization.datasource.datatable.DataTable;
 import com.google.visualization.datasource.datatable.TableRow;
 import com.google.visualization.datasource.datatable.value.Value;
 import com.google.visualization.datasource.query.AbstractColumn;
@@ -97,4 +98,27 @@ import java.util.Locale;
     }
     return 0;
   }
+
+  /**
+   * Compares two rows of a table, given by their indices, in the same way as
+   * {@link #compare(TableRow, TableRow)}. The values are read directly from the table.
+   *
+   * @param table The table containing the rows.
+   * @param rowIndex1 the index of the first row to be compared.
+   * @param rowIndex2 the index of the second row to be compared.
+   *
+   * @return a negative integer, zero, or a positive integer as the first
+   *     row is less than, equal to, or greater than the second.
+   */
+  public int compare(DataTable table, int rowIndex1, int rowIndex2) {
+    for (int i = 0; i < sortColumns.length; i++) {
+      AbstractColumn col = sortColumns[i];
+      int cc = valueComparator.compare(col.getValue(columnLookup, table, rowIndex1),
+          col.getValue(columnLookup, table, rowIndex2));
+      if (cc != 0) {
+        return (sortColumnOrder[i] == SortOrder.ASCENDING) ? cc  : -cc;
+      }
+    }
+    return 0;
+  }
 }
@@ -21,12 +21,8 @@ import com.google.visualization.datasource.datatable.value.NumberValue;
 import com.google.visualization.datasource.datatable.value.Value;
 import com.google.visualization.datasource.datatable.value.ValueType;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.List;
 
-import static java.time.temporal.ChronoUnit.DAYS;
-
 /**
  * The binary scalar function datediff().
  * Returns the difference in days between two dates or date time values.
@@ -87,25 +83,21 @@ public class DateDiff implements ScalarFunction {
     if (firstValue.isNull() || secondValue.isNull()) {
       return NumberValue.getNullValue();
     }
-    final LocalDate dateFromValue1 = getDateFromValue(secondValue);
-    final LocalDate dateFromValue2 = getDateFromValue(firstValue);
-
-    return new NumberValue(DAYS.between(dateFromValue1, dateFromValue2));
+    return new NumberValue((long) getEpochDay(firstValue) - getEpochDay(secondValue));
   }
 
   /**
-   * Converts the given value to date. The value must be of type date or datetime.
+   * Returns the epoch day of the given value. The value must be of type date or datetime.
    *
    * @param value The given value.
    *
-   * @return Date object with the same value as the given value.
+   * @return The number of days since 1970-01-01 of the date part of the given value.
    */
-  private LocalDate getDateFromValue(Value value) {
+  private int getEpochDay(Value value) {
     if (value.getType() == ValueType.DATE) {
-      return ((DateValue) value).getObjectToFormat();
+      return ((DateValue) value).getEpochDay();
     } else { // datetime
-      final LocalDateTime localDateTime = ((DateTimeValue) value).getObjectToFormat();
-      return localDateTime.toLocalDate();
+      return ((DateTimeValue) value).getEpochDay();
     }
   }
 
@@ -23,7 +23,6 @@ import com.google.visualization.datasource.datatable.value.TimeOfDayValue;
 import com.google.visualization.datasource.datatable.value.Value;
 import com.google.visualization.datasource.datatable.value.ValueType;
 
-import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -211,11 +210,11 @@ public class TimeComponentExtractor implements ScalarFunction {
         component = (component - 1) / 3 + 1; // Add 1 to get 1-4 instead of 0-3.
         break;
       case DAY_OF_WEEK:
-        LocalDate localDate = valueType == ValueType.DATE ?
-                ((DateValue) value).getObjectToFormat() :
-                ((DateTimeValue) value).getObjectToFormat().toLocalDate();
-
-        component = localDate.getDayOfWeek().getValue();
+        if (valueType == ValueType.DATE) {
+          component = ((DateValue) value).getDayOfWeek();
+        } else { // DATETIME
+          component = ((DateTimeValue) value).getDayOfWeek();
+        }
         break;
       default:
         // should not get here since we assume that the given values are valid.
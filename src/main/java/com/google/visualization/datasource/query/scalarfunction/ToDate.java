@@ -22,8 +22,6 @@ import com.google.visualization.datasource.datatable.value.Value;
 import com.google.visualization.datasource.datatable.value.ValueType;
 
 import java.time.Instant;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.List;
 
@@ -93,8 +91,7 @@ public class ToDate implements ScalarFunction {
         dateValue = (DateValue) value;
         break;
       case DATETIME:
-        final LocalDateTime localDateTime = (((DateTimeValue) value)).getObjectToFormat();
-        dateValue = new DateValue(localDateTime.toLocalDate());
+        dateValue = DateValue.fromEpochDay(((DateTimeValue) value).getEpochDay());
         break;
       case NUMBER:
         dateValue = new DateValue(
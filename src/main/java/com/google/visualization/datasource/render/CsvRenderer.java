@@ -17,9 +17,8 @@ package com.google.visualization.datasource.render;
 import com.google.visualization.datasource.base.ResponseStatus;
 import com.google.visualization.datasource.datatable.ColumnDescription;
 import com.google.visualization.datasource.datatable.DataTable;
-import com.google.visualization.datasource.datatable.TableCell;
-import com.google.visualization.datasource.datatable.TableRow;
 import com.google.visualization.datasource.datatable.ValueFormatter;
+import com.google.visualization.datasource.datatable.value.Value;
 import com.google.visualization.datasource.datatable.value.ValueType;
 
 import org.apache.commons.lang3.StringUtils;
@@ -77,18 +76,18 @@ public class CsvRenderer {
     sb.replace(length - 1, length, "\n");
 
     // Append the data cells.
-    List<TableRow> rows = dataTable.getRows();
-    for (TableRow row : rows) {
-      List<TableCell> cells = row.getCells();
-      for (TableCell cell : cells) {
-        String formattedValue = cell.getFormattedValue();
+    int numberOfColumns = dataTable.getNumberOfColumns();
+    for (int rowIndex = 0; rowIndex < dataTable.getNumberOfRows(); rowIndex++) {
+      for (int colIndex = 0; colIndex < numberOfColumns; colIndex++) {
+        Value value = dataTable.getValue(rowIndex, colIndex);
+        String formattedValue = dataTable.getFormattedValue(rowIndex, colIndex);
         if (formattedValue == null) {
-          formattedValue = formatters.get(cell.getType()).format(cell.getValue());
+          formattedValue = formatters.get(value.getType()).format(value);
         }
-        if (cell.isNull()) {
+        if (value.isNull()) {
           sb.append("null");
         } else {
-          ValueType type = cell.getType();
+          ValueType type = value.getType();
           // Escape the string with quotes if its a text value or if it contains a comma.
           if (formattedValue.indexOf(',') > -1 || type.equals(ValueType.TEXT)) {
             sb.append(escapeString(formattedValue));
@@ -20,10 +20,9 @@ import com.google.visualization.datasource.base.StatusType;
 import com.google.visualization.datasource.base.Warning;
 import com.google.visualization.datasource.datatable.ColumnDescription;
 import com.google.visualization.datasource.datatable.DataTable;
-import com.google.visualization.datasource.datatable.TableCell;
-import com.google.visualization.datasource.datatable.TableRow;
 import com.google.visualization.datasource.datatable.ValueFormatter;
 import com.google.visualization.datasource.datatable.value.BooleanValue;
+import com.google.visualization.datasource.datatable.value.Value;
 import com.google.visualization.datasource.datatable.value.ValueType;
 
 import org.apache.commons.lang3.StringUtils;
@@ -116,23 +115,22 @@ public class HtmlRenderer {
     Map<ValueType, ValueFormatter> formatters = ValueFormatter.createDefaultFormatters(locale);
     // Table tr elements.
     int rowCount = 0;
-    for (TableRow row : dataTable.getRows()) {
+    for (int rowIndex = 0; rowIndex < dataTable.getNumberOfRows(); rowIndex++) {
       rowCount++;
       trElement = document.createElement("tr");
       String backgroundColor = (rowCount % 2 != 0) ? "#f0f0f0" : "#ffffff";
       trElement.setAttribute("style", "background-color: " + backgroundColor);
 
-      List<TableCell> cells = row.getCells();
-      for (int c = 0; c < cells.size(); c++) {
+      for (int c = 0; c < columnDescriptions.size(); c++) {
         ValueType valueType = columnDescriptions.get(c).getType();
-        TableCell cell = cells.get(c);
-        String cellFormattedText = cell.getFormattedValue();
+        Value value = dataTable.getValue(rowIndex, c);
+        String cellFormattedText = dataTable.getFormattedValue(rowIndex, c);
         if (cellFormattedText == null) {
-          cellFormattedText = formatters.get(cell.getType()).format(cell.getValue());
+          cellFormattedText = formatters.get(value.getType()).format(value);
         }
 
         Element tdElement = document.createElement("td");
-        if (cell.isNull()) {
+        if (value.isNull()) {
           tdElement.setTextContent("\u00a0");
         } else {
           switch (valueType) {
@@ -141,7 +139,7 @@ public class HtmlRenderer {
               tdElement.setTextContent(cellFormattedText);
               break;
             case BOOLEAN:
-              BooleanValue booleanValue = (BooleanValue) cell.getValue();
+              BooleanValue booleanValue = (BooleanValue) value;
               tdElement.setAttribute("align", "center");
               if (booleanValue.getValue()) {
                 tdElement.setTextContent("\u2714"); // Check mark.
@@ -19,7 +19,6 @@ import com.google.visualization.datasource.base.*;
 import com.google.visualization.datasource.datatable.ColumnDescription;
 import com.google.visualization.datasource.datatable.DataTable;
 import com.google.visualization.datasource.datatable.TableCell;
-import com.google.visualization.datasource.datatable.TableRow;
 import com.google.visualization.datasource.datatable.value.*;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.text.StrBuilder;
@@ -249,16 +248,13 @@ public class JsonRenderer {
 
     if (includeValues) {
       sb.append(",\"rows\":[");
-      List<TableCell> cells;
-      TableCell cell;
       ColumnDescription columnDescription;
 
-      List<TableRow> rows = dataTable.getRows();
-      for (int rowId = 0; rowId < rows.size(); rowId++) {
-        TableRow tableRow = rows.get(rowId);
-        cells = tableRow.getCells();
+      int numberOfRows = dataTable.getNumberOfRows();
+      int numberOfCells = dataTable.getNumberOfColumns();
+      for (int rowId = 0; rowId < numberOfRows; rowId++) {
         sb.append("{\"c\":[");
-        for (int cellId = 0; cellId < cells.size(); cellId++) {
+        for (int cellId = 0; cellId < numberOfCells; cellId++) {
 
           boolean showAsHTML = false;
 
@@ -279,25 +275,30 @@ public class JsonRenderer {
               }
             }
           }
-          cell = cells.get(cellId);
-          if (cellId < (cells.size() - 1)) {
-            appendCellJson(cell, sb, includeFormatting, false, renderDateAsDateConstructor, showAsHTML);
+          Value value = dataTable.getValue(rowId, cellId);
+          String formattedValue = dataTable.getFormattedValue(rowId, cellId);
+          Map<String, String> cellProperties = dataTable.getCellCustomProperties(rowId, cellId);
+          if (cellId < (numberOfCells - 1)) {
+            appendCellJson(value, formattedValue, cellProperties, sb, includeFormatting, false,
+                renderDateAsDateConstructor, showAsHTML);
             sb.append(",");
           } else {
             // Last column in the row.
-            appendCellJson(cell, sb, includeFormatting, true, renderDateAsDateConstructor, showAsHTML);
+            appendCellJson(value, formattedValue, cellProperties, sb, includeFormatting, true,
+                renderDateAsDateConstructor, showAsHTML);
           }
         }
         sb.append("]");
 
         // Row properties.
-        String customPropertiesString = getPropertiesMapString(tableRow.getCustomProperties());
+        String customPropertiesString =
+            getPropertiesMapString(dataTable.getRowCustomProperties(rowId));
         if (customPropertiesString != null) {
           sb.append(",\"p\":").append(customPropertiesString);
         }
 
         sb.append("}"); // cells.
-        if ((rows.size() - 1) > rowId) {
+        if ((numberOfRows - 1) > rowId) {
           sb.append(",");
         }
       }
@@ -352,8 +353,29 @@ public class JsonRenderer {
   static StringBuilder appendCellJson(TableCell cell, 
       StringBuilder sb, boolean includeFormatting, boolean isLastColumn,
       boolean renderDateAsDateConstructor, boolean showAsHTML) {
-    Value value = cell.getValue();
-    ValueType type = cell.getType();
+    return appendCellJson(cell.getValue(), cell.getFormattedValue(), cell.getCustomProperties(),
+        sb, includeFormatting, isLastColumn, renderDateAsDateConstructor, showAsHTML);
+  }
+
+  /**
+   * Appends a Json representing a cell, given by its contents, to the string buffer. This is
+   * used to render tables without creating cell objects.
+   *
+   * @param value The value of the cell.
+   * @param formattedValue The formatted value of the cell, may be null.
+   * @param customProperties The custom properties of the cell.
+   * @param sb The string buffer to append to.
+   * @param includeFormatting Flase if formatting information should be omitted from the json.
+   * @param isLastColumn Is this the last column in the row.
+   * @param renderDateAsDateConstructor True -> date constructor, False -> date string.
+   * @param showAsHTML True if a text value should be rendered as is, without quoting.
+   *
+   * @return The input string builder.
+   */
+  static StringBuilder appendCellJson(Value value, String formattedValue,
+      Map<String, String> customProperties, StringBuilder sb, boolean includeFormatting,
+      boolean isLastColumn, boolean renderDateAsDateConstructor, boolean showAsHTML) {
+    ValueType type = value.getType();
     StringBuilder valueJson = new StringBuilder();
     String escapedFormattedString = "";
     boolean isJsonNull = false;
@@ -370,20 +392,14 @@ public class JsonRenderer {
           valueJson.append(((BooleanValue) value).getValue());
           break;
         case DATE:
-          valueJson.append("Date(");
+          // Rendering date as a call to Date constructor, e.g new Date(2011,1,1), or in string
+          // format, e.g "Date(2011,1,1)".
+          valueJson.append(renderDateAsDateConstructor ? "new Date(" : "\"Date(");
           dateValue = (DateValue) value;
           valueJson.append(dateValue.getYear()).append(",");
           valueJson.append(dateValue.getMonth()).append(",");
           valueJson.append(dateValue.getDayOfMonth());
-          valueJson.append(")");
-          if (renderDateAsDateConstructor) {
-            // Rendering date as a call to Date constructor, e.g new Date(2011,1,1)
-            valueJson.insert(0, "new ");
-          } else {
-            // Rendering date in string format, e.g "Date(2011,1,1)"
-            valueJson.insert(0, "\"");
-            valueJson.append("\"");           
-          }
+          valueJson.append(renderDateAsDateConstructor ? ")" : ")\"");
           break;
         case NUMBER:
           valueJson.append(((NumberValue) value).getValue());
@@ -410,8 +426,10 @@ public class JsonRenderer {
           valueJson.append("]");
           break;
         case DATETIME:
+          // Rendering date as a call to Date constructor, e.g new Date(2011,1,1,0,0,0), or in
+          // string format, e.g "Date(2011,1,1,0,0,0)".
           DateTimeValue dateTimeValue = ((DateTimeValue) value);
-          valueJson.append("Date(");
+          valueJson.append(renderDateAsDateConstructor ? "new Date(" : "\"Date(");
           valueJson.append(dateTimeValue.getYear()).append(",");
           valueJson.append(dateTimeValue.getMonth()).append(",");
           valueJson.append(dateTimeValue.getDayOfMonth());
@@ -420,15 +438,7 @@ public class JsonRenderer {
           valueJson.append(",");
           valueJson.append(dateTimeValue.getMinute()).append(",");
           valueJson.append(dateTimeValue.getSecond());
-          valueJson.append(")");
-          if (renderDateAsDateConstructor) {
-            // Rendering date as a call to Date constructor, e.g new Date(2011,1,1,0,0,0)
-            valueJson.insert(0, "new ");
-          } else {
-            // Rendering date in string format, e.g "Date(2011,1,1,0,0,0)"
-            valueJson.insert(0, "\"");
-            valueJson.append("\"");           
-          }
+          valueJson.append(renderDateAsDateConstructor ? ")" : ")\"");
           break;
         default:
           throw new IllegalArgumentException("Illegal value Type " + type);
@@ -436,7 +446,6 @@ public class JsonRenderer {
     }
 
     // Prepare an escaped string representing the current formatted value.
-    String formattedValue = cell.getFormattedValue();
     if ((value != null) && !value.isNull() && (formattedValue != null)) {
       escapedFormattedString = EscapeUtil.jsonEscape(formattedValue);
       // Check for a value of type TEXT if the formatted value equals
@@ -457,7 +466,7 @@ public class JsonRenderer {
       if ((includeFormatting) && (!escapedFormattedString.equals(""))) {
         sb.append(",\"f\":\"").append(escapedFormattedString).append("\"");
       }
-      String customPropertiesString = getPropertiesMapString(cell.getCustomProperties());
+      String customPropertiesString = getPropertiesMapString(customProperties);
       if (customPropertiesString != null) {
         sb.append(",\"p\":").append(customPropertiesString);
       }
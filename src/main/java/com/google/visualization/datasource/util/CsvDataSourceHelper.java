@@ -20,9 +20,10 @@ import com.google.visualization.datasource.base.ReasonType;
 import com.google.visualization.datasource.base.TypeMismatchException;
 import com.google.visualization.datasource.datatable.ColumnDescription;
 import com.google.visualization.datasource.datatable.DataTable;
-import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.DataTableBuilder;
 import com.google.visualization.datasource.datatable.ValueFormatter;
 import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValuePool;
 import com.google.visualization.datasource.datatable.value.ValueType;
 
 import au.com.bytecode.opencsv.CSVReader;
@@ -90,6 +91,36 @@ public class CsvDataSourceHelper {
                                final Boolean headerRow,
                                final Locale locale)
       throws IOException, CsvDataSourceException {
+    return read(reader, columnDescriptions, headerRow, locale, null);
+  }
+
+  /**
+   * Translates a CSV formatted input into a data table representation, as
+   * {@link #read(Reader, List, Boolean, Locale)}, interning the text and integral number
+   * values of the table in the given pool. Interning saves memory when many values repeat,
+   * e.g., in a table that is cached and queried many times, at the cost of a hash lookup per
+   * value.
+   *
+   * @param reader The CSV input Reader from which to read.
+   * @param columnDescriptions The column descriptions, as in
+   *     {@link #read(Reader, List, Boolean, Locale)}.
+   * @param headerRow True if there is an header row.
+   *     In that case, the first line of the csv is taken as the header row.
+   * @param locale An optional locale in which to parse the input csv file.
+   *     If null, uses the default from {@code LocaleUtil#getDefaultLocale}.
+   * @param valuePool The pool in which to intern the values, or null to not intern them.
+   *
+   * @return A data table with the values populated from the CSV file.
+   *
+   * @throws IOException In case of error reading from the reader.
+   * @throws CsvDataSourceException In case of specific csv error.
+   */
+  public static DataTable read(final Reader reader,
+                               List<ColumnDescription> columnDescriptions,
+                               final Boolean headerRow,
+                               final Locale locale,
+                               final ValuePool valuePool)
+      throws IOException, CsvDataSourceException {
     DataTable dataTable = new DataTable();
 
     if (reader == null) {
@@ -103,6 +134,8 @@ public class CsvDataSourceHelper {
     // Parse the CSV.
     String[] line;
     boolean firstLine = true;
+    DataTableBuilder builder = null;
+    ValueFormatter[] valueFormatters = null;
     while ((line = csvReader.readNext()) != null) {
       // Being lenient about newlines.
       // The reader reads them as lines with
@@ -167,38 +200,46 @@ public class CsvDataSourceHelper {
         columnDescriptions = tempColumnDescriptions;
         dataTable = new DataTable();
         dataTable.addColumns(columnDescriptions);
+        builder = new DataTableBuilder(dataTable, 0);
+        builder.setValuePool(valuePool);
+
+        // Create the formatters used to parse the values of each column.
+        valueFormatters = new ValueFormatter[columnDescriptions.size()];
+        for (int i = 0; i < valueFormatters.length; i++) {
+          ColumnDescription columnDescription = columnDescriptions.get(i);
+          ValueType valueType = columnDescription.getType();
+          String pattern = columnDescription.getPattern();
+          if (pattern == null || pattern.equals("")) {
+            valueFormatters[i] = defaultFormatters.get(valueType);
+          } else {
+            valueFormatters[i] = ValueFormatter.createFromPattern(valueType, pattern, locale);
+          }
+        }
       }
       if (!(firstLine && headerRow)) {
         // Need to parse the first line as a regular row.
-        TableRow tableRow = new TableRow();
         for (int i = 0; i < line.length; i++) {
-          ColumnDescription columnDescription = columnDescriptions.get(i);
-          ValueType valueType = columnDescription.getType();
           String string = line[i];
           if (string != null) {
             string = string.trim();
           }
-          String pattern = columnDescription.getPattern();
-          ValueFormatter valueFormatter;
-          if (pattern == null || pattern.equals("")) {
-            valueFormatter = defaultFormatters.get(valueType);
-          } else {
-            valueFormatter = ValueFormatter.createFromPattern(valueType, pattern, locale);
+          Value value = valueFormatters[i].parse(string);
+
+          try {
+            builder.appendValue(i, value);
+          } catch (TypeMismatchException e) {
+            // Should not happen as we always use the correct types (null if we cannot parse),
+            // and we check the size of the lines.
           }
-          Value value = valueFormatter.parse(string);
-          
-          tableRow.addCell(value);
-        }
-        try {
-          dataTable.addRow(tableRow);
-        } catch (TypeMismatchException e) {
-          // Should not happen as we always use the correct types (null if we cannot parse),
-          // and we check the size of the lines.
         }
+        builder.endRow();
       }
 
       firstLine = false;
     }
+    if (builder != null) {
+      builder.build();
+    }
 
     return dataTable;
   }
@@ -14,21 +14,16 @@
 
 package com.google.visualization.datasource.util;
 
+import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import com.google.visualization.datasource.base.DataSourceException;
 import com.google.visualization.datasource.base.ReasonType;
 import com.google.visualization.datasource.base.TypeMismatchException;
 import com.google.visualization.datasource.datatable.ColumnDescription;
 import com.google.visualization.datasource.datatable.DataTable;
-import com.google.visualization.datasource.datatable.TableCell;
-import com.google.visualization.datasource.datatable.TableRow;
-import com.google.visualization.datasource.datatable.value.BooleanValue;
-import com.google.visualization.datasource.datatable.value.DateTimeValue;
-import com.google.visualization.datasource.datatable.value.DateValue;
-import com.google.visualization.datasource.datatable.value.NumberValue;
-import com.google.visualization.datasource.datatable.value.TextValue;
-import com.google.visualization.datasource.datatable.value.TimeOfDayValue;
+import com.google.visualization.datasource.datatable.DataTableBuilder;
 import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValuePool;
 import com.google.visualization.datasource.datatable.value.ValueType;
 import com.google.visualization.datasource.query.AbstractColumn;
 import com.google.visualization.datasource.query.AggregationColumn;
@@ -37,8 +32,11 @@ import com.google.visualization.datasource.query.ColumnColumnFilter;
 import com.google.visualization.datasource.query.ColumnIsNullFilter;
 import com.google.visualization.datasource.query.ColumnSort;
 import com.google.visualization.datasource.query.ColumnValueFilter;
+import com.google.visualization.datasource.query.ColumnValueRangeFilter;
+import com.google.visualization.datasource.query.ColumnValueSetFilter;
 import com.google.visualization.datasource.query.ComparisonFilter;
 import com.google.visualization.datasource.query.CompoundFilter;
+import com.google.visualization.datasource.query.FilterOptimizer;
 import com.google.visualization.datasource.query.NegationFilter;
 import com.google.visualization.datasource.query.Query;
 import com.google.visualization.datasource.query.QueryFilter;
@@ -102,6 +100,27 @@ public class SqlDataSourceHelper {
    */
   public static DataTable executeQuery(Query query, SqlDatabaseDescription databaseDescription)
       throws DataSourceException {
+    return executeQuery(query, databaseDescription, null);
+  }
+
+  /**
+   * Executes the given query on the given SQL database table, and returns the
+   * result as a DataTable, as {@link #executeQuery(Query, SqlDatabaseDescription)}, interning
+   * the text and integral number values of the result in the given pool. Interning saves
+   * memory when many values repeat, e.g., in a table that is cached and queried many times,
+   * at the cost of a hash lookup per value.
+   *
+   * @param query The query.
+   * @param databaseDescription The information needed to connect to the SQL database and table.
+   * @param valuePool The pool in which to intern the values, or null to not intern them.
+   *
+   * @return DataTable A data table with the data from the specified sql table,
+   *     after applying the specified query on it.
+   *
+   * @throws DataSourceException Thrown when the data source fails to perform the action.
+   */
+  public static DataTable executeQuery(Query query, SqlDatabaseDescription databaseDescription,
+      ValuePool valuePool) throws DataSourceException {
     Connection con = getDatabaseConnection(databaseDescription);
     String tableName = databaseDescription.getTableName();
 
@@ -114,14 +133,15 @@ public class SqlDataSourceHelper {
     }
     Statement stmt = null;
     try {
-      // Execute the sql query.
-      stmt = con.createStatement();
+      // Execute the sql query. A scrollable cursor lets the rows be counted before they are
+      // built; a driver that cannot scroll falls back to a forward only cursor.
+      stmt = con.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
       ResultSet rs = stmt.executeQuery(queryStringBuilder.toString());
 
       DataTable table = buildColumns(rs, columnIdsList);
 
       // Fill the data in the data table.
-      buildRows(table, rs);
+      buildRows(table, rs, valuePool);
       return table;
     } catch (SQLException e) {
       String messageToUser = "Failed to execute SQL query. mySQL error message:"
@@ -258,7 +278,9 @@ public class SqlDataSourceHelper {
   }
 
   /**
-   * Appends the WHERE clause of the sql query to the given string builder.
+   * Appends the WHERE clause of the sql query to the given string builder. The filter is
+   * optimized first (see {@link FilterOptimizer}), so that, e.g., equalities on the same column
+   * are translated to a single IN, and bounds on the same column to a single range.
    *
    * @param query The query.
    * @param queryStringBuilder The string builder holding the string query.
@@ -267,7 +289,8 @@ public class SqlDataSourceHelper {
     if (query.hasFilter()) {
       QueryFilter queryFilter = query.getFilter();
       queryStringBuilder.append("WHERE ")
-          .append(buildWhereClauseRecursively(queryFilter)).append(" ");
+          .append(buildWhereClauseRecursively(FilterOptimizer.optimize(queryFilter)))
+          .append(" ");
     }
   }
 
@@ -288,6 +311,10 @@ public class SqlDataSourceHelper {
     // Base case of the recursion: the filter is not a compound filter.
     if (queryFilter instanceof ColumnIsNullFilter) {
       buildWhereClauseForIsNullFilter(whereClause, queryFilter);
+    } else if (queryFilter instanceof ColumnValueSetFilter) {
+      whereClause.append(buildWhereClauseForValueSetFilter(queryFilter));
+    } else if (queryFilter instanceof ColumnValueRangeFilter) {
+      whereClause.append(buildWhereClauseForValueRangeFilter(queryFilter));
     } else if (queryFilter instanceof ComparisonFilter) {
       buildWhereCluaseForComparisonFilter(whereClause, queryFilter);
     } else if (queryFilter instanceof NegationFilter) {
@@ -336,6 +363,56 @@ public class SqlDataSourceHelper {
     whereClause.append("(").append(getColumnId(filter.getColumn())).append(" IS NULL)");
   }
 
+  /**
+   * Builds a WHERE clause for a value set filter, as an IN list.
+   *
+   * @param queryFilter The query filter.
+   *
+   * @return The WHERE clause of the filter.
+   */
+  private static String buildWhereClauseForValueSetFilter(QueryFilter queryFilter) {
+    ColumnValueSetFilter filter = (ColumnValueSetFilter) queryFilter;
+
+    List<String> values = Lists.newArrayList();
+    for (Value value : filter.getValues()) {
+      values.add(getSqlValue(value));
+    }
+    return "(" + getColumnId(filter.getColumn()) + " IN (" + Joiner.on(", ").join(values) + "))";
+  }
+
+  /**
+   * Builds a WHERE clause for a value range filter, as a comparison with each of its bounds. An
+   * empty range is translated to false, and a range that holds a single value to an equality.
+   *
+   * @param queryFilter The query filter.
+   *
+   * @return The WHERE clause of the filter.
+   */
+  private static String buildWhereClauseForValueRangeFilter(QueryFilter queryFilter) {
+    ColumnValueRangeFilter filter = (ColumnValueRangeFilter) queryFilter;
+
+    if (filter.isEmpty()) {
+      return "false";
+    }
+    String columnId = getColumnId(filter.getColumn()).toString();
+    if (filter.isSingleValue()) {
+      return "(" + columnId + "=" + getSqlValue(filter.getLowerBound()) + ")";
+    }
+    List<String> bounds = Lists.newArrayList();
+    if (filter.getLowerBound() != null) {
+      bounds.add("(" + columnId + (filter.isLowerBoundInclusive() ? ">=" : ">")
+          + getSqlValue(filter.getLowerBound()) + ")");
+    }
+    if (filter.getUpperBound() != null) {
+      bounds.add("(" + columnId + (filter.isUpperBoundInclusive() ? "<=" : "<")
+          + getSqlValue(filter.getUpperBound()) + ")");
+    }
+    if (bounds.size() == 1) {
+      return bounds.get(0);
+    }
+    return "(" + Joiner.on(" AND ").join(bounds) + ")";
+  }
+
   /**
    * Builds the WHERE clause for comparison filter. This is the base case of
    * the recursive building of the WHERE clause of the sql query.
@@ -356,19 +433,30 @@ public class SqlDataSourceHelper {
     } else { // The filter is a ColumnValueFilter
       ColumnValueFilter filter = (ColumnValueFilter) queryFilter;
       first.append(getColumnId(filter.getColumn()));
-      second.append(filter.getValue().toString());
-      if ((filter.getValue().getType() == ValueType.TEXT)
-          || (filter.getValue().getType() == ValueType.DATE)
-          || (filter.getValue().getType() == ValueType.DATETIME)
-          || (filter.getValue().getType() == ValueType.TIMEOFDAY)) {
-        second.insert(0, "\"");
-        second.insert(second.length(), "\"");
-      }
+      second.append(getSqlValue(filter.getValue()));
     }
     whereClause.append(buildWhereClauseFromRightAndLeftParts(
         first, second, ((ComparisonFilter) queryFilter).getOperator()));
   }
 
+  /**
+   * Returns the sql form of a constant value of a filter. Text, date, datetime and timeofday
+   * values are quoted.
+   *
+   * @param value The value.
+   *
+   * @return The sql form of the value.
+   */
+  private static String getSqlValue(Value value) {
+    if ((value.getType() == ValueType.TEXT)
+        || (value.getType() == ValueType.DATE)
+        || (value.getType() == ValueType.DATETIME)
+        || (value.getType() == ValueType.TIMEOFDAY)) {
+      return "\"" + value + "\"";
+    }
+    return value.toString();
+  }
+
   /**
    * Returns the sql operator of the given CompoundFilter.LogicalOperator as a string.
    *
@@ -642,64 +730,98 @@ public class SqlDataSourceHelper {
    * @throws SQLException Thrown when the connection to the database failed.
    */
   static void buildRows(DataTable dataTable, ResultSet rs) throws SQLException {
-    List <ColumnDescription> columnsDescriptionList = dataTable.getColumnDescriptions();
+    buildRows(dataTable, rs, null);
+  }
+
+  /**
+   * Returns the number of rows in the result set, if it can be found without reading the rows.
+   * The rows of a scrollable result set are counted by moving the cursor to the last row and
+   * back. For a forward only result set, returns 0.
+   *
+   * @param rs The result set, with its cursor before the first row.
+   *
+   * @return The number of rows in the result set, or 0 if unknown.
+   *
+   * @throws SQLException Thrown when the connection to the database failed.
+   */
+  private static int getNumberOfRows(ResultSet rs) throws SQLException {
+    if (rs.getType() == ResultSet.TYPE_FORWARD_ONLY) {
+      return 0;
+    }
+    int numberOfRows = rs.last() ? rs.getRow() : 0;
+    rs.beforeFirst();
+    return numberOfRows;
+  }
+
+  /**
+   * Populates the data table, interning its text and integral number values in the given pool.
+   *
+   * @param dataTable The data table to populates, that should already contains the
+   *     column descriptions.
+   * @param rs The result set holding the results of running the query on the
+   *     relevant sql database table. The result set's data required for
+   *     building the rows of the data table.
+   * @param valuePool The pool in which to intern the values, or null to not intern them.
+   *
+   * @throws SQLException Thrown when the connection to the database failed.
+   */
+  static void buildRows(DataTable dataTable, ResultSet rs, ValuePool valuePool)
+      throws SQLException {
     int numOfCols = dataTable.getNumberOfColumns();
 
     // Get the value types of the columns.
     ValueType[] columnsTypeArray = new ValueType[numOfCols];
     for (int c = 0; c < numOfCols; c++) {
-      columnsTypeArray[c] = columnsDescriptionList.get(c).getType();
+      columnsTypeArray[c] = dataTable.getColumnDescription(c).getType();
     }
 
-    // Build the data table rows, and in each row create the table cells with
-    // the information in the result set.
-    while (rs.next()) {
-      TableRow tableRow = new TableRow();
-      for (int c = 0; c < numOfCols; c++) {
-        tableRow.addCell(buildTableCell(rs, columnsTypeArray[c], c));
-      }
-      try {
-        dataTable.addRow(tableRow);
-      } catch (TypeMismatchException e) {
-        // Should not happen. An SQLException would already have been thrown if there was such a
-        // problem.
+    // Build the data table rows, and in each row append the values in the result set.
+    DataTableBuilder builder = new DataTableBuilder(dataTable, getNumberOfRows(rs));
+    builder.setValuePool(valuePool);
+    try {
+      while (rs.next()) {
+        for (int c = 0; c < numOfCols; c++) {
+          appendValue(builder, rs, columnsTypeArray[c], c);
+        }
+        builder.endRow();
       }
+    } catch (TypeMismatchException e) {
+      // Should not happen. The values are appended according to the column types.
     }
+    builder.build();
   }
 
   /**
-   * Creates a table cell from the value in the current row of the given result
-   * set and the given column index. The type of the value is determined by the
-   * given value type.
+   * Appends the value in the current row of the given result set and the given column index to
+   * the current row of the given builder. The type of the value is determined by the given
+   * value type.
    *
+   * @param builder The builder of the data table rows.
    * @param rs The result set holding the data from the sql table. The result
    *     points to the current row.
    * @param valueType The value type of the column that the cell belongs to.
    * @param column The column index. Indexes are 0-based.
    *
-   * @return The table cell.
-   *
    * @throws SQLException Thrown when the connection to the database failed.
+   * @throws TypeMismatchException Thrown if the value type does not match the column.
    */
-  private static TableCell buildTableCell(ResultSet rs, ValueType valueType,
-      int column) throws SQLException {
-    Value value = null;
-
+  private static void appendValue(DataTableBuilder builder, ResultSet rs, ValueType valueType,
+      int column) throws SQLException, TypeMismatchException {
     // SQL indexes are 1- based.
-    column = column + 1;
+    int sqlColumn = column + 1;
 
     switch (valueType) {
       case BOOLEAN:
-        value = BooleanValue.getInstance(rs.getBoolean(column));
+        builder.appendBoolean(column, rs.getBoolean(sqlColumn));
         break;
       case NUMBER:
-        value = new NumberValue(rs.getDouble(column));
+        builder.appendNumber(column, rs.getDouble(sqlColumn));
         break;
       case DATE:
-        Date date = rs.getDate(column);
+        Date date = rs.getDate(sqlColumn);
         // If date is null it is handled later.
         if (date != null) {
-          value = new DateValue(
+          builder.appendDate(column,
                   LocalDate.of(
                           date.getYear() + 1900,
                           date.getMonth() + 1,
@@ -707,10 +829,10 @@ public class SqlDataSourceHelper {
         }
         break;
       case DATETIME:
-        Timestamp timestamp = rs.getTimestamp(column);
+        Timestamp timestamp = rs.getTimestamp(sqlColumn);
         // If timestamp is null it is handled later.
         if (timestamp != null) {
-          value = new DateTimeValue(
+          builder.appendDateTime(column,
                   LocalDateTime.of(
                           timestamp.getYear() + 1900,
                           timestamp.getMonth() + 1,
@@ -722,26 +844,20 @@ public class SqlDataSourceHelper {
         }
         break;
       case TIMEOFDAY:
-        Time time = rs.getTime(column);
+        Time time = rs.getTime(sqlColumn);
         // If time is null it is handled later.
         if (time != null) {
-          value = new TimeOfDayValue(LocalTime.of(time.getHours(), time.getMinutes(), time.getSeconds()));
+          builder.appendTimeOfDay(column,
+              LocalTime.of(time.getHours(), time.getMinutes(), time.getSeconds()));
         }
         break;
       default:
-        String colValue = rs.getString(column);
-        if (colValue == null) {
-          value = TextValue.getNullValue();
-        } else {
-          value = new TextValue(rs.getString(column));
-        }
+        builder.appendText(column, rs.getString(sqlColumn));
         break;
     }
     // Handle null values.
     if (rs.wasNull()) {
-      return new TableCell(Value.getNullValueFromValueType(valueType));
-    } else {
-      return new TableCell(value);
+      builder.appendNull(column);
     }
   }
 }
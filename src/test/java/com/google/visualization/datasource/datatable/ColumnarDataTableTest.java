@@ -0,0 +1,285 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.datatable;
+
+import com.google.visualization.datasource.base.ReasonType;
+import com.google.visualization.datasource.base.TypeMismatchException;
+import com.google.visualization.datasource.base.Warning;
+import com.google.visualization.datasource.datatable.value.BooleanValue;
+import com.google.visualization.datasource.datatable.value.DateTimeValue;
+import com.google.visualization.datasource.datatable.value.DateValue;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.TimeOfDayValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.query.Query;
+import com.google.visualization.datasource.query.engine.QueryEngine;
+import com.google.visualization.datasource.query.parser.QueryBuilder;
+import com.google.visualization.datasource.render.CsvRenderer;
+import com.google.visualization.datasource.render.JsonRenderer;
+
+import junit.framework.TestCase;
+
+import java.util.Locale;
+
+/**
+ * Tests for ColumnarDataTable.
+ */
+public class ColumnarDataTableTest extends TestCase {
+
+  private DataTable rowTable;
+
+  private ColumnarDataTable columnarTable;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    rowTable = new DataTable();
+    rowTable.addColumn(new ColumnDescription("name", ValueType.TEXT, "Name"));
+    rowTable.addColumn(new ColumnDescription("weight", ValueType.NUMBER, "Weight"));
+    rowTable.addColumn(new ColumnDescription("isPig", ValueType.BOOLEAN, "Is pig"));
+    rowTable.addColumn(new ColumnDescription("born", ValueType.DATE, "Born"));
+    rowTable.addColumn(new ColumnDescription("fed", ValueType.DATETIME, "Fed"));
+    rowTable.addColumn(new ColumnDescription("wakeUp", ValueType.TIMEOFDAY, "Wake up"));
+
+    addRow(rowTable, "piglet", 12, true, new DateValue(2009, 3, 1),
+        new DateTimeValue(2009, 3, 1, 10, 20, 30, 400), new TimeOfDayValue(7, 30, 0, 5));
+    addRow(rowTable, "cow", 400, false, new DateValue(1999, 12, 31),
+        new DateTimeValue(1969, 12, 31, 23, 59, 59, 999), new TimeOfDayValue(5, 0, 0));
+    addRow(rowTable, "piglet", 14, true, DateValue.getNullValue(),
+        DateTimeValue.getNullValue(), TimeOfDayValue.getNullValue());
+    TableRow row = new TableRow();
+    row.addCell(new TableCell(new TextValue("hog"), "Hog!"));
+    row.addCell(NumberValue.getNullValue());
+    row.addCell(BooleanValue.getNullValue());
+    row.setCustomProperty("rowKey", "rowValue");
+    rowTable.addRow(row);
+    rowTable.getRow(1).getCell(1).setCustomProperty("cellKey", "cellValue");
+    rowTable.setCustomProperty("tableKey", "tableValue");
+    rowTable.addWarning(new Warning(ReasonType.OTHER, "warning"));
+
+    columnarTable = new ColumnarDataTable();
+    columnarTable.addColumns(rowTable.getColumnDescriptions());
+    columnarTable.addRows(rowTable.getRows());
+    columnarTable.setCustomProperty("tableKey", "tableValue");
+    columnarTable.addWarning(new Warning(ReasonType.OTHER, "warning"));
+  }
+
+  private static void addRow(DataTable table, String name, double weight, boolean isPig,
+      DateValue born, DateTimeValue fed, TimeOfDayValue wakeUp) throws TypeMismatchException {
+    TableRow row = new TableRow();
+    row.addCell(name);
+    row.addCell(weight);
+    row.addCell(isPig);
+    row.addCell(born);
+    row.addCell(fed);
+    row.addCell(wakeUp);
+    table.addRow(row);
+  }
+
+  public void testValues() {
+    assertEquals(4, columnarTable.getNumberOfRows());
+    assertEquals(6, columnarTable.getNumberOfColumns());
+    for (int r = 0; r < rowTable.getNumberOfRows(); r++) {
+      for (int c = 0; c < rowTable.getNumberOfColumns(); c++) {
+        Value expected = rowTable.getValue(r, c);
+        Value actual = columnarTable.getValue(r, c);
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.isNull(), actual.isNull());
+        assertEquals(0, expected.compareTo(actual));
+        assertEquals(rowTable.getFormattedValue(r, c), columnarTable.getFormattedValue(r, c));
+        assertEquals(rowTable.getCellCustomProperties(r, c),
+            columnarTable.getCellCustomProperties(r, c));
+      }
+      assertEquals(rowTable.getRowCustomProperties(r), columnarTable.getRowCustomProperties(r));
+    }
+    assertEquals(rowTable.toString(), columnarTable.toString());
+  }
+
+  public void testTextDictionary() {
+    // Equal strings are stored once and share a single value.
+    assertSame(columnarTable.getValue(0, 0), columnarTable.getValue(2, 0));
+    assertEquals("piglet", ((TextValue) columnarTable.getValue(2, 0)).getValue());
+  }
+
+  public void testCellAndRowViews() throws Exception {
+    TableRow row = columnarTable.getRow(3);
+    assertEquals("rowValue", row.getCustomProperty("rowKey"));
+    assertEquals(6, row.getCells().size());
+    assertEquals("Hog!", row.getCell(0).getFormattedValue());
+
+    // Changes through the views are written to the table.
+    row.setCustomProperty("rowKey2", "rowValue2");
+    row.getCell(1).setFormattedValue("none");
+    columnarTable.getCell(0, 4).setCustomProperty("p", "q");
+    assertEquals("rowValue2", columnarTable.getRowCustomProperties(3).get("rowKey2"));
+    assertEquals("none", columnarTable.getFormattedValue(3, 1));
+    assertEquals("q", columnarTable.getCellCustomProperties(0, 4).get("p"));
+
+    try {
+      row.addCell(new TableCell("x"));
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // Expected behavior.
+    }
+    try {
+      row.addCell("x");
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // Expected behavior.
+    }
+    try {
+      row.addCell(1);
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // Expected behavior.
+    }
+    try {
+      row.addCell(BooleanValue.TRUE);
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // Expected behavior.
+    }
+    try {
+      row.addCellFrom(columnarTable, 0, 0);
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // Expected behavior.
+    }
+    assertEquals(6, row.getNumberOfCells());
+    try {
+      columnarTable.getRows().remove(0);
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // Expected behavior.
+    }
+
+    // A cloned view is detached from the table.
+    TableCell cell = columnarTable.getCell(0, 0).clone();
+    cell.setFormattedValue("detached");
+    assertNull(columnarTable.getFormattedValue(0, 0));
+  }
+
+  public void testSetCell() throws Exception {
+    TableCell previous = columnarTable.setCell(3, 0, new TableCell(new TextValue("boar"), "Boar"));
+    assertEquals("hog", previous.getValue().toString());
+    assertEquals("Hog!", previous.getFormattedValue());
+    assertEquals("boar", columnarTable.getValue(3, 0).toString());
+    assertEquals("Boar", columnarTable.getFormattedValue(3, 0));
+
+    columnarTable.setCell(0, 1, new TableCell(NumberValue.getNullValue()));
+    assertTrue(columnarTable.getValue(0, 1).isNull());
+    columnarTable.setCell(3, 1, new TableCell(7));
+    assertEquals(7.0, ((NumberValue) columnarTable.getValue(3, 1)).getValue());
+
+    try {
+      columnarTable.setCell(0, 1, new TableCell("text"));
+      fail();
+    } catch (TypeMismatchException e) {
+      // Expected behavior.
+    }
+  }
+
+  public void testAddRowValidation() {
+    TableRow row = new TableRow();
+    row.addCell(7);
+    try {
+      columnarTable.addRow(row);
+      fail();
+    } catch (TypeMismatchException e) {
+      // Expected behavior.
+    }
+    assertEquals(4, columnarTable.getNumberOfRows());
+    assertEquals(4, columnarTable.getRows().size());
+  }
+
+  public void testAddRowFromValues() throws Exception {
+    columnarTable.addRowFromValues("sheep", 60.5);
+    assertEquals(5, columnarTable.getNumberOfRows());
+    assertEquals("sheep", columnarTable.getValue(4, 0).toString());
+    assertEquals(60.5, ((NumberValue) columnarTable.getValue(4, 1)).getValue());
+    assertTrue(columnarTable.getValue(4, 2).isNull());
+    assertTrue(columnarTable.getValue(4, 5).isNull());
+  }
+
+  public void testAddColumnToPopulatedTable() throws Exception {
+    columnarTable.addColumn(new ColumnDescription("extra", ValueType.NUMBER, "Extra"));
+    for (int r = 0; r < columnarTable.getNumberOfRows(); r++) {
+      assertTrue(columnarTable.getValue(r, 6).isNull());
+    }
+    columnarTable.addRowFromValues("sheep", 60.5, true, null, null, null, 3.0);
+    assertEquals(3.0, ((NumberValue) columnarTable.getValue(4, 6)).getValue());
+  }
+
+  public void testSelectRows() {
+    DataTable selected = columnarTable.selectRows(new int[] {3, 1});
+    assertTrue(selected instanceof ColumnarDataTable);
+    assertEquals(2, selected.getNumberOfRows());
+    assertEquals("hog", selected.getValue(0, 0).toString());
+    assertEquals("Hog!", selected.getFormattedValue(0, 0));
+    assertEquals("rowValue", selected.getRowCustomProperties(0).get("rowKey"));
+    assertEquals("cow", selected.getValue(1, 0).toString());
+    assertEquals("cellValue", selected.getCellCustomProperties(1, 1).get("cellKey"));
+    assertEquals("tableValue", selected.getCustomProperty("tableKey"));
+    assertEquals(1, selected.getWarnings().size());
+
+    // The selected table does not share data with the original.
+    selected.getCell(0, 0).setFormattedValue("changed");
+    assertEquals("Hog!", columnarTable.getFormattedValue(3, 0));
+  }
+
+  public void testClone() throws Exception {
+    ColumnarDataTable cloned = columnarTable.clone();
+    assertEquals(columnarTable.toString(), cloned.toString());
+    assertEquals("tableValue", cloned.getCustomProperty("tableKey"));
+    assertNotSame(columnarTable.getColumnDescription(0), cloned.getColumnDescription(0));
+
+    cloned.setCell(0, 1, new TableCell(1));
+    cloned.getRow(3).setCustomProperty("rowKey", "changed");
+    assertEquals(12.0, ((NumberValue) columnarTable.getValue(0, 1)).getValue());
+    assertEquals("rowValue", columnarTable.getRowCustomProperties(3).get("rowKey"));
+  }
+
+  public void testSetRows() throws Exception {
+    columnarTable.setRows(rowTable.getRows().subList(0, 2));
+    assertEquals(2, columnarTable.getNumberOfRows());
+    assertEquals("cow", columnarTable.getValue(1, 0).toString());
+    assertTrue(columnarTable.getRowCustomProperties(1).isEmpty());
+  }
+
+  public void testQueriesMatchRowTable() throws Exception {
+    String[] queries = {
+        "",
+        "select name, weight where weight > 13 order by weight desc",
+        "select * where name = 'piglet' or isPig is null",
+        "select name, sum(weight), count(born) group by name",
+        "select count(weight) pivot isPig",
+        "select year(born), weight order by name limit 2 offset 1",
+        "select name where fed < dateTime '2000-01-01 00:00:00' or wakeUp > timeofday '6:00:00'",
+        "select * order by born skipping 2",
+        "select name, weight label weight 'w' format weight '#,##0.0'",
+    };
+    for (String queryString : queries) {
+      Query query = QueryBuilder.getInstance().parseQuery(queryString);
+      DataTable expected = QueryEngine.executeQuery(query, rowTable.clone(), Locale.US);
+      DataTable actual = QueryEngine.executeQuery(query, columnarTable.clone(), Locale.US);
+      assertEquals(queryString, JsonRenderer.renderDataTable(expected, true, true, false)
+          .toString(), JsonRenderer.renderDataTable(actual, true, true, false).toString());
+      assertEquals(queryString, CsvRenderer.renderDataTable(expected, Locale.US, null).toString(),
+          CsvRenderer.renderDataTable(actual, Locale.US, null).toString());
+    }
+  }
+}
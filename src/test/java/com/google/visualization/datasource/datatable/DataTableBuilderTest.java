@@ -0,0 +1,139 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.datatable;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.base.TypeMismatchException;
+import com.google.visualization.datasource.datatable.value.BooleanValue;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.ValuePool;
+import com.google.visualization.datasource.datatable.value.ValueType;
+
+import junit.framework.TestCase;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * Tests for DataTableBuilder.
+ */
+public class DataTableBuilderTest extends TestCase {
+
+  private List<ColumnDescription> columns;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    columns = Lists.newArrayList();
+    columns.add(new ColumnDescription("name", ValueType.TEXT, "Name"));
+    columns.add(new ColumnDescription("weight", ValueType.NUMBER, "Weight"));
+    columns.add(new ColumnDescription("isPig", ValueType.BOOLEAN, "Is pig"));
+    columns.add(new ColumnDescription("born", ValueType.DATE, "Born"));
+    columns.add(new ColumnDescription("fed", ValueType.DATETIME, "Fed"));
+    columns.add(new ColumnDescription("wakeUp", ValueType.TIMEOFDAY, "Wake up"));
+  }
+
+  public void testBuild() throws Exception {
+    DataTableBuilder builder = new DataTableBuilder(columns, 2);
+    builder.appendText(0, "piglet").appendNumber(1, 12).appendBoolean(2, true)
+        .appendDate(3, LocalDate.of(2009, 3, 1))
+        .appendDateTime(4, LocalDateTime.of(2009, 3, 1, 10, 20, 30))
+        .appendTimeOfDay(5, LocalTime.of(7, 30)).endRow();
+    // Values may be appended in any order, and missing values are null.
+    builder.appendNumber(1, 400).appendValue(0, new TextValue("cow")).appendNull(2).endRow();
+    assertEquals(2, builder.getNumberOfRows());
+    DataTable table = builder.build();
+
+    DataTable expected = new DataTable();
+    expected.addColumns(columns);
+    expected.addRowFromValues("piglet", 12, true, LocalDate.of(2009, 3, 1),
+        LocalDateTime.of(2009, 3, 1, 10, 20, 30), LocalTime.of(7, 30));
+    expected.addRowFromValues("cow", 400);
+    assertEquals(expected.toString(), table.toString());
+    assertEquals(6, table.getRow(1).getNumberOfCells());
+    assertEquals(BooleanValue.getNullValue(), table.getValue(1, 2));
+    assertTrue(table.getValue(1, 5).isNull());
+
+    // The built table is a regular table.
+    table.addRowFromValues("sheep", 60.5);
+    assertEquals(3, table.getNumberOfRows());
+  }
+
+  public void testAppendToExistingTable() throws Exception {
+    ColumnarDataTable table = new ColumnarDataTable();
+    table.addColumns(columns);
+    table.addRowFromValues("piglet", 12);
+    DataTableBuilder builder = new DataTableBuilder(table, 0);
+    builder.appendText(0, "cow").appendNumber(1, 400).endRow();
+    assertSame(table, builder.build());
+    assertEquals(2, table.getNumberOfRows());
+    assertEquals(new NumberValue(400), table.getValue(1, 1));
+    assertTrue(table.getValue(1, 2).isNull());
+  }
+
+  public void testValuePool() throws Exception {
+    DataTableBuilder builder = new DataTableBuilder(columns, 0);
+    builder.setValuePool(new ValuePool());
+    builder.appendText(0, "piglet").appendNumber(1, 12).endRow();
+    builder.appendValue(0, new TextValue("piglet")).appendValue(1, new NumberValue(12)).endRow();
+    DataTable table = builder.build();
+    assertSame(table.getValue(0, 0), table.getValue(1, 0));
+    assertSame(table.getValue(0, 1), table.getValue(1, 1));
+  }
+
+  public void testTypeMismatch() {
+    DataTableBuilder builder = new DataTableBuilder(columns, 0);
+    try {
+      builder.appendText(1, "heavy");
+      fail();
+    } catch (TypeMismatchException e) {
+      // Expected behavior.
+    }
+    try {
+      builder.appendValue(0, new NumberValue(1));
+      fail();
+    } catch (TypeMismatchException e) {
+      // Expected behavior.
+    }
+  }
+
+  public void testSealed() throws Exception {
+    DataTableBuilder builder = new DataTableBuilder(columns, 0);
+    builder.appendText(0, "piglet");
+    try {
+      builder.build();
+      fail();
+    } catch (IllegalStateException e) {
+      // Expected behavior.
+    }
+    builder.endRow();
+    builder.build();
+    try {
+      builder.appendText(0, "cow");
+      fail();
+    } catch (IllegalStateException e) {
+      // Expected behavior.
+    }
+    try {
+      builder.build();
+      fail();
+    } catch (IllegalStateException e) {
+      // Expected behavior.
+    }
+  }
+}
@@ -364,4 +364,85 @@ public class DataTableTest extends TestCase {
       // Expected behavior.
     }
   }
+
+  public void testAddColumnToPopulatedTable() throws Exception {
+    DataTable selected = testData.selectRows(new int[] {1, 0});
+    selected.addColumn(new ColumnDescription("col6", ValueType.NUMBER, "label6"));
+    assertEquals(7, selected.getNumberOfColumns());
+    assertEquals(NumberValue.getNullValue(), selected.getValue(0, 6));
+    assertNull(selected.getFormattedValue(0, 6));
+    assertTrue(selected.getCellCustomProperties(1, 6).isEmpty());
+
+    // The rows get the new cell when they are requested, or when the cell is set.
+    assertEquals(7, selected.getRow(0).getNumberOfCells());
+    selected.setCell(1, 6, new TableCell(new NumberValue(4), "four"));
+    assertEquals("four", selected.getFormattedValue(1, 6));
+    for (TableRow row : selected.getRows()) {
+      assertEquals(7, row.getNumberOfCells());
+    }
+
+    // The rows of the original table are not changed.
+    assertEquals(6, testData.getRow(0).getNumberOfCells());
+    assertEquals(6, testData.getRow(1).getNumberOfCells());
+  }
+
+  public void testCloneSharesRowsUntilChanged() throws Exception {
+    DataTable cloned = testData.clone();
+    assertEquals(testData.toString(), cloned.toString());
+
+    // Changes to the clone do not change the original.
+    cloned.setCell(0, 1, new TableCell(new NumberValue(5), "five"));
+    cloned.getRow(1).getCell(0).setFormattedValue("cloned");
+    cloned.getRow(2).setCustomProperty("foo", "bar");
+    assertEquals(new NumberValue(222), testData.getValue(0, 1));
+    assertEquals("$ccc", testData.getFormattedValue(1, 0));
+    assertNull(testData.getRow(2).getCustomProperty("foo"));
+
+    // Changes to the original do not change the clone.
+    testData.getRow(3).getCell(0).setFormattedValue("original");
+    testData.setCell(0, 1, new TableCell(new NumberValue(6)));
+    assertNull(cloned.getFormattedValue(3, 0));
+    assertEquals(new NumberValue(5), cloned.getValue(0, 1));
+    assertEquals("cloned", cloned.getFormattedValue(1, 0));
+  }
+
+  public void testCloneTakesOwnershipOfHandedOutRows() throws Exception {
+    TableRow row = testData.getRow(0);
+    DataTable cloned = testData.clone();
+    DataTable selected = testData.selectRows(new int[] {1, 0});
+    row.getCell(0).setFormattedValue("X");
+
+    // The rows held by the caller are replaced by copies when the table is first shared, so
+    // changes made through them afterwards are seen by no table.
+    assertNull(testData.getFormattedValue(0, 0));
+    assertNull(cloned.getFormattedValue(0, 0));
+    assertNull(selected.getFormattedValue(1, 0));
+    // A row requested again belongs to the table.
+    testData.getRow(0).getCell(0).setFormattedValue("Y");
+    assertEquals("Y", testData.getFormattedValue(0, 0));
+    assertNull(cloned.getFormattedValue(0, 0));
+
+    // Reading a cell returns a copy, and does not change the table.
+    testData.getCell(1, 0).setCustomProperty("k", "v");
+    assertTrue(testData.getCellCustomProperties(1, 0).isEmpty());
+    assertEquals("$ccc", testData.getColumnCells(0).get(1).getFormattedValue());
+
+    // Rows added by the caller are copied once, and later clones share the copies.
+    DataTable table = new DataTable();
+    table.addColumn(new ColumnDescription("c", ValueType.TEXT, "c"));
+    TableRow addedRow = new TableRow();
+    addedRow.addCell(new TableCell(new TextValue("a"), "A"));
+    table.addRow(addedRow);
+    DataTable clone1 = table.clone();
+    DataTable clone2 = table.clone();
+    addedRow.getCell(0).setFormattedValue("Z");
+    assertEquals("A", table.getFormattedValue(0, 0));
+    assertEquals("A", clone1.getFormattedValue(0, 0));
+    Object cell = table.getCellData(0, 0);
+    assertNotSame(addedRow.getCell(0), cell);
+    assertSame(cell, clone1.getCellData(0, 0));
+    assertSame(cell, clone2.getCellData(0, 0));
+    assertSame(cell, clone2.selectRows(new int[] {0}).getCellData(0, 0));
+  }
+
 }
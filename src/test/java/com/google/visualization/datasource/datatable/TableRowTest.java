@@ -70,4 +70,73 @@ public class TableRowTest extends TestCase {
     clonedRow.getCell(3).setCustomProperty("foo3", "bar3");
     assertTrue(row.getCell(3).getCustomProperties().isEmpty());
   }
+
+  public void testGetCells() {
+    TableRow row = new TableRow();
+    row.addCell("foo");
+    row.addCell(7);
+    assertEquals(2, row.getNumberOfCells());
+    assertEquals(2, row.getCells().size());
+    // Reading the list does not store cells in the row, getCell does.
+    row.getCells().get(0).setFormattedValue("bar");
+    assertNull(row.getFormattedValue(0));
+    assertEquals(new TextValue("foo"), row.getCells().get(0).getValue());
+    row.getCell(1).setFormattedValue("seven");
+    assertSame(row.getCell(1), row.getCells().get(1));
+    assertEquals("seven", row.getCells().get(1).getFormattedValue());
+
+    try {
+      row.getCells().add(new TableCell("bar"));
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // Expected behavior.
+    }
+    assertEquals(2, row.getNumberOfCells());
+  }
+
+  public void testValuesWithoutCells() {
+    TableRow row = new TableRow();
+    row.addCell(new NumberValue(7));
+    row.addCell("foo");
+    assertSame(row.getValue(0), row.getCellData(0));
+    assertNull(row.getFormattedValue(0));
+    assertTrue(row.getCellCustomProperties(1).isEmpty());
+
+    // A cell is created on access, and changes to it are kept in the row.
+    row.getCell(0).setFormattedValue("seven");
+    row.getCell(1).setCustomProperty("foo", "bar");
+    assertEquals("seven", row.getFormattedValue(0));
+    assertEquals(new NumberValue(7), row.getValue(0));
+    assertEquals("bar", row.getCellCustomProperties(1).get("foo"));
+  }
+
+  public void testAddCellFrom() {
+    TableRow row = new TableRow();
+    row.addCell(new NumberValue(7));
+    row.addCell(new TableCell(new TextValue("foo"), "FOO"));
+    TableRow other = new TableRow();
+    other.addCellFrom(row, 1);
+    other.addCellFrom(row, 0);
+    assertEquals("FOO", other.getFormattedValue(0));
+    assertEquals(new NumberValue(7), other.getValue(1));
+    // Copying a value does not create a cell in the source row.
+    assertSame(row.getValue(0), row.getCellData(0));
+  }
+
+  public void testAddManyCells() {
+    TableRow row = new TableRow(2);
+    for (int i = 0; i < 100; i++) {
+      row.addCell(i);
+    }
+    assertEquals(100, row.getNumberOfCells());
+    assertEquals(new NumberValue(99), row.getValue(99));
+    row.trimToSize();
+    assertEquals(new NumberValue(0), row.getValue(0));
+    try {
+      row.getValue(100);
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      // Expected behavior.
+    }
+  }
 }
@@ -0,0 +1,163 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.datatable;
+
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.ValueType;
+
+import junit.framework.TestCase;
+
+import java.util.Locale;
+
+/**
+ * Tests for TextDictionary and its caching by DataTable.
+ */
+public class TextDictionaryTest extends TestCase {
+
+  private static final String[] TEXTS = {"b", "Apple", "apple", "b", "\u00e9clair", "Zebra"};
+
+  /**
+   * Creates a table with a text column holding the given texts, and a number column.
+   *
+   * @param table An empty table.
+   *
+   * @return The table.
+   */
+  private static DataTable fill(DataTable table) throws Exception {
+    table.addColumn(new ColumnDescription("name", ValueType.TEXT, "Name"));
+    table.addColumn(new ColumnDescription("number", ValueType.NUMBER, "Number"));
+    for (int i = 0; i < TEXTS.length; i++) {
+      table.addRowFromValues(TEXTS[i], i);
+    }
+    return table;
+  }
+
+  /**
+   * Checks that the codes and ranks of the rows of a table compare as their texts.
+   *
+   * @param table The table.
+   * @param locale The locale, or null for the natural order.
+   */
+  private static void assertOrderPreserved(DataTable table, Locale locale) {
+    TextDictionary dictionary = table.getTextDictionary(0, locale);
+    for (int i = 0; i < table.getNumberOfRows(); i++) {
+      TextValue value1 = (TextValue) table.getValue(i, 0);
+      assertEquals(value1.getValue(), dictionary.getText(dictionary.getCode(i)));
+      for (int j = 0; j < table.getNumberOfRows(); j++) {
+        TextValue value2 = (TextValue) table.getValue(j, 0);
+        int expected = (locale == null) ? value1.compareTo(value2)
+            : TextValue.getTextLocalizedComparator(locale).compare(value1, value2);
+        assertEquals(Integer.signum(expected), Integer.signum(
+            Integer.compare(dictionary.getRowRank(i), dictionary.getRowRank(j))));
+        assertEquals(Integer.signum(value1.getValue().compareTo(value2.getValue())) == 0,
+            dictionary.getCode(i) == dictionary.getCode(j));
+      }
+    }
+  }
+
+  public void testOrder() throws Exception {
+    DataTable table = fill(new DataTable());
+    assertOrderPreserved(table, null);
+    assertOrderPreserved(table, Locale.US);
+    assertOrderPreserved(table, Locale.FRANCE);
+
+    TextDictionary dictionary = table.getTextDictionary(0, null);
+    assertEquals(5, dictionary.size());
+    assertEquals("Apple", dictionary.getText(0));
+    assertEquals(0, dictionary.getRank(0));
+    assertEquals(1, dictionary.findCode("Zebra"));
+    assertEquals(-3, dictionary.findCode("a"));
+    assertEquals(-5, dictionary.findCode("z"));
+
+    dictionary = table.getTextDictionary(0, Locale.US);
+    assertEquals("apple", dictionary.getText(0));
+    assertEquals(4, dictionary.findCode("Zebra"));
+    assertEquals(-1, dictionary.findCode("a"));
+  }
+
+  public void testCaching() throws Exception {
+    DataTable table = fill(new DataTable());
+    assertFalse(table.hasTextDictionary(0, Locale.US));
+    TextDictionary dictionary = table.getTextDictionary(0, Locale.US);
+    assertTrue(table.hasTextDictionary(0, Locale.US));
+    assertFalse(table.hasTextDictionary(0, null));
+    assertSame(dictionary, table.getTextDictionary(0, Locale.US));
+    assertNotSame(dictionary, table.getTextDictionary(0, null));
+
+    // Reading the table does not drop the dictionary, changing it does.
+    table.getValue(0, 0);
+    table.clone();
+    assertSame(dictionary, table.getTextDictionary(0, Locale.US));
+    table.setCell(0, 0, new TableCell("aardvark"));
+    assertFalse(table.hasTextDictionary(0, Locale.US));
+    TextDictionary newDictionary = table.getTextDictionary(0, Locale.US);
+    assertNotSame(dictionary, newDictionary);
+    assertEquals("aardvark", newDictionary.getText(newDictionary.getCode(0)));
+    table.addRowFromValues("zz", 7);
+    assertEquals(7, table.getTextDictionary(0, Locale.US).size());
+    assertOrderPreserved(table, Locale.US);
+
+    try {
+      table.getTextDictionary(1, Locale.US);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected behavior.
+    }
+  }
+
+  public void testSelectedRows() throws Exception {
+    DataTable table = fill(new DataTable());
+    TextDictionary dictionary = table.getTextDictionary(0, Locale.US);
+    DataTable selection = table.selectRows(new int[] {5, 1, 1, 4});
+    assertTrue(selection.hasTextDictionary(0, Locale.US));
+    assertFalse(selection.hasTextDictionary(0, null));
+    TextDictionary selectionDictionary = selection.getTextDictionary(0, Locale.US);
+    assertEquals(dictionary.size(), selectionDictionary.size());
+    assertEquals(dictionary.getCode(5), selectionDictionary.getCode(0));
+    assertOrderPreserved(selection, Locale.US);
+
+    // Without a dictionary of the table, the dictionary of a selection is built from the
+    // selected rows only.
+    DataTable other = fill(new DataTable());
+    DataTable otherSelection = other.selectRows(new int[] {5, 1, 1});
+    assertFalse(otherSelection.hasTextDictionary(0, Locale.US));
+    assertEquals(2, otherSelection.getTextDictionary(0, Locale.US).size());
+    assertFalse(other.hasTextDictionary(0, Locale.US));
+    assertOrderPreserved(otherSelection, Locale.US);
+
+    // A selection made before the table was changed does not use its new dictionary.
+    DataTable oldSelection = table.selectRows(new int[] {0, 2});
+    table.setCell(0, 0, new TableCell("aardvark"));
+    assertFalse(oldSelection.hasTextDictionary(0, Locale.US));
+    assertEquals("b", oldSelection.getTextDictionary(0, null).getText(
+        oldSelection.getTextDictionary(0, null).getCode(0)));
+    assertOrderPreserved(oldSelection, null);
+
+    DataTable clone = table.clone();
+    assertOrderPreserved(clone, Locale.US);
+    clone.addRowFromValues("", 1);
+    assertOrderPreserved(clone, Locale.US);
+  }
+
+  public void testColumnarTable() throws Exception {
+    ColumnarDataTable table = (ColumnarDataTable) fill(new ColumnarDataTable());
+    table.addRowFromValues();
+    assertOrderPreserved(table, null);
+    assertOrderPreserved(table, Locale.US);
+    table.setCell(1, 0, new TableCell(""));
+    assertOrderPreserved(table, Locale.US);
+    assertOrderPreserved(table.selectRows(new int[] {6, 0, 1}), Locale.US);
+  }
+}
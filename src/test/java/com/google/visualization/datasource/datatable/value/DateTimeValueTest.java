@@ -313,4 +313,32 @@ public class DateTimeValueTest extends TestCase {
     assertEquals("DATETIME '2020-4-12 2:31:12.123'", val1.toQueryString());
     assertEquals("DATETIME '2007-6-6 7:8:9'", val2.toQueryString());
   }
-}
\ No newline at end of file
+
+  public void testEpochMillis() {
+    DateTimeValue val = new DateTimeValue(1969, 12, 31, 23, 59, 59, 999);
+    assertEquals(-1L, val.getEpochMillis());
+    assertEquals(-1, val.getEpochDay());
+    assertEquals(val, DateTimeValue.fromEpochMillis(-1L));
+    assertEquals(1969, val.getYear());
+    assertEquals(11, val.getMonth());
+    assertEquals(31, val.getDayOfMonth());
+    assertEquals(23, val.getHourOfDay());
+    assertEquals(59, val.getMinute());
+    assertEquals(59, val.getSecond());
+    assertEquals(999, val.getMillisecond());
+    assertEquals(3, val.getDayOfWeek());
+
+    // Sub-millisecond precision is dropped.
+    DateTimeValue fromLocal =
+        new DateTimeValue(LocalDateTime.of(2020, 3, 12, 2, 31, 12, 111222333));
+    assertEquals(new DateTimeValue(2020, 3, 12, 2, 31, 12, 111), fromLocal);
+    assertEquals(LocalDateTime.of(2020, 3, 12, 2, 31, 12, 111000000),
+        fromLocal.getLocalDateTime());
+    try {
+      DateTimeValue.getNullValue().getEpochMillis();
+      fail();
+    } catch (NullValueException e) {
+      // Expected behavior.
+    }
+  }
+}
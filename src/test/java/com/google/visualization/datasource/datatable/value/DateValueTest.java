@@ -315,4 +315,28 @@ public class DateValueTest extends TestCase {
     assertEquals("DATE '2007-7-20'", val1.toQueryString());
     assertEquals("DATE '2010-12-11'", val2.toQueryString());
   }
-}
\ No newline at end of file
+
+  public void testEpochDay() {
+    // Compare the calendar arithmetic with java.time over a wide range of days, including
+    // negative years and leap days.
+    for (int epochDay = -800000; epochDay <= 800000; epochDay += 37) {
+      LocalDate localDate = LocalDate.ofEpochDay(epochDay);
+      DateValue val = DateValue.fromEpochDay(epochDay);
+      assertEquals(localDate.getYear(), val.getYear());
+      assertEquals(localDate.getMonthValue() - 1, val.getMonth());
+      assertEquals(localDate.getDayOfMonth(), val.getDayOfMonth());
+      assertEquals(localDate.getDayOfWeek().getValue(), val.getDayOfWeek());
+      assertEquals(val, new DateValue(localDate.getYear(), localDate.getMonthValue(),
+          localDate.getDayOfMonth()));
+    }
+    assertEquals(0, new DateValue(1970, 1, 1).getEpochDay());
+    assertEquals(11016, new DateValue(2000, 2, 29).getEpochDay());
+    assertEquals("2000-02-29", DateValue.fromEpochDay(11016).toString());
+    try {
+      DateValue.getNullValue().getEpochDay();
+      fail();
+    } catch (NullValueException e) {
+      // Expected behavior.
+    }
+  }
+}
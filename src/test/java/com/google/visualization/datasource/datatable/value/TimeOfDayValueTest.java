@@ -355,4 +355,23 @@ public class TimeOfDayValueTest extends TestCase {
     assertEquals("TIMEOFDAY '12:23:12.111'", val1.toQueryString());
     assertEquals("TIMEOFDAY '2:3:4'", val2.toQueryString());
   }
-}
\ No newline at end of file
+
+  public void testMillisOfDay() {
+    TimeOfDayValue val = new TimeOfDayValue(12, 23, 12, 111);
+    assertEquals(((12 * 60 + 23) * 60 + 12) * 1000 + 111, val.getMillisOfDay());
+    assertEquals(val, TimeOfDayValue.fromMillisOfDay(val.getMillisOfDay()));
+    assertEquals(val, new TimeOfDayValue(LocalTime.of(12, 23, 12, 111999999)));
+    try {
+      TimeOfDayValue.fromMillisOfDay(24 * 60 * 60 * 1000);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected behavior.
+    }
+    try {
+      TimeOfDayValue.getNullValue().getMillisOfDay();
+      fail();
+    } catch (NullValueException e) {
+      // Expected behavior.
+    }
+  }
+}
@@ -0,0 +1,62 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.datatable.value;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for ValuePool.
+ */
+public class ValuePoolTest extends TestCase {
+
+  public void testTextValues() {
+    ValuePool pool = new ValuePool(2);
+    TextValue piglet = pool.getTextValue("piglet");
+    assertSame(piglet, pool.getTextValue(new String("piglet")));
+    assertSame(piglet, pool.intern(new TextValue("piglet")));
+    TextValue cow = new TextValue("cow");
+    assertSame(cow, pool.intern(cow));
+    assertSame(cow, pool.getTextValue("cow"));
+    assertEquals(2, pool.getNumberOfTextValues());
+
+    // The pool is full, so new values are not pooled.
+    TextValue hog = pool.getTextValue("hog");
+    assertEquals("hog", hog.getValue());
+    assertNotSame(hog, pool.getTextValue("hog"));
+    assertEquals(2, pool.getNumberOfTextValues());
+
+    assertSame(TextValue.getNullValue(), pool.intern(TextValue.getNullValue()));
+  }
+
+  public void testNumberValues() {
+    ValuePool pool = new ValuePool();
+    NumberValue seven = pool.getNumberValue(7);
+    assertSame(seven, pool.getNumberValue(7.0));
+    assertSame(seven, pool.intern(new NumberValue(7)));
+    assertSame(pool.getNumberValue(-1), pool.getNumberValue(-1));
+
+    // Fractions, large numbers and negative zero are not pooled.
+    assertNotSame(pool.getNumberValue(7.5), pool.getNumberValue(7.5));
+    assertNotSame(pool.getNumberValue(1e9), pool.getNumberValue(1e9));
+    NumberValue negativeZero = pool.getNumberValue(-0.0);
+    assertEquals(Double.doubleToRawLongBits(-0.0),
+        Double.doubleToRawLongBits(negativeZero.getValue()));
+    assertNotSame(negativeZero, pool.getNumberValue(0));
+
+    assertSame(NumberValue.getNullValue(), pool.intern(NumberValue.getNullValue()));
+    BooleanValue trueValue = BooleanValue.TRUE;
+    assertSame(trueValue, pool.intern(trueValue));
+  }
+}
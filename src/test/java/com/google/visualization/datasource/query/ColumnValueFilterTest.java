@@ -61,6 +61,38 @@ public class ColumnValueFilterTest extends TestCase {
     assertFalse(filter.isMatch(table, row));
   }
 
+  public void testFilterRowsByTextCodes() throws Exception {
+    DataTable table = new DataTable();
+    table.addColumn(new ColumnDescription("c1", ValueType.TEXT, "c1"));
+    table.addColumn(new ColumnDescription("c2", ValueType.NUMBER, "c2"));
+    String[] texts = {"b", "a", "", "c", "b", "ba"};
+    for (int i = 0; i < texts.length; i++) {
+      table.addRowFromValues(texts[i], i);
+    }
+    ColumnValueFilter filter = new ColumnValueFilter(new SimpleColumn("c1"), new TextValue("b"),
+        ComparisonFilter.Operator.LE, true);
+
+    // Without a dictionary the texts are compared, with one their codes are.
+    for (int pass = 0; pass < 2; pass++) {
+      assertEquals(pass == 1, table.hasTextDictionary(0, null));
+      int[] rowIndices = {0, 1, 2, 3, 4, 5};
+      assertEquals(4, filter.bind(table).filterRows(table, rowIndices, 6));
+      assertEquals(0, rowIndices[0]);
+      assertEquals(3, rowIndices[1]);
+      assertEquals(4, rowIndices[2]);
+      assertEquals(5, rowIndices[3]);
+      table.getTextDictionary(0, null);
+    }
+
+    filter = new ColumnValueFilter(new SimpleColumn("c1"), new TextValue("bb"),
+        ComparisonFilter.Operator.NE);
+    int[] rowIndices = {5, 4, 3};
+    assertEquals(3, filter.bind(table).filterRows(table, rowIndices, 3));
+    filter = new ColumnValueFilter(new SimpleColumn("c1"), new NumberValue(1),
+        ComparisonFilter.Operator.NE);
+    assertEquals(0, filter.bind(table).filterRows(table, rowIndices, 3));
+  }
+
   public void testToQueryString() {
     ColumnValueFilter filter1 = new ColumnValueFilter(new SimpleColumn("c2"),
         new NumberValue(100.23), ComparisonFilter.Operator.GE);
@@ -0,0 +1,89 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query;
+
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.ValueType;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for ColumnValueRangeFilter.
+ */
+public class ColumnValueRangeFilterTest extends TestCase {
+
+  public void testIsMatch() throws Exception {
+    DataTable table = new DataTable();
+    table.addColumn(new ColumnDescription("c1", ValueType.NUMBER, "c1"));
+    table.addColumn(new ColumnDescription("c2", ValueType.TEXT, "c2"));
+    for (int i = 0; i < 10; i++) {
+      table.addRowFromValues(i, "" + i);
+    }
+
+    ColumnValueRangeFilter filter = new ColumnValueRangeFilter(new SimpleColumn("c1"),
+        new NumberValue(3), true, new NumberValue(7), false);
+    assertFalse(filter.isEmpty());
+    assertFalse(filter.isMatch(table, 2));
+    assertTrue(filter.isMatch(table, 3));
+    assertTrue(filter.isMatch(table, table.getRow(6)));
+    assertFalse(filter.isMatch(table, 7));
+    int[] rowIndices = {0, 3, 5, 7, 9};
+    assertEquals(2, filter.bind(table).filterRows(table, rowIndices, 5));
+    assertEquals(3, rowIndices[0]);
+    assertEquals(5, rowIndices[1]);
+
+    // The values must have the same type as the bounds, as with a comparison filter.
+    filter = new ColumnValueRangeFilter(new SimpleColumn("c2"), new NumberValue(3), true, null,
+        false);
+    assertFalse(filter.isMatch(table, 5));
+    filter = new ColumnValueRangeFilter(new SimpleColumn("c2"), null, false,
+        new TextValue("5"), true);
+    assertTrue(filter.isMatch(table, 5));
+    assertFalse(filter.isMatch(table, 6));
+  }
+
+  public void testIsEmpty() {
+    SimpleColumn column = new SimpleColumn("c1");
+    assertTrue(new ColumnValueRangeFilter(column, new NumberValue(3), true, new NumberValue(2),
+        true).isEmpty());
+    assertTrue(new ColumnValueRangeFilter(column, new NumberValue(3), true, new NumberValue(3),
+        false).isEmpty());
+    assertFalse(new ColumnValueRangeFilter(column, new NumberValue(3), true, new NumberValue(3),
+        true).isEmpty());
+    assertTrue(new ColumnValueRangeFilter(column, new NumberValue(3), true, new TextValue("4"),
+        true).isEmpty());
+    assertFalse(new ColumnValueRangeFilter(column, null, false, new NumberValue(-1),
+        false).isEmpty());
+  }
+
+  public void testToQueryString() {
+    ColumnValueRangeFilter filter = new ColumnValueRangeFilter(new SimpleColumn("c1"),
+        new NumberValue(3), true, new NumberValue(7), false);
+    assertEquals("(`c1` >= 3.0) AND (`c1` < 7.0)", filter.toQueryString());
+    filter = new ColumnValueRangeFilter(new SimpleColumn("c1"), null, false, new NumberValue(7),
+        true);
+    assertEquals("`c1` <= 7.0", filter.toQueryString());
+    filter = new ColumnValueRangeFilter(new SimpleColumn("c1"), new NumberValue(5), true,
+        new NumberValue(5), true);
+    assertTrue(filter.isSingleValue());
+    assertEquals("`c1` = 5.0", filter.toQueryString());
+    filter = new ColumnValueRangeFilter(new SimpleColumn("c1"), new NumberValue(5), true,
+        new NumberValue(5), false);
+    assertFalse(filter.isSingleValue());
+  }
+}
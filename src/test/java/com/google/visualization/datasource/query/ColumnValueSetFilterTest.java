@@ -0,0 +1,63 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for ColumnValueSetFilter.
+ */
+public class ColumnValueSetFilterTest extends TestCase {
+
+  public void testIsMatch() throws Exception {
+    DataTable table = new DataTable();
+    table.addColumn(new ColumnDescription("c1", ValueType.TEXT, "c1"));
+    table.addColumn(new ColumnDescription("c2", ValueType.NUMBER, "c2"));
+    table.addRowFromValues("a", 1);
+    table.addRowFromValues("1", 2);
+    table.addRowFromValues("b", 3);
+
+    ColumnValueSetFilter filter = new ColumnValueSetFilter(new SimpleColumn("c1"),
+        Lists.<Value>newArrayList(new TextValue("a"), new NumberValue(1), new TextValue("c")));
+    assertTrue(filter.isMatch(table, 0));
+    // The values must have the same type, as with an equality filter.
+    assertFalse(filter.isMatch(table, 1));
+    assertFalse(filter.isMatch(table, table.getRow(2)));
+
+    filter = new ColumnValueSetFilter(new SimpleColumn("c2"),
+        Lists.<Value>newArrayList(new NumberValue(3), new NumberValue(2)));
+    int[] rowIndices = {0, 1, 2};
+    assertEquals(2, filter.bind(table).filterRows(table, rowIndices, 3));
+    assertEquals(1, rowIndices[0]);
+    assertEquals(2, rowIndices[1]);
+  }
+
+  public void testToQueryString() {
+    ColumnValueSetFilter filter = new ColumnValueSetFilter(new SimpleColumn("c1"),
+        Lists.<Value>newArrayList(new TextValue("a"), new TextValue("b")));
+    assertEquals("(`c1` = \"a\") OR (`c1` = \"b\")", filter.toQueryString());
+    filter = new ColumnValueSetFilter(new SimpleColumn("c2"),
+        Lists.<Value>newArrayList(new NumberValue(2)));
+    assertEquals("`c2` = 2.0", filter.toQueryString());
+  }
+}
@@ -15,12 +15,14 @@
 package com.google.visualization.datasource.query;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.visualization.datasource.datatable.ColumnDescription;
 import com.google.visualization.datasource.datatable.DataTable;
 import com.google.visualization.datasource.datatable.TableCell;
 import com.google.visualization.datasource.datatable.TableRow;
 import com.google.visualization.datasource.datatable.value.BooleanValue;
 import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
 import com.google.visualization.datasource.datatable.value.ValueType;
 
 import junit.framework.TestCase;
@@ -90,6 +92,118 @@ public class CompoundFilterTest extends TestCase {
     assertFalse(compoundFilter.isMatch(table, falseRow));
   }
 
+  public void testBind() throws Exception {
+    DataTable table = new DataTable();
+    table.addColumn(new ColumnDescription("c1", ValueType.TEXT, "c1"));
+    table.addColumn(new ColumnDescription("c2", ValueType.NUMBER, "c2"));
+    table.addColumn(new ColumnDescription("c3", ValueType.TEXT, "c3"));
+    table.addRowFromValues("a", 123, "a");
+    table.addRowFromValues("a", 12, "a");
+    table.addRowFromValues("a", 123, "b");
+    table.addRowFromValues("b", 5, "c");
+
+    List<QueryFilter> andSubfilters = Lists.newArrayList();
+    andSubfilters.add(new ColumnColumnFilter(new SimpleColumn("c1"), new SimpleColumn("c3"),
+        ComparisonFilter.Operator.EQ));
+    andSubfilters.add(new ColumnValueFilter(new SimpleColumn("c2"), new NumberValue(100),
+        ComparisonFilter.Operator.GT));
+    List<QueryFilter> orSubfilters = Lists.newArrayList();
+    orSubfilters.add(new CompoundFilter(CompoundFilter.LogicalOperator.AND, andSubfilters));
+    orSubfilters.add(new NegationFilter(new ColumnIsNullFilter(new SimpleColumn("c3"))));
+    QueryFilter filter = new CompoundFilter(CompoundFilter.LogicalOperator.OR,
+        Lists.newArrayList(new NegationFilter(
+            new CompoundFilter(CompoundFilter.LogicalOperator.OR, orSubfilters)),
+        new ColumnValueFilter(new SimpleColumn("c2"), new NumberValue(10),
+            ComparisonFilter.Operator.LT)));
+
+    QueryFilter boundFilter = filter.bind(table);
+    assertEquals(filter, boundFilter);
+    assertEquals(filter.toQueryString(), boundFilter.toQueryString());
+    boolean[] expected = {false, false, false, true};
+    for (int rowIndex = 0; rowIndex < table.getNumberOfRows(); rowIndex++) {
+      assertEquals(expected[rowIndex], filter.isMatch(table, rowIndex));
+      assertEquals(expected[rowIndex], boundFilter.isMatch(table, rowIndex));
+      assertEquals(expected[rowIndex], boundFilter.isMatch(table, table.getRow(rowIndex)));
+    }
+  }
+
+  public void testFilterRows() throws Exception {
+    DataTable table = new DataTable();
+    table.addColumn(new ColumnDescription("c1", ValueType.TEXT, "c1"));
+    table.addColumn(new ColumnDescription("c2", ValueType.NUMBER, "c2"));
+    table.addColumn(new ColumnDescription("c3", ValueType.TEXT, "c3"));
+    for (int i = 0; i < 100; i++) {
+      table.addRowFromValues("v" + (i % 7), i, "v" + (i % 3));
+    }
+
+    // A filter that only implements the row based match.
+    QueryFilter customFilter = new QueryFilter() {
+      @Override
+      public boolean isMatch(DataTable table, TableRow row) {
+        return ((NumberValue) row.getValue(1)).getValue() % 5 == 0;
+      }
+
+      @Override
+      public Set<String> getAllColumnIds() {
+        return Sets.newHashSet("c2");
+      }
+
+      @Override
+      public List<ScalarFunctionColumn> getScalarFunctionColumns() {
+        return Lists.newArrayList();
+      }
+
+      @Override
+      protected List<AggregationColumn> getAggregationColumns() {
+        return Lists.newArrayList();
+      }
+
+      @Override
+      public String toQueryString() {
+        return "c2 % 5 = 0";
+      }
+    };
+    List<QueryFilter> andSubfilters = Lists.newArrayList(
+        new ColumnColumnFilter(new SimpleColumn("c1"), new SimpleColumn("c3"),
+            ComparisonFilter.Operator.EQ),
+        new ColumnValueFilter(new SimpleColumn("c2"), new NumberValue(20),
+            ComparisonFilter.Operator.GT));
+    List<QueryFilter> orSubfilters = Lists.newArrayList(
+        new CompoundFilter(CompoundFilter.LogicalOperator.AND, andSubfilters),
+        customFilter,
+        new NegationFilter(new ColumnValueFilter(new SimpleColumn("c1"), new TextValue("v%"),
+            ComparisonFilter.Operator.LIKE)),
+        new ColumnValueFilter(new SimpleColumn("c3"), new TextValue("v2"),
+            ComparisonFilter.Operator.EQ));
+    QueryFilter[] filters = {
+        new CompoundFilter(CompoundFilter.LogicalOperator.OR, orSubfilters),
+        new NegationFilter(new CompoundFilter(CompoundFilter.LogicalOperator.OR, orSubfilters)),
+        new CompoundFilter(CompoundFilter.LogicalOperator.AND, andSubfilters),
+        new CompoundFilter(CompoundFilter.LogicalOperator.AND, orSubfilters),
+        new ColumnIsNullFilter(new SimpleColumn("c1")),
+        customFilter};
+
+    for (QueryFilter filter : filters) {
+      for (QueryFilter boundFilter : new QueryFilter[] {filter, filter.bind(table)}) {
+        // Every other row, in reverse order.
+        int[] rowIndices = new int[50];
+        for (int i = 0; i < rowIndices.length; i++) {
+          rowIndices[i] = 98 - 2 * i;
+        }
+        int numMatchingRows = boundFilter.filterRows(table, rowIndices, 40);
+        int expectedNumMatchingRows = 0;
+        for (int i = 0; i < 40; i++) {
+          int rowIndex = 98 - 2 * i;
+          if (filter.isMatch(table, rowIndex)) {
+            assertEquals(rowIndex, rowIndices[expectedNumMatchingRows++]);
+          }
+        }
+        assertEquals(filter.toQueryString(), expectedNumMatchingRows, numMatchingRows);
+        assertEquals(0, boundFilter.filterRows(table, rowIndices, 0));
+      }
+    }
+  }
+
   public void testGetAllColumnIds() {
     SimpleColumn col1 = new SimpleColumn("c1");
     SimpleColumn col2 = new SimpleColumn("c2");
@@ -0,0 +1,206 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableCell;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.value.DateValue;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests for FilterOptimizer.
+ */
+public class FilterOptimizerTest extends TestCase {
+
+  private static final AbstractColumn C1 = new SimpleColumn("c1");
+
+  private static final AbstractColumn C2 = new SimpleColumn("c2");
+
+  private static QueryFilter eq(AbstractColumn column, Value value) {
+    return new ColumnValueFilter(column, value, ComparisonFilter.Operator.EQ);
+  }
+
+  private static QueryFilter compare(AbstractColumn column, ComparisonFilter.Operator operator,
+      Value value) {
+    return new ColumnValueFilter(column, value, operator);
+  }
+
+  private static QueryFilter or(QueryFilter... subFilters) {
+    return new CompoundFilter(CompoundFilter.LogicalOperator.OR, Lists.newArrayList(subFilters));
+  }
+
+  private static QueryFilter and(QueryFilter... subFilters) {
+    return new CompoundFilter(CompoundFilter.LogicalOperator.AND,
+        Lists.newArrayList(subFilters));
+  }
+
+  public void testMergeEqualities() {
+    QueryFilter greaterThanZero =
+        new ColumnValueFilter(C2, new NumberValue(0), ComparisonFilter.Operator.GT);
+    QueryFilter filter = or(eq(C1, new TextValue("a")), eq(C2, new NumberValue(1)),
+        eq(C1, new TextValue("b")),
+        new ColumnValueFilter(C1, new TextValue("c"), ComparisonFilter.Operator.EQ, true),
+        greaterThanZero);
+    List<Value> values = Lists.<Value>newArrayList(new TextValue("a"), new TextValue("b"),
+        new TextValue("c"));
+    assertEquals(or(new ColumnValueSetFilter(C1, values), eq(C2, new NumberValue(1)),
+        greaterThanZero), FilterOptimizer.optimize(filter));
+
+    // Nested OR filters are flattened, and a single remaining filter replaces the OR filter.
+    filter = or(eq(C1, new TextValue("a")),
+        or(eq(C1, new TextValue("b")), eq(C1, new TextValue("c"))));
+    assertEquals(new ColumnValueSetFilter(C1, values), FilterOptimizer.optimize(filter));
+
+    // Sub-filters of AND and NOT filters are optimized.
+    filter = and(greaterThanZero,
+        new NegationFilter(or(eq(C1, new TextValue("a")), eq(C1, new TextValue("b")))));
+    assertEquals(and(greaterThanZero, new NegationFilter(new ColumnValueSetFilter(C1,
+        values.subList(0, 2)))), FilterOptimizer.optimize(filter));
+  }
+
+  public void testMergeRanges() {
+    QueryFilter filter = and(compare(C2, ComparisonFilter.Operator.GE, new NumberValue(3)),
+        eq(C1, new TextValue("a")),
+        compare(C2, ComparisonFilter.Operator.LT, new NumberValue(10)),
+        new ColumnValueFilter(C2, new NumberValue(4), ComparisonFilter.Operator.LT, true),
+        compare(C2, ComparisonFilter.Operator.LE, new NumberValue(10)));
+    assertEquals(and(new ColumnValueRangeFilter(C2, new NumberValue(4), false,
+        new NumberValue(10), false), eq(C1, new TextValue("a"))),
+        FilterOptimizer.optimize(filter));
+
+    // Equalities are ranges of a single value.
+    filter = and(eq(C2, new NumberValue(5)),
+        compare(C2, ComparisonFilter.Operator.GE, new NumberValue(5)));
+    assertEquals(new ColumnValueRangeFilter(C2, new NumberValue(5), true, new NumberValue(5),
+        true), FilterOptimizer.optimize(filter));
+
+    // Nested AND filters are flattened.
+    filter = and(compare(C2, ComparisonFilter.Operator.GT, new NumberValue(1)),
+        and(compare(C2, ComparisonFilter.Operator.GT, new NumberValue(2)),
+            compare(C2, ComparisonFilter.Operator.LT, new NumberValue(3))));
+    assertEquals(new ColumnValueRangeFilter(C2, new NumberValue(2), false, new NumberValue(3),
+        false), FilterOptimizer.optimize(filter));
+  }
+
+  public void testContradictions() {
+    QueryFilter filter = and(eq(C1, new TextValue("a")),
+        compare(C2, ComparisonFilter.Operator.GT, new NumberValue(5)),
+        compare(C2, ComparisonFilter.Operator.LT, new NumberValue(3)));
+    QueryFilter optimizedFilter = FilterOptimizer.optimize(filter);
+    assertTrue(FilterOptimizer.isAlwaysFalse(optimizedFilter));
+    assertEquals("(`c2` > 5.0) AND (`c2` < 3.0)", optimizedFilter.toQueryString());
+
+    filter = and(eq(C2, new NumberValue(5)),
+        compare(C2, ComparisonFilter.Operator.LT, new NumberValue(5)));
+    assertTrue(FilterOptimizer.isAlwaysFalse(FilterOptimizer.optimize(filter)));
+
+    // Branches that match no row are pruned from an OR filter.
+    QueryFilter greaterThanZero = compare(C2, ComparisonFilter.Operator.GT, new NumberValue(0));
+    filter = or(filter, greaterThanZero);
+    assertEquals(greaterThanZero, FilterOptimizer.optimize(filter));
+    filter = and(filter, compare(C2, ComparisonFilter.Operator.LE, new NumberValue(0)));
+    assertTrue(FilterOptimizer.isAlwaysFalse(FilterOptimizer.optimize(filter)));
+    assertFalse(FilterOptimizer.isAlwaysFalse(greaterThanZero));
+  }
+
+  public void testGetColumnRanges() {
+    DateValue from = new DateValue(2009, 1, 1);
+    DateValue to = new DateValue(2009, 2, 1);
+    AbstractColumn date = new SimpleColumn("date");
+    QueryFilter filter = and(compare(date, ComparisonFilter.Operator.GE, from),
+        compare(date, ComparisonFilter.Operator.LT, to), eq(C1, new TextValue("a")),
+        or(eq(C2, new NumberValue(1)), eq(C2, new NumberValue(2))));
+    List<ColumnValueRangeFilter> ranges = FilterOptimizer.getColumnRanges(filter);
+    assertEquals(Lists.newArrayList(new ColumnValueRangeFilter(date, from, true, to, false),
+        new ColumnValueRangeFilter(C1, new TextValue("a"), true, new TextValue("a"), true)),
+        ranges);
+    assertTrue(FilterOptimizer.getColumnRanges(
+        or(eq(C2, new NumberValue(1)), eq(C1, new TextValue("a")))).isEmpty());
+  }
+
+  public void testNoOptimization() {
+    List<QueryFilter> filters = Lists.newArrayList(
+        eq(C1, new TextValue("a")),
+        or(eq(C1, new TextValue("a")), eq(C2, new NumberValue(1))),
+        and(eq(C1, new TextValue("a")), eq(C1, new TextValue("b"))),
+        or(eq(C1, new TextValue("a")),
+            new ColumnValueFilter(C1, new TextValue("b"), ComparisonFilter.Operator.NE)),
+        new NegationFilter(or(eq(C1, new TextValue("a")))),
+        or(),
+        // Comparisons with text constants or constants of different types are not merged.
+        and(compare(C1, ComparisonFilter.Operator.GT, new TextValue("a")),
+            compare(C1, ComparisonFilter.Operator.LT, new TextValue("b"))),
+        and(compare(C2, ComparisonFilter.Operator.GT, new NumberValue(1)),
+            compare(C2, ComparisonFilter.Operator.LT, new DateValue(2009, 1, 1))),
+        and(compare(C2, ComparisonFilter.Operator.GT, new NumberValue(1)),
+            compare(C2, ComparisonFilter.Operator.NE, new NumberValue(3))));
+    for (QueryFilter filter : filters) {
+      assertSame(filter, FilterOptimizer.optimize(filter));
+    }
+  }
+
+  public void testSameMatches() throws Exception {
+    DataTable table = new DataTable();
+    table.addColumn(new ColumnDescription("c1", ValueType.TEXT, "c1"));
+    table.addColumn(new ColumnDescription("c2", ValueType.NUMBER, "c2"));
+    table.addColumn(new ColumnDescription("date", ValueType.DATE, "date"));
+    for (int i = 0; i < 50; i++) {
+      TableRow row = new TableRow();
+      row.addCell(new TableCell("v" + (i % 7)));
+      row.addCell(new TableCell(i));
+      row.addCell(new TableCell(new DateValue(2009, 1 + i % 12, 1 + i % 28)));
+      table.addRow(row);
+    }
+    AbstractColumn date = new SimpleColumn("date");
+
+    List<QueryFilter> filters = Lists.newArrayList(
+        or(eq(C1, new TextValue("v1")), eq(C2, new NumberValue(3)),
+            eq(C1, new TextValue("v5")), eq(C2, new NumberValue(40)),
+            eq(C2, new TextValue("40"))),
+        new NegationFilter(or(eq(C2, new NumberValue(1)), eq(C2, new NumberValue(2)),
+            eq(C2, new NumberValue(1)))),
+        and(new ColumnValueFilter(C2, new NumberValue(10), ComparisonFilter.Operator.GT),
+            or(eq(C1, new TextValue("v2")), eq(C1, new TextValue("v3")))),
+        and(compare(date, ComparisonFilter.Operator.GE, new DateValue(2009, 3, 1)),
+            compare(date, ComparisonFilter.Operator.LT, new DateValue(2009, 8, 5)),
+            new ColumnValueFilter(date, new DateValue(2009, 4, 1), ComparisonFilter.Operator.LE,
+                true),
+            compare(C2, ComparisonFilter.Operator.LE, new NumberValue(40)),
+            compare(C2, ComparisonFilter.Operator.GE, new NumberValue(4))),
+        or(and(compare(C2, ComparisonFilter.Operator.GT, new NumberValue(30)),
+            compare(C2, ComparisonFilter.Operator.LT, new NumberValue(20))),
+            and(eq(C2, new NumberValue(7)),
+                compare(C2, ComparisonFilter.Operator.GE, new NumberValue(7)))));
+    for (QueryFilter filter : filters) {
+      QueryFilter optimizedFilter = FilterOptimizer.optimize(filter);
+      assertNotSame(filter, optimizedFilter);
+      for (int i = 0; i < table.getNumberOfRows(); i++) {
+        assertEquals(filter.isMatch(table, i), optimizedFilter.isMatch(table, i));
+        assertEquals(filter.isMatch(table, table.getRow(i)),
+            optimizedFilter.bind(table).isMatch(table, table.getRow(i)));
+      }
+    }
+  }
+}
@@ -124,6 +124,43 @@ public class ScalarFunctionColumnTest extends TestCase {
     }
   }
 
+  public void testBind() throws Exception {
+    ScalarFunction year = TimeComponentExtractor.getInstance(
+        TimeComponentExtractor.TimeComponent.YEAR);
+    DataTable table = new DataTable();
+    table.addColumn(new ColumnDescription("numberCol", ValueType.NUMBER, "numberCol"));
+    table.addColumn(new ColumnDescription("dateCol", ValueType.DATE, "dateCol"));
+    int[][] dates = {{2008, 5, 3}, {1999, 1, 1}};
+    for (int i = 0; i < dates.length; i++) {
+      TableRow row = new TableRow();
+      row.addCell(new TableCell(new NumberValue(i + 1)));
+      row.addCell(new TableCell(new DateValue(dates[i][0], dates[i][1], dates[i][2])));
+      table.addRow(row);
+    }
+
+    ScalarFunctionColumn sfc = new ScalarFunctionColumn(
+        Lists.newArrayList((AbstractColumn) new SimpleColumn("dateCol")), year);
+    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
+    BoundColumn boundColumn = sfc.bind(lookup);
+    assertTrue(boundColumn.isComputed());
+    assertEquals(-1, boundColumn.getColumnIndex());
+    for (int rowIndex = 0; rowIndex < 2; rowIndex++) {
+      assertEquals(sfc.getValue(lookup, table, rowIndex),
+          boundColumn.getValue(table, rowIndex));
+      assertEquals(sfc.getValue(lookup, table.getRow(rowIndex)),
+          boundColumn.getValue(table.getRow(rowIndex)));
+    }
+    assertEquals(new NumberValue(1999), boundColumn.getValue(table, 1));
+
+    // A column that the lookup contains is read at its index.
+    GenericColumnLookup genericLookup = new GenericColumnLookup();
+    genericLookup.put(sfc, 0);
+    boundColumn = sfc.bind(genericLookup);
+    assertFalse(boundColumn.isComputed());
+    assertEquals(0, boundColumn.getColumnIndex());
+    assertEquals(new NumberValue(2), boundColumn.getValue(table, 1));
+  }
+
   public void testGetAllSimpleColumns() {
     List<SimpleColumn> simpleColumns =
         scalarFunctionColumn.getAllSimpleColumns();
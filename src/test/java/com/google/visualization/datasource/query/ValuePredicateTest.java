@@ -0,0 +1,120 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query;
+
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TextDictionary;
+import com.google.visualization.datasource.datatable.value.BooleanValue;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.query.ComparisonFilterTest.ConcreteComparisonFilter;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for ValuePredicate.
+ */
+public class ValuePredicateTest extends TestCase {
+
+  /**
+   * Checks that the compiled predicates match the same values as the operators of the filters.
+   */
+  public void testSameAsOperatorMatch() {
+    Value[] constants = {new TextValue("abc"), new TextValue("abc%"), new TextValue("%abc"),
+        new TextValue("%abc%"), new TextValue("%"), new TextValue("%%"), new TextValue(""),
+        new TextValue("a_c"), new TextValue("a%c"), new TextValue("a.c"),
+        new TextValue("[a-c]+"), new TextValue("(("), new TextValue("a*"),
+        new NumberValue(12), NumberValue.getNullValue(), BooleanValue.TRUE};
+    Value[] values = {new TextValue("abc"), new TextValue("abcd"), new TextValue("xabc"),
+        new TextValue("xabcx"), new TextValue("ab"), new TextValue(""),
+        new TextValue("abc\n"), new TextValue("\nabc"), new TextValue("x\u2028abc"),
+        new TextValue("a\nc"), new TextValue("a.c"), new TextValue("aaa"),
+        new TextValue("abc%"), new TextValue("12"), new NumberValue(12), new NumberValue(-3),
+        NumberValue.getNullValue(), BooleanValue.FALSE, BooleanValue.TRUE};
+
+    for (ComparisonFilter.Operator operator : ComparisonFilter.Operator.values()) {
+      ConcreteComparisonFilter filter = new ConcreteComparisonFilter(operator);
+      for (Value constant : constants) {
+        for (boolean isComparisonOrderReversed : new boolean[] {false, true}) {
+          ValuePredicate predicate =
+              ValuePredicate.create(filter, constant, isComparisonOrderReversed);
+          for (Value value : values) {
+            boolean expected = isComparisonOrderReversed
+                ? filter.isOperatorMatch(constant, value)
+                : filter.isOperatorMatch(value, constant);
+            assertEquals(operator + " " + constant + " " + isComparisonOrderReversed + " "
+                + value, expected, predicate.isMatch(value));
+          }
+        }
+      }
+    }
+  }
+
+  public void testLike() {
+    ConcreteComparisonFilter likeFilter =
+        new ConcreteComparisonFilter(ComparisonFilter.Operator.LIKE);
+    ValuePredicate prefix = ValuePredicate.create(likeFilter, new TextValue("foo%"), false);
+    assertTrue(prefix.isMatch(new TextValue("foo bar")));
+    assertTrue(prefix.isMatch(new TextValue("foo")));
+    assertFalse(prefix.isMatch(new TextValue("a foo")));
+    // The wildcards do not match line terminators, as in the regular expression of the pattern.
+    assertFalse(prefix.isMatch(new TextValue("foo\nbar")));
+    assertTrue(prefix.isMatch(new TextValue("foo bar\u00e9")));
+
+    ValuePredicate contains = ValuePredicate.create(likeFilter, new TextValue("%o b%"), false);
+    assertTrue(contains.isMatch(new TextValue("foo bar")));
+    assertFalse(contains.isMatch(new TextValue("foobar")));
+  }
+
+  /**
+   * Checks that the codes of a text dictionary that a predicate matches are the codes of the
+   * texts it matches.
+   */
+  public void testMatchingCodes() throws Exception {
+    DataTable table = new DataTable();
+    table.addColumn(new ColumnDescription("c1", ValueType.TEXT, "c1"));
+    for (String text : new String[] {"b", "", "dd", "B", "b", "c"}) {
+      table.addRowFromValues(text);
+    }
+    TextDictionary dictionary = table.getTextDictionary(0, null);
+    Value[] constants = {new TextValue("b"), new TextValue("a"), new TextValue(""),
+        new TextValue("A"), new TextValue("z"), new TextValue("c")};
+
+    for (ComparisonFilter.Operator operator : ComparisonFilter.Operator.values()) {
+      ConcreteComparisonFilter filter = new ConcreteComparisonFilter(operator);
+      for (Value constant : constants) {
+        for (boolean isComparisonOrderReversed : new boolean[] {false, true}) {
+          ValuePredicate predicate =
+              ValuePredicate.create(filter, constant, isComparisonOrderReversed);
+          ValuePredicate.CodeRange codes = predicate.getMatchingCodes(dictionary);
+          assertEquals(predicate.hasMatchingCodes(), codes != null);
+          if (codes == null) {
+            continue;
+          }
+          for (int code = 0; code < dictionary.size(); code++) {
+            assertEquals(operator + " " + constant + " " + isComparisonOrderReversed + " "
+                + code, predicate.isMatch(new TextValue(dictionary.getText(code))),
+                codes.contains(code));
+          }
+        }
+      }
+    }
+    assertFalse(ValuePredicate.create(new ConcreteComparisonFilter(ComparisonFilter.Operator.EQ),
+        new NumberValue(1), false).hasMatchingCodes());
+  }
+}
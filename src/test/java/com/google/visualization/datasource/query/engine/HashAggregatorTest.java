@@ -0,0 +1,141 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.query.AggregationType;
+
+import junit.framework.TestCase;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for HashAggregator.
+ */
+public class HashAggregatorTest extends TestCase {
+
+  private DataTable table;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    table = new DataTable();
+    table.addColumn(new ColumnDescription("band", ValueType.TEXT, "Band"));
+    table.addColumn(new ColumnDescription("year", ValueType.NUMBER, "Year"));
+    table.addColumn(new ColumnDescription("sales", ValueType.NUMBER, "Sales"));
+    table.addRowFromValues("Contraband", 1994, 10);
+    table.addRowFromValues("Youthanasia", 1994, 20);
+    table.addRowFromValues("Contraband", 1995, 30);
+    table.addRowFromValues("Contraband", 1994, 5);
+    table.addRowFromValues("Youthanasia", 1995);
+  }
+
+  private HashAggregator newAggregator(int[] groupByColumnIndices) {
+    List<Set<AggregationType>> aggregationTypes = Lists.newArrayList();
+    aggregationTypes.add(EnumSet.allOf(AggregationType.class));
+    aggregationTypes.add(EnumSet.of(AggregationType.MIN, AggregationType.MAX));
+    HashAggregator aggregator = new HashAggregator(groupByColumnIndices, new int[] {2, 0},
+        new ValueType[] {ValueType.NUMBER, ValueType.TEXT}, aggregationTypes);
+    aggregator.aggregate(table, 0, table.getNumberOfRows());
+    return aggregator;
+  }
+
+  public void testAggregate() {
+    HashAggregator aggregator = newAggregator(new int[] {0, 1});
+    assertEquals(4, aggregator.getNumberOfGroups());
+    // Groups are numbered in the order in which they are first seen.
+    assertEquals(0, aggregator.getGroup(
+        new Value[] {new TextValue("Contraband"), new NumberValue(1994)}));
+    int group = aggregator.getGroup(
+        new Value[] {new TextValue("Contraband"), new NumberValue(1994)});
+    assertEquals(new NumberValue(15), aggregator.getAggregationValue(group, 0,
+        AggregationType.SUM));
+    assertEquals(new NumberValue(2), aggregator.getAggregationValue(group, 0,
+        AggregationType.COUNT));
+    assertEquals(new NumberValue(5), aggregator.getAggregationValue(group, 0,
+        AggregationType.MIN));
+    assertEquals(new NumberValue(7.5), aggregator.getAggregationValue(group, 0,
+        AggregationType.AVG));
+
+    // Null values are not aggregated.
+    group = aggregator.getGroup(
+        new Value[] {new TextValue("Youthanasia"), new NumberValue(1995)});
+    assertEquals(3, group);
+    assertEquals(new NumberValue(0), aggregator.getAggregationValue(group, 0,
+        AggregationType.COUNT));
+    assertEquals(NumberValue.getNullValue(), aggregator.getAggregationValue(group, 0,
+        AggregationType.SUM));
+    assertEquals(NumberValue.getNullValue(), aggregator.getAggregationValue(group, 0,
+        AggregationType.MAX));
+
+    assertEquals(-1, aggregator.getGroup(
+        new Value[] {new TextValue("Contraband"), new NumberValue(2000)}));
+    assertEquals(-1, aggregator.getGroup(new Value[] {new TextValue("Contraband")}));
+  }
+
+  public void testRollUp() {
+    HashAggregator aggregator = newAggregator(new int[] {1, 0});
+    HashAggregator byYear = aggregator.rollUp(1);
+    assertEquals(2, byYear.getNumberOfGroups());
+    int group = byYear.getGroup(new Value[] {new NumberValue(1994)});
+    assertEquals(new NumberValue(35), byYear.getAggregationValue(group, 0,
+        AggregationType.SUM));
+    assertEquals(new TextValue("Youthanasia"), byYear.getAggregationValue(group, 1,
+        AggregationType.MAX));
+
+    HashAggregator all = aggregator.rollUp(0);
+    assertEquals(1, all.getNumberOfGroups());
+    assertEquals(new NumberValue(4), all.getAggregationValue(0, 0, AggregationType.COUNT));
+    assertEquals(new NumberValue(30), all.getAggregationValue(0, 0, AggregationType.MAX));
+    assertEquals(new TextValue("Contraband"), all.getAggregationValue(0, 1,
+        AggregationType.MIN));
+  }
+
+  public void testManyGroups() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      table.addRowFromValues("Band" + i, 2000, i);
+    }
+    HashAggregator aggregator = newAggregator(new int[] {0});
+    assertEquals(102, aggregator.getNumberOfGroups());
+    int group = aggregator.getGroup(new Value[] {new TextValue("Band99")});
+    assertEquals(new NumberValue(99), aggregator.getAggregationValue(group, 0,
+        AggregationType.SUM));
+  }
+
+  public void testRequestedAggregationTypes() {
+    List<Set<AggregationType>> aggregationTypes = Lists.newArrayList();
+    aggregationTypes.add(EnumSet.of(AggregationType.SUM));
+    HashAggregator aggregator = new HashAggregator(new int[] {0}, new int[] {2},
+        new ValueType[] {ValueType.NUMBER}, aggregationTypes);
+    aggregator.aggregate(table, 0, table.getNumberOfRows());
+    int group = aggregator.getGroup(new Value[] {new TextValue("Youthanasia")});
+    assertEquals(new NumberValue(20), aggregator.getAggregationValue(group, 0,
+        AggregationType.SUM));
+    try {
+      aggregator.getAggregationValue(group, 0, AggregationType.MAX);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected behavior.
+    }
+  }
+}
@@ -15,12 +15,14 @@
 package com.google.visualization.datasource.query.engine;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.visualization.datasource.base.InvalidQueryException;
 import com.google.visualization.datasource.datatable.ColumnDescription;
 import com.google.visualization.datasource.datatable.DataTable;
 import com.google.visualization.datasource.datatable.TableCell;
 import com.google.visualization.datasource.datatable.TableRow;
 import com.google.visualization.datasource.datatable.value.BooleanValue;
+import com.google.visualization.datasource.datatable.value.DateValue;
 import com.google.visualization.datasource.datatable.value.NumberValue;
 import com.google.visualization.datasource.datatable.value.TextValue;
 import com.google.visualization.datasource.datatable.value.ValueType;
@@ -51,12 +53,19 @@ import com.google.visualization.datasource.query.scalarfunction.Product;
 import com.google.visualization.datasource.query.scalarfunction.Quotient;
 import com.google.visualization.datasource.query.scalarfunction.Sum;
 import com.google.visualization.datasource.query.scalarfunction.TimeComponentExtractor;
+import com.google.visualization.datasource.render.JsonRenderer;
 
 import junit.framework.TestCase;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Unit tests for DataTableDataSourceTest.
@@ -1666,4 +1675,300 @@ public class QueryEngineTest extends TestCase {
     assertStringArraysEqual(new String[]{"2003", "Collection", "2.0"},
       resultStrings[3]);  
   }
+
+  /**
+   * Test that executing queries does not change the input table.
+   */
+  public void testInputTableIsNotChanged() throws Exception {
+    String before = JsonRenderer.renderDataTable(input, true, true, true).toString();
+    String[] queries = {
+        "select name, weight where weight > 100 order by name limit 2 "
+            + "label name 'Name' format weight '0.0'",
+        "label weight 'Weight' format weight '0.0', isPig 'Yes:No'",
+        "select name, sum(weight) group by name label name 'Name' format name 'x'",
+        "select * order by weight skipping 2 format weight '#'",
+    };
+    for (String queryString : queries) {
+      Query query = QueryBuilder.getInstance().parseQuery(queryString);
+      DataTable result = QueryEngine.executeQuery(query, input, Locale.US);
+      assertNotSame(input, result);
+      assertEquals(queryString, before,
+          JsonRenderer.renderDataTable(input, true, true, true).toString());
+    }
+    assertEquals("label1", input.getColumnDescription(1).getLabel());
+    assertEquals("", input.getColumnDescription(1).getPattern());
+    assertNull(input.getCell(0, 1).getFormattedValue());
+    assertEquals(0, input.getWarnings().size());
+  }
+
+  /**
+   * Test that concurrent queries on a single shared table return the same results as
+   * sequential ones.
+   */
+  public void testConcurrentQueriesOnSharedTable() throws Exception {
+    final String[] queries = {
+        "select name, weight where weight > 100 order by name desc label name 'Name'",
+        "select isPig, sum(weight) group by isPig format sum(weight) '0.0'",
+        "select * order by weight limit 2 format weight '#'",
+    };
+    final String[] expected = new String[queries.length];
+    for (int i = 0; i < queries.length; i++) {
+      Query query = QueryBuilder.getInstance().parseQuery(queries[i]);
+      expected[i] = JsonRenderer.renderDataTable(
+          QueryEngine.executeQuery(query, input, Locale.US), true, true, true).toString();
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> futures = Lists.newArrayList();
+      for (int i = 0; i < 60; i++) {
+        final int queryIndex = i % queries.length;
+        futures.add(executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            Query query = QueryBuilder.getInstance().parseQuery(queries[queryIndex]);
+            DataTable result = QueryEngine.executeQuery(query, input, Locale.US);
+            return expected[queryIndex].equals(
+                JsonRenderer.renderDataTable(result, true, true, true).toString());
+          }
+        }));
+      }
+      for (Future<Boolean> future : futures) {
+        assertTrue(future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testParallelFilter() throws Exception {
+    DataTable input = new DataTable();
+    input.addColumn(new ColumnDescription("name", ValueType.TEXT, "Name"));
+    input.addColumn(new ColumnDescription("value", ValueType.NUMBER, "Value"));
+    for (int i = 0; i < 20000; i++) {
+      input.addRowFromValues("name" + (i % 13), i);
+    }
+    String[] queries = new String[] {
+        "where value % 7 = 3 or name = 'name5'",
+        "where name > 'name4' and value < 12345 order by value desc",
+        "where value < 0"};
+
+    // Queries run serially unless a pool is set.
+    QueryEngineSettings serialSettings = new QueryEngineSettings();
+    assertNull(serialSettings.getPool());
+    QueryEngineSettings parallelSettings = new QueryEngineSettings();
+    parallelSettings.setParallelFilterThreshold(0);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    parallelSettings.setPool(pool);
+    try {
+      for (String queryString : queries) {
+        Query query = QueryBuilder.getInstance().parseQuery(queryString);
+        String expected = JsonRenderer.renderDataTable(
+            QueryEngine.executeQuery(query, input, Locale.US, serialSettings),
+            true, true, true).toString();
+        String actual = JsonRenderer.renderDataTable(
+            QueryEngine.executeQuery(query, input, Locale.US, parallelSettings),
+            true, true, true).toString();
+        assertEquals(expected, actual);
+      }
+
+      // A filter that only implements the row based match.
+      Query query = new Query();
+      query.setFilter(new QueryFilter() {
+        @Override
+        public boolean isMatch(DataTable table, TableRow row) {
+          return ((NumberValue) row.getValue(1)).getValue() % 1000 == 0;
+        }
+
+        @Override
+        public Set<String> getAllColumnIds() {
+          return Sets.newHashSet("value");
+        }
+
+        @Override
+        public List<ScalarFunctionColumn> getScalarFunctionColumns() {
+          return Lists.newArrayList();
+        }
+
+        @Override
+        protected List<AggregationColumn> getAggregationColumns() {
+          return Lists.newArrayList();
+        }
+
+        @Override
+        public String toQueryString() {
+          return "value % 1000 = 0";
+        }
+      });
+      DataTable result = QueryEngine.executeQuery(query, input, Locale.US, parallelSettings);
+      assertEquals(20, result.getNumberOfRows());
+      for (int i = 0; i < 20; i++) {
+        assertEquals(new NumberValue(i * 1000), result.getValue(i, 1));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  public void testSortWithLimit() throws Exception {
+    DataTable input = new DataTable();
+    input.addColumn(new ColumnDescription("id", ValueType.NUMBER, "Id"));
+    input.addColumn(new ColumnDescription("value", ValueType.NUMBER, "Value"));
+    for (int i = 0; i < 1000; i++) {
+      input.addRowFromValues(i, (i * 37) % 10);
+    }
+    DataTable sorted = QueryEngine.executeQuery(
+        QueryBuilder.getInstance().parseQuery("order by value desc"), input, Locale.US);
+
+    int[][] limitsAndOffsets = {{0, 0}, {1, 0}, {20, 0}, {20, 15}, {999, 0}, {999, 1},
+        {1000, 0}, {5, 995}, {5, 2000}};
+    for (int[] limitAndOffset : limitsAndOffsets) {
+      int limit = limitAndOffset[0];
+      int offset = limitAndOffset[1];
+      DataTable result = QueryEngine.executeQuery(QueryBuilder.getInstance().parseQuery(
+          "order by value desc limit " + limit + " offset " + offset), input, Locale.US);
+      int expectedRows = Math.max(0, Math.min(1000, offset + limit) - offset);
+      assertEquals(expectedRows, result.getNumberOfRows());
+      for (int i = 0; i < expectedRows; i++) {
+        // The order of rows with equal values is kept, as with a full sort.
+        assertEquals(sorted.getValue(offset + i, 0), result.getValue(i, 0));
+      }
+      assertEquals((offset + limit < 1000) ? 1 : 0, result.getWarnings().size());
+    }
+  }
+
+  public void testSortByAggregation() throws Exception {
+    DataTable input = new DataTable();
+    input.addColumn(new ColumnDescription("g", ValueType.TEXT, "g"));
+    input.addColumn(new ColumnDescription("n", ValueType.NUMBER, "n"));
+    input.addColumn(new ColumnDescription("id", ValueType.TEXT, "id"));
+    input.addColumn(new ColumnDescription("d", ValueType.DATE, "d"));
+    String[] groups = {"a", "a", "b", "c", "c", "c"};
+    int[] numbers = {1, 2, 5, 1, 1, 0};
+    DateValue[] dates = {new DateValue(2008, 1, 1), new DateValue(2009, 1, 1),
+        new DateValue(2008, 1, 1), new DateValue(2009, 1, 1), new DateValue(2009, 5, 5),
+        new DateValue(2008, 3, 3)};
+    for (int i = 0; i < groups.length; i++) {
+      TableRow row = new TableRow();
+      row.addCell(groups[i]);
+      row.addCell(numbers[i]);
+      row.addCell("id" + i);
+      row.addCell(new TableCell(dates[i]));
+      input.addRow(row);
+    }
+
+    DataTable result = QueryEngine.executeQuery(QueryBuilder.getInstance().parseQuery(
+        "select g, sum(n) group by g order by sum(n)"), input, Locale.US);
+    assertEquals(3, result.getNumberOfRows());
+    assertEquals(new TextValue("c"), result.getValue(0, 0));
+    assertEquals(new TextValue("a"), result.getValue(1, 0));
+    assertEquals(new TextValue("b"), result.getValue(2, 0));
+    assertEquals(new NumberValue(5), result.getValue(2, 1));
+
+    result = QueryEngine.executeQuery(QueryBuilder.getInstance().parseQuery(
+        "select g, sum(n) group by g order by sum(n) desc limit 1"), input, Locale.US);
+    assertEquals(1, result.getNumberOfRows());
+    assertEquals(new TextValue("b"), result.getValue(0, 0));
+
+    result = QueryEngine.executeQuery(QueryBuilder.getInstance().parseQuery(
+        "select g, count(id), year(d) group by g, year(d) order by count(id) desc, year(d) "
+        + "limit 3"), input, Locale.US);
+    assertEquals(3, result.getNumberOfRows());
+    String[][] expected = {{"c", "2009"}, {"a", "2008"}, {"b", "2008"}};
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(new TextValue(expected[i][0]), result.getValue(i, 0));
+      assertEquals(new NumberValue(Integer.parseInt(expected[i][1])), result.getValue(i, 2));
+    }
+    assertEquals(new NumberValue(2), result.getValue(0, 1));
+  }
+
+  public void testLimitWithoutSort() throws Exception {
+    DataTable input = new DataTable();
+    input.addColumn(new ColumnDescription("name", ValueType.TEXT, "Name"));
+    input.addColumn(new ColumnDescription("value", ValueType.NUMBER, "Value"));
+    for (int i = 0; i < 1000; i++) {
+      input.addRowFromValues("name" + (i % 13), i);
+    }
+
+    // A filter that matches the even values, and counts the rows it is evaluated on.
+    final int[] numEvaluatedRows = new int[1];
+    Query query = new Query();
+    query.setFilter(new QueryFilter() {
+      @Override
+      public boolean isMatch(DataTable table, TableRow row) {
+        numEvaluatedRows[0]++;
+        return ((NumberValue) row.getValue(1)).getValue() % 2 == 0;
+      }
+
+      @Override
+      public Set<String> getAllColumnIds() {
+        return Sets.newHashSet("value");
+      }
+
+      @Override
+      public List<ScalarFunctionColumn> getScalarFunctionColumns() {
+        return Lists.newArrayList();
+      }
+
+      @Override
+      protected List<AggregationColumn> getAggregationColumns() {
+        return Lists.newArrayList();
+      }
+
+      @Override
+      public String toQueryString() {
+        return "value % 2 = 0";
+      }
+    });
+    query.setRowLimit(10);
+    query.setRowOffset(5);
+    DataTable result = QueryEngine.executeQuery(query, input, Locale.US);
+    assertEquals(10, result.getNumberOfRows());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(new NumberValue(2 * (i + 5)), result.getValue(i, 1));
+    }
+    assertEquals(1, result.getWarnings().size());
+    // The scan stops at the first matching row after the limit, which tells that the data was
+    // truncated.
+    assertEquals(31, numEvaluatedRows[0]);
+    assertEquals(1000, input.getNumberOfRows());
+
+    String[] queries = new String[] {
+        "where value % 3 = 1 limit 20",
+        "where value % 3 = 1 limit 20 offset 320",
+        "where value % 3 = 1 limit 400",
+        "where value % 3 = 1 skipping 4 limit 7 offset 3",
+        "select value, name where name = 'name3' limit 5 offset 2",
+        "skipping 3 limit 10 offset 330",
+        "limit 0",
+        "where value >= 100 and value < 130 and 110 <= value limit 5",
+        "where value > 5 and name = 'name3' and value < 3"};
+    int[][] expectedValues = new int[][] {
+        {1, 58, 3},
+        {961, 997, 3},
+        {1, 997, 3},
+        {37, 109, 12},
+        {29, 81, 13},
+        {990, 999, 3},
+        {},
+        {110, 114, 1},
+        {}};
+    boolean[] expectedTruncations =
+        new boolean[] {true, false, false, true, true, false, true, true, false};
+    for (int i = 0; i < queries.length; i++) {
+      result = QueryEngine.executeQuery(
+          QueryBuilder.getInstance().parseQuery(queries[i]), input, Locale.US);
+      int[] expected = expectedValues[i];
+      int numRows = (expected.length == 0) ? 0 : (expected[1] - expected[0]) / expected[2] + 1;
+      assertEquals(numRows, result.getNumberOfRows());
+      int valueIndex = queries[i].startsWith("select") ? 0 : 1;
+      for (int j = 0; j < numRows; j++) {
+        assertEquals(new NumberValue(expected[0] + j * expected[2]),
+            result.getValue(j, valueIndex));
+      }
+      // The table built by a selection has no warnings.
+      assertEquals(expectedTruncations[i] && (valueIndex == 1),
+          !result.getWarnings().isEmpty());
+    }
+  }
 }
@@ -0,0 +1,157 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.value.BooleanValue;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.query.AbstractColumn;
+import com.google.visualization.datasource.query.DataTableColumnLookup;
+import com.google.visualization.datasource.query.QuerySort;
+import com.google.visualization.datasource.query.ScalarFunctionColumn;
+import com.google.visualization.datasource.query.SimpleColumn;
+import com.google.visualization.datasource.query.SortOrder;
+import com.google.visualization.datasource.query.scalarfunction.Lower;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests for SortKeys.
+ */
+public class SortKeysTest extends TestCase {
+
+  private DataTable table;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    table = new DataTable();
+    table.addColumn(new ColumnDescription("name", ValueType.TEXT, "Name"));
+    table.addColumn(new ColumnDescription("value", ValueType.NUMBER, "Value"));
+    table.addColumn(new ColumnDescription("flag", ValueType.BOOLEAN, "Flag"));
+    String[] names = {"apple", "Apple", "\u00e9clair", "eclair", "Zebra", "", "b"};
+    Value[] values = {new NumberValue(3), NumberValue.getNullValue(), new NumberValue(-1),
+        new NumberValue(3), new NumberValue(0), NumberValue.getNullValue(), new NumberValue(2.5)};
+    for (int i = 0; i < names.length; i++) {
+      TableRow row = new TableRow(3);
+      row.addCell(new TextValue(names[i]));
+      row.addCell(values[i]);
+      row.addCell(BooleanValue.getInstance(i % 3 == 0));
+      table.addRow(row);
+    }
+  }
+
+  /**
+   * Checks that the sort keys order all pairs of rows as a row comparator does.
+   *
+   * @param sort The ordering criteria.
+   */
+  private void assertSameOrder(QuerySort sort) {
+    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
+    TableRowComparator comparator = new TableRowComparator(sort, Locale.US, lookup);
+    SortKeys sortKeys = new SortKeys(sort, Locale.US, lookup, table);
+    for (int i = 0; i < table.getNumberOfRows(); i++) {
+      for (int j = 0; j < table.getNumberOfRows(); j++) {
+        assertEquals(Integer.signum(comparator.compare(table, i, j)),
+            Integer.signum(sortKeys.compare(i, j)));
+      }
+    }
+  }
+
+  public void testSingleColumns() {
+    for (String columnId : new String[] {"name", "value", "flag"}) {
+      for (SortOrder order : SortOrder.values()) {
+        QuerySort sort = new QuerySort();
+        sort.addSort(new SimpleColumn(columnId), order);
+        assertSameOrder(sort);
+      }
+    }
+  }
+
+  public void testRepeatedTexts() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      table.addRowFromValues((i % 2 == 0) ? "Apple" : "b", i, true);
+    }
+    QuerySort sort = new QuerySort();
+    sort.addSort(new SimpleColumn("name"), SortOrder.DESCENDING);
+    assertSameOrder(sort);
+  }
+
+  public void testManyColumns() {
+    QuerySort sort = new QuerySort();
+    sort.addSort(new SimpleColumn("flag"), SortOrder.DESCENDING);
+    sort.addSort(new SimpleColumn("value"), SortOrder.ASCENDING);
+    sort.addSort(new SimpleColumn("name"), SortOrder.DESCENDING);
+    assertSameOrder(sort);
+  }
+
+  public void testScalarFunctionColumn() {
+    QuerySort sort = new QuerySort();
+    sort.addSort(new ScalarFunctionColumn(Lists.<AbstractColumn>newArrayList(
+        new SimpleColumn("name")), Lower.getInstance()), SortOrder.ASCENDING);
+    sort.addSort(new SimpleColumn("value"), SortOrder.DESCENDING);
+    assertSameOrder(sort);
+  }
+
+  public void testSortRows() throws Exception {
+    DataTable bigTable = new DataTable();
+    bigTable.addColumn(new ColumnDescription("name", ValueType.TEXT, "Name"));
+    bigTable.addColumn(new ColumnDescription("value", ValueType.NUMBER, "Value"));
+    for (int i = 0; i < 50000; i++) {
+      bigTable.addRowFromValues(((i % 3 == 0) ? "n" : "N") + (i % 17), (i * 7919) % 101);
+    }
+    QuerySort sort = new QuerySort();
+    sort.addSort(new SimpleColumn("name"), SortOrder.ASCENDING);
+    sort.addSort(new SimpleColumn("value"), SortOrder.DESCENDING);
+    final DataTable table = bigTable;
+    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
+    final TableRowComparator comparator = new TableRowComparator(sort, Locale.US, lookup);
+    Integer[] expected = new Integer[table.getNumberOfRows()];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = i;
+    }
+    Arrays.sort(expected, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer rowIndex1, Integer rowIndex2) {
+        return comparator.compare(table, rowIndex1, rowIndex2);
+      }
+    });
+
+    SortKeys sortKeys = new SortKeys(sort, Locale.US, lookup, table);
+    int[] serial = sortKeys.sortRows(null);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    int[] parallel;
+    try {
+      parallel = sortKeys.sortRows(pool);
+    } finally {
+      pool.shutdown();
+    }
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i].intValue(), serial[i]);
+      assertEquals(expected[i].intValue(), parallel[i]);
+    }
+  }
+}
@@ -15,6 +15,8 @@
 package com.google.visualization.datasource.query.engine;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.visualization.datasource.datatable.ColumnDescription;
 import com.google.visualization.datasource.datatable.DataTable;
 import com.google.visualization.datasource.datatable.TableRow;
 import com.google.visualization.datasource.datatable.value.NumberValue;
@@ -27,8 +29,12 @@ import com.google.visualization.datasource.query.mocks.MockDataSource;
 import junit.framework.Assert;
 import junit.framework.TestCase;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Tests for TableAggregator.java.
@@ -208,4 +214,69 @@ public class TableAggregatorTest extends TestCase {
     assertEquals(2.0, ((NumberValue) path.get(1)).getValue());
   }
 
+  /**
+   * Tests that aggregating a table of several chunks on a pool gives exactly the same results
+   * as aggregating it serially.
+   */
+  public void testParallelAggregation() throws Exception {
+    DataTable table = new DataTable();
+    table.addColumn(new ColumnDescription("band", ValueType.TEXT, "Band"));
+    table.addColumn(new ColumnDescription("year", ValueType.NUMBER, "Year"));
+    table.addColumn(new ColumnDescription("sales", ValueType.NUMBER, "Sales"));
+    int numberOfRows = TableAggregator.CHUNK_SIZE * 5 / 2;
+    for (int i = 0; i < numberOfRows; i++) {
+      table.addRowFromValues("Band" + (i % 7), 1990 + (i % 11), i * 0.1);
+    }
+    List<String> groupBy = Lists.newArrayList("band", "year");
+    Map<String, Set<AggregationType>> aggregationTypes = Maps.newHashMap();
+    aggregationTypes.put("sales", EnumSet.allOf(AggregationType.class));
+    aggregationTypes.put("band", EnumSet.of(AggregationType.MIN, AggregationType.MAX));
+
+    TableAggregator serial = new TableAggregator(groupBy, aggregationTypes, table, null);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    TableAggregator parallel;
+    try {
+      parallel = new TableAggregator(groupBy, aggregationTypes, table, pool);
+    } finally {
+      pool.shutdown();
+    }
+
+    assertEquals(77, serial.getPathsToLeaves().size());
+    assertEquals(77, parallel.getPathsToLeaves().size());
+    for (AggregationPath path : serial.getPathsToLeaves()) {
+      for (int depth = 0; depth <= 2; depth++) {
+        AggregationPath prefix = new AggregationPath();
+        for (int i = 0; i < depth; i++) {
+          prefix.add(path.getValues().get(i));
+        }
+        for (AggregationType type : AggregationType.values()) {
+          Value expected = serial.getAggregationValue(prefix, "sales", type);
+          Value actual = parallel.getAggregationValue(prefix, "sales", type);
+          if (type == AggregationType.SUM || type == AggregationType.AVG) {
+            // The sums of the chunks are added, so the rounding may differ.
+            double expectedValue = ((NumberValue) expected).getValue();
+            assertEquals(expectedValue, ((NumberValue) actual).getValue(),
+                Math.abs(expectedValue) * 1e-12);
+          } else {
+            assertEquals(expected, actual);
+          }
+        }
+        assertEquals(serial.getAggregationValue(prefix, "band", AggregationType.MAX),
+            parallel.getAggregationValue(prefix, "band", AggregationType.MAX));
+      }
+    }
+    assertEquals(new NumberValue(numberOfRows), parallel.getAggregationValue(
+        new AggregationPath(), "sales", AggregationType.COUNT));
+
+    // The serial aggregation keeps a single running sum for each group.
+    double sum = 0;
+    for (int i = 0; i < numberOfRows; i += 77) {
+      sum += i * 0.1;
+    }
+    AggregationPath leaf = new AggregationPath();
+    leaf.add(new TextValue("Band0"));
+    leaf.add(new NumberValue(1990));
+    assertEquals(new NumberValue(sum),
+        serial.getAggregationValue(leaf, "sales", AggregationType.SUM));
+  }
 }
@@ -24,6 +24,7 @@ import com.google.visualization.datasource.datatable.value.DateValue;
 import com.google.visualization.datasource.datatable.value.NumberValue;
 import com.google.visualization.datasource.datatable.value.TextValue;
 import com.google.visualization.datasource.datatable.value.TimeOfDayValue;
+import com.google.visualization.datasource.datatable.value.ValuePool;
 import com.google.visualization.datasource.datatable.value.ValueType;
 
 import junit.framework.TestCase;
@@ -206,6 +207,19 @@ public class CsvDataSourceHelperTest extends TestCase {
     assertEquals(BooleanValue.FALSE, dataTable.getRow(3).getCell(1).getValue());
   }
   
+  public void testValuePool() throws CsvDataSourceException, IOException {
+    String csv = "a,1\na,1\n";
+    // Values are not interned by default.
+    DataTable dataTable = CsvDataSourceHelper.read(new StringReader(csv), null, false);
+    assertNotSame(dataTable.getValue(0, 0), dataTable.getValue(1, 0));
+
+    dataTable = CsvDataSourceHelper.read(new StringReader(csv), null, false, null,
+        new ValuePool());
+    assertEquals(new TextValue("a"), dataTable.getValue(0, 0));
+    assertSame(dataTable.getValue(0, 0), dataTable.getValue(1, 0));
+    assertSame(dataTable.getValue(0, 1), dataTable.getValue(1, 1));
+  }
+
   public void testPatterns() throws CsvDataSourceException, IOException {
     // Working example with header rows.
     Reader reader = new StringReader("1,a,20040301\n4,x13a,20050402\n1400,4,20060503");
@@ -434,8 +434,11 @@ public class MockResultSet implements ResultSet {
     throw new UnsupportedOperationException("This operation is unsupported.");
   }
 
+  /**
+   * Moves the cursor before the first row.
+   */
   public void beforeFirst() {
-    throw new UnsupportedOperationException("This operation is unsupported.");
+    rowIndex = -1;
   }
 
   public void afterLast() {
@@ -446,12 +449,24 @@ public class MockResultSet implements ResultSet {
     throw new UnsupportedOperationException("This operation is unsupported.");
   }
 
+  /**
+   * Moves the cursor to the last row.
+   *
+   * @return <code>true</code> if the cursor is on a valid row;
+   * <code>false</code> if there are no rows.
+   */
   public boolean last() {
-    throw new UnsupportedOperationException("This operation is unsupported.");
+    rowIndex = rows.size() - 1;
+    return !rows.isEmpty();
   }
 
+  /**
+   * Retrieves the current row number. The first row is number 1.
+   *
+   * @return The current row number, or 0 if there is no current row.
+   */
   public int getRow() {
-    throw new UnsupportedOperationException("This operation is unsupported.");
+    return (rowIndex >= 0 && rowIndex < rows.size()) ? rowIndex + 1 : 0;
   }
 
   public boolean absolute(int r) {
@@ -482,8 +497,13 @@ public class MockResultSet implements ResultSet {
     throw new UnsupportedOperationException("This operation is unsupported.");
   }
 
+  /**
+   * Retrieves the type of this result set. The mock result set can scroll.
+   *
+   * @return <code>ResultSet.TYPE_SCROLL_INSENSITIVE</code>.
+   */
   public int getType() {
-    throw new UnsupportedOperationException("This operation is unsupported.");
+    return ResultSet.TYPE_SCROLL_INSENSITIVE;
   }
 
   public int getConcurrency() {
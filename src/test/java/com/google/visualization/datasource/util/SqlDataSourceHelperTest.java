@@ -198,6 +198,52 @@ public class SqlDataSourceHelperTest extends TestCase {
     queryStringBuilder = new StrBuilder();
     SqlDataSourceHelper.appendWhereClause(query, queryStringBuilder);
     assertEquals("WHERE (NOT (`ID`=`Salary`)) ", queryStringBuilder.toString());
+
+    // Check equalities on the same column, which are translated to IN.
+    List<QueryFilter> subFiltersList7 = Lists.newArrayList(
+        (QueryFilter) new ColumnValueFilter(new SimpleColumn("Fname"), new TextValue("Mi"),
+            ComparisonFilter.Operator.EQ),
+        new ColumnValueFilter(new SimpleColumn("ID"), new NumberValue(1),
+            ComparisonFilter.Operator.GE),
+        new ColumnValueFilter(new SimpleColumn("Fname"), new TextValue("Jo"),
+            ComparisonFilter.Operator.EQ, true));
+    query.setFilter(new CompoundFilter(CompoundFilter.LogicalOperator.OR, subFiltersList7));
+    queryStringBuilder = new StrBuilder();
+    SqlDataSourceHelper.appendWhereClause(query, queryStringBuilder);
+    assertEquals("WHERE ((`Fname` IN (\"Mi\", \"Jo\")) OR (`ID`>=1.0)) ",
+        queryStringBuilder.toString());
+
+    // Check bounds on the same column, which are merged into a single range.
+    List<QueryFilter> subFiltersList8 = Lists.newArrayList(
+        (QueryFilter) new ColumnValueFilter(new SimpleColumn("ID"), new NumberValue(1),
+            ComparisonFilter.Operator.GE),
+        new ColumnValueFilter(new SimpleColumn("ID"), new NumberValue(10),
+            ComparisonFilter.Operator.LT),
+        new ColumnValueFilter(new SimpleColumn("ID"), new NumberValue(3),
+            ComparisonFilter.Operator.LT, true));
+    query.setFilter(new CompoundFilter(CompoundFilter.LogicalOperator.AND, subFiltersList8));
+    queryStringBuilder = new StrBuilder();
+    SqlDataSourceHelper.appendWhereClause(query, queryStringBuilder);
+    assertEquals("WHERE ((`ID`>3.0) AND (`ID`<10.0)) ", queryStringBuilder.toString());
+
+    // Check contradictory bounds.
+    subFiltersList8.add(new ColumnValueFilter(new SimpleColumn("ID"), new NumberValue(10),
+        ComparisonFilter.Operator.GE));
+    query.setFilter(new CompoundFilter(CompoundFilter.LogicalOperator.AND, subFiltersList8));
+    queryStringBuilder = new StrBuilder();
+    SqlDataSourceHelper.appendWhereClause(query, queryStringBuilder);
+    assertEquals("WHERE false ", queryStringBuilder.toString());
+
+    // Check inclusive bounds with the same value, which are translated to an equality.
+    List<QueryFilter> subFiltersList9 = Lists.newArrayList(
+        (QueryFilter) new ColumnValueFilter(new SimpleColumn("ID"), new NumberValue(5),
+            ComparisonFilter.Operator.GE),
+        new ColumnValueFilter(new SimpleColumn("ID"), new NumberValue(5),
+            ComparisonFilter.Operator.LE));
+    query.setFilter(new CompoundFilter(CompoundFilter.LogicalOperator.AND, subFiltersList9));
+    queryStringBuilder = new StrBuilder();
+    SqlDataSourceHelper.appendWhereClause(query, queryStringBuilder);
+    assertEquals("WHERE (`ID`=5.0) ", queryStringBuilder.toString());
   }
 
   /**